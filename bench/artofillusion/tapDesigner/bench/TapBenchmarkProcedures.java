@@ -0,0 +1,296 @@
+/*
+ *  Canned procedures and objects used by the benchmarks. Everything is built
+ *  in code, no layout window or frame is needed.
+ */
+/*
+ *  Copyright (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import artofillusion.*;
+import artofillusion.math.*;
+import artofillusion.object.*;
+import java.awt.*;
+import java.util.*;
+
+
+/**
+ *  Builds the procedures and objects the benchmarks work on
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+public class TapBenchmarkProcedures
+{
+    /**
+     *  Names of the canned procedures
+     */
+    public final static String COIL_TREE = "coilTree";
+    /**
+     *  Description of the Field
+     */
+    public final static String GOLDEN_BALL_SHRUB = "goldenBallShrub";
+    /**
+     *  Description of the Field
+     */
+    public final static String GRASS_FIELD = "grassField";
+
+
+    /**
+     *  Returns a canned procedure
+     *
+     *@param  name  COIL_TREE, GOLDEN_BALL_SHRUB or GRASS_FIELD
+     *@return       The procedure
+     */
+    public static TapProcedure getProcedure( String name )
+    {
+        if ( COIL_TREE.equals( name ) )
+            return getCoilTree();
+        else if ( GOLDEN_BALL_SHRUB.equals( name ) )
+            return getGoldenBallShrub();
+        else if ( GRASS_FIELD.equals( name ) )
+            return getGrassField();
+        else
+            throw new IllegalArgumentException( "Unknown procedure : " + name );
+    }
+
+
+    /**
+     *  A trunk decorated by a coil of branches, each of them decorated by a
+     *  coil of leaves
+     *
+     *@return    The procedure
+     */
+    public static TapProcedure getCoilTree()
+    {
+        TapProcedure procedure = new TapProcedure( null );
+
+        procedure.addModule( new TubeModule( procedure, new Point( 0, 0 ) ) );
+        procedure.addModule( new TubeModule( procedure, new Point( 0, 100 ) ) );
+        procedure.addModule( new SplineModule( procedure, new Point( 0, 200 ) ) );
+        procedure.addModule( new CoilModule( procedure, new Point( 150, 150 ) ) );
+        procedure.addModule( new CoilModule( procedure, new Point( 300, 50 ) ) );
+        //leaves on the branch
+        procedure.setLink( 2, 0, 3, 0 );
+        procedure.setLink( 1, 0, 3, 1 );
+        //branches on the trunk
+        procedure.setLink( 3, 0, 4, 0 );
+        procedure.setLink( 0, 0, 4, 1 );
+        setMainEntry( procedure, 4 );
+
+        return procedure;
+    }
+
+
+    /**
+     *  A stump covered by a golden ball of twigs bearing leaves
+     *
+     *@return    The procedure
+     */
+    public static TapProcedure getGoldenBallShrub()
+    {
+        TapProcedure procedure = new TapProcedure( null );
+
+        procedure.addModule( new TubeModule( procedure, new Point( 0, 0 ) ) );
+        procedure.addModule( new TubeModule( procedure, new Point( 0, 100 ) ) );
+        procedure.addModule( new SplineModule( procedure, new Point( 0, 200 ) ) );
+        procedure.addModule( new CoilModule( procedure, new Point( 150, 150 ) ) );
+        procedure.addModule( new GoldenBallModule( procedure, new Point( 300, 50 ) ) );
+        //leaves on the twig
+        procedure.setLink( 2, 0, 3, 0 );
+        procedure.setLink( 1, 0, 3, 1 );
+        //twigs around the stump
+        procedure.setLink( 3, 0, 4, 0 );
+        procedure.setLink( 0, 0, 4, 1 );
+        setMainEntry( procedure, 4 );
+
+        return procedure;
+    }
+
+
+    /**
+     *  Grass blades at the vertices of a flat ground mesh
+     *
+     *@return    The procedure
+     */
+    public static TapProcedure getGrassField()
+    {
+        Vector objects = new Vector();
+
+        objects.addElement( new ObjectInfo( getGround( 40 ), new CoordinateSystem(), "ground" ) );
+
+        TapProcedure procedure = new TapProcedure( objects );
+
+        procedure.addModule( new AoIObjectModule( procedure, new Point( 0, 0 ) ) );
+        procedure.addModule( new TubeModule( procedure, new Point( 0, 100 ) ) );
+        procedure.addModule( new FieldModule( procedure, new Point( 150, 50 ) ) );
+        procedure.setLink( 1, 0, 2, 0 );
+        procedure.setLink( 0, 0, 2, 1 );
+        setMainEntry( procedure, 2 );
+
+        return procedure;
+    }
+
+
+    /**
+     *  Sets the main entry of a procedure
+     *
+     *@param  procedure  The procedure
+     *@param  index      The main entry module index
+     */
+    private static void setMainEntry( TapProcedure procedure, int index )
+    {
+        Vector modules = procedure.getModules();
+
+        for ( int i = 0; i < modules.size(); ++i )
+            ( (TapModule) modules.elementAt( i ) ).setMainEntry( i == index );
+    }
+
+
+    /**
+     *  A flat square triangle mesh
+     *
+     *@param  div  Number of divisions along each side
+     *@return      The mesh
+     */
+    public static TriangleMesh getGround( int div )
+    {
+        Vec3[] v = new Vec3[( div + 1 ) * ( div + 1 )];
+        int[][] faces = new int[2 * div * div][];
+
+        for ( int i = 0; i <= div; ++i )
+            for ( int j = 0; j <= div; ++j )
+                v[i * ( div + 1 ) + j] = new Vec3( 10.0 * i / div - 5.0, 0.0, 10.0 * j / div - 5.0 );
+
+        int k = 0;
+
+        for ( int i = 0; i < div; ++i )
+            for ( int j = 0; j < div; ++j )
+            {
+                int a = i * ( div + 1 ) + j;
+
+                faces[k++] = new int[]{a, a + 1, a + div + 2};
+                faces[k++] = new int[]{a, a + div + 2, a + div + 1};
+            }
+
+        return new TriangleMesh( v, faces );
+    }
+
+
+    /**
+     *  A leaf shaped spline mesh
+     *
+     *@param  scene  The scene providing the default texture
+     *@return        The mesh
+     */
+    public static SplineMesh getLeafMesh( Scene scene )
+    {
+        int usize = 5;
+        int vsize = 6;
+        Vec3[][] v = new Vec3[usize][vsize];
+        float[] usmoothness = new float[usize];
+        float[] vsmoothness = new float[vsize];
+
+        for ( int i = 0; i < usize; ++i )
+        {
+            usmoothness[i] = 1.0f;
+
+            for ( int j = 0; j < vsize; ++j )
+            {
+                double y = (double) j / ( vsize - 1 );
+                double width = Math.sin( Math.PI * y ) * 0.3;
+
+                v[i][j] = new Vec3( width * ( 2.0 * i / ( usize - 1 ) - 1.0 ), y, 0.0 );
+            }
+        }
+
+        for ( int j = 0; j < vsize; ++j )
+            vsmoothness[j] = 1.0f;
+
+        SplineMesh mesh = new SplineMesh( v, usmoothness, vsmoothness, Mesh.APPROXIMATING, false, false );
+        mesh.setTexture( scene.getDefaultTexture(), scene.getDefaultTexture().getDefaultMapping( mesh ) );
+
+        return mesh;
+    }
+
+
+    /**
+     *  A tube as created by the tube module
+     *
+     *@param  scene  The scene providing the default texture
+     *@return        The tube
+     */
+    public static TapTube getTube( Scene scene )
+    {
+        int numYPoints = 5;
+        Vec3[] v = new Vec3[numYPoints];
+        double[] yThickness = new double[numYPoints];
+        float[] ySmoothness = new float[numYPoints];
+
+        for ( int i = 0; i < numYPoints; ++i )
+        {
+            yThickness[i] = 1.0;
+            ySmoothness[i] = 1.0f;
+            v[i] = new Vec3( 0, i * 1.0 / ( numYPoints - 1 ), 0 );
+        }
+
+        Curve yCurve = new Curve( v, ySmoothness, Mesh.APPROXIMATING, false );
+        TapTube tube = new TapTube( yCurve, new TapFunction(), yThickness );
+        tube.setTexture( scene.getDefaultTexture(), scene.getDefaultTexture().getDefaultMapping( tube ) );
+
+        return tube;
+    }
+
+
+    /**
+     *  Distortion parameters bending and twisting an object
+     *
+     *@return    The parameters
+     */
+    public static TapDistortParameters getDistortParameters()
+    {
+        TapDistortParameters parms = new TapDistortParameters();
+
+        parms.curveAngle = 30;
+        parms.curveAngleDist = 10;
+        parms.perpCurveAngle = 10;
+        parms.twistTurns = 0.5;
+        parms.leafCurveAngle = 20;
+        parms.counterAction = 0.5;
+        parms.seed = 12345;
+
+        return parms;
+    }
+
+
+    /**
+     *  A function with a given number of points
+     *
+     *@param  points  The number of points
+     *@param  smooth  True for an interpolating function
+     *@return         The function
+     */
+    public static TapFunction getFunction( int points, boolean smooth )
+    {
+        TapFunction function = new TapFunction();
+
+        function.x = new double[points];
+        function.y = new double[points];
+        function.shape = smooth ? TapFunction.INTERPOLATING : TapFunction.LINEAR;
+
+        for ( int i = 0; i < points; ++i )
+        {
+            function.x[i] = (double) i / ( points - 1 );
+            function.y[i] = 0.5 + 0.4 * Math.sin( 6.0 * function.x[i] );
+        }
+
+        //duplicate() computes the coefficients of the new curve
+        return function.duplicate();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *  Benchmarks of the module graph and collection plumbing
+ */
+/*
+ *  Copyright (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import artofillusion.math.*;
+import artofillusion.object.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ *  BackModuleLink.findModule() and TapDesignerObjectCollection.mergeCollection()
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( value = 1, jvmArgsAppend = "-Djava.awt.headless=true" )
+public class TapCollectionBenchmark
+{
+    @Param( {"100", "10000"} )
+    public int collectionSize;
+
+    private TapProcedure procedure;
+    private BackModuleLink backLinks;
+    private TapModule distributor;
+    private TapDesignerObjectCollection collection;
+
+
+    /**
+     *  Description of the Method
+     */
+    @Setup
+    public void setup()
+    {
+        procedure = TapBenchmarkProcedures.getCoilTree();
+        backLinks = procedure.initProcedure().getBackLinks();
+
+        Vector modules = procedure.getModules();
+
+        distributor = (TapModule) modules.elementAt( modules.size() - 1 );
+
+        collection = new TapDesignerObjectCollection( procedure );
+
+        ObjectInfo info = new ObjectInfo( TapBenchmarkProcedures.getTube( procedure.getScene() ), new CoordinateSystem(), "tube" );
+
+        for ( int i = 0; i < collectionSize; ++i )
+            collection.addObject( info.duplicate(), 1, "tube" );
+    }
+
+
+    /**
+     *  Description of the Method
+     *
+     *@return    Description of the Return Value
+     */
+    @Benchmark
+    public Object findModule()
+    {
+        return backLinks.findModule( distributor, 0 );
+    }
+
+
+    /**
+     *  Description of the Method
+     *
+     *@return    Description of the Return Value
+     */
+    @Benchmark
+    @OutputTimeUnit( TimeUnit.MICROSECONDS )
+    public TapDesignerObjectCollection mergeCollection()
+    {
+        TapDesignerObjectCollection newCollection = new TapDesignerObjectCollection( procedure );
+
+        newCollection.mergeCollection( collection, 0 );
+
+        return newCollection;
+    }
+}
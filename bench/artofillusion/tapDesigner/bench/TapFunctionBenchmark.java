@@ -0,0 +1,90 @@
+/*
+ *  Benchmarks of the function evaluation used by distributor modules
+ */
+/*
+ *  Copyright (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ *  TapFunction.calcValue() and calcIntegral() over a set of abscissae
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( value = 1, jvmArgsAppend = "-Djava.awt.headless=true" )
+public class TapFunctionBenchmark
+{
+    @Param( {"2", "8", "64"} )
+    public int points;
+
+    @Param( {"false", "true"} )
+    public boolean smooth;
+
+    @Param( {"false", "true"} )
+    public boolean tabulated;
+
+    private TapFunction function;
+    private double[] values;
+    private int index;
+
+
+    /**
+     *  Description of the Method
+     */
+    @Setup
+    public void setup()
+    {
+        function = TapBenchmarkProcedures.getFunction( points, smooth );
+        function.setTabulated( tabulated );
+        values = new double[1024];
+
+        java.util.Random random = new java.util.Random( 1 );
+
+        for ( int i = 0; i < values.length; ++i )
+            values[i] = random.nextDouble();
+    }
+
+
+    /**
+     *  Description of the Method
+     *
+     *@return    Description of the Return Value
+     */
+    @Benchmark
+    public double calcValue()
+    {
+        index = ( index + 1 ) & 1023;
+
+        return function.calcValue( values[index] );
+    }
+
+
+    /**
+     *  Description of the Method
+     *
+     *@return    Description of the Return Value
+     */
+    @Benchmark
+    public double calcIntegral()
+    {
+        index = ( index + 1 ) & 1023;
+
+        return function.calcIntegral( values[index] );
+    }
+}
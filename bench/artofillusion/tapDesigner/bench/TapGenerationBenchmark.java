@@ -0,0 +1,77 @@
+/*
+ *  End to end generation benchmarks
+ */
+/*
+ *  Copyright (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ *  TapProcedure.getObject() on the canned procedures. Unless reuse is set,
+ *  each generation starts from scratch : neither the previous object nor the
+ *  branches of the previous generation are reused.
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = "-Djava.awt.headless=true" )
+public class TapGenerationBenchmark
+{
+    @Param( {TapBenchmarkProcedures.COIL_TREE, TapBenchmarkProcedures.GOLDEN_BALL_SHRUB, TapBenchmarkProcedures.GRASS_FIELD} )
+    public String procedureName;
+
+    @Param( {"false"} )
+    public boolean reuse;
+
+    private TapProcedure procedure;
+
+
+    /**
+     *  Description of the Method
+     */
+    @Setup( Level.Trial )
+    public void setup()
+    {
+        procedure = TapBenchmarkProcedures.getProcedure( procedureName );
+    }
+
+
+    /**
+     *  Description of the Method
+     */
+    @Setup( Level.Invocation )
+    public void setupInvocation()
+    {
+        procedure.setCurrentObject( null );
+
+        if ( !reuse )
+            procedure.invalidateEvaluationPlan();
+    }
+
+
+    /**
+     *  Description of the Method
+     *
+     *@return    Description of the Return Value
+     */
+    @Benchmark
+    public TapDesignerObjectCollection getObject()
+    {
+        return procedure.getObject( -1 );
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ *  Benchmarks of the TaPD objects operations called for each placed object
+ */
+/*
+ *  Copyright (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import artofillusion.*;
+import artofillusion.math.*;
+import artofillusion.object.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ *  Spline mesh distortion, tube positions and counter action, leaf
+ *  duplication
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( value = 1, jvmArgsAppend = "-Djava.awt.headless=true" )
+public class TapObjectBenchmark
+{
+    private Scene scene;
+    private SplineMesh leafMesh;
+    private SplineMesh distortedMesh;
+    private TapTube tube;
+    private TapTube counterActedTube;
+    private TapLeaf leaf;
+    private TapDistortParameters parms;
+    private double yPos;
+
+
+    /**
+     *  Builds the objects
+     */
+    @Setup( Level.Trial )
+    public void setup()
+    {
+        scene = new Scene();
+        leafMesh = TapBenchmarkProcedures.getLeafMesh( scene );
+        tube = TapBenchmarkProcedures.getTube( scene );
+        parms = TapBenchmarkProcedures.getDistortParameters();
+        leaf = new TapLeaf( leafMesh, 1.0f, 1.0f, 1.0f, 1.0f, new TapFunction(), 0.05, 0.01 );
+    }
+
+
+    /**
+     *  The distortion and the counter action modify their object, they work
+     *  on a fresh copy each time
+     */
+    @Setup( Level.Invocation )
+    public void setupInvocation()
+    {
+        distortedMesh = (SplineMesh) leafMesh.duplicate();
+        counterActedTube = (TapTube) tube.duplicate();
+        yPos += 0.37;
+
+        if ( yPos > 1.0 )
+            yPos -= 1.0;
+    }
+
+
+    /**
+     *  Description of the Method
+     *
+     *@return    Description of the Return Value
+     */
+    @Benchmark
+    public SplineMesh distortSplineMesh()
+    {
+        TapUtils.distortSplineMesh( distortedMesh, parms );
+
+        return distortedMesh;
+    }
+
+
+    /**
+     *  Description of the Method
+     *
+     *@return    Description of the Return Value
+     */
+    @Benchmark
+    public Mat4 getPosition()
+    {
+        return tube.getPosition( yPos, 1.0, true );
+    }
+
+
+    /**
+     *  Description of the Method
+     *
+     *@return    Description of the Return Value
+     */
+    @Benchmark
+    public Mat4 setCounterAction()
+    {
+        return counterActedTube.setCounterAction( yPos, 1.0, parms );
+    }
+
+
+    /**
+     *  Thirty two branches plugged at once, with the queued counter actions
+     *
+     *@return    Description of the Return Value
+     */
+    @Benchmark
+    public Mat4 queueCounterActions()
+    {
+        for ( int i = 0; i < 32; ++i )
+            counterActedTube.queueCounterAction( ( i + 0.5 ) / 32, i * 2.4, parms );
+
+        counterActedTube.regenerateMesh();
+
+        return counterActedTube.getCounterActionPosition( 31 );
+    }
+
+
+    /**
+     *  Description of the Method
+     *
+     *@return    Description of the Return Value
+     */
+    @Benchmark
+    public Object3D leafDuplicate()
+    {
+        return leaf.duplicate();
+    }
+}
@@ -194,6 +194,7 @@ public abstract class EditWidgetBase
     protected void getBackValues()
     {
         getUndoValues();
+        module.notifyParametersChanged();
         module.getProcedure().getProcPanel().minorViewSync( null );
     }
 
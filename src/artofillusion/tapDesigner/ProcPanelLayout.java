@@ -110,7 +110,7 @@ public class ProcPanelLayout
                 dividerLocation = ( (double) loc ) / ( (double) size );
         }
         else
-            System.out.println( "Warning : unknown widget type : " + wc );
+            TapLog.warning( "ProcPanelLayout", "unknown widget type : " + wc );
     }
 
 
@@ -256,12 +256,12 @@ public class ProcPanelLayout
                 }
                 catch ( InvocationTargetException ex )
                 {
-                    ex.getTargetException().printStackTrace();
+                    TapLog.error( "ProcPanelLayout", "layout data could not be read", ex.getTargetException() );
                     throw new IOException();
                 }
                 catch ( Exception ex )
                 {
-                    ex.printStackTrace();
+                    TapLog.error( "ProcPanelLayout", "layout data could not be read", ex );
                     throw new IOException();
                 }
             }
@@ -0,0 +1,337 @@
+/*
+ *  Generates variants of the TaPD objects of a scene from the command line, without any
+ *  user interface.
+ */
+/*
+ *  Copyright (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import artofillusion.*;
+import artofillusion.animation.*;
+import artofillusion.math.*;
+import artofillusion.object.*;
+import java.io.*;
+import java.util.*;
+
+
+/**
+ *  Headless batch generator. It reads an AoI scene, generates variants of
+ *  its TaPD objects, one per seed, and writes them either as a new scene of
+ *  TaPD objects (geometry cached, so that AoI doesn't generate them again) or
+ *  as a Wavefront .obj mesh. The time spent reading, generating and writing
+ *  is reported on the standard output.<p>
+ *
+ *  No frame, window or widget is created, so the generator runs on nodes
+ *  without a display (java.awt.headless=true) :<p>
+ *
+ *  <code>java -Djava.awt.headless=true -cp ArtOfIllusion.jar:buoy.jar:TaPD.jar
+ *  artofillusion.tapDesigner.TapBatchGenerator [options] input.aoi
+ *  output.aoi|output.obj</code><p>
+ *
+ *  Options :
+ *  <ul>
+ *    <li> -object name : the TaPD object to generate, by default all of them
+ *    </li>
+ *    <li> -seed n : seed of the first variant, by default the procedure seed
+ *    </li>
+ *    <li> -count n : number of variants of each object, seeds following each
+ *    other (1 by default)</li>
+ *    <li> -level n : objects of this decoration level and deeper are not
+ *    generated (-1 by default : all levels)</li>
+ *    <li> -spacing d : distance between two variants along the x axis (0 by
+ *    default)</li>
+ *    <li> -tol d : surface accuracy of the meshes written to a .obj file
+ *    (0.05 by default)</li>
+ *  </ul>
+ *
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+public class TapBatchGenerator
+{
+    private String objectName;
+    private Long firstSeed;
+    private int count;
+    private int level;
+    private double spacing;
+    private double tol;
+    private File input;
+    private File output;
+
+
+    /**
+     *  Constructor for the TapBatchGenerator object
+     *
+     *@param  args                          The command line arguments
+     *@exception  IllegalArgumentException  If the arguments are not valid
+     */
+    public TapBatchGenerator( String[] args )
+    {
+        count = 1;
+        level = -1;
+        spacing = 0;
+        tol = 0.05;
+
+        int i = 0;
+
+        try
+        {
+            for ( ; i < args.length && args[i].startsWith( "-" ); i += 2 )
+            {
+                if ( i + 1 >= args.length )
+                    throw new IllegalArgumentException( "Missing value for " + args[i] );
+
+                if ( args[i].equals( "-object" ) )
+                    objectName = args[i + 1];
+                else if ( args[i].equals( "-seed" ) )
+                    firstSeed = new Long( Long.parseLong( args[i + 1] ) );
+                else if ( args[i].equals( "-count" ) )
+                    count = Integer.parseInt( args[i + 1] );
+                else if ( args[i].equals( "-level" ) )
+                    level = Integer.parseInt( args[i + 1] );
+                else if ( args[i].equals( "-spacing" ) )
+                    spacing = Double.parseDouble( args[i + 1] );
+                else if ( args[i].equals( "-tol" ) )
+                    tol = Double.parseDouble( args[i + 1] );
+                else
+                    throw new IllegalArgumentException( "Unknown option : " + args[i] );
+            }
+        }
+        catch ( NumberFormatException ex )
+        {
+            throw new IllegalArgumentException( "Invalid value for " + args[i] + " : " + args[i + 1] );
+        }
+
+        if ( args.length - i != 2 )
+            throw new IllegalArgumentException( "An input and an output file are expected" );
+
+        if ( count < 1 )
+            throw new IllegalArgumentException( "The count must be at least 1" );
+
+        input = new File( args[i] );
+        output = new File( args[i + 1] );
+    }
+
+
+    /**
+     *  Reads the input scene, generates the variants and writes them
+     *
+     *@return                  The number of variants generated
+     *@exception  Exception    If the input scene can't be read or the output
+     *      file can't be written
+     */
+    public int run()
+        throws Exception
+    {
+        long start = System.currentTimeMillis();
+        Scene scene = new Scene( input, true );
+        Vector sources = new Vector();
+
+        for ( int i = 0; i < scene.getNumObjects(); ++i )
+        {
+            ObjectInfo info = scene.getObject( i );
+
+            if ( info.object instanceof TapDesignerObjectCollection && ( objectName == null || objectName.equals( info.name ) ) )
+                sources.addElement( info );
+        }
+
+        report( "Read " + input + " in " + ( System.currentTimeMillis() - start ) + " ms, " + sources.size() + " TaPD object(s)" );
+
+        if ( sources.size() == 0 )
+            throw new IllegalArgumentException( objectName == null ? "No TaPD object in " + input : "No TaPD object named " + objectName + " in " + input );
+
+        Scene result = new Scene();
+        Vector variants = new Vector();
+        long generationTime = 0;
+        int objects = 0;
+        int n = 0;
+
+        for ( int i = 0; i < sources.size(); ++i )
+        {
+            ObjectInfo source = (ObjectInfo) sources.elementAt( i );
+            TapProcedure procedure = ( (TapDesignerObjectCollection) source.object ).getProcedure();
+            long seed = ( firstSeed != null ? firstSeed.longValue() : procedure.getSeed() );
+
+            for ( int j = 0; j < count; ++j, ++seed )
+            {
+                //each variant keeps its seed in its own procedure
+
+                long time = System.currentTimeMillis();
+                TapProcedure variant = procedure.duplicate();
+
+                if ( variant == null )
+                {
+                    report( source.name + " could not be read, skipped" );
+
+                    break;
+                }
+
+                variant.setSeed( seed );
+
+                TapDesignerObjectCollection collection = variant.getObject( level );
+
+                time = System.currentTimeMillis() - time;
+
+                if ( collection == null )
+                {
+                    report( source.name + " has no main entry, skipped" );
+
+                    break;
+                }
+
+                generationTime += time;
+                objects += collection.size();
+
+                CoordinateSystem coords = new CoordinateSystem( new Vec3( n * spacing, 0, 0 ), Vec3.vz(), Vec3.vy() );
+                ObjectInfo info = new ObjectInfo( collection, coords, source.name + "_" + seed );
+                info.object.setTexture( result.getDefaultTexture(), result.getDefaultTexture().getDefaultMapping( info.object ) );
+                info.addTrack( new PositionTrack( info ), 0 );
+                info.addTrack( new RotationTrack( info ), 1 );
+                result.addObject( info, null );
+                variants.addElement( info );
+                ++n;
+
+                report( info.name + " : " + collection.size() + " objects generated in " + time + " ms" );
+            }
+        }
+
+        report( n + " variant(s), " + objects + " objects generated in " + generationTime + " ms" );
+
+        long time = System.currentTimeMillis();
+
+        if ( output.getName().toLowerCase().endsWith( ".obj" ) )
+            writeMeshes( variants );
+        else
+            result.writeToFile( output );
+
+        report( "Wrote " + output + " in " + ( System.currentTimeMillis() - time ) + " ms, total " + ( System.currentTimeMillis() - start ) + " ms" );
+
+        return n;
+    }
+
+
+    /**
+     *  Writes the objects of the variants to a Wavefront .obj file, one group
+     *  per object. Objects which can't be converted to triangle meshes are
+     *  left out.
+     *
+     *@param  variants         The variants
+     *@exception  IOException  Description of the Exception
+     */
+    private void writeMeshes( Vector variants )
+        throws IOException
+    {
+        PrintWriter out = new PrintWriter( new BufferedWriter( new FileWriter( output ) ) );
+        int offset = 0;
+        int skipped = 0;
+
+        try
+        {
+            for ( int i = 0; i < variants.size(); ++i )
+            {
+                ObjectInfo info = (ObjectInfo) variants.elementAt( i );
+                TapDesignerObjectCollection collection = (TapDesignerObjectCollection) info.object;
+                Mat4 toScene = info.coords.fromLocal();
+
+                for ( int j = 0; j < collection.size(); ++j )
+                {
+                    ObjectInfo child = collection.elementAt( j ).objectInfo;
+                    Object3D object = child.object;
+
+                    if ( object instanceof TapPooledLeaf )
+                        object = ( (TapPooledLeaf) object ).getLeaf();
+
+                    TriangleMesh mesh = null;
+
+                    if ( object.canConvertToTriangleMesh() != Object3D.CANT_CONVERT )
+                        mesh = object.convertToTriangleMesh( tol );
+
+                    if ( mesh == null )
+                    {
+                        ++skipped;
+
+                        continue;
+                    }
+
+                    Mat4 m = toScene.times( child.coords.fromLocal() );
+                    MeshVertex[] vert = mesh.getVertices();
+                    TriangleMesh.Face[] face = mesh.getFaces();
+
+                    out.println( "g " + info.name + "_" + j );
+
+                    for ( int k = 0; k < vert.length; ++k )
+                    {
+                        Vec3 v = m.times( vert[k].r );
+                        out.println( "v " + v.x + " " + v.y + " " + v.z );
+                    }
+
+                    for ( int k = 0; k < face.length; ++k )
+                        out.println( "f " + ( offset + face[k].v1 + 1 ) + " " + ( offset + face[k].v2 + 1 ) + " " + ( offset + face[k].v3 + 1 ) );
+
+                    offset += vert.length;
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        if ( skipped > 0 )
+            report( skipped + " object(s) could not be converted to triangle meshes" );
+    }
+
+
+    /**
+     *  Reports the progress of the generation
+     *
+     *@param  message  The message
+     */
+    private static void report( String message )
+    {
+        System.out.println( message );
+    }
+
+
+    /**
+     *  The main program for the TapBatchGenerator class
+     *
+     *@param  args  The command line arguments
+     */
+    public static void main( String[] args )
+    {
+        TapBatchGenerator generator;
+
+        try
+        {
+            generator = new TapBatchGenerator( args );
+        }
+        catch ( IllegalArgumentException ex )
+        {
+            System.err.println( ex.getMessage() );
+            System.err.println( "Usage : TapBatchGenerator [-object name] [-seed n] [-count n] [-level n] [-spacing d] [-tol d] input.aoi output.aoi|output.obj" );
+            System.exit( 1 );
+
+            return;
+        }
+
+        try
+        {
+            generator.run();
+        }
+        catch ( Exception ex )
+        {
+            System.err.println( ex.getMessage() != null ? ex.getMessage() : ex.toString() );
+            TapLog.error( "TapBatchGenerator", "batch generation failed", ex );
+            System.exit( 1 );
+        }
+    }
+}
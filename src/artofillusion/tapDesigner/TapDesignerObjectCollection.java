@@ -27,7 +27,9 @@ import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
 import java.lang.Math;
+import java.lang.ref.*;
 import java.lang.reflect.*;
+import java.security.*;
 import java.util.*;
 import java.util.zip.*;
 import javax.swing.*;
@@ -48,6 +50,15 @@ public class TapDesignerObjectCollection
     private TapProcedure procedure;
     private int decorationLevel;
     private int renderingLevel;
+    private boolean geometryCached;
+    private int generatedLevel;
+    private Vector supersededVectors;
+    private Scene resourceScene;
+
+    /**
+     *  Leaves are pooled if at least this number of them share a topology
+     */
+    public final static int LEAF_POOL_MINIMUM = 32;
 
 
     /**
@@ -65,6 +76,8 @@ public class TapDesignerObjectCollection
         decorationLevel = -1;
         //Show everything
         renderingLevel = -1;
+        geometryCached = true;
+        generatedLevel = -1;
     }
 
 
@@ -128,6 +141,117 @@ public class TapDesignerObjectCollection
     }
 
 
+    /**
+     *  Returns a copy of the collection. Objects get their own coordinate
+     *  system but share their geometry with the original ones.
+     *
+     *@return    The copy
+     */
+    public TapDesignerObjectCollection copyCollection()
+    {
+        TapDesignerObjectCollection obj = new TapDesignerObjectCollection( procedure );
+
+        for ( int i = 0; i < tapObjectInfoVector.size(); ++i )
+        {
+            TapObjectInfo tInfo = (TapObjectInfo) tapObjectInfoVector.elementAt( i );
+            TapObjectInfo newInfo = new TapObjectInfo( tInfo.objectInfo );
+            newInfo.decorationLevel = tInfo.decorationLevel;
+            newInfo.sizeR = tInfo.sizeR;
+            newInfo.sizeY = tInfo.sizeY;
+            newInfo.name = tInfo.name;
+            obj.addObject( newInfo );
+        }
+
+        obj.resourceScene = resourceScene;
+
+        return obj;
+    }
+
+
+    /**
+     *  Moves the geometry of the leaves to leaf pools : each group of leaves
+     *  built by the same leaf module keeps one topology, and the vertex
+     *  positions of its leaves in a single array. The leaves are replaced by
+     *  TapPooledLeaf objects, expanded when displayed or rendered. The
+     *  TapObjectInfo entries are replaced, not modified, as the leaves may be
+     *  shared with other collections. Leaves shared by several entries
+     *  (instancing) are pooled once.
+     */
+    void poolLeaves()
+    {
+        Hashtable counts = new Hashtable();
+        int i;
+
+        for ( i = 0; i < tapObjectInfoVector.size(); ++i )
+        {
+            Object3D obj = ( (TapObjectInfo) tapObjectInfoVector.elementAt( i ) ).objectInfo.object;
+
+            if ( obj instanceof TapLeaf )
+            {
+                Object key = TapLeafPool.getTopologyKey( (TapLeaf) obj );
+                int[] count = (int[]) counts.get( key );
+
+                if ( count == null )
+                    counts.put( key, count = new int[1] );
+
+                ++count[0];
+            }
+        }
+
+        Hashtable pools = new Hashtable();
+        Hashtable pooled = new Hashtable();
+
+        for ( i = 0; i < tapObjectInfoVector.size(); ++i )
+        {
+            TapObjectInfo tInfo = (TapObjectInfo) tapObjectInfoVector.elementAt( i );
+
+            if ( !( tInfo.objectInfo.object instanceof TapLeaf ) )
+                continue;
+
+            TapLeaf leaf = (TapLeaf) tInfo.objectInfo.object;
+            Object key = TapLeafPool.getTopologyKey( leaf );
+
+            if ( ( (int[]) counts.get( key ) )[0] < LEAF_POOL_MINIMUM )
+                continue;
+
+            TapPooledLeaf pooledLeaf = (TapPooledLeaf) pooled.get( leaf );
+
+            if ( pooledLeaf == null )
+            {
+                Vector keyPools = (Vector) pools.get( key );
+                TapLeafPool pool = null;
+
+                if ( keyPools == null )
+                    pools.put( key, keyPools = new Vector() );
+
+                for ( int j = 0; j < keyPools.size() && pool == null; ++j )
+                    if ( ( (TapLeafPool) keyPools.elementAt( j ) ).accepts( leaf ) )
+                        pool = (TapLeafPool) keyPools.elementAt( j );
+
+                if ( pool == null )
+                    keyPools.addElement( pool = new TapLeafPool( leaf ) );
+
+                pooledLeaf = new TapPooledLeaf( pool, pool.add( leaf ) );
+                pooled.put( leaf, pooledLeaf );
+            }
+
+            TapObjectInfo newInfo = new TapObjectInfo( tInfo.objectInfo );
+            newInfo.objectInfo.object = pooledLeaf;
+            newInfo.decorationLevel = tInfo.decorationLevel;
+            newInfo.sizeR = tInfo.sizeR;
+            newInfo.sizeY = tInfo.sizeY;
+            newInfo.name = tInfo.name;
+            tapObjectInfoVector.setElementAt( newInfo, i );
+        }
+
+        if ( pooled.size() > 0 )
+        {
+            setViewLevel( decorationLevel );
+            setRenderingLevel( renderingLevel );
+        }
+    }
+
+
     /**
      *  Sets the viewLevel attribute of the TapDesignerObjectCollection object
      *
@@ -234,17 +358,65 @@ public class TapDesignerObjectCollection
         TapDesignerTranslate.setLocale( Translate.getLocale() );
         version = in.readShort();
 
-        if ( ( version < 0 ) || ( version > 0 ) )
+        if ( ( version < 0 ) || ( version > 1 ) )
             throw new InvalidObjectException( "" );
 
-        procedure = new TapProcedure( in, theScene );
+        TapSceneStore store = ( version >= 1 ? TapSceneStore.readHeader( in, theScene ) : null );
+
+        //the procedure bytes are hashed while they are read, so that the
+        //stored geometry is only used if it was generated by this procedure
+
+        MessageDigest digest = getDigest();
+
+        if ( digest != null )
+            procedure = new TapProcedure( new DataInputStream( new DigestInputStream( in, digest ) ), theScene, store );
+        else
+            procedure = new TapProcedure( in, theScene, store );
+
         decorationLevel = in.readInt();
         renderingLevel = in.readInt();
 
-        TapDesignerObjectCollection obj = procedure.getObject();
+        TapDesignerObjectCollection obj = null;
+
+        if ( version >= 1 )
+        {
+            geometryCached = in.readBoolean();
+
+            if ( geometryCached )
+            {
+                int len = in.readInt();
+
+                if ( len > 0 )
+                {
+                    byte[] hash = new byte[len];
+                    in.readFully( hash );
+                    len = in.readInt();
+
+                    byte[] cache = new byte[len];
+                    in.readFully( cache );
+
+                    if ( digest != null && MessageDigest.isEqual( hash, digest.digest() ) )
+                        obj = readGeometryCache( new DataInputStream( new ByteArrayInputStream( cache ) ), store );
+                }
+            }
+        }
+        else
+            geometryCached = true;
+
+        //without a geometry cache, a procedure which can't be decoded makes the
+        //read fail
+
+        if ( obj != null )
+            procedure.setCurrentObject( obj );
+        else if ( procedure.getDecodeError() != null )
+            throw new InvalidObjectException( procedure.getDecodeError().toString() );
+
+        obj = procedure.getObject();
         tapObjectInfoVector = obj.tapObjectInfoVector;
         objectInfoVector = obj.objectInfoVector;
         renderInfoVector = obj.renderInfoVector;
+        generatedLevel = obj.generatedLevel;
+        resourceScene = obj.resourceScene;
     }
 
 
@@ -259,10 +431,387 @@ public class TapDesignerObjectCollection
         throws IOException
     {
         super.writeToFile( out, theScene );
-        out.writeShort( 0 );
-        procedure.writeToFile( out, theScene );
+        out.writeShort( 1 );
+
+        //scenes already written by another TaPD object of the scene are
+        //only referred to
+
+        TapSceneStore store = TapSceneStore.writeHeader( out, theScene, this );
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        procedure.writeToFile( new DataOutputStream( bos ), theScene, store );
+
+        byte[] bytes = bos.toByteArray();
+        out.write( bytes, 0, bytes.length );
         out.writeInt( decorationLevel );
         out.writeInt( renderingLevel );
+        out.writeBoolean( geometryCached );
+
+        if ( !geometryCached )
+            return;
+
+        MessageDigest digest = getDigest();
+
+        if ( digest == null || !isGeometryValid() )
+        {
+            out.writeInt( 0 );
+
+            return;
+        }
+
+        byte[] hash = digest.digest( bytes );
+        bos = new ByteArrayOutputStream();
+        writeGeometryCache( new DataOutputStream( bos ), store );
+        bytes = bos.toByteArray();
+        out.writeInt( hash.length );
+        out.write( hash, 0, hash.length );
+        out.writeInt( bytes.length );
+        out.write( bytes, 0, bytes.length );
+    }
+
+
+    /**
+     *  Returns true if the objects of the collection are the ones the
+     *  procedure currently generates
+     *
+     *@return    The geometryValid value
+     */
+    public boolean isGeometryValid()
+    {
+        if ( procedure == null )
+            return false;
+
+        TapDesignerObjectCollection current = procedure.currentObject;
+
+        return ( current != null ) && ( current.tapObjectInfoVector == tapObjectInfoVector || current.supersedes( tapObjectInfoVector ) );
+    }
+
+
+    /**
+     *  Records that this object, generated by an unmodified procedure, replaces
+     *  a less generated one. The collections sharing the objects of the
+     *  previous one remain valid and can catch up with this one.
+     *
+     *@param  previous  The previous object of the procedure
+     */
+    void supersede( TapDesignerObjectCollection previous )
+    {
+        supersededVectors = new Vector();
+
+        if ( previous.supersededVectors != null )
+            for ( int i = 0; i < previous.supersededVectors.size(); ++i )
+                if ( ( (Reference) previous.supersededVectors.elementAt( i ) ).get() != null )
+                    supersededVectors.addElement( previous.supersededVectors.elementAt( i ) );
+
+        supersededVectors.addElement( new WeakReference( previous.tapObjectInfoVector ) );
+    }
+
+
+    /**
+     *  Returns true if this object replaces the one holding the given objects
+     *
+     *@param  vector  The objects
+     *@return         True if this object supersedes them
+     */
+    private boolean supersedes( Vector vector )
+    {
+        if ( supersededVectors == null )
+            return false;
+
+        for ( int i = 0; i < supersededVectors.size(); ++i )
+            if ( ( (Reference) supersededVectors.elementAt( i ) ).get() == vector )
+                return true;
+
+        return false;
+    }
+
+
+    /**
+     *  Gives the collection a procedure of its own, which can be edited. The
+     *  procedure is otherwise shared with the duplicates of the collection and
+     *  must not be modified.
+     */
+    public void forkProcedure()
+    {
+        boolean valid = isGeometryValid();
+
+        procedure = procedure.duplicate();
+
+        if ( valid )
+            procedure.setCurrentObject( this );
+    }
+
+
+    /**
+     *  Sets the scene holding the textures, materials and images of the
+     *  objects : the procedure scene they were generated with, or the
+     *  resources read along with the geometry cache
+     *
+     *@param  scene  The new resourceScene value
+     */
+    void setResourceScene( Scene scene )
+    {
+        resourceScene = scene;
+    }
+
+
+    /**
+     *  Returns true if the generated objects are stored in the scene file
+     *  along with the procedure
+     *
+     *@return    The geometryCached value
+     */
+    public boolean isGeometryCached()
+    {
+        return geometryCached;
+    }
+
+
+    /**
+     *  Sets whether the generated objects are stored in the scene file along
+     *  with the procedure. If they are, the object is not generated again when
+     *  the scene is loaded, unless the procedure has changed.
+     *
+     *@param  cached  The new geometryCached value
+     */
+    public void setGeometryCached( boolean cached )
+    {
+        geometryCached = cached;
+    }
+
+
+    /**
+     *  Gets the digest used to hash the procedure
+     *
+     *@return    The digest, or null if it is not available
+     */
+    private static MessageDigest getDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException ex )
+        {
+            return null;
+        }
+    }
+
+
+    /**
+     *  Writes the generated objects. Geometries shared by several objects are
+     *  written once. The textures, materials and images they use are written
+     *  first, in a scene of their own, so that the procedure scene needn't be
+     *  decoded to read the objects back.
+     *
+     *@param  out              Description of the Parameter
+     *@param  store            The store of the TaPD object scenes, or null
+     *@exception  IOException  Description of the Exception
+     */
+    private void writeGeometryCache( DataOutputStream out, TapSceneStore store )
+        throws IOException
+    {
+        Hashtable prototypes = new Hashtable();
+        Vector prototypeVector = new Vector();
+        int[] prototypeIndex = new int[tapObjectInfoVector.size()];
+        int i;
+
+        for ( i = 0; i < tapObjectInfoVector.size(); ++i )
+        {
+            Object3D obj = ( (TapObjectInfo) tapObjectInfoVector.elementAt( i ) ).objectInfo.object;
+            Integer index = (Integer) prototypes.get( obj );
+
+            if ( index == null )
+            {
+                index = new Integer( prototypeVector.size() );
+                prototypes.put( obj, index );
+                prototypeVector.addElement( obj );
+            }
+
+            prototypeIndex[i] = index.intValue();
+        }
+
+        for ( i = 0; i < prototypeVector.size(); ++i )
+            if ( prototypeVector.elementAt( i ) instanceof TapPooledLeaf )
+                prototypeVector.setElementAt( ( (TapPooledLeaf) prototypeVector.elementAt( i ) ).getLeaf(), i );
+
+        Scene resources = getResources( prototypeVector );
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        resources.writeToStream( new DataOutputStream( bos ) );
+
+        out.writeShort( 0 );
+        out.writeInt( generatedLevel );
+        TapSceneStore.writeBlock( store, out, bos.toByteArray() );
+        out.writeInt( prototypeVector.size() );
+
+        for ( i = 0; i < prototypeVector.size(); ++i )
+        {
+            Object3D obj = (Object3D) prototypeVector.elementAt( i );
+
+            out.writeUTF( obj.getClass().getName() );
+
+            bos = new ByteArrayOutputStream();
+            obj.writeToFile( new DataOutputStream( bos ), resources );
+
+            byte[] bytes = bos.toByteArray();
+            out.writeInt( bytes.length );
+            out.write( bytes, 0, bytes.length );
+        }
+
+        out.writeInt( tapObjectInfoVector.size() );
+
+        for ( i = 0; i < tapObjectInfoVector.size(); ++i )
+        {
+            TapObjectInfo tInfo = (TapObjectInfo) tapObjectInfoVector.elementAt( i );
+            out.writeInt( prototypeIndex[i] );
+            tInfo.objectInfo.coords.writeToFile( out );
+            out.writeUTF( tInfo.objectInfo.name == null ? "" : tInfo.objectInfo.name );
+            out.writeBoolean( tInfo.name != null );
+
+            if ( tInfo.name != null )
+                out.writeUTF( tInfo.name );
+
+            out.writeInt( tInfo.decorationLevel );
+            out.writeDouble( tInfo.sizeR );
+            out.writeDouble( tInfo.sizeY );
+        }
+    }
+
+
+    /**
+     *  Builds a scene holding the textures, materials and images used by
+     *  objects
+     *
+     *@param  objects  The objects
+     *@return          The scene
+     */
+    private Scene getResources( Vector objects )
+    {
+        Scene resources = new Scene();
+        Vector textures = new Vector();
+        Vector materials = new Vector();
+        int i;
+
+        for ( i = 0; i < objects.size(); ++i )
+        {
+            Object3D obj = (Object3D) objects.elementAt( i );
+            Texture tex = obj.getTexture();
+
+            if ( tex instanceof LayeredTexture )
+            {
+                Texture[] layer = ( (LayeredMapping) obj.getTextureMapping() ).getLayers();
+
+                for ( int j = 0; j < layer.length; ++j )
+                    if ( !textures.contains( layer[j] ) )
+                        textures.addElement( layer[j] );
+            }
+            else if ( tex != null && !textures.contains( tex ) )
+                textures.addElement( tex );
+
+            if ( obj.getMaterial() != null && !materials.contains( obj.getMaterial() ) )
+                materials.addElement( obj.getMaterial() );
+        }
+
+        if ( resourceScene != null )
+            for ( i = 0; i < resourceScene.getNumImages(); ++i )
+            {
+                ImageMap map = resourceScene.getImage( i );
+                boolean used = false;
+
+                for ( int j = 0; j < textures.size() && !used; ++j )
+                    used = ( (Texture) textures.elementAt( j ) ).usesImage( map );
+
+                for ( int j = 0; j < materials.size() && !used; ++j )
+                    used = ( (Material) materials.elementAt( j ) ).usesImage( map );
+
+                if ( used )
+                    resources.addImage( map );
+            }
+
+        for ( i = 0; i < textures.size(); ++i )
+            resources.addTexture( (Texture) textures.elementAt( i ) );
+
+        for ( i = 0; i < materials.size(); ++i )
+            resources.addMaterial( (Material) materials.elementAt( i ) );
+
+        return resources;
+    }
+
+
+    /**
+     *  Reads the objects written by writeGeometryCache()
+     *
+     *@param  in     Description of the Parameter
+     *@param  store  The store of the TaPD object scenes, or null
+     *@return        The collection, or null if it could not be read
+     */
+    private TapDesignerObjectCollection readGeometryCache( DataInputStream in, TapSceneStore store )
+    {
+        TapDesignerObjectCollection obj = new TapDesignerObjectCollection( procedure );
+        Scene procScene;
+        int i;
+
+        try
+        {
+            short version = in.readShort();
+
+            if ( version != 0 )
+                throw new InvalidObjectException( "" );
+
+            obj.generatedLevel = in.readInt();
+
+            //the resources of identical caches are shared by the TaPD objects
+            //of the scene
+
+            procScene = TapSceneStore.getScene( store, TapSceneStore.readBlock( store, in ) );
+
+            obj.resourceScene = procScene;
+
+            Object3D[] prototypes = new Object3D[in.readInt()];
+
+            for ( i = 0; i < prototypes.length; ++i )
+            {
+                String classname = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully( bytes );
+
+                Constructor con = TapProcedure.getStreamConstructor( classname );
+
+                prototypes[i] = (Object3D) con.newInstance( new Object[]
+                        {
+                        new DataInputStream( new ByteArrayInputStream( bytes ) ),
+                        procScene
+                        } );
+            }
+
+            int count = in.readInt();
+
+            for ( i = 0; i < count; ++i )
+            {
+                Object3D object = prototypes[in.readInt()];
+                CoordinateSystem coords = new CoordinateSystem( in );
+                TapObjectInfo tInfo = new TapObjectInfo( new ObjectInfo( object, coords, in.readUTF() ) );
+
+                if ( in.readBoolean() )
+                    tInfo.name = in.readUTF();
+
+                tInfo.decorationLevel = in.readInt();
+                tInfo.sizeR = in.readDouble();
+                tInfo.sizeY = in.readDouble();
+                obj.addObject( tInfo );
+            }
+
+            obj.poolLeaves();
+        }
+        catch ( Exception ex )
+        {
+            //the object will be generated again
+            TapLog.warning( "TapDesignerObjectCollection", "stored TaPD geometry could not be read : " + ex );
+
+            return null;
+        }
+
+        return obj;
     }
 
 
@@ -300,9 +849,74 @@ public class TapDesignerObjectCollection
     protected Enumeration enumerateObjects( ObjectInfo info, boolean interactive, Scene scene )
     {
         if ( interactive )
+        {
+            generate( decorationLevel );
+
             return objectInfoVector.elements();
+        }
         else
+        {
+            generate( renderingLevel );
+
             return renderInfoVector.elements();
+        }
+    }
+
+
+    /**
+     *  Returns true if the objects up to a decoration level have been generated
+     *
+     *@param  level  The decoration level, -1 for all levels
+     *@return        The generated value
+     */
+    public boolean isGenerated( int level )
+    {
+        return ( generatedLevel <= 0 ) || ( ( level > 0 ) && ( level <= generatedLevel ) );
+    }
+
+
+    /**
+     *  Sets the decoration level from which objects have not been generated
+     *
+     *@param  level  The new generatedLevel value, -1 if all levels have been
+     *      generated
+     */
+    void setGeneratedLevel( int level )
+    {
+        generatedLevel = level;
+    }
+
+
+    /**
+     *  Generates the objects up to a decoration level if they are missing. This
+     *  is only done if the collection is the object its procedure currently
+     *  generates.
+     *
+     *@param  level  The decoration level, -1 for all levels
+     */
+    private synchronized void generate( int level )
+    {
+        if ( isGenerated( level ) || !isGeometryValid() )
+            return;
+
+        TapDesignerObjectCollection obj = procedure.getObject( level );
+
+        if ( obj == null )
+        {
+            //the objects read along with the procedure are kept
+            procedure.showDecodeError( false );
+
+            return;
+        }
+
+        tapObjectInfoVector = obj.tapObjectInfoVector;
+        objectInfoVector = obj.objectInfoVector;
+        renderInfoVector = obj.renderInfoVector;
+        generatedLevel = obj.generatedLevel;
+        resourceScene = obj.resourceScene;
+        setViewLevel( decorationLevel );
+        setRenderingLevel( renderingLevel );
+        cachedBounds = null;
     }
 
 
@@ -355,9 +969,12 @@ public class TapDesignerObjectCollection
         procedure = tmpObject.procedure;
         decorationLevel = tmpObject.decorationLevel;
         renderingLevel = tmpObject.renderingLevel;
+        geometryCached = tmpObject.geometryCached;
+        generatedLevel = tmpObject.generatedLevel;
         objectInfoVector = tmpObject.objectInfoVector;
         renderInfoVector = tmpObject.renderInfoVector;
         tapObjectInfoVector = tmpObject.tapObjectInfoVector;
+        resourceScene = tmpObject.resourceScene;
         setTexture( obj.getTexture(), obj.getTextureMapping() );
         setMaterial( obj.getMaterial(), obj.getMaterialMapping() );
         cachedBounds = null;
@@ -365,17 +982,20 @@ public class TapDesignerObjectCollection
 
 
     /**
-     *  Description of the Method
+     *  Duplicates the collection. The procedure is shared with the duplicate :
+     *  it is only copied when one of them is edited (see forkProcedure()).
      *
-     *@return    Description of the Return Value
+     *@return    The duplicate
      */
     public Object3D duplicate()
     {
         TapDesignerObjectCollection obj = null;
 
-        obj = new TapDesignerObjectCollection( procedure.duplicate() );
+        obj = new TapDesignerObjectCollection( procedure );
         obj.decorationLevel = this.decorationLevel;
         obj.renderingLevel = this.renderingLevel;
+        obj.geometryCached = this.geometryCached;
+        obj.generatedLevel = this.generatedLevel;
         obj.setTexture( this.getTexture(), this.getTextureMapping() );
         obj.setMaterial( this.getMaterial(), this.getMaterialMapping() );
 
@@ -383,6 +1003,7 @@ public class TapDesignerObjectCollection
         obj.tapObjectInfoVector = this.tapObjectInfoVector;
         obj.objectInfoVector = this.objectInfoVector;
         obj.renderInfoVector = this.renderInfoVector;
+        obj.resourceScene = this.resourceScene;
 
         return (Object3D) obj;
     }
@@ -476,6 +1097,13 @@ public class TapDesignerObjectCollection
     {
         TapFrame tapFrame = null;
 
+        if ( procedure.getDecodeError() != null )
+        {
+            procedure.showDecodeError( true );
+
+            return;
+        }
+
         if ( parent instanceof LayoutWindow )
             tapFrame = new TapFrame( (LayoutWindow) parent, info );
 
@@ -514,6 +1142,8 @@ public class TapDesignerObjectCollection
      */
     ObjectInfo[] getAoIObjects()
     {
+        generate( -1 );
+
         ObjectInfo[] objects = new ObjectInfo[tapObjectInfoVector.size()];
         Vector parents = new Vector();
         int currentLevel = 0;
@@ -526,6 +1156,9 @@ public class TapDesignerObjectCollection
             TapObjectInfo tInfo = (TapObjectInfo) tapObjectInfoVector.elementAt( i );
             ObjectInfo info = tInfo.objectInfo.duplicate();
 
+            if ( info.object instanceof TapPooledLeaf )
+                info.object = ( (TapPooledLeaf) info.object ).getLeaf();
+
             if ( info.object instanceof TapObject )
                 info.object = ( (TapObject) info.object ).getPlainAoIObject();
             else
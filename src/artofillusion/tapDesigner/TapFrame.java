@@ -56,6 +56,9 @@ public class TapFrame extends BFrame implements TapProcPanelHolder
     private BMenuItem manageObjectsItem;
     private BMenuItem[] layoutItem = new BMenuItem[4];
     private BMenuItem[] plafItems;
+    private BCheckBoxMenuItem latestGeneratorItem;
+    private BCheckBoxMenuItem instancingItem;
+    private BCheckBoxMenuItem geometryCachedItem;
     private BButton aoiObjButton;
     private BButton leafButton;
     private TapProcPanel procPanel;
@@ -94,6 +97,9 @@ public class TapFrame extends BFrame implements TapProcPanelHolder
                 tapdObject = editedObject.duplicate();
                 tapdObject.object = editedObject.object.duplicate();
 
+                //the procedure is shared with the scene object and its copies
+                ( (TapDesignerObjectCollection) tapdObject.object ).forkProcedure();
+
                 ( (TapDesignerObjectCollection) tapdObject.object ).getProcedure()
                         .setModified( false, (TapDesignerObjectCollection) tapdObject.object );
 
@@ -108,6 +114,8 @@ public class TapFrame extends BFrame implements TapProcPanelHolder
         }
 
         procedure.setWindow( window );
+        //distributor branches are kept between generations while editing
+        procedure.setBranchCaching( true );
         initComponents( procedure );
 
         if ( editedObject != null )
@@ -324,6 +332,12 @@ public class TapFrame extends BFrame implements TapProcPanelHolder
         moduleMenu.add( renameItem = TapBTranslate.bMenuItem( "rename", procPanel, "doRename" ) );
         moduleMenu.add( mainEntryItem = TapBTranslate.bMenuItem( "mainEntry", procPanel, "doSelectMainEntry" ) );
         moduleMenu.add( TapBTranslate.bMenuItem( "seed", procPanel, "doChooseSeed" ) );
+        latestGeneratorItem = TapBTranslate.bCheckBoxMenuItem( "latestGenerator", procedure.getGeneratorVersion() >= TapRandomGenerator.LATEST );
+        latestGeneratorItem.addEventLink( CommandEvent.class, this, "doLatestGenerator" );
+        moduleMenu.add( latestGeneratorItem );
+        instancingItem = TapBTranslate.bCheckBoxMenuItem( "instancing", procedure.isInstancing() );
+        instancingItem.addEventLink( CommandEvent.class, this, "doInstancing" );
+        moduleMenu.add( instancingItem );
         moduleMenu.addSeparator();
 
         BMenu tmp = TapBTranslate.bMenu( "layout" );
@@ -332,6 +346,12 @@ public class TapFrame extends BFrame implements TapProcPanelHolder
         tmp.add( layoutItem[2] = TapBTranslate.bMenuItem( "right_to_left", procPanel, "doRightToLeft" ) );
         tmp.add( layoutItem[3] = TapBTranslate.bMenuItem( "bottom_to_top", procPanel, "doBottomToTop" ) );
         moduleMenu.add( tmp );
+        moduleMenu.addSeparator();
+
+        BCheckBoxMenuItem profileItem = TapBTranslate.bCheckBoxMenuItem( "profileGenerations", procedure.getProfiler() != null );
+        profileItem.addEventLink( CommandEvent.class, this, "doProfileGenerations" );
+        moduleMenu.add( profileItem );
+        moduleMenu.add( TapBTranslate.bMenuItem( "showProfile", this, "doShowProfile" ) );
         theMenuBar.add( moduleMenu );
 
         tmp = TapBTranslate.bMenu( "objectMenu" );
@@ -367,6 +387,9 @@ public class TapFrame extends BFrame implements TapProcPanelHolder
         sceneMenu.addSeparator();
         sceneMenu.add( TapBTranslate.bMenuItem( "editViewLevel", this, "editViewLevel" ) );
         sceneMenu.add( TapBTranslate.bMenuItem( "editRenderingLevel", this, "editRenderingLevel" ) );
+        //applied to the scene object when the designer is validated or a plant is pasted
+        geometryCachedItem = TapBTranslate.bCheckBoxMenuItem( "cacheGeometry", tapdObject == null || ( (TapDesignerObjectCollection) tapdObject.object ).isGeometryCached() );
+        sceneMenu.add( geometryCachedItem );
         sceneMenu.addSeparator();
         sceneMenu.add( TapBTranslate.bMenuItem( "textures", procPanel, "manageTextures" ) );
         sceneMenu.add( TapBTranslate.bMenuItem( "importTextures", procPanel, "importTextures" ) );
@@ -438,12 +461,25 @@ public class TapFrame extends BFrame implements TapProcPanelHolder
 
             if ( info != null )
             {
+                ( (TapDesignerObjectCollection) tapdObject.object ).setGeometryCached( geometryCachedItem.getState() );
                 ( (TapDesignerObjectCollection) savedTapdObject.object ).copyObject( tapdObject.object, false );
                 savedTapdObject.object.sceneChanged( savedTapdObject, theScene );
                 theScene.objectModified( savedTapdObject.object );
                 window.updateImage();
             }
         }
+        else
+        {
+            TapDesignerObjectCollection collection = (TapDesignerObjectCollection) savedTapdObject.object;
+
+            if ( collection.isGeometryCached() != geometryCachedItem.getState() )
+            {
+                UndoRecord undo = new UndoRecord( window, false );
+                undo.addCommand( UndoRecord.COPY_OBJECT, new Object[]{collection, collection.duplicate()} );
+                collection.setGeometryCached( geometryCachedItem.getState() );
+                window.setUndoRecord( undo );
+            }
+        }
 
         exitDesigner();
     }
@@ -476,7 +512,38 @@ public class TapFrame extends BFrame implements TapProcPanelHolder
      */
     public void pasteAsPlantCommand()
     {
-        pasteAsPlant( true );
+        final TapProcedure procedure = procPanel.getProcedure();
+
+        //the plant is generated in the background, the designer stays usable
+        procedure.getGenerationService().submit(
+            new TapGenerationService.Task()
+            {
+                public Object generate()
+                {
+                    return procedure.getObject();
+                }
+
+
+                public void generationDone( Object result )
+                {
+                    setTitle( TapBTranslate.text( "tapDesignerTitle" ) );
+
+                    if ( result != null )
+                        addPlant( (TapDesignerObjectCollection) result, getPlantName() );
+                }
+
+
+                public void generationProgress( int count )
+                {
+                    setTitle( TapBTranslate.text( "generatingPlant", new Integer( count ) ) );
+                }
+
+
+                public void generationCancelled()
+                {
+                    setTitle( TapBTranslate.text( "tapDesignerTitle" ) );
+                }
+            } );
     }
 
 
@@ -487,11 +554,42 @@ public class TapFrame extends BFrame implements TapProcPanelHolder
      *@return            Description of the Return Value
      */
     public ObjectInfo pasteAsPlant( boolean duplicate )
+    {
+        String objName = getPlantName();
+        TapProcedure procedure = procPanel.getProcedure();
+
+        long time = System.currentTimeMillis();
+        TapDesignerObjectCollection newCollection = procedure.getObject();
+
+        if ( newCollection == null )
+        {
+            return null;
+        }
+
+        if ( TapLog.isLoggable( TapLog.INFO ) )
+            TapLog.info( "TapFrame", newCollection.size() + " objects generated in " + ( System.currentTimeMillis() - time ) + " ms" );
+
+        if ( duplicate )
+            return addPlant( newCollection, objName );
+        else
+        {
+            tapdObject.object = newCollection;
+
+            return tapdObject;
+        }
+    }
+
+
+    /**
+     *  Returns a name for a new plant object of the scene
+     *
+     *@return    The plantName value
+     */
+    private String getPlantName()
     {
         int k = 1;
         boolean go_on = true;
         String objName = "";
-        TapProcedure procedure = procPanel.getProcedure();
 
         while ( go_on )
         {
@@ -511,38 +609,74 @@ public class TapFrame extends BFrame implements TapProcPanelHolder
             ++k;
         }
 
-        System.out.println( "Getting object ... :" + ( new Date() ).toString() );
+        return objName;
+    }
 
-        TapDesignerObjectCollection newCollection = procedure.getObject();
-        System.out.println( "Object size : " + newCollection.size() );
-        System.out.println( "Object received :" + ( new Date() ).toString() );
 
-        if ( newCollection == null )
-        {
-            return null;
-        }
+    /**
+     *  Adds a plant object to the scene
+     *
+     *@param  newCollection  The TaPD object
+     *@param  objName        The name of the new object
+     *@return                The new object
+     */
+    private ObjectInfo addPlant( TapDesignerObjectCollection newCollection, String objName )
+    {
+        //the designer goes on editing its procedure
+        newCollection.forkProcedure();
+        newCollection.setGeometryCached( geometryCachedItem.getState() );
+
+        ObjectInfo newObjectInfo = new ObjectInfo( newCollection, new CoordinateSystem(), objName );
+        newObjectInfo.object.setTexture( theScene.getDefaultTexture(), theScene.getDefaultTexture().getDefaultMapping(newObjectInfo.object) );
+        newObjectInfo.addTrack( new PositionTrack( newObjectInfo ), 0 );
+        newObjectInfo.addTrack( new RotationTrack( newObjectInfo ), 1 );
+
+        UndoRecord undo = new UndoRecord( window, false );
+        window.addObject( newObjectInfo, undo );
+        window.setUndoRecord( undo );
+        window.setSelection( theScene.getNumObjects() - 1 );
+        window.updateImage();
+
+        return newObjectInfo;
+    }
 
-        if ( duplicate )
-        {
-            ObjectInfo newObjectInfo = new ObjectInfo( newCollection, new CoordinateSystem(), objName );
-            newObjectInfo.object.setTexture( theScene.getDefaultTexture(), theScene.getDefaultTexture().getDefaultMapping(newObjectInfo.object) );
-            newObjectInfo.addTrack( new PositionTrack( newObjectInfo ), 0 );
-            newObjectInfo.addTrack( new RotationTrack( newObjectInfo ), 1 );
-
-            UndoRecord undo = new UndoRecord( window, false );
-            window.addObject( newObjectInfo, undo );
-            window.setUndoRecord( undo );
-            window.setSelection( theScene.getNumObjects() - 1 );
-            window.updateImage();
-
-            return newObjectInfo;
-        }
-        else
-        {
-            tapdObject.object = newCollection;
 
-            return tapdObject;
-        }
+    /**
+     *  Starts or stops profiling the generations of the procedure
+     *
+     *@param  ev  The menu item event
+     */
+    private void doProfileGenerations( CommandEvent ev )
+    {
+        procPanel.getProcedure().setProfiling( ( (BCheckBoxMenuItem) ev.getWidget() ).getState() );
+    }
+
+
+    /**
+     *  Switches the procedure between the latest and the legacy random
+     *  generators
+     */
+    private void doLatestGenerator()
+    {
+        procPanel.setGeneratorVersion( latestGeneratorItem.getState() ? TapRandomGenerator.LATEST : TapRandomGenerator.LEGACY );
+    }
+
+
+    /**
+     *  Switches geometry sharing between identical objects on or off
+     */
+    private void doInstancing()
+    {
+        procPanel.setInstancing( instancingItem.getState() );
+    }
+
+
+    /**
+     *  Shows the statistics of the generations
+     */
+    private void doShowProfile()
+    {
+        new TapProfilerFrame( this, procPanel.getProcedure() );
     }
 
 
@@ -765,6 +899,22 @@ public class TapFrame extends BFrame implements TapProcPanelHolder
 
 
 
+    /**
+     *  Updates the procedure settings shown by the menus once the procedure
+     *  has been replaced
+     */
+    @Override
+    public void procedureChanged()
+    {
+        TapProcedure procedure = procPanel.getProcedure();
+
+        procedure.setBranchCaching( true );
+        latestGeneratorItem.setState( procedure.getGeneratorVersion() >= TapRandomGenerator.LATEST );
+        instancingItem.setState( procedure.isInstancing() );
+    }
+
+
+
     /**
      *  Called each time the selection in the proc panel changes
      *
@@ -851,6 +1001,8 @@ public class TapFrame extends BFrame implements TapProcPanelHolder
      */
     public void exitDesigner()
     {
+        procPanel.getProcedure().stopGeneration();
+        procPanel.getProcedure().setBranchCaching( false );
         procPanel.closeWindows();
         dispose();
     }
@@ -48,6 +48,28 @@ public class TapFunction
     private static double xclip[], yclip[];
     private static short clipShape;
     private static boolean clipRepeat;
+    private boolean tabulated;
+    //use a lookup table for calcValue() if its error is small enough
+    private volatile double table[];
+    //the lookup table, built with the curve coefficients, null if not used
+
+    /**
+     *  Curves with more points than this are searched by dichotomy
+     */
+    public final static int SCAN_LIMIT = 8;
+    /**
+     *  Initial number of intervals of the lookup table
+     */
+    public final static int TABLE_SIZE = 256;
+    /**
+     *  Maximum number of intervals of the lookup table
+     */
+    public final static int MAX_TABLE_SIZE = 4096;
+    /**
+     *  Maximum interpolation error of the lookup table, relative to the
+     *  range of the function
+     */
+    public final static double TABLE_TOLERANCE = 1.0e-4;
 
     /**
      *  Description of the Field
@@ -150,6 +172,7 @@ public class TapFunction
         function.x = new double[x.length];
         function.y = new double[y.length];
         function.shape = shape;
+        function.tabulated = tabulated;
         for ( int i = 0; i < x.length; i++ )
         {
             function.x[i] = x[i];
@@ -209,22 +232,139 @@ public class TapFunction
             else
                 return y[y.length - 1];
         }
-        int i;
-        for ( i = 1; i < x.length && value > x[i]; i++ )
-            ;
-        i--;
-        if ( shape == INTERPOLATING )
+        double tab[] = table;
+        if ( tab != null )
         {
-            double vl = a0[i] + value * ( 2.0 * a1[i] + value * ( 3.0 * a2[i] + value * 4.0 * a3[i] ) );
-            //System.out.println("INterp : "+value+" "+ vl);
-            return a0[i] + value * ( 2.0 * a1[i] + value * ( 3.0 * a2[i] + value * 4.0 * a3[i] ) );
+            double t = value * ( tab.length - 1 );
+            int k = (int) t;
+
+            if ( k >= tab.length - 1 )
+                k = tab.length - 2;
+            return tab[k] + ( t - k ) * ( tab[k + 1] - tab[k] );
         }
+        return calcSegmentValue( findSegment( value ), value );
+    }
+
+
+    /**
+     *  Value of the function given the segment the abscissa lies in
+     *
+     *@param  i      The segment index
+     *@param  value  The abscissa
+     *@return        The function value
+     */
+    private double calcSegmentValue( int i, double value )
+    {
+        if ( shape == INTERPOLATING )
+            return a0[i] + value * ( 2.0 * a1[i] + value * ( 3.0 * a2[i] + value * 4.0 * a3[i] ) );
         else
-        {
-            double vl = a0[i] + value * ( 2.0 * a1[i] + value * ( 3.0 * a2[i] + value * 4.0 * a3[i] ) );
-            //System.out.println("Approx : "+value+" "+ vl);
             return a0[i] + value * 2.0 * a1[i];
+    }
+
+
+    /**
+     *  Finds the segment an abscissa lies in : the segment i goes from x[i]
+     *  to x[i + 1]. Short curves are scanned, long ones are searched by
+     *  dichotomy.
+     *
+     *@param  value  The abscissa, between 0 and 1
+     *@return        The segment index
+     */
+    private int findSegment( double value )
+    {
+        int i;
+        if ( x.length <= SCAN_LIMIT )
+        {
+            for ( i = 1; i < x.length && value > x[i]; i++ )
+                ;
+            return i - 1;
+        }
+        //first index from 1 such as value <= x[i], as the scan above
+        int low = 1;
+        int high = x.length;
+        while ( low < high )
+        {
+            i = ( low + high ) >>> 1;
+            if ( value > x[i] )
+                low = i + 1;
+            else
+                high = i;
+        }
+        return low - 1;
+    }
+
+
+    /**
+     *  Sets whether calcValue() uses a precomputed lookup table. The table is
+     *  only used if its linear interpolation stays within TABLE_TOLERANCE of
+     *  the function. Worth it for functions evaluated for each placed object.
+     *  The table is built right away, so this must not be called while the
+     *  function is evaluated.
+     *
+     *@param  tabulated  The new tabulated value
+     */
+    public void setTabulated( boolean tabulated )
+    {
+        if ( tabulated == this.tabulated )
+            return;
+        this.tabulated = tabulated;
+        table = ( tabulated ? buildTable() : null );
+    }
+
+
+    /**
+     *  Gets the tabulated attribute of the TapFunction object
+     *
+     *@return    The tabulated value
+     */
+    public boolean isTabulated()
+    {
+        return tabulated;
+    }
+
+
+    /**
+     *  Builds a lookup table of the function over [0, 1]. The number of
+     *  intervals is doubled until the interpolation error, measured at the
+     *  middle of the intervals and at the curve points, is within tolerance.
+     *
+     *@return    The table, or null if the tolerance cannot be met
+     */
+    private double[] buildTable()
+    {
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for ( int i = 0; i < y.length; i++ )
+        {
+            min = Math.min( min, y[i] );
+            max = Math.max( max, y[i] );
+        }
+        double tolerance = TABLE_TOLERANCE * Math.max( max - min, 1.0e-3 );
+        for ( int n = TABLE_SIZE; n <= MAX_TABLE_SIZE; n *= 2 )
+        {
+            double tab[] = new double[n + 1];
+            for ( int k = 0; k <= n; k++ )
+            {
+                double v = (double) k / n;
+                tab[k] = calcSegmentValue( findSegment( v ), v );
+            }
+            boolean accurate = true;
+            for ( int k = 0; k < n && accurate; k++ )
+            {
+                double v = ( k + 0.5 ) / n;
+                accurate = Math.abs( calcSegmentValue( findSegment( v ), v ) - 0.5 * ( tab[k] + tab[k + 1] ) ) <= tolerance;
+            }
+            for ( int i = 1; i < x.length - 1 && accurate; i++ )
+            {
+                double t = x[i] * n;
+                int k = Math.min( (int) t, n - 1 );
+                double lerp = tab[k] + ( t - k ) * ( tab[k + 1] - tab[k] );
+                accurate = Math.abs( calcSegmentValue( i - 1, x[i] ) - lerp ) <= tolerance && Math.abs( calcSegmentValue( i, x[i] ) - lerp ) <= tolerance;
+            }
+            if ( accurate )
+                return tab;
         }
+        return null;
     }
 
 
@@ -261,9 +401,7 @@ public class TapFunction
         }
         if ( vf == 0.0 )
             return result;
-        for ( i = 1; i < x.length && vf > x[i]; i++ )
-            ;
-        i--;
+        i = findSegment( vf );
         if ( shape == INTERPOLATING )
             result += b[i] + vf * ( a0[i] + vf * ( a1[i] + vf * ( a2[i] + vf * a3[i] ) ) );
         else
@@ -333,10 +471,7 @@ public class TapFunction
             }
             value -= Math.floor( value );
         }
-        int i;
-        for ( i = 1; i < x.length && value > x[i]; i++ )
-            ;
-        i--;
+        int i = findSegment( value );
         if ( shape == INTERPOLATING )
             deriv = 2.0 * a1[i] + value * ( 6.0 * a2[i] + value * 12.0 * a3[i] );
         else
@@ -346,9 +481,22 @@ public class TapFunction
 
 
     /**
-     *  Description of the Method
+     *  Computes the curve coefficients and the lookup table, if the function
+     *  is tabulated
      */
     private void calcCoefficients()
+    {
+        table = null;
+        calcSegmentCoefficients();
+        if ( tabulated )
+            table = buildTable();
+    }
+
+
+    /**
+     *  Description of the Method
+     */
+    private void calcSegmentCoefficients()
     {
         a0 = new double[x.length - 1];
         a1 = new double[x.length - 1];
@@ -938,7 +1086,6 @@ public class TapFunction
                 yclip[i] = y[i];
             }
             clipShape = smoothBox.isSelected() ? INTERPOLATING : LINEAR;
-            System.out.println( "clipShape :" + clipShape + " " + INTERPOLATING );
             clipRepeat = repeatBox.isSelected();
         }
 
@@ -0,0 +1,329 @@
+/*
+ *  The state of one generation of a TaPD procedure
+ */
+/*
+ *  Copyright (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import artofillusion.*;
+import java.util.*;
+
+
+/**
+ *  Everything which changes while a procedure generates an object : the back
+ *  links and random generator of the generation, the decoration level beyond
+ *  which objects are not generated, the module previewed with 'stop here',
+ *  the geometry prototypes shared by identical objects and the scratch state
+ *  modules keep during the generation (the Y value output of distributors,
+ *  the sized object cache of object modules...).<p>
+ *
+ *  A decorator branch built later, or by another thread, than the one the
+ *  distributor placed it from gets a branch context : it shares everything
+ *  with its parent but the distributor values, which are those of the time
+ *  the branch was placed.<p>
+ *
+ *  A context is created by TapProcedure.initProcedure() and handed down
+ *  through getObject() and getValue(), so that modules are only configuration
+ *  and several generations, of the same procedure or of different ones, can
+ *  run at the same time. A context created by the worker of a
+ *  TapGenerationService belongs to the task it runs, and is cancelled along
+ *  with it.
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+public class TapGenerationContext
+{
+    private TapProcedure procedure;
+    private BackModuleLink backLinks;
+    private int generationLevel;
+    private TapModule stopModule;
+    private Hashtable instances;
+    private Hashtable moduleStates;
+    private Hashtable portValues;
+    private TapGenerationService.Task task;
+    private TapProfiler profiler;
+
+
+    /**
+     *  Constructor for the TapGenerationContext object
+     *
+     *@param  procedure        The procedure generated
+     *@param  backLinks        The back links of the generation
+     *@param  generationLevel  Objects of this decoration level and deeper are
+     *      not generated (-1 : all levels)
+     *@param  stopModule       The module previewed with 'stop here' : the
+     *      modules linked to its output are not evaluated. Null for a full
+     *      generation.
+     */
+    public TapGenerationContext( TapProcedure procedure, BackModuleLink backLinks, int generationLevel, TapModule stopModule )
+    {
+        this.procedure = procedure;
+        this.backLinks = backLinks;
+        this.generationLevel = generationLevel;
+        this.stopModule = stopModule;
+        instances = new Hashtable();
+        moduleStates = new Hashtable();
+        portValues = new Hashtable();
+        task = TapGenerationService.getCurrentTask();
+        profiler = procedure.getProfiler();
+    }
+
+
+    /**
+     *  Constructor for a branch context
+     *
+     *@param  parent  The context the branch is placed from
+     */
+    private TapGenerationContext( TapGenerationContext parent )
+    {
+        procedure = parent.procedure;
+        backLinks = parent.backLinks;
+        generationLevel = parent.generationLevel;
+        stopModule = parent.stopModule;
+        instances = parent.instances;
+        moduleStates = parent.moduleStates;
+        portValues = (Hashtable) parent.portValues.clone();
+        task = parent.task;
+        profiler = parent.profiler;
+    }
+
+
+    /**
+     *  Gets a context for a decorator branch being placed. The distributor
+     *  values are frozen to their current ones, so that the branch is built
+     *  the same way whenever and by whichever thread it is built.
+     *
+     *@return    The branch context
+     */
+    public TapGenerationContext getBranchContext()
+    {
+        return new TapGenerationContext( this );
+    }
+
+
+    /**
+     *  Gets the distributor values of the context
+     *
+     *@return    A copy of the values, indexed by distributor
+     */
+    public Hashtable getPortValues()
+    {
+        return (Hashtable) portValues.clone();
+    }
+
+
+    /**
+     *  Gets the procedure attribute of the TapGenerationContext object
+     *
+     *@return    The procedure value
+     */
+    public TapProcedure getProcedure()
+    {
+        return procedure;
+    }
+
+
+    /**
+     *  Gets the back links of the generation
+     *
+     *@return    The backLinks value
+     */
+    public BackModuleLink getBackLinks()
+    {
+        return backLinks;
+    }
+
+
+    /**
+     *  Gets the evaluation plan of the generation
+     *
+     *@return    The plan value
+     */
+    public TapEvaluationPlan getPlan()
+    {
+        return backLinks.getPlan();
+    }
+
+
+    /**
+     *  Gets the decoration level from which objects are not generated
+     *
+     *@return    The generationLevel value, -1 if all levels are generated
+     */
+    public int getGenerationLevel()
+    {
+        return generationLevel;
+    }
+
+
+    /**
+     *  Returns true if the generation is a 'stop here' preview of a module
+     *
+     *@return    The preview value
+     */
+    public boolean isPreview()
+    {
+        return stopModule != null;
+    }
+
+
+    /**
+     *  Returns true if the generation stops at a module : the modules linked
+     *  to its output are not evaluated
+     *
+     *@param  module  The module
+     *@return         True if the module is the one previewed with 'stop
+     *      here'
+     */
+    public boolean stopsAt( TapModule module )
+    {
+        return stopModule == module;
+    }
+
+
+    /**
+     *  Gets the profiler recording the evaluations of the generation. It is
+     *  the one of the procedure when the generation started, so that a
+     *  generation is either profiled as a whole or not at all.
+     *
+     *@return    The profiler, null if the generation is not profiled
+     */
+    public TapProfiler getProfiler()
+    {
+        return profiler;
+    }
+
+
+    /**
+     *  Called by distributor modules for each object they place. Throws a
+     *  TapGenerationService.CancelledException if the generation belongs to a
+     *  background task which has been superseded, and reports the progress of
+     *  the task. Generations started by other threads are never cancelled.
+     */
+    public void checkGeneration()
+    {
+        if ( task != null )
+            task.checkGeneration();
+    }
+
+
+    /**
+     *  Gets the geometry prototype registered for a key during the generation
+     *
+     *@param  key  The instance key
+     *@return      The prototype, or null if there is none yet
+     */
+    public ObjectInfo getInstance( TapInstanceKey key )
+    {
+        return (ObjectInfo) instances.get( key );
+    }
+
+
+    /**
+     *  Registers a geometry prototype for a key. If another one has been
+     *  registered meanwhile, it is kept and returned instead.
+     *
+     *@param  key   The instance key
+     *@param  info  The prototype
+     *@return       The registered prototype
+     */
+    public ObjectInfo addInstance( TapInstanceKey key, ObjectInfo info )
+    {
+        synchronized ( instances )
+        {
+            ObjectInfo registered = (ObjectInfo) instances.get( key );
+
+            if ( registered != null )
+                return registered;
+
+            instances.put( key, info );
+
+            return info;
+        }
+    }
+
+
+    /**
+     *  Gets the scratch state a module keeps during the generation
+     *
+     *@param  module  The module
+     *@return         The state, or null if the module hasn't set one
+     */
+    public Object getModuleState( TapModule module )
+    {
+        return moduleStates.get( module );
+    }
+
+
+    /**
+     *  Sets the scratch state a module keeps during the generation
+     *
+     *@param  module  The module
+     *@param  state   The state
+     */
+    public void setModuleState( TapModule module, Object state )
+    {
+        moduleStates.put( module, state );
+    }
+
+
+    /**
+     *  Sets the scratch state a module keeps during the generation, unless
+     *  one has been set meanwhile, in which case it is kept and returned
+     *  instead
+     *
+     *@param  module  The module
+     *@param  state   The state
+     *@return         The state of the module
+     */
+    public Object addModuleState( TapModule module, Object state )
+    {
+        synchronized ( moduleStates )
+        {
+            Object registered = moduleStates.get( module );
+
+            if ( registered != null )
+                return registered;
+
+            moduleStates.put( module, state );
+
+            return state;
+        }
+    }
+
+
+    /**
+     *  Sets the value a distributor currently delivers on its value output
+     *  (the relative position of the branch being placed)
+     *
+     *@param  module  The distributor
+     *@param  value   The value
+     */
+    public void setPortValue( TapModule module, double value )
+    {
+        portValues.put( module, new Double( value ) );
+    }
+
+
+    /**
+     *  Gets the value a distributor currently delivers on its value output
+     *
+     *@param  module  The distributor
+     *@return         The value, 0 if the distributor hasn't placed anything
+     *      yet
+     */
+    public double getPortValue( TapModule module )
+    {
+        Double value = (Double) portValues.get( module );
+
+        return value == null ? 0 : value.doubleValue();
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ *  The generation service builds TaPD objects in a background thread so that the
+ *  edit windows stay responsive while a plant is generated.
+ */
+/*
+ *  Copyright (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import artofillusion.object.*;
+import java.util.*;
+import javax.swing.*;
+
+
+/**
+ *  Single worker generating objects for a procedure. A task submitted while
+ *  another one is pending or running supersedes it : the pending task is
+ *  dropped and the running one is cancelled the next time a distributor
+ *  module checks the generation (see TapGenerationContext.checkGeneration()).
+ *  Only the generations started by the task are cancelled : their contexts
+ *  are created by the worker, and the branches they fork share them. Results
+ *  and progress are delivered on the event dispatch thread.
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+public class TapGenerationService implements Runnable
+{
+    private TapProcedure procedure;
+    private Thread worker;
+    private Task pending;
+    private Task current;
+    private boolean stopped;
+    private static ThreadLocal currentTask = new ThreadLocal();
+
+    /**
+     *  Number of checks between two progress notifications
+     */
+    public final static int PROGRESS_STEP = 64;
+
+
+    /**
+     *  A generation task. generate() is called by the worker, without holding
+     *  any lock : it generates on contexts of its own, and
+     *  TapProcedure.getObject() takes the generation lock only while the
+     *  current object is generated. The other methods are called on the event
+     *  dispatch thread.
+     *
+     *@author     TaPD contributors
+     *@created    17 octobre 2026
+     */
+    public abstract static class Task
+    {
+        private volatile boolean cancelled;
+        private int progress;
+
+
+        /**
+         *  Generates the result of the task
+         *
+         *@return    The result, handed to generationDone()
+         */
+        public abstract Object generate();
+
+
+        /**
+         *  Called when the task has completed
+         *
+         *@param  result  The result of generate()
+         */
+        public abstract void generationDone( Object result );
+
+
+        /**
+         *  Called from time to time while the task is running
+         *
+         *@param  count  Number of objects placed by distributor modules so far
+         */
+        public void generationProgress( int count ) { }
+
+
+        /**
+         *  Called when the task has been superseded or cancelled
+         */
+        public void generationCancelled() { }
+
+
+        /**
+         *  Throws a CancelledException if the task has been superseded, and
+         *  reports the progress from time to time
+         */
+        void checkGeneration()
+        {
+            if ( cancelled )
+                throw new CancelledException();
+
+            final int count;
+
+            synchronized ( this )
+            {
+                count = ++progress;
+            }
+
+            if ( count % PROGRESS_STEP == 0 )
+                SwingUtilities.invokeLater(
+                    new Runnable()
+                    {
+                        public void run()
+                        {
+                            generationProgress( count );
+                        }
+                    } );
+        }
+    }
+
+
+    /**
+     *  Thrown by TapGenerationContext.checkGeneration() to abort a generation which is no longer
+     *  wanted
+     *
+     *@author     TaPD contributors
+     *@created    17 octobre 2026
+     */
+    public static class CancelledException extends RuntimeException
+    {
+        /**
+         *  Constructor for the CancelledException object
+         */
+        public CancelledException()
+        {
+            super( "TaPD generation cancelled" );
+        }
+    }
+
+
+    /**
+     *  Rebuilds the preview windows of a set of modules
+     *
+     *@author     TaPD contributors
+     *@created    17 octobre 2026
+     */
+    private static class PreviewTask extends Task
+    {
+        private Vector modules;
+
+
+        /**
+         *  Constructor for the PreviewTask object
+         *
+         *@param  modules  The modules which preview must be updated
+         */
+        public PreviewTask( Vector modules )
+        {
+            this.modules = modules;
+        }
+
+
+        /**
+         *  Builds the preview objects
+         *
+         *@return    An array of preview objects, null for modules with
+         *      nothing to show
+         */
+        public Object generate()
+        {
+            ObjectInfo[] infos = new ObjectInfo[modules.size()];
+
+            for ( int i = 0; i < infos.length; ++i )
+            {
+                TapModule module = (TapModule) modules.elementAt( i );
+
+                infos[i] = module.buildPreviewObject( module.getPreviewModifiers() );
+            }
+
+            return infos;
+        }
+
+
+        /**
+         *  Hands the preview objects to the preview windows still opened
+         *
+         *@param  result  The preview objects
+         */
+        public void generationDone( Object result )
+        {
+            ObjectInfo[] infos = (ObjectInfo[]) result;
+
+            for ( int i = 0; i < infos.length; ++i )
+            {
+                TapModule module = (TapModule) modules.elementAt( i );
+
+                if ( infos[i] != null && module.isPreviewOn() )
+                    module.setupPreviewFrame( infos[i] );
+            }
+        }
+    }
+
+
+    /**
+     *  Constructor for the TapGenerationService object
+     *
+     *@param  procedure  The procedure which objects are generated
+     */
+    public TapGenerationService( TapProcedure procedure )
+    {
+        this.procedure = procedure;
+    }
+
+
+    /**
+     *  Submits a task. Any pending task is dropped and the running one is
+     *  cancelled.
+     *
+     *@param  task  The task to run
+     */
+    public synchronized void submit( Task task )
+    {
+        if ( pending != null )
+            notifyCancelled( pending );
+
+        pending = task;
+
+        if ( current != null )
+            current.cancelled = true;
+
+        stopped = false;
+
+        if ( worker == null )
+        {
+            worker = new Thread( this, "TaPD generation" );
+            worker.setDaemon( true );
+            worker.setPriority( Thread.MIN_PRIORITY );
+            worker.start();
+        }
+
+        notifyAll();
+    }
+
+
+    /**
+     *  Submits the update of the preview windows of some modules
+     *
+     *@param  modules  The modules which preview must be updated
+     */
+    public void submitPreviews( Vector modules )
+    {
+        if ( modules.size() > 0 )
+            submit( new PreviewTask( modules ) );
+    }
+
+
+    /**
+     *  Drops the pending task and cancels the running one
+     */
+    public synchronized void cancel()
+    {
+        if ( pending != null )
+            notifyCancelled( pending );
+
+        pending = null;
+
+        if ( current != null )
+            current.cancelled = true;
+    }
+
+
+    /**
+     *  Cancels everything and lets the worker thread end
+     */
+    public synchronized void stop()
+    {
+        cancel();
+        stopped = true;
+        notifyAll();
+    }
+
+
+    /**
+     *  Returns true if a task is pending or running
+     *
+     *@return    The busy value
+     */
+    public synchronized boolean isBusy()
+    {
+        return pending != null || current != null;
+    }
+
+
+    /**
+     *  Gets the task run by the current thread
+     *
+     *@return    The task, null if the current thread isn't a worker running a
+     *      task
+     */
+    static Task getCurrentTask()
+    {
+        return (Task) currentTask.get();
+    }
+
+
+    /**
+     *  Main processing method for the worker thread
+     */
+    public void run()
+    {
+        while ( true )
+        {
+            Task task;
+
+            synchronized ( this )
+            {
+                while ( pending == null && !stopped )
+                {
+                    try
+                    {
+                        wait();
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        stopped = true;
+                    }
+                }
+
+                if ( pending == null )
+                {
+                    worker = null;
+                    return;
+                }
+
+                task = pending;
+                pending = null;
+                current = task;
+            }
+
+            Object result = null;
+            boolean completed = false;
+
+            //the contexts created while the task runs belong to it
+
+            currentTask.set( task );
+
+            try
+            {
+                if ( !task.cancelled )
+                {
+                    result = task.generate();
+                    completed = !task.cancelled;
+                }
+            }
+            catch ( CancelledException e )
+            {
+                //superseded by a newer task
+            }
+            catch ( Throwable t )
+            {
+                TapLog.error( "TapGenerationService", "generation failed", t );
+            }
+            finally
+            {
+                currentTask.set( null );
+            }
+
+            synchronized ( this )
+            {
+                current = null;
+            }
+
+            if ( completed )
+                notifyDone( task, result );
+            else
+                notifyCancelled( task );
+        }
+    }
+
+
+    /**
+     *  Delivers the result of a task on the event dispatch thread
+     *
+     *@param  task    The task
+     *@param  result  Its result
+     */
+    private void notifyDone( final Task task, final Object result )
+    {
+        SwingUtilities.invokeLater(
+            new Runnable()
+            {
+                public void run()
+                {
+                    task.generationDone( result );
+                }
+            } );
+    }
+
+
+    /**
+     *  Tells a task on the event dispatch thread that it won't complete
+     *
+     *@param  task  The task
+     */
+    private void notifyCancelled( final Task task )
+    {
+        SwingUtilities.invokeLater(
+            new Runnable()
+            {
+                public void run()
+                {
+                    task.generationCancelled();
+                }
+            } );
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *  A TapInstanceKey identifies the geometry of an object placed by a distributor module,
+ *  so that identical objects can share the same Object3D.
+ */
+/*
+ *  Copyright (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import artofillusion.object.*;
+
+
+/**
+ *  Key of a geometry prototype. Two objects with equal keys come from the same
+ *  sized object of the same object module and have been resized and distorted
+ *  the same way, hence they have the same geometry. Distributors draw a new
+ *  distortion seed for each object they place, which only matters when the
+ *  distortion amplitudes aren't zero : distorted objects are shared unless
+ *  their distortion is random.
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+public class TapInstanceKey
+{
+    private Object3D source;
+    private boolean resize;
+    private double sizeR;
+    private double sizeY;
+    private TapDistortParameters parms;
+    private boolean textureValues;
+    private double yTextureValue;
+    private double rTextureValue;
+
+
+    /**
+     *  Constructor for the TapInstanceKey object
+     *
+     *@param  source         The sized object delivered by the object module
+     *@param  resize         True if the object is resized
+     *@param  sizeR          The radial size factor
+     *@param  sizeY          The Y size factor
+     *@param  parms          The distortion parameters, or null. They are
+     *      copied, without the seed if the distortion is not random.
+     *@param  textureValues  True if the YTAPD and RTAPD texture values are set
+     *@param  yValue         The YTAPD value
+     *@param  rValue         The RTAPD value
+     */
+    public TapInstanceKey( Object3D source, boolean resize, double sizeR, double sizeY, TapDistortParameters parms, boolean textureValues, double yValue, double rValue )
+    {
+        this.source = source;
+        this.resize = resize;
+        this.sizeR = sizeR;
+        this.sizeY = sizeY;
+
+        if ( resize && parms != null )
+        {
+            this.parms = parms.duplicate();
+
+            if ( !this.parms.isRandom() )
+                this.parms.seed = 0;
+        }
+
+        this.textureValues = textureValues;
+
+        if ( textureValues )
+        {
+            yTextureValue = yValue;
+            rTextureValue = rValue;
+        }
+    }
+
+
+    /**
+     *  Description of the Method
+     *
+     *@param  obj  Description of the Parameter
+     *@return      Description of the Return Value
+     */
+    public boolean equals( Object obj )
+    {
+        if ( !( obj instanceof TapInstanceKey ) )
+            return false;
+
+        TapInstanceKey key = (TapInstanceKey) obj;
+
+        if ( key.source != source || key.resize != resize || key.textureValues != textureValues )
+            return false;
+
+        if ( key.sizeR != sizeR || key.sizeY != sizeY )
+            return false;
+
+        if ( key.yTextureValue != yTextureValue || key.rTextureValue != rTextureValue )
+            return false;
+
+        if ( parms == null )
+            return key.parms == null;
+
+        return parms.equals( key.parms );
+    }
+
+
+    /**
+     *  Description of the Method
+     *
+     *@return    Description of the Return Value
+     */
+    public int hashCode()
+    {
+        long bits = Double.doubleToLongBits( sizeR ) * 31 + Double.doubleToLongBits( sizeY );
+
+        bits = bits * 31 + Double.doubleToLongBits( yTextureValue );
+        bits = bits * 31 + Double.doubleToLongBits( rTextureValue );
+
+        int hash = System.identityHashCode( source ) ^ (int) ( bits ^ ( bits >>> 32 ) );
+
+        if ( parms != null )
+            hash = hash * 31 + parms.hashCode();
+
+        return hash;
+    }
+}
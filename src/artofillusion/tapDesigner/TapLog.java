@@ -0,0 +1,336 @@
+/*
+ *  Diagnostics of the TaPD plugin
+ */
+/*
+ *  Copyright (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import java.util.*;
+
+
+/**
+ *  All the TaPD diagnostics go through this class. Messages have a level and
+ *  are only built and published if their level is at least the current one,
+ *  which can be set by the tapdesigner.logLevel system property (debug,
+ *  info, warning, error or off). The default handler prints to the console,
+ *  another one can be plugged with setHandler().<p>
+ *
+ *  Messages traced at each evaluation are guarded by the TRACE constant, so
+ *  that they are compiled out.<p>
+ *
+ *  Warnings raised by modules during a generation are counted by the
+ *  TapLog instance of the procedure, and a summary is published once the
+ *  generation is over (see TapModule.warning()).
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+public class TapLog
+{
+    /**
+     *  Levels
+     */
+    public final static int DEBUG = 0;
+    /**
+     *  Description of the Field
+     */
+    public final static int INFO = 1;
+    /**
+     *  Description of the Field
+     */
+    public final static int WARNING = 2;
+    /**
+     *  Description of the Field
+     */
+    public final static int ERROR = 3;
+    /**
+     *  Description of the Field
+     */
+    public final static int OFF = 4;
+
+    /**
+     *  Set to true and recompile to trace evaluations
+     */
+    public final static boolean TRACE = false;
+
+    private final static String[] levelNames = {"debug", "info", "warning", "error", "off"};
+
+    private static int level = getDefaultLevel();
+    private static Handler handler = new ConsoleHandler();
+
+    private Hashtable warnings;
+    private int numWarnings;
+
+
+    /**
+     *  Receives the published messages
+     *
+     *@author     TaPD contributors
+     *@created    17 octobre 2026
+     */
+    public interface Handler
+    {
+        /**
+         *  Publishes a message
+         *
+         *@param  level    The message level
+         *@param  source   The class or module the message comes from
+         *@param  message  The message
+         *@param  t        The exception reported, or null
+         */
+        public void publish( int level, String source, String message, Throwable t );
+    }
+
+
+    /**
+     *  Prints the messages to the console
+     *
+     *@author     TaPD contributors
+     *@created    17 octobre 2026
+     */
+    public static class ConsoleHandler
+             implements Handler
+    {
+        /**
+         *  Description of the Method
+         *
+         *@param  level    Description of the Parameter
+         *@param  source   Description of the Parameter
+         *@param  message  Description of the Parameter
+         *@param  t        Description of the Parameter
+         */
+        public void publish( int level, String source, String message, Throwable t )
+        {
+            System.out.println( "TaPD " + levelNames[level] + " [" + source + "] " + message );
+
+            if ( t != null )
+                t.printStackTrace( System.out );
+        }
+    }
+
+
+    /**
+     *  Constructor for the TapLog object, which counts the warnings of a
+     *  generation
+     */
+    public TapLog()
+    {
+        warnings = new Hashtable();
+    }
+
+
+    /**
+     *  Gets the level set by the tapdesigner.logLevel property
+     *
+     *@return    The default level
+     */
+    private static int getDefaultLevel()
+    {
+        String name = null;
+
+        try
+        {
+            name = System.getProperty( "tapdesigner.logLevel" );
+        }
+        catch ( SecurityException e )
+        {
+        }
+
+        if ( name != null )
+            for ( int i = 0; i < levelNames.length; ++i )
+                if ( levelNames[i].equalsIgnoreCase( name.trim() ) )
+                    return i;
+
+        return WARNING;
+    }
+
+
+    /**
+     *  Gets the current level
+     *
+     *@return    The level value
+     */
+    public static int getLevel()
+    {
+        return level;
+    }
+
+
+    /**
+     *  Sets the current level
+     *
+     *@param  newLevel  The new level value
+     */
+    public static void setLevel( int newLevel )
+    {
+        level = newLevel;
+    }
+
+
+    /**
+     *  Sets the handler which receives the messages
+     *
+     *@param  newHandler  The new handler value
+     */
+    public static void setHandler( Handler newHandler )
+    {
+        handler = newHandler;
+    }
+
+
+    /**
+     *  Returns true if messages of this level are published. Callers building
+     *  costly messages should check it first.
+     *
+     *@param  messageLevel  The message level
+     *@return               The loggable value
+     */
+    public static boolean isLoggable( int messageLevel )
+    {
+        return messageLevel >= level && messageLevel < OFF;
+    }
+
+
+    /**
+     *  Publishes a message
+     *
+     *@param  messageLevel  The message level
+     *@param  source        The class or module the message comes from
+     *@param  message       The message
+     *@param  t             The exception reported, or null
+     */
+    public static void log( int messageLevel, String source, String message, Throwable t )
+    {
+        if ( isLoggable( messageLevel ) )
+            handler.publish( messageLevel, source, message, t );
+    }
+
+
+    /**
+     *  Publishes a debug message
+     *
+     *@param  source   The class or module the message comes from
+     *@param  message  The message
+     */
+    public static void debug( String source, String message )
+    {
+        log( DEBUG, source, message, null );
+    }
+
+
+    /**
+     *  Publishes an information message
+     *
+     *@param  source   The class or module the message comes from
+     *@param  message  The message
+     */
+    public static void info( String source, String message )
+    {
+        log( INFO, source, message, null );
+    }
+
+
+    /**
+     *  Publishes a warning
+     *
+     *@param  source   The class or module the message comes from
+     *@param  message  The message
+     */
+    public static void warning( String source, String message )
+    {
+        log( WARNING, source, message, null );
+    }
+
+
+    /**
+     *  Publishes an error
+     *
+     *@param  source   The class or module the message comes from
+     *@param  message  The message
+     *@param  t        The exception reported, or null
+     */
+    public static void error( String source, String message, Throwable t )
+    {
+        log( ERROR, source, message, t );
+    }
+
+
+    /**
+     *  Counts a warning raised during the generation. The message itself is
+     *  only published at the debug level, the count is published by
+     *  publishSummary().
+     *
+     *@param  source   The module the warning comes from
+     *@param  message  The message
+     */
+    public synchronized void countWarning( String source, String message )
+    {
+        int[] count = (int[]) warnings.get( source );
+
+        if ( count == null )
+        {
+            count = new int[1];
+            warnings.put( source, count );
+        }
+
+        ++count[0];
+        ++numWarnings;
+        debug( source, message );
+    }
+
+
+    /**
+     *  Forgets the warnings counted so far
+     */
+    public synchronized void reset()
+    {
+        warnings.clear();
+        numWarnings = 0;
+    }
+
+
+    /**
+     *  Gets the number of warnings counted since the last reset
+     *
+     *@return    The number of warnings
+     */
+    public synchronized int getNumWarnings()
+    {
+        return numWarnings;
+    }
+
+
+    /**
+     *  Publishes the number of warnings per module, if any, and resets the
+     *  counts
+     *
+     *@param  source  The procedure the generation belongs to
+     */
+    public synchronized void publishSummary( String source )
+    {
+        if ( numWarnings > 0 && isLoggable( WARNING ) )
+        {
+            StringBuffer buf = new StringBuffer();
+            buf.append( numWarnings ).append( " warning(s) during generation :" );
+
+            Enumeration keys = warnings.keys();
+
+            while ( keys.hasMoreElements() )
+            {
+                String module = (String) keys.nextElement();
+                buf.append( " " ).append( module ).append( " (" ).append( ( (int[]) warnings.get( module ) )[0] ).append( ")" );
+            }
+
+            warning( source, buf.toString() );
+        }
+
+        reset();
+    }
+}
@@ -176,7 +176,7 @@ public class TapProcPanel
      */
     public void addUndoRecord()
     {
-        undoRecord.addRecord( procedure.duplicate() );
+        undoRecord.addRecord( procedure );
     }
 
 
@@ -196,7 +196,7 @@ public class TapProcPanel
      */
     public void doRedo()
     {
-        TapProcedure newProcedure = undoRecord.getRedoRecord();
+        TapProcedure newProcedure = undoRecord.getRedoRecord( procedure );
         setNewProcedure( newProcedure );
     }
 
@@ -279,6 +279,7 @@ public class TapProcPanel
             initialize();
             layoutChildren();
             repaint();
+            holder.procedureChanged();
             //holder.requestFocus();
         }
     }
@@ -296,6 +297,40 @@ public class TapProcPanel
     }
 
 
+    /**
+     *  Switches the procedure to another random generator. The change can be
+     *  undone.
+     *
+     *@param  version  The generator version
+     */
+    public void setGeneratorVersion( short version )
+    {
+        if ( version == procedure.getGeneratorVersion() )
+            return;
+
+        undoRecord.addRecord( procedure );
+        procedure.setGeneratorVersion( version );
+        procedure.doLiveUpdate();
+    }
+
+
+    /**
+     *  Sets whether identical objects share their geometry. The change can be
+     *  undone.
+     *
+     *@param  instancing  The new instancing value
+     */
+    public void setInstancing( boolean instancing )
+    {
+        if ( instancing == procedure.isInstancing() )
+            return;
+
+        undoRecord.addRecord( procedure );
+        procedure.setInstancing( instancing );
+        procedure.doLiveUpdate();
+    }
+
+
     //}}}
 
 //{{{ Texture and material management
@@ -305,7 +340,7 @@ public class TapProcPanel
      */
     public void importTextures()
     {
-        undoRecord.addRecord( procedure.duplicate() );
+        undoRecord.addRecord( procedure );
         procedure.importTextures( holder.getBFrame() );
     }
 
@@ -315,7 +350,7 @@ public class TapProcPanel
      */
     public void manageTextures()
     {
-        undoRecord.addRecord( procedure.duplicate() );
+        undoRecord.addRecord( procedure );
         procedure.manageTextures( holder.getBFrame() );
     }
 
@@ -325,7 +360,7 @@ public class TapProcPanel
      */
     public void importMaterials()
     {
-        undoRecord.addRecord( procedure.duplicate() );
+        undoRecord.addRecord( procedure );
         procedure.importMaterials( holder.getBFrame() );
     }
 
@@ -335,7 +370,7 @@ public class TapProcPanel
      */
     public void manageMaterials()
     {
-        undoRecord.addRecord( procedure.duplicate() );
+        undoRecord.addRecord( procedure );
         procedure.manageMaterials( holder.getBFrame() );
     }
 
@@ -345,7 +380,7 @@ public class TapProcPanel
      */
     public void manageImages()
     {
-        undoRecord.addRecord( procedure.duplicate() );
+        undoRecord.addRecord( procedure );
         procedure.manageImages( holder.getBFrame() );
     }
 
@@ -355,7 +390,7 @@ public class TapProcPanel
      */
     public void manageObjects()
     {
-        undoRecord.addRecord( procedure.duplicate() );
+        undoRecord.addRecord( procedure );
         procedure.manageObjects( holder.getBFrame() );
     }
 
@@ -23,6 +23,9 @@ public interface TapProcPanelHolder
 	public void validObject(boolean isValid);
     
     public void setUndoRedoFlags(boolean canUndo, boolean canRedo);
+    
+    /* the procedure shown by the panel has been replaced (undo, redo) */
+    public void procedureChanged();
 	
 	public BFrame getBFrame();
     
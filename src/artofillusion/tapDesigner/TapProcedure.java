@@ -21,6 +21,7 @@ import artofillusion.image.*;
 import artofillusion.material.*;
 import artofillusion.object.*;
 import artofillusion.texture.*;
+import artofillusion.ui.*;
 import buoy.event.*;
 import buoy.widget.*;
 import java.awt.*;
@@ -49,9 +50,22 @@ public class TapProcedure
     private long seed;
     private LayoutWindow window;
     //the layout window which holds the procedure
-    private BackModuleLink backLinks;
-    //This instance of BackModuleLink allow modules to trace back links
-    //It is initialized by the procedure prior to calculating a new object
+    private TapEvaluationPlan evaluationPlan;
+    //compiled module graph, kept until a link or a module changes
+    private boolean instancing;
+    //whether identical objects share their geometry
+    private volatile boolean branchCaching;
+    //whether the evaluation plan keeps the branches of distributors, while the procedure is edited
+    private final Object generationLock = new Object();
+    //held while the current object is generated (see generate() for concurrent generations)
+    private TapGenerationService generationService;
+    //background generation of previews and pasted plants, created on demand
+    private short generatorVersion;
+    //random generator version used by the modules (see TapRandomGenerator)
+    private final TapLog generationLog = new TapLog();
+    //warnings raised by the modules during a generation
+    private volatile TapProfiler profiler;
+    //per module statistics of the generations, null unless profiling
     TapDesignerObjectCollection currentObject;
     ProcPanelLayout[] procPanelLayouts;
     boolean modified;
@@ -59,8 +73,19 @@ public class TapProcedure
     private int viewLevel;
     private int undoRecordSize;
     private TapUndoRecord undoRecord;
+    private long sceneRevision;
+    //incremented when the scene may have changed in a way undo states can't see
     private TapProcPanel procPanel;
     private Rectangle bounds;
+    private byte[] sceneBytes;
+    private String[] moduleClasses;
+    private byte[][] moduleBytes;
+    //scene and module bodies read from a stream and not decoded yet (see decode())
+    private Exception decodeError;
+    private boolean decodeErrorShown;
+    //why the scene and the module bodies could not be decoded, if they couldn't
+    private static Hashtable streamConstructors = new Hashtable();
+    //(DataInputStream, Scene) constructors of the classes read from streams
     /**
      *  Description of the Field
      */
@@ -98,6 +123,8 @@ public class TapProcedure
         renderingLevel = -1;
         viewLevel = -1;
         undoRecordSize = MAX_UNDO;
+        instancing = true;
+        generatorVersion = TapRandomGenerator.LATEST;
     }
 
 
@@ -343,12 +370,8 @@ public class TapProcedure
      */
     public void printSceneContent()
     {
-        System.out.println( "Scene --------------" );
-
         for ( int i = 0; i < theScene.getNumObjects(); ++i )
-            System.out.println( theScene.getObject( i ).name + " " + theScene.getObject( i ) );
-
-        System.out.println( "--------------" );
+            TapLog.info( "TapProcedure", "scene object : " + theScene.getObject( i ).name + " " + theScene.getObject( i ) );
     }
 
 
@@ -362,6 +385,8 @@ public class TapProcedure
      */
     public Scene getScene()
     {
+        decode();
+
         return theScene;
     }
 
@@ -373,6 +398,8 @@ public class TapProcedure
      */
     public Vector getModules()
     {
+        decode();
+
         return modules;
     }
 
@@ -400,6 +427,7 @@ public class TapProcedure
     public void setModules( Vector modules )
     {
         this.modules = modules;
+        evaluationPlan = null;
 
         for ( int i = 0; i < modules.size(); ++i )
             ( (TapModule) modules.elementAt( i ) ).setModules( modules );
@@ -495,10 +523,14 @@ public class TapProcedure
     /**
      *  Description of the Method
      *
-     *@return    Description of the Return Value
+     *@return    The duplicate, null if the procedure could not be decoded or
+     *      copied
      */
     public TapProcedure duplicate()
     {
+        if ( getDecodeError() != null )
+            return null;
+
         TapProcedure newProcedure = new TapProcedure( null );
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
 
@@ -531,6 +563,8 @@ public class TapProcedure
             newProcedure.modified = true;
             newProcedure.renderingLevel = renderingLevel;
             newProcedure.viewLevel = viewLevel;
+            newProcedure.instancing = instancing;
+            newProcedure.setGeneratorVersion( generatorVersion );
             newProcedure.undoRecord = undoRecord;
             newProcedure.window = window;
             newProcedure.procPanelLayouts = procPanelLayouts;
@@ -544,7 +578,7 @@ public class TapProcedure
         }
         catch ( IOException ex )
         {
-            System.out.println( "IO exception in procedure scene duplication" );
+            TapLog.error( "TapProcedure", "IO exception in procedure scene duplication", ex );
 
             return null;
         }
@@ -569,14 +603,15 @@ public class TapProcedure
     public void setLink( int fromModule, int outputPort, int toModule, int inputPort )
     {
         if ( modules.isEmpty() )
-            System.out.println( "Pocedure.setLink : empty Modules vector" );
+            TapLog.warning( "TapProcedure", "setLink : empty Modules vector" );
         else if ( fromModule >= modules.size() || toModule >= modules.size() )
-            System.out.println( "Pocedure.setLink : fromModule or toModule out of bounds " + fromModule + " " + toModule );
+            TapLog.warning( "TapProcedure", "setLink : fromModule or toModule out of bounds " + fromModule + " " + toModule );
         else if ( outputPort >= ( (TapModule) modules.elementAt( fromModule ) ).getNumOutput() || inputPort >= ( (TapModule) modules.elementAt( toModule ) ).getNumInput() )
-            System.out.println( "Pocedure.setLink : outputPort or inputPort out of bounds " + fromModule + " " + ( (TapModule) modules.elementAt( fromModule ) ).getNumOutput() + " " + toModule + " " + ( (TapModule) modules.elementAt( toModule ) ).getNumInput() );
+            TapLog.warning( "TapProcedure", "setLink : outputPort or inputPort out of bounds " + fromModule + " " + ( (TapModule) modules.elementAt( fromModule ) ).getNumOutput() + " " + toModule + " " + ( (TapModule) modules.elementAt( toModule ) ).getNumInput() );
         else
             ( (TapModule) modules.elementAt( toModule ) ).setLink( fromModule, inputPort, outputPort );
 
+        evaluationPlan = null;
         modified = true;
     }
 
@@ -599,6 +634,7 @@ public class TapProcedure
         modules.setElementAt( additionalModule, modules.size() - 1 );
         additionalModule.setModules( modules );
         additionalModule.setProcedure( this );
+        evaluationPlan = null;
         modified = true;
     }
 
@@ -674,6 +710,8 @@ public class TapProcedure
      */
     public int getNumObjects()
     {
+        decode();
+
         int numObjects = theScene.getNumObjects();
 
         for ( int i = 0; i < modules.size(); ++i )
@@ -750,15 +788,46 @@ public class TapProcedure
 
     //}}}
 
-    //{{{ returns the full TaPD object
+    //{{{ returns the TaPD object, generated up to the view level
     /**
-     *  returns the full TaPD object
+     *  returns the TaPD object. Objects beyond the view level may not be
+     *  generated yet.
      *
      *@return    The object value
      */
     public TapDesignerObjectCollection getObject()
     {
-        if ( currentObject != null )
+        return getObject( viewLevel );
+    }
+
+
+    /**
+     *  Returns the TaPD object, generated at least up to a decoration level.
+     *  Deeper objects are generated later on, when they are asked for (see
+     *  TapDesignerObjectCollection.enumerateObjects()).
+     *
+     *@param  level  Objects of this level and deeper are not needed. -1
+     *      means all levels.
+     *@return        The object value
+     */
+    public TapDesignerObjectCollection getObject( int level )
+    {
+        synchronized ( generationLock )
+        {
+            return generateObject( level );
+        }
+    }
+
+
+    /**
+     *  Generates the object, with the generation lock held
+     *
+     *@param  level  Objects of this level and deeper are not needed
+     *@return        The object value
+     */
+    private TapDesignerObjectCollection generateObject( int level )
+    {
+        if ( currentObject != null && currentObject.isGenerated( level ) )
         {
             currentObject.setViewLevel( viewLevel );
             currentObject.setRenderingLevel( renderingLevel );
@@ -766,22 +835,68 @@ public class TapProcedure
             return currentObject;
         }
 
-        this.initProcedure();
+        if ( getEvaluationPlan().getMainEntry() == -1 )
+            return null;
 
-        for ( int i = 0; i < modules.size(); ++i )
-            ( (TapModule) modules.elementAt( i ) ).initGenerationProcess();
+        generationLog.reset();
 
-        for ( int i = 0; i < modules.size(); ++i )
-            if ( ( (TapModule) modules.elementAt( i ) ).isMainEntry() )
-            {
-                currentObject = ( (TapModule) modules.elementAt( i ) ).getObject( -1, seed );
-                currentObject.setViewLevel( viewLevel );
-                currentObject.setRenderingLevel( renderingLevel );
+        TapDesignerObjectCollection previous = currentObject;
 
-                return currentObject;
-            }
+        try
+        {
+            currentObject = generate( seed, level );
+        }
+        finally
+        {
+            generationLog.publishSummary( "TapProcedure" );
+        }
+
+        //the procedure hasn't changed since the previous object was generated
+
+        if ( previous != null )
+            currentObject.supersede( previous );
+
+        currentObject.setViewLevel( viewLevel );
+        currentObject.setRenderingLevel( renderingLevel );
+
+        return currentObject;
+    }
+
+
+    /**
+     *  Generates an object of the procedure. Everything the generation changes
+     *  is held by its own TapGenerationContext, so that several objects, with
+     *  different seeds, can be generated at the same time. The generated
+     *  object doesn't become the current object of the procedure.
+     *
+     *@param  seed   The seed
+     *@param  level  Objects of this level and deeper are not generated. -1
+     *      means all levels.
+     *@return        The generated object, or null if the procedure has no
+     *      main entry
+     */
+    public TapDesignerObjectCollection generate( long seed, int level )
+    {
+        TapEvaluationPlan plan = getEvaluationPlan();
+        int mainEntry = plan.getMainEntry();
+
+        if ( mainEntry == -1 )
+            return null;
+
+        //random links make the whole generation share a random sequence, so
+        //skipping objects would change the other ones
 
-        return null;
+        if ( level > 0 && plan.hasRandomLinks() )
+            level = -1;
+
+        TapGenerationContext context = initProcedure( seed, level, null );
+        TapDesignerObjectCollection obj = ( (TapModule) modules.elementAt( mainEntry ) ).evaluateObject( context, -1, seed );
+
+        obj.poolLeaves();
+        obj.setGeneratedLevel( level );
+        obj.setResourceScene( theScene );
+
+        return obj;
     }
 
 
@@ -792,26 +907,26 @@ public class TapProcedure
     /**
      *  returns a partial object asked by a preview up to (clic preview button)
      *
-     *@return    The temporary object
+     *@param  stopModule  The module previewed : the modules linked to its
+     *      output are not evaluated
+     *@return             The temporary object
      */
-    public TapDesignerObjectCollection getTempObject()
+    public TapDesignerObjectCollection getTempObject( TapModule stopModule )
     {
-        this.initProcedure();
+        //the object is generated on a context of its own
 
-        for ( int i = 0; i < modules.size(); ++i )
-            ( (TapModule) modules.elementAt( i ) ).initGenerationProcess();
+        TapGenerationContext context = initProcedure( seed, -1, stopModule );
+        int mainEntry = context.getPlan().getMainEntry();
 
-        for ( int i = 0; i < modules.size(); ++i )
-            if ( ( (TapModule) modules.elementAt( i ) ).isMainEntry() )
-            {
-                TapDesignerObjectCollection obj = ( (TapModule) modules.elementAt( i ) ).getObject( -1, seed );
-                obj.setViewLevel( -1 );
-                obj.setRenderingLevel( -1 );
+        if ( mainEntry == -1 )
+            return null;
 
-                return obj;
-            }
+        TapDesignerObjectCollection obj = ( (TapModule) modules.elementAt( mainEntry ) ).evaluateObject( context, -1, seed );
 
-        return null;
+        obj.setViewLevel( -1 );
+        obj.setRenderingLevel( -1 );
+
+        return obj;
     }
 
 
@@ -830,6 +945,24 @@ public class TapProcedure
      */
     public TapProcedure( DataInputStream in, Scene sc )
         throws IOException, InvalidObjectException, ClassNotFoundException
+    {
+        this( in, sc, null );
+    }
+
+
+    /**
+     *  Reads a procedure from a stream, its scene through a scene store
+     *
+     *@param  in                          The stream
+     *@param  sc                          The scene the procedure is read with
+     *@param  store                       The store of the TaPD object scenes,
+     *      or null if the procedure scene was written in full
+     *@exception  IOException             Description of the Exception
+     *@exception  InvalidObjectException  Description of the Exception
+     *@exception  ClassNotFoundException  Description of the Exception
+     */
+    public TapProcedure( DataInputStream in, Scene sc, TapSceneStore store )
+        throws IOException, InvalidObjectException, ClassNotFoundException
     {
         int i;
         int count;
@@ -837,83 +970,74 @@ public class TapProcedure
 
         version = in.readShort();
 
-        if ( ( version < 0 ) || ( version > 3 ) )
+        if ( ( version < 0 ) || ( version > 4 ) )
             throw new InvalidObjectException( "" );
 
-        TapBTranslate.setLocale( ModellingApp.getPreferences().getLocale() );
+        //the preferences are not loaded by the batch generator
+        TapBTranslate.setLocale( Translate.getLocale() );
+        instancing = true;
         seed = in.readLong();
         renderingLevel = in.readInt();
         viewLevel = in.readInt();
-        theScene = new Scene( in, true );
-        count = in.readInt();
-        modules = new Vector( count );
 
-        int n;
-        for ( i = 0; i < count; ++i )
+        if ( version >= 4 )
         {
-            String classname = in.readUTF();
-            classname = classname.replaceFirst( ".tools.tapDesigner", ".tapDesigner" );
-            int len = in.readInt();
-            byte[] bytes = new byte[len];
-            in.readFully( bytes );
+            //the scene and the module bodies are only decoded when needed
 
-            Class cls = ModellingApp.getClass( classname );
+            //identical scenes of the TaPD objects of a scene are stored once
 
-            try
-            {
-                if ( cls == null )
-                    throw new IOException( "Unknown class: " + classname );
+            sceneBytes = TapSceneStore.readBlock( store, in );
 
-                Constructor con = cls.getConstructor( new Class[]
-                        {
-                        DataInputStream.class, Scene.class
-                        } );
+            String[] classes = new String[in.readInt()];
 
-                modules.addElement( con.newInstance( new Object[]
-                        {
-                        new DataInputStream( new ByteArrayInputStream( bytes ) ),
-                        theScene
-                        } ) );
-                /*
-                 *  compatibility check : any TapLeaf object is redirected to a LeafModule
-                 */
-                n = modules.size();
-                if ( modules.elementAt( n - 1 ) instanceof AoIObjectModule )
+            //unknown module classes make the read fail, as they did when the
+            //modules were decoded at once
+
+            for ( i = 0; i < classes.length; ++i )
+            {
+                classes[i] = in.readUTF();
+
+                try
                 {
-                    AoIObjectModule obj = (AoIObjectModule) modules.elementAt( n - 1 );
-                    if ( obj.currentObject.object instanceof TapLeaf )
-                    {
-                        LeafModule leaf;
-                        modules.setElementAt( leaf = new LeafModule( this, obj.getLocation(), obj.currentObject ), n - 1 );
-                        leaf.setName( obj.getName() );
-                        leaf.portDecoration = obj.portDecoration;
-                        leaf.linkToIndex = obj.linkToIndex;
-                        leaf.inputPortLink = obj.inputPortLink;
-                    }
+                    getStreamConstructor( classes[i].replaceFirst( ".tools.tapDesigner", ".tapDesigner" ) );
+                }
+                catch ( NoSuchMethodException ex )
+                {
+                    throw new InvalidObjectException( ex.toString() );
                 }
-
             }
-            catch ( InvocationTargetException ex )
+
+            count = in.readInt();
+            moduleClasses = new String[count];
+            moduleBytes = new byte[count][];
+
+            for ( i = 0; i < count; ++i )
             {
-                ex.getTargetException().printStackTrace();
-                throw new IOException();
+                moduleClasses[i] = classes[in.readShort()];
+                moduleBytes[i] = new byte[in.readInt()];
+                in.readFully( moduleBytes[i] );
             }
-            catch ( Exception ex )
+
+            modules = new Vector( count );
+        }
+        else
+        {
+            theScene = new Scene( in, true );
+            count = in.readInt();
+            modules = new Vector( count );
+
+            for ( i = 0; i < count; ++i )
             {
-                ex.printStackTrace();
-                throw new IOException();
+                String classname = in.readUTF();
+                int len = in.readInt();
+                byte[] bytes = new byte[len];
+                in.readFully( bytes );
+                modules.addElement( readModule( classname, bytes ) );
             }
-        }
 
-        for ( i = 0; i < modules.size(); ++i )
-        {
-            ( (TapModule) modules.elementAt( i ) ).setModules( modules );
-            ( (TapModule) modules.elementAt( i ) ).setProcedure( this );
+            attachModules();
         }
 
-        for ( i = 0; i < modules.size(); ++i )
-            ( (TapModule) modules.elementAt( i ) ).remapOutput();
-
         if ( version >= 1 )
             undoRecordSize = in.readInt();
         else
@@ -936,6 +1060,14 @@ public class TapProcedure
             for ( i = 0; i < count; ++i )
                 procPanelLayouts[i] = new ProcPanelLayout( in );
         }
+        //older procedures keep the sequences they were designed with
+        if ( version >= 4 )
+        {
+            setGeneratorVersion( in.readShort() );
+            instancing = in.readBoolean();
+        }
+        else
+            setGeneratorVersion( TapRandomGenerator.LEGACY );
         currentObject = null;
         modified = false;
 
@@ -943,6 +1075,216 @@ public class TapProcedure
     }
 
 
+    /**
+     *  Builds a module from the bytes it has written to a stream
+     *
+     *@param  classname        The module class name
+     *@param  bytes            The module bytes
+     *@return                  The module
+     *@exception  IOException  If the module could not be read
+     */
+    private TapModule readModule( String classname, byte[] bytes )
+        throws IOException
+    {
+        classname = classname.replaceFirst( ".tools.tapDesigner", ".tapDesigner" );
+
+        try
+        {
+            Constructor con = getStreamConstructor( classname );
+
+            TapModule module = (TapModule) con.newInstance( new Object[]
+                    {
+                    new DataInputStream( new ByteArrayInputStream( bytes ) ),
+                    theScene
+                    } );
+            /*
+             *  compatibility check : any TapLeaf object is redirected to a LeafModule
+             */
+            if ( module instanceof AoIObjectModule )
+            {
+                AoIObjectModule obj = (AoIObjectModule) module;
+                if ( obj.currentObject.object instanceof TapLeaf )
+                {
+                    LeafModule leaf;
+                    module = leaf = new LeafModule( this, obj.getLocation(), obj.currentObject );
+                    leaf.setName( obj.getName() );
+                    leaf.portDecoration = obj.portDecoration;
+                    leaf.linkToIndex = obj.linkToIndex;
+                    leaf.inputPortLink = obj.inputPortLink;
+                }
+            }
+
+            return module;
+        }
+        catch ( InvocationTargetException ex )
+        {
+            TapLog.error( "TapProcedure", "module could not be read", ex.getTargetException() );
+            throw new IOException();
+        }
+        catch ( Exception ex )
+        {
+            TapLog.error( "TapProcedure", "module could not be read", ex );
+            throw new IOException();
+        }
+    }
+
+
+    /**
+     *  Gets the constructor which reads an object of a class from a stream.
+     *  Constructors are looked up once per class.
+     *
+     *@param  classname                  The class name
+     *@return                            The (DataInputStream, Scene)
+     *      constructor
+     *@exception  IOException            If the class is unknown
+     *@exception  NoSuchMethodException  If the class has no such constructor
+     */
+    static Constructor getStreamConstructor( String classname )
+        throws IOException, NoSuchMethodException
+    {
+        Constructor con = (Constructor) streamConstructors.get( classname );
+
+        if ( con != null )
+            return con;
+
+        Class cls = ModellingApp.getClass( classname );
+
+        if ( cls == null )
+            throw new IOException( "Unknown class: " + classname );
+
+        con = cls.getConstructor( new Class[]
+                {
+                DataInputStream.class, Scene.class
+                } );
+        streamConstructors.put( classname, con );
+
+        return con;
+    }
+
+
+    /**
+     *  Decodes the scene and the modules of a procedure read from a stream, if
+     *  it hasn't been done yet. A procedure loaded along with a valid geometry
+     *  cache is only decoded when it is generated, edited or duplicated.<p>
+     *
+     *  The scene is only parsed here, so decoding can still fail. The
+     *  procedure is then left empty, but it keeps the bytes it was read from
+     *  and writes them back unchanged (see getDecodeError()).
+     */
+    private synchronized void decode()
+    {
+        if ( moduleBytes == null || decodeError != null )
+            return;
+
+        //the procedure counts as decoded from now on : modules built while
+        //decoding (leaves redirected to a LeafModule) ask for the module list
+
+        byte[] scene = sceneBytes;
+        String[] classes = moduleClasses;
+        byte[][] bodies = moduleBytes;
+        sceneBytes = null;
+        moduleClasses = null;
+        moduleBytes = null;
+
+        try
+        {
+            theScene = new Scene( new DataInputStream( new ByteArrayInputStream( scene ) ), true );
+
+            for ( int i = 0; i < bodies.length; ++i )
+                modules.addElement( readModule( classes[i], bodies[i] ) );
+
+            attachModules();
+        }
+        catch ( Exception ex )
+        {
+            TapLog.error( "TapProcedure", "procedure could not be decoded", ex );
+            sceneBytes = scene;
+            moduleClasses = classes;
+            moduleBytes = bodies;
+            decodeError = ex;
+            theScene = new Scene();
+            modules.removeAllElements();
+        }
+    }
+
+
+    /**
+     *  Decodes the procedure if it hasn't been done yet, and tells why it
+     *  could not be. A procedure which can't be decoded can't be generated,
+     *  edited or duplicated.
+     *
+     *@return    The exception raised by the decoding, null if the procedure
+     *      is decoded
+     */
+    public synchronized Exception getDecodeError()
+    {
+        decode();
+
+        return decodeError;
+    }
+
+
+    /**
+     *  Tells the user that the procedure could not be decoded
+     *
+     *@param  always  False to tell it only the first time
+     */
+    public void showDecodeError( boolean always )
+    {
+        final Exception error;
+
+        synchronized ( this )
+        {
+            if ( decodeError == null || ( decodeErrorShown && !always ) )
+                return;
+
+            decodeErrorShown = true;
+            error = decodeError;
+        }
+
+        if ( GraphicsEnvironment.isHeadless() )
+            return;
+
+        SwingUtilities.invokeLater(
+            new Runnable()
+            {
+                public void run()
+                {
+                    JOptionPane.showMessageDialog( null, TapDesignerTranslate.text( "procedureNotDecoded", error.toString() ), TapDesignerTranslate.text( "error" ), JOptionPane.ERROR_MESSAGE );
+                }
+            } );
+    }
+
+
+    /**
+     *  Returns true if the scene and the modules of the procedure have been
+     *  decoded
+     *
+     *@return    The decoded value
+     */
+    synchronized boolean isDecoded()
+    {
+        return moduleBytes == null;
+    }
+
+
+    /**
+     *  Hands the module list and the procedure to the modules just read and
+     *  remaps their outputs
+     */
+    private void attachModules()
+    {
+        for ( int i = 0; i < modules.size(); ++i )
+        {
+            ( (TapModule) modules.elementAt( i ) ).setModules( modules );
+            ( (TapModule) modules.elementAt( i ) ).setProcedure( this );
+        }
+
+        for ( int i = 0; i < modules.size(); ++i )
+            ( (TapModule) modules.elementAt( i ) ).remapOutput();
+    }
+
+
     /*
      *  writes a procedure to stream
      */
@@ -955,27 +1297,91 @@ public class TapProcedure
      */
     public void writeToFile( DataOutputStream out, Scene sc )
         throws IOException
+    {
+        writeToFile( out, sc, null );
+    }
+
+
+    /**
+     *  Writes the procedure to a stream, its scene through a scene store
+     *
+     *@param  out              The stream
+     *@param  sc               The scene the procedure is written with
+     *@param  store            The store of the TaPD object scenes, or null to
+     *      write the procedure scene anyway
+     *@exception  IOException  Description of the Exception
+     */
+    public void writeToFile( DataOutputStream out, Scene sc, TapSceneStore store )
+        throws IOException
     {
         int i;
+        byte[] scene;
+        String[] classes;
+        byte[][] bodies;
+
+        //a procedure which hasn't been decoded is written as it was read
 
-        out.writeShort( 3 );
+        synchronized ( this )
+        {
+            scene = sceneBytes;
+            classes = moduleClasses;
+            bodies = moduleBytes;
+        }
+
+        if ( bodies == null )
+        {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            theScene.writeToStream( new DataOutputStream( bos ) );
+            scene = bos.toByteArray();
+            classes = new String[modules.size()];
+            bodies = new byte[modules.size()][];
+
+            for ( i = 0; i < modules.size(); ++i )
+            {
+                TapModule mod = (TapModule) modules.elementAt( i );
+                classes[i] = mod.getClass().getName();
+                bos = new ByteArrayOutputStream();
+                mod.writeToFile( new DataOutputStream( bos ), theScene );
+                bodies[i] = bos.toByteArray();
+            }
+        }
+
+        out.writeShort( 4 );
         out.writeLong( seed );
         out.writeInt( renderingLevel );
         out.writeInt( viewLevel );
-        theScene.writeToStream( out );
-        out.writeInt( modules.size() );
+        TapSceneStore.writeBlock( store, out, scene );
+
+        //module type dictionary
 
-        for ( i = 0; i < modules.size(); ++i )
+        Vector dictionary = new Vector();
+        short[] classIndex = new short[classes.length];
+
+        for ( i = 0; i < classes.length; ++i )
         {
-            TapModule mod = (TapModule) modules.elementAt( i );
-            out.writeUTF( modules.elementAt( i ).getClass().getName() );
+            int index = dictionary.indexOf( classes[i] );
 
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            mod.writeToFile( new DataOutputStream( bos ), theScene );
+            if ( index == -1 )
+            {
+                index = dictionary.size();
+                dictionary.addElement( classes[i] );
+            }
 
-            byte[] bytes = bos.toByteArray();
-            out.writeInt( bytes.length );
-            out.write( bytes, 0, bytes.length );
+            classIndex[i] = (short) index;
+        }
+
+        out.writeInt( dictionary.size() );
+
+        for ( i = 0; i < dictionary.size(); ++i )
+            out.writeUTF( (String) dictionary.elementAt( i ) );
+
+        out.writeInt( classes.length );
+
+        for ( i = 0; i < classes.length; ++i )
+        {
+            out.writeShort( classIndex[i] );
+            out.writeInt( bodies[i].length );
+            out.write( bodies[i], 0, bodies[i].length );
         }
 
         out.writeInt( undoRecordSize );
@@ -1002,6 +1408,8 @@ public class TapProcedure
                 procPanelLayouts[i].writeToFile( out );
             }
         }
+        out.writeShort( generatorVersion );
+        out.writeBoolean( instancing );
     }
 
 
@@ -1026,33 +1434,169 @@ public class TapProcedure
 
     /*
      *  should be called prior to calculation of full or partial objects.
-     *  Initializes the procedure and each module and returns and instance of BackModuleLink
-     *  which will make it possible to trace links upstream.
+     *  Initializes the procedure and each module and returns the context of the generation,
+     *  the back links of which will make it possible to trace links upstream.
      */
     /**
      *  Description of the Method
      *
-     *@return    Description of the Return Value
+     *@return    The context of a full generation with the procedure seed
      */
-    public BackModuleLink initProcedure()
+    public TapGenerationContext initProcedure()
     {
-        for ( int i = 0; i < modules.size(); ++i )
-            ( (TapModule) modules.elementAt( i ) ).initGenerationProcess();
+        return initProcedure( seed, -1, null );
+    }
+
+
+    /**
+     *  Initializes each module and returns the context of a new generation
+     *
+     *@param  seed        The seed of the generation
+     *@param  level       Objects of this level and deeper are not generated.
+     *      -1 means all levels.
+     *@param  stopModule  The module previewed with 'stop here', or null
+     *@return             The generation context
+     */
+    public TapGenerationContext initProcedure( long seed, int level, TapModule stopModule )
+    {
+        TapEvaluationPlan plan = getEvaluationPlan();
+
+        plan.initGenerationProcess();
+
+        return new TapGenerationContext( this, new BackModuleLink( plan, newRandomGenerator( seed ) ), level, stopModule );
+    }
+
+
+    /**
+     *  Returns the compiled module graph, compiling it if a link or a module
+     *  has changed since the last call
+     *
+     *@return    The evaluationPlan value
+     */
+    public TapEvaluationPlan getEvaluationPlan()
+    {
+        decode();
+
+        if ( evaluationPlan == null || !evaluationPlan.isValidFor( modules ) )
+            evaluationPlan = new TapEvaluationPlan( modules );
+
+        return evaluationPlan;
+    }
+
+
+    /**
+     *  Must be called each time a link or a module is added, deleted or
+     *  remapped so that the module graph is compiled again
+     */
+    public void invalidateEvaluationPlan()
+    {
+        evaluationPlan = null;
+    }
+
+
+    /**
+     *  Returns a random generator of the procedure generator version
+     *
+     *@param  seed  The seed
+     *@return       The random generator
+     */
+    public TapRandomGenerator newRandomGenerator( long seed )
+    {
+        return new TapRandomGenerator( seed, generatorVersion );
+    }
+
+
+    /**
+     *  Gets the random generator version of the procedure
+     *
+     *@return    The generatorVersion value
+     */
+    public short getGeneratorVersion()
+    {
+        return generatorVersion;
+    }
+
+
+    /**
+     *  Sets the random generator version of the procedure. Changing it
+     *  changes the generated plant.
+     *
+     *@param  version  TapRandomGenerator.LEGACY or TapRandomGenerator.SPLITTABLE
+     */
+    public void setGeneratorVersion( short version )
+    {
+        if ( version != generatorVersion )
+        {
+            generatorVersion = version;
+
+            for ( int i = 0; i < modules.size(); ++i )
+                ( (TapModule) modules.elementAt( i ) ).generatorVersionChanged();
+
+            currentObject = null;
+            //branches kept for reuse were drawn with the other generator
+            evaluationPlan = null;
+            modified = true;
+        }
+    }
 
-        backLinks = new BackModuleLink( modules, seed );
 
-        return backLinks;
+    /**
+     *  Returns true if identical objects placed by distributor modules share
+     *  their geometry
+     *
+     *@return    The instancing value
+     */
+    public boolean isInstancing()
+    {
+        return instancing;
+    }
+
+
+    /**
+     *  Sets whether identical objects placed by distributor modules share their
+     *  geometry
+     *
+     *@param  instancing  The new instancing value
+     */
+    public void setInstancing( boolean instancing )
+    {
+        if ( instancing != this.instancing )
+        {
+            this.instancing = instancing;
+            currentObject = null;
+            modified = true;
+        }
     }
 
 
     /**
-     *  Gets the backLink attribute of the TapProcedure object
+     *  Returns true if the evaluation plan keeps the branches built by
+     *  distributor modules from one generation to the next
      *
-     *@return    The backLink value
+     *@return    The branchCaching value
      */
-    public BackModuleLink getBackLink()
+    public boolean isBranchCaching()
     {
-        return backLinks;
+        return branchCaching;
+    }
+
+
+    /**
+     *  Sets whether the evaluation plan keeps the branches built by
+     *  distributor modules from one generation to the next. This is only worth
+     *  its memory while the procedure is edited : the designer window turns it
+     *  on, and turning it off drops the branches kept.
+     *
+     *@param  caching  The new branchCaching value
+     */
+    public void setBranchCaching( boolean caching )
+    {
+        TapEvaluationPlan plan = evaluationPlan;
+
+        branchCaching = caching;
+
+        if ( !caching && plan != null )
+            plan.clearBranchCache();
     }
 
 
@@ -1067,6 +1611,7 @@ public class TapProcedure
     public void importTextures( BFrame parentFrame )
     {
         TapImportFrame importFrame = new TapImportFrame( parentFrame, theScene, window.getScene(), false );
+        notifySceneChanged();
         setModified( true );
     }
 
@@ -1091,6 +1636,7 @@ public class TapProcedure
     public void importMaterials( BFrame parentFrame )
     {
         TapImportFrame importFrame = new TapImportFrame( parentFrame, theScene, window.getScene(), true );
+        notifySceneChanged();
         setModified( true );
     }
 
@@ -1115,6 +1661,7 @@ public class TapProcedure
     public void manageImages( BFrame parentFrame )
     {
         new ImagesDialog( parentFrame, theScene, null );
+        notifySceneChanged();
         setModified( true );
     }
 
@@ -1130,6 +1677,7 @@ public class TapProcedure
     public void manageObjects( BFrame parentFrame )
     {
         new TapObjectsFrame( parentFrame, this );
+        notifySceneChanged();
     }
 
 
@@ -1155,9 +1703,83 @@ public class TapProcedure
      */
     public void doLiveUpdate()
     {
+        Vector previewed = new Vector();
+
         for ( int i = 0; i < modules.size(); ++i )
-            ( (TapModule) modules.elementAt( i ) ).updatePreviewFrame();
+            if ( ( (TapModule) modules.elementAt( i ) ).isPreviewOn() )
+                previewed.addElement( modules.elementAt( i ) );
+
+        //one task for all the previews, so that they don't supersede each other
+        if ( previewed.size() > 0 )
+            getGenerationService().submitPreviews( previewed );
+    }
+
+
+    //}}}
+
+    //{{{ Background generation
+    /**
+     *  Returns the service which generates previews and pasted plants in the
+     *  background
+     *
+     *@return    The generationService value
+     */
+    public synchronized TapGenerationService getGenerationService()
+    {
+        if ( generationService == null )
+            generationService = new TapGenerationService( this );
+
+        return generationService;
+    }
+
+
+    /**
+     *  Returns the log counting the warnings raised by the modules during a
+     *  generation
+     *
+     *@return    The generationLog value
+     */
+    public TapLog getGenerationLog()
+    {
+        return generationLog;
+    }
+
+
+    /**
+     *  Gets the profiler recording the module evaluations
+     *
+     *@return    The profiler, null if generations are not profiled
+     */
+    public TapProfiler getProfiler()
+    {
+        return profiler;
+    }
+
 
+    /**
+     *  Starts or stops profiling the generations. Stopping discards the
+     *  statistics.
+     *
+     *@param  profiling  True to profile the generations
+     */
+    public void setProfiling( boolean profiling )
+    {
+        if ( profiling && profiler == null )
+            profiler = new TapProfiler();
+        else if ( !profiling )
+            profiler = null;
+    }
+
+
+    /**
+     *  Cancels the background generations, if any
+     */
+    public void stopGeneration()
+    {
+        TapGenerationService service = generationService;
+
+        if ( service != null )
+            service.stop();
     }
 
 
@@ -1214,7 +1836,144 @@ public class TapProcedure
      */
     public void addUndoRecord()
     {
-        undoRecord.addRecord( this.duplicate() );
+        undoRecord.addRecord( this );
+    }
+
+
+    /**
+     *  Must be called when the procedure scene may have changed in a way undo
+     *  states don't notice : objects, textures, materials or images modified
+     *  in place rather than added, removed or replaced
+     */
+    public void notifySceneChanged()
+    {
+        ++sceneRevision;
+    }
+
+
+    /**
+     *  Returns a value which changes each time notifySceneChanged() is called
+     *
+     *@return    The scene revision
+     */
+    public long getSceneRevision()
+    {
+        return sceneRevision;
+    }
+
+
+    /**
+     *  Returns the current state of the procedure for the undo record buffer.
+     *  The module bytes and the scene bytes which haven't changed since the
+     *  previous state are shared with it, the scene is only written again if
+     *  it has changed.
+     *
+     *@param  previous  The last state taken, or null
+     *@return           The state, or null if the procedure could not be written
+     */
+    public TapUndoState getUndoState( TapUndoState previous )
+    {
+        decode();
+
+        TapUndoState state = new TapUndoState();
+        long revision = sceneRevision;
+
+        //object modules edit objects of the scene
+
+        for ( int i = 0; i < modules.size(); ++i )
+            if ( modules.elementAt( i ) instanceof ObjectModule )
+                revision = revision * 31 + ( (TapModule) modules.elementAt( i ) ).getRevision();
+
+        try
+        {
+            state.sceneRefs = TapUndoState.getSceneRefs( theScene );
+            state.sceneRevision = revision;
+
+            if ( previous != null && previous.isSceneUnchanged( state.sceneRefs, revision ) )
+                state.sceneBytes = previous.sceneBytes;
+            else
+            {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                theScene.writeToStream( new DataOutputStream( bos ) );
+                state.sceneBytes = bos.toByteArray();
+            }
+
+            state.moduleClasses = new String[modules.size()];
+            state.moduleBytes = new byte[modules.size()][];
+
+            for ( int i = 0; i < modules.size(); ++i )
+            {
+                TapModule mod = (TapModule) modules.elementAt( i );
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                mod.writeToFile( new DataOutputStream( bos ), theScene );
+
+                state.moduleClasses[i] = mod.getClass().getName();
+                state.moduleBytes[i] = bos.toByteArray();
+
+                if ( previous != null )
+                    state.moduleBytes[i] = previous.share( i, state.moduleClasses[i], state.moduleBytes[i] );
+            }
+        }
+        catch ( IOException ex )
+        {
+            TapLog.error( "TapProcedure", "IO exception in undo state recording", ex );
+
+            return null;
+        }
+
+        state.seed = seed;
+        state.renderingLevel = renderingLevel;
+        state.viewLevel = viewLevel;
+        state.undoRecordSize = undoRecordSize;
+        state.instancing = instancing;
+        state.generatorVersion = generatorVersion;
+        state.bounds = ( bounds == null ? null : new Rectangle( bounds ) );
+
+        return state;
+    }
+
+
+    /**
+     *  Builds a procedure from an undo state. The new procedure shares the
+     *  window, the panels and the undo record buffer of this one.
+     *
+     *@param  state  The state
+     *@return        The procedure, or null if the state could not be read
+     */
+    public TapProcedure restoreUndoState( TapUndoState state )
+    {
+        TapProcedure newProcedure = new TapProcedure( null );
+
+        try
+        {
+            newProcedure.theScene = new Scene( new DataInputStream( new ByteArrayInputStream( state.sceneBytes ) ), true );
+
+            for ( int i = 0; i < state.moduleBytes.length; ++i )
+                newProcedure.modules.addElement( newProcedure.readModule( state.moduleClasses[i], state.moduleBytes[i] ) );
+
+            newProcedure.attachModules();
+        }
+        catch ( Exception ex )
+        {
+            TapLog.error( "TapProcedure", "undo state could not be restored", ex );
+
+            return null;
+        }
+
+        newProcedure.seed = state.seed;
+        newProcedure.modified = true;
+        newProcedure.renderingLevel = state.renderingLevel;
+        newProcedure.viewLevel = state.viewLevel;
+        newProcedure.undoRecordSize = state.undoRecordSize;
+        newProcedure.instancing = state.instancing;
+        newProcedure.setGeneratorVersion( state.generatorVersion );
+        newProcedure.bounds = ( state.bounds == null ? null : new Rectangle( state.bounds ) );
+        newProcedure.undoRecord = undoRecord;
+        newProcedure.window = window;
+        newProcedure.procPanelLayouts = procPanelLayouts;
+        newProcedure.procPanel = procPanel;
+
+        return newProcedure;
     }
 
 
@@ -0,0 +1,328 @@
+/*
+ *  Per module statistics of the generations of a procedure
+ */
+/*
+ *  Copyright (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import artofillusion.object.*;
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+
+/**
+ *  Records the evaluations of the modules of a procedure (see
+ *  TapModule.evaluateObject() and evaluateValue()) : number of invocations,
+ *  time spent in the module with and without the modules it calls, objects
+ *  and vertices delivered, and bytes allocated by the module itself when the
+ *  JVM can measure them.<p>
+ *
+ *  Each thread keeps its own evaluation stack, so that generations run
+ *  concurrently are measured separately. A profiled generation doesn't fork
+ *  its branches (see TapDecoratorBranch.canFork()) : all its evaluations run
+ *  on the thread which started it, so that the time and bytes allocated by
+ *  the branches of a distributor are never counted as its own.
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+public class TapProfiler
+{
+    private Hashtable stats;
+    private ThreadLocal current;
+
+    private static com.sun.management.ThreadMXBean threadBean;
+
+    /**
+     *  CSV columns
+     */
+    public final static String[] COLUMNS = {"module", "type", "invocations", "inclusive ms", "exclusive ms", "objects", "vertices", "allocated bytes"};
+
+
+    static
+    {
+        try
+        {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+            if ( bean instanceof com.sun.management.ThreadMXBean && ( (com.sun.management.ThreadMXBean) bean ).isThreadAllocatedMemorySupported() )
+            {
+                threadBean = (com.sun.management.ThreadMXBean) bean;
+                threadBean.setThreadAllocatedMemoryEnabled( true );
+            }
+        }
+        catch ( Throwable t )
+        {
+            threadBean = null;
+        }
+    }
+
+
+    /**
+     *  An evaluation in progress
+     *
+     *@author     TaPD contributors
+     *@created    17 octobre 2026
+     */
+    private static class Frame
+    {
+        Frame parent;
+        long start;
+        long allocated;
+        long childTime;
+        long childAllocated;
+    }
+
+
+    /**
+     *  Statistics of a module
+     *
+     *@author     TaPD contributors
+     *@created    17 octobre 2026
+     */
+    public static class ModuleStats
+    {
+        String name;
+        String type;
+        long invocations;
+        long inclusiveTime;
+        long exclusiveTime;
+        long objects;
+        long vertices;
+        long allocated;
+
+
+        /**
+         *  Gets the values of the row, in the COLUMNS order
+         *
+         *@return    The row values
+         */
+        public Object[] getRow()
+        {
+            return new Object[]{name, type, new Long( invocations ), new Double( inclusiveTime / 1.0e6 ), new Double( exclusiveTime / 1.0e6 ), new Long( objects ), new Long( vertices ), new Long( allocated )};
+        }
+    }
+
+
+    /**
+     *  Constructor for the TapProfiler object
+     */
+    public TapProfiler()
+    {
+        stats = new Hashtable();
+        current = new ThreadLocal();
+    }
+
+
+    /**
+     *  Returns true if the allocated bytes are measured
+     *
+     *@return    The allocationMeasured value
+     */
+    public static boolean isAllocationMeasured()
+    {
+        return threadBean != null;
+    }
+
+
+    /**
+     *  Bytes allocated by the current thread so far
+     *
+     *@return    The allocated bytes, 0 if unknown
+     */
+    private static long getAllocatedBytes()
+    {
+        if ( threadBean == null )
+            return 0;
+
+        return threadBean.getThreadAllocatedBytes( Thread.currentThread().getId() );
+    }
+
+
+    /**
+     *  Starts the evaluation of a module
+     */
+    public void enter()
+    {
+        Frame frame = new Frame();
+        frame.parent = (Frame) current.get();
+        frame.allocated = getAllocatedBytes();
+        frame.start = System.nanoTime();
+        current.set( frame );
+    }
+
+
+    /**
+     *  Ends the evaluation of a module
+     *
+     *@param  module      The module
+     *@param  collection  The objects the module delivered, or null
+     */
+    public void exit( TapModule module, TapDesignerObjectCollection collection )
+    {
+        long time = System.nanoTime();
+        Frame frame = (Frame) current.get();
+
+        if ( frame == null )
+            return;
+
+        time -= frame.start;
+
+        long allocated = getAllocatedBytes() - frame.allocated;
+
+        current.set( frame.parent );
+
+        if ( frame.parent != null )
+        {
+            frame.parent.childTime += time;
+            frame.parent.childAllocated += allocated;
+        }
+
+        int objects = 0;
+        long vertices = 0;
+
+        if ( collection != null )
+        {
+            objects = collection.size();
+
+            for ( int i = 0; i < objects; ++i )
+                vertices += countVertices( collection.elementAt( i ).objectInfo.object );
+        }
+
+        ModuleStats moduleStats = getStats( module );
+
+        synchronized ( moduleStats )
+        {
+            ++moduleStats.invocations;
+            moduleStats.inclusiveTime += time;
+            moduleStats.exclusiveTime += time - frame.childTime;
+            moduleStats.objects += objects;
+            moduleStats.vertices += vertices;
+            moduleStats.allocated += allocated - frame.childAllocated;
+        }
+    }
+
+
+    /**
+     *  Gets the statistics of a module, creating them if needed
+     *
+     *@param  module  The module
+     *@return         The statistics
+     */
+    private synchronized ModuleStats getStats( TapModule module )
+    {
+        ModuleStats moduleStats = (ModuleStats) stats.get( module );
+
+        if ( moduleStats == null )
+        {
+            moduleStats = new ModuleStats();
+            moduleStats.name = module.getName();
+            moduleStats.type = module.getModuleTypeInfo().toString();
+            stats.put( module, moduleStats );
+        }
+
+        return moduleStats;
+    }
+
+
+    /**
+     *  Counts the vertices of an object
+     *
+     *@param  obj  The object
+     *@return      The number of vertices
+     */
+    private static int countVertices( Object3D obj )
+    {
+        if ( obj instanceof Mesh )
+            return ( (Mesh) obj ).getVertices().length;
+        else
+            return 0;
+    }
+
+
+    /**
+     *  Forgets all the statistics
+     */
+    public synchronized void reset()
+    {
+        stats.clear();
+    }
+
+
+    /**
+     *  Gets the rows of the statistics, the most expensive modules first
+     *
+     *@return    The rows, in the COLUMNS order
+     */
+    public synchronized Object[][] getRows()
+    {
+        Vector sorted = new Vector( stats.values() );
+
+        Collections.sort( sorted,
+            new Comparator()
+            {
+                public int compare( Object o1, Object o2 )
+                {
+                    long t1 = ( (ModuleStats) o1 ).exclusiveTime;
+                    long t2 = ( (ModuleStats) o2 ).exclusiveTime;
+
+                    return t1 > t2 ? -1 : ( t1 < t2 ? 1 : 0 );
+                }
+            } );
+
+        Object[][] rows = new Object[sorted.size()][];
+
+        for ( int i = 0; i < rows.length; ++i )
+        {
+            ModuleStats moduleStats = (ModuleStats) sorted.elementAt( i );
+
+            synchronized ( moduleStats )
+            {
+                rows[i] = moduleStats.getRow();
+            }
+        }
+
+        return rows;
+    }
+
+
+    /**
+     *  Writes the statistics as CSV
+     *
+     *@param  out  The writer
+     */
+    public void writeCSV( PrintWriter out )
+    {
+        Object[][] rows = getRows();
+
+        for ( int i = 0; i < COLUMNS.length; ++i )
+            out.print( ( i > 0 ? "," : "" ) + COLUMNS[i] );
+
+        out.println();
+
+        for ( int i = 0; i < rows.length; ++i )
+        {
+            for ( int j = 0; j < rows[i].length; ++j )
+            {
+                String value = String.valueOf( rows[i][j] );
+
+                if ( value.indexOf( ',' ) >= 0 || value.indexOf( '"' ) >= 0 )
+                    value = "\"" + value.replace( "\"", "\"\"" ) + "\"";
+
+                out.print( ( j > 0 ? "," : "" ) + value );
+            }
+
+            out.println();
+        }
+
+        out.flush();
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ *  This frame displays the per module statistics of the generations
+ */
+/*
+ *  Copyright (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import buoy.event.*;
+
+import buoy.widget.*;
+
+import java.awt.*;
+
+import java.io.*;
+
+import javax.swing.*;
+
+import javax.swing.table.*;
+
+
+/**
+ *  Table of the statistics recorded by the TapProfiler of a procedure. Columns
+ *  can be sorted by clicking on their header, and the table can be exported
+ *  as CSV.
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+public class TapProfilerFrame
+         extends BDialog
+{
+    private TapProcedure procedure;
+    private JTable table;
+
+
+    /**
+     *  Constructor for the TapProfilerFrame object
+     *
+     *@param  parentFrame  The TaPD frame
+     *@param  procedure    The procedure profiled
+     */
+    public TapProfilerFrame( BFrame parentFrame, TapProcedure procedure )
+    {
+        super( parentFrame, TapBTranslate.text( "generationProfile" ), false );
+        this.procedure = procedure;
+
+        BorderContainer border = new BorderContainer();
+        setContent( border );
+
+        table = new JTable();
+        table.setAutoCreateRowSorter( true );
+        table.setPreferredScrollableViewportSize( new Dimension( 600, 250 ) );
+        doRefresh();
+
+        border.add( new AWTWidget( new JScrollPane( table ) ), BorderContainer.CENTER );
+
+        LayoutInfo layout = new LayoutInfo( LayoutInfo.CENTER, LayoutInfo.NONE, new Insets( 5, 5, 5, 5 ), new Dimension( 0, 0 ) );
+        FormContainer fc = new FormContainer( 4, 1 );
+        fc.add( TapBTranslate.bButton( "refresh", this, "doRefresh" ), 0, 0, layout );
+        fc.add( TapBTranslate.bButton( "reset", this, "doReset" ), 1, 0, layout );
+        fc.add( TapBTranslate.bButton( "exportCSV", this, "doExport" ), 2, 0, layout );
+        fc.add( TapBTranslate.bButton( "quit", this, "doQuit" ), 3, 0, layout );
+        border.add( fc, BorderContainer.SOUTH );
+
+        pack();
+        ( (JDialog) getComponent() ).setLocationRelativeTo( parentFrame.getComponent() );
+        setVisible( true );
+
+        addEventLink( WindowClosingEvent.class, this, "doQuit" );
+    }
+
+
+    /**
+     *  Reads the statistics again
+     */
+    private void doRefresh()
+    {
+        TapProfiler profiler = procedure.getProfiler();
+        Object[][] rows = profiler == null ? new Object[0][] : profiler.getRows();
+
+        table.setModel(
+            new DefaultTableModel( rows, TapProfiler.COLUMNS )
+            {
+                public boolean isCellEditable( int row, int column )
+                {
+                    return false;
+                }
+
+
+                public Class getColumnClass( int column )
+                {
+                    return column < 2 ? String.class : ( column == 3 || column == 4 ? Double.class : Long.class );
+                }
+            } );
+
+        if ( !TapProfiler.isAllocationMeasured() )
+            table.removeColumn( table.getColumnModel().getColumn( TapProfiler.COLUMNS.length - 1 ) );
+    }
+
+
+    /**
+     *  Forgets the statistics recorded so far
+     */
+    private void doReset()
+    {
+        TapProfiler profiler = procedure.getProfiler();
+
+        if ( profiler != null )
+            profiler.reset();
+
+        doRefresh();
+    }
+
+
+    /**
+     *  Exports the statistics as CSV
+     */
+    private void doExport()
+    {
+        TapProfiler profiler = procedure.getProfiler();
+
+        if ( profiler == null )
+            return;
+
+        BFileChooser chooser = new BFileChooser( BFileChooser.SAVE_FILE, TapBTranslate.text( "exportCSV" ) );
+        chooser.setSelectedFile( new File( "profile.csv" ) );
+
+        if ( !chooser.showDialog( this ) )
+            return;
+
+        try
+        {
+            PrintWriter out = new PrintWriter( new FileWriter( chooser.getSelectedFile() ) );
+            profiler.writeCSV( out );
+            out.close();
+        }
+        catch ( IOException e )
+        {
+            TapLog.error( "TapProfilerFrame", "Cannot export " + chooser.getSelectedFile(), e );
+        }
+    }
+
+
+    /**
+     *  Description of the Method
+     */
+    private void doQuit()
+    {
+        dispose();
+    }
+}
@@ -25,11 +25,20 @@ Random Number Generator
 
 class TapRandomGenerator
 {	Random rand;
+	SplittableRandom split;
+	double nextGaussian;
+	boolean haveNextGaussian;
 	//long currentSeed;
 	
 	public static final short UNIFORM = 0;
 	public static final short GAUSSIAN = 1;
 	
+	/* generator versions, stored with the procedure so that a plant is always
+	   generated with the sequences it was designed with */
+	public static final short LEGACY = 0;
+	public static final short SPLITTABLE = 1;
+	public static final short LATEST = SPLITTABLE;
+	
 	public TapRandomGenerator(long seed)
 	{
 		 rand = new Random();
@@ -37,8 +46,20 @@ class TapRandomGenerator
 		 for (int i=0;i<10;++i) rand.nextDouble();
 	}
 	
+	/* the SPLITTABLE version is not synchronized and needs no warm-up,
+	   each generator is used by one thread only */
+	public TapRandomGenerator(long seed, short version)
+	{	if (version == LEGACY)
+		{	rand = new Random();
+			rand.setSeed(seed);
+			for (int i=0;i<10;++i) rand.nextDouble();
+		}
+		else split = new SplittableRandom(seed);
+	}
+	
 	public double uniformDeviate()
-	{	return rand.nextDouble();
+	{	if (split != null) return split.nextDouble();
+		return rand.nextDouble();
 	}
 	
 	public double uniformDeviate(double mean, double plusminus)
@@ -48,7 +69,8 @@ class TapRandomGenerator
 	}
 	
 	public long getSeed()
-	{	return rand.nextLong();
+	{	if (split != null) return split.nextLong();
+		return rand.nextLong();
 	}
 	
 	public double getDistribution(double mean, double plusminus, short type)
@@ -56,15 +78,35 @@ class TapRandomGenerator
 		switch (type)
 		{	default :
 			case UNIFORM :
-				val = mean + (rand.nextDouble()-0.5)*2*plusminus;
+				val = mean + (uniformDeviate()-0.5)*2*plusminus;
 				return val;
 			case GAUSSIAN :
-				val = rand.nextGaussian()*plusminus+mean;
+				val = gaussian()*plusminus+mean;
 				return val;
 		}
 	}
 	
 	public int integer(int n)
-	{	return rand.nextInt(n);
+	{	if (split != null) return split.nextInt(n);
+		return rand.nextInt(n);
+	}
+	
+	/* same polar method as java.util.Random */
+	private double gaussian()
+	{	if (split == null) return rand.nextGaussian();
+		if (haveNextGaussian)
+		{	haveNextGaussian = false;
+			return nextGaussian;
+		}
+		double v1, v2, s;
+		do
+		{	v1 = 2*split.nextDouble()-1;
+			v2 = 2*split.nextDouble()-1;
+			s = v1*v1+v2*v2;
+		} while (s >= 1 || s == 0);
+		double multiplier = Math.sqrt(-2*Math.log(s)/s);
+		nextGaussian = v2*multiplier;
+		haveNextGaussian = true;
+		return v1*multiplier;
 	}
 }
@@ -0,0 +1,418 @@
+/*
+ *  Content addressed store of the scenes embedded in the TaPD objects of a scene
+ */
+/*
+ *  Copyright (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import artofillusion.*;
+import artofillusion.object.*;
+import java.io.*;
+import java.security.*;
+import java.util.*;
+
+
+/**
+ *  Each TaPD object of a scene embeds the scene of its procedure (source
+ *  objects, textures, materials and images) and the scene holding the
+ *  resources of its geometry cache. Trees made from the same template embed
+ *  identical scenes, so these are stored as blocks identified by their SHA-1
+ *  hash : the first TaPD object of the parent scene to write a block writes
+ *  it, the following ones only write its hash. AoI writes and reads the
+ *  objects of a scene in the same order, so a block is always read before the
+ *  hashes which refer to it.<p>
+ *
+ *  AoI writes the objects of a scene along with the whole scene, in the scene
+ *  order. A write session therefore starts when the first TaPD object of the
+ *  parent scene is written, and expects the other ones in the scene order, in
+ *  the same thread. Each object writes the number of TaPD objects the session still
+ *  expects after it (see writeHeader()). An object written out of order or
+ *  outside of a session writes its blocks in full, so that it can be read
+ *  back alone.<p>
+ *
+ *  When the parent scene is read, identical blocks are kept once, and the
+ *  resource scenes of geometry caches are decoded once. The store only keeps
+ *  the blocks until the last object of the session is read : the procedures
+ *  then hold the blocks they haven't decoded yet, and the geometry caches the
+ *  scenes they share. Procedure scenes are still decoded by each procedure,
+ *  as duplicating a procedure temporarily modifies its scene.<p>
+ *
+ *  The stores are kept by scene in a weak map. A store never refers to its
+ *  scene nor to the objects of the scene, so that it goes along with it.
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+public class TapSceneStore
+{
+    private final static byte INLINE = 0;
+    private final static byte REFERENCE = 1;
+    private static WeakHashMap stores = new WeakHashMap();
+    private Hashtable blocks;
+    private Hashtable scenes;
+    private Hashtable written;
+    private int next;
+    private Thread writer;
+
+
+    /**
+     *  Constructor for the TapSceneStore object
+     */
+    private TapSceneStore()
+    {
+        blocks = new Hashtable();
+        scenes = new Hashtable();
+        written = new Hashtable();
+        next = -1;
+    }
+
+
+    /**
+     *  Gets the store of a scene
+     *
+     *@param  parent  The scene
+     *@return         The store, null if blocks can't be hashed
+     */
+    private static synchronized TapSceneStore getStore( Scene parent )
+    {
+        if ( parent == null || getHash( new byte[0] ) == null )
+            return null;
+
+        TapSceneStore store = (TapSceneStore) stores.get( parent );
+
+        if ( store == null )
+            stores.put( parent, store = new TapSceneStore() );
+
+        return store;
+    }
+
+
+    /**
+     *  Writes the session header of a TaPD object of a scene : the number of
+     *  TaPD objects the write session still expects after this one, or -1 if
+     *  the object isn't written as part of the whole scene
+     *
+     *@param  out              The stream
+     *@param  parent           The scene
+     *@param  obj              The object written
+     *@return                  The store to write the blocks of the object
+     *      with, null if they must be written in full
+     *@exception  IOException  Description of the Exception
+     */
+    public static TapSceneStore writeHeader( DataOutputStream out, Scene parent, Object3D obj )
+        throws IOException
+    {
+        TapSceneStore store = getStore( parent );
+        int remaining = ( store == null ? -1 : store.join( parent, obj ) );
+
+        out.writeInt( remaining );
+
+        return remaining == -1 ? null : store;
+    }
+
+
+    /**
+     *  Reads the session header of a TaPD object of a scene. Once the header
+     *  of the last object of the session is read, the scene has no store any
+     *  more.
+     *
+     *@param  in               The stream
+     *@param  parent           The scene being read
+     *@return                  The store to read the blocks of the object
+     *      with, null if they were written in full
+     *@exception  IOException  Description of the Exception
+     */
+    public static TapSceneStore readHeader( DataInputStream in, Scene parent )
+        throws IOException
+    {
+        int remaining = in.readInt();
+
+        if ( remaining == -1 )
+            return null;
+
+        TapSceneStore store = getStore( parent );
+
+        if ( remaining == 0 )
+            synchronized ( TapSceneStore.class )
+            {
+                stores.remove( parent );
+            }
+
+        return store;
+    }
+
+
+    /**
+     *  Adds an object to the current write session, starting a new one if it
+     *  is the first TaPD object of the scene
+     *
+     *@param  parent  The scene
+     *@param  obj     The object written
+     *@return         The number of TaPD objects the session expects after
+     *      this one, -1 if it isn't the object the session expects
+     */
+    private synchronized int join( Scene parent, Object3D obj )
+    {
+        int index = -1;
+        int following = -1;
+        int remaining = 0;
+        boolean first = true;
+
+        for ( int i = 0; i < parent.getNumObjects(); ++i )
+        {
+            if ( !( parent.getObject( i ).object instanceof TapDesignerObjectCollection ) )
+                continue;
+
+            if ( index != -1 )
+            {
+                if ( following == -1 )
+                    following = i;
+
+                ++remaining;
+            }
+            else if ( parent.getObject( i ).object == obj )
+                index = i;
+            else
+                first = false;
+        }
+
+        if ( index != -1 && first )
+        {
+            //the scene is written again
+
+            written.clear();
+            next = index;
+            writer = Thread.currentThread();
+        }
+
+        if ( index == -1 || index != next || writer != Thread.currentThread() )
+        {
+            //blocks written before may not be read along with this object
+
+            written.clear();
+            next = -1;
+            writer = null;
+
+            return -1;
+        }
+
+        next = following;
+
+        if ( remaining == 0 )
+            writer = null;
+
+        return remaining;
+    }
+
+
+    /**
+     *  Writes a block to a stream, or only its hash if it has already been
+     *  written
+     *
+     *@param  store            The store, or null to write the block anyway
+     *@param  out              The stream
+     *@param  bytes            The block
+     *@exception  IOException  Description of the Exception
+     */
+    public static void writeBlock( TapSceneStore store, DataOutputStream out, byte[] bytes )
+        throws IOException
+    {
+        if ( store != null )
+        {
+            store.writeBlock( out, bytes );
+
+            return;
+        }
+
+        out.writeByte( INLINE );
+        out.writeInt( bytes.length );
+        out.write( bytes, 0, bytes.length );
+    }
+
+
+    /**
+     *  Writes a block to a stream, or only its hash if it has already been
+     *  written
+     *
+     *@param  out              The stream
+     *@param  bytes            The block
+     *@exception  IOException  Description of the Exception
+     */
+    private synchronized void writeBlock( DataOutputStream out, byte[] bytes )
+        throws IOException
+    {
+        String hash = getHash( bytes );
+
+        if ( written.get( hash ) != null )
+        {
+            out.writeByte( REFERENCE );
+            out.writeUTF( hash );
+
+            return;
+        }
+
+        written.put( hash, hash );
+        out.writeByte( INLINE );
+        out.writeInt( bytes.length );
+        out.write( bytes, 0, bytes.length );
+    }
+
+
+    /**
+     *  Reads a block written by writeBlock(). A block identical to one read
+     *  before is returned as the same array.
+     *
+     *@param  store            The store, or null if hashes can't be resolved
+     *@param  in               The stream
+     *@return                  The block
+     *@exception  IOException  If the block refers to an unknown hash
+     */
+    public static byte[] readBlock( TapSceneStore store, DataInputStream in )
+        throws IOException
+    {
+        byte type = in.readByte();
+
+        if ( type == INLINE )
+        {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully( bytes );
+
+            return store == null ? bytes : store.addBlock( bytes );
+        }
+
+        if ( type != REFERENCE )
+            throw new InvalidObjectException( "Unknown block type: " + type );
+
+        String hash = in.readUTF();
+        byte[] bytes = ( store == null ? null : store.getBlock( hash ) );
+
+        if ( bytes == null )
+            throw new InvalidObjectException( "Unknown block: " + hash );
+
+        return bytes;
+    }
+
+
+    /**
+     *  Registers a block read from a stream
+     *
+     *@param  bytes  The block
+     *@return        The block registered with the same hash
+     */
+    private synchronized byte[] addBlock( byte[] bytes )
+    {
+        String hash = getHash( bytes );
+        byte[] registered = (byte[]) blocks.get( hash );
+
+        if ( registered != null )
+            return registered;
+
+        blocks.put( hash, bytes );
+
+        return bytes;
+    }
+
+
+    /**
+     *  Gets a block read before
+     *
+     *@param  hash  The block hash
+     *@return       The block, null if it hasn't been read
+     */
+    private synchronized byte[] getBlock( String hash )
+    {
+        return (byte[]) blocks.get( hash );
+    }
+
+
+    /**
+     *  Decodes a scene written as a block. The scenes of blocks read through a
+     *  store are decoded once : they must not be modified.
+     *
+     *@param  store            The store, or null
+     *@param  bytes            The block
+     *@return                  The scene
+     *@exception  IOException  Description of the Exception
+     */
+    public static Scene getScene( TapSceneStore store, byte[] bytes )
+        throws IOException
+    {
+        if ( store == null )
+            return readScene( bytes );
+
+        synchronized ( store )
+        {
+            Scene scene = (Scene) store.scenes.get( bytes );
+
+            if ( scene == null )
+                store.scenes.put( bytes, scene = readScene( bytes ) );
+
+            return scene;
+        }
+    }
+
+
+    /**
+     *  Decodes a scene
+     *
+     *@param  bytes            The scene bytes
+     *@return                  The scene
+     *@exception  IOException  Description of the Exception
+     */
+    private static Scene readScene( byte[] bytes )
+        throws IOException
+    {
+        try
+        {
+            return new Scene( new DataInputStream( new ByteArrayInputStream( bytes ) ), true );
+        }
+        catch ( IOException ex )
+        {
+            throw ex;
+        }
+        catch ( Exception ex )
+        {
+            throw new InvalidObjectException( ex.toString() );
+        }
+    }
+
+
+    /**
+     *  Gets the hash of a block
+     *
+     *@param  bytes  The block
+     *@return        The SHA-1 hash, as an hexadecimal string, or null if SHA-1
+     *      is not available
+     */
+    private static String getHash( byte[] bytes )
+    {
+        MessageDigest digest;
+
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException ex )
+        {
+            return null;
+        }
+
+        byte[] hash = digest.digest( bytes );
+        StringBuffer buffer = new StringBuffer();
+
+        for ( int i = 0; i < hash.length; ++i )
+        {
+            buffer.append( Character.forDigit( ( hash[i] >> 4 ) & 15, 16 ) );
+            buffer.append( Character.forDigit( hash[i] & 15, 16 ) );
+        }
+
+        return buffer.toString();
+    }
+}
@@ -33,10 +33,11 @@ import javax.swing.text.*;
 
 public class TapUndoRecord
 {
-    TapProcedure[]     procedures;
+    TapUndoState[]     states;
+    TapUndoState       lastState;
     int                recordSize;
     int                index;
-    TapProcedure       tmpProcedure;
+    TapUndoState       tmpState;
     boolean            recordAdded;
     TapProcPanelHolder holder;
 
@@ -53,23 +54,25 @@ public class TapUndoRecord
 
         if (index == recordSize)
         {
-            tmpProcedure = procedures[0];
+            tmpState = states[0];
 
             for (int i = 1; i < recordSize; ++i)
-                procedures[i - 1] = procedures[i];
+                states[i - 1] = states[i];
 
             --index;
 
         }
         else
-            tmpProcedure = null;
+            tmpState = null;
 
-        procedures[index] = procedure;
+        //unchanged modules and scene are shared with the last state taken
+        lastState = procedure.getUndoState(lastState);
+        states[index] = lastState;
         
         procedure.setModified(true);
 
         for (int i = index + 1; i < recordSize; ++i)
-            procedures[i] = null;
+            states[i] = null;
 
         holder.setUndoRedoFlags(true, false);
 
@@ -77,7 +80,7 @@ public class TapUndoRecord
 
     public void cancelLastRecord()
     {
-        if (tmpProcedure == null)
+        if (tmpState == null)
         {
             --index;
 
@@ -85,9 +88,9 @@ public class TapUndoRecord
         }
 
         for (int i = recordSize - 1; i > 0; --i)
-            procedures[i] = procedures[i - 1];
+            states[i] = states[i - 1];
 
-        procedures[0] = tmpProcedure;
+        states[0] = tmpState;
     }
 
     public TapProcedure getUndoRecord(TapProcedure procedure)
@@ -106,15 +109,15 @@ public class TapUndoRecord
 
         holder.setUndoRedoFlags(index >= 0, true);
 
-        return procedures[index + 1];
+        return restore(procedure, states[index + 1]);
     }
 
-    public TapProcedure getRedoRecord()
+    public TapProcedure getRedoRecord(TapProcedure procedure)
     {
         if (index >= recordSize - 2)
             return null;
 
-        if (procedures[index + 2] == null)
+        if (states[index + 2] == null)
             return null;
 
         ++index;
@@ -122,12 +125,20 @@ public class TapUndoRecord
         boolean canRedo = false;
 
         if (index < recordSize - 2)
-            if (procedures[index + 2] != null)
+            if (states[index + 2] != null)
                 canRedo = true;
 
         holder.setUndoRedoFlags(true, canRedo);
 
-        return procedures[index + 1];
+        return restore(procedure, states[index + 1]);
+    }
+
+    private TapProcedure restore(TapProcedure procedure, TapUndoState state)
+    {
+        if (state == null)
+            return null;
+
+        return procedure.restoreUndoState(state);
     }
 
     public int getRecordSize()
@@ -137,7 +148,8 @@ public class TapUndoRecord
     
     public void setRecordSize(int recordSize)
      {   this.recordSize = recordSize;
-         procedures = new TapProcedure[recordSize];
+         states = new TapUndoState[recordSize];
+         lastState = null;
          index = -1;
          recordAdded = false;
          holder.setUndoRedoFlags(false, false);
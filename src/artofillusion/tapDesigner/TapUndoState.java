@@ -0,0 +1,147 @@
+/*
+ *  A state of a procedure kept by the undo record buffer
+ */
+/*
+ *  Copyright (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import artofillusion.*;
+import java.awt.*;
+import java.lang.ref.*;
+import java.util.*;
+
+
+/**
+ *  The state of a procedure at the time an undo record was added. Modules
+ *  are stored as the bytes they write to a stream, the procedure scene as
+ *  the bytes of the whole scene. A state shares with the previous one the
+ *  bytes of every module which hasn't changed in between, and the scene
+ *  bytes if the scene hasn't changed either, so that the memory used by the
+ *  undo records grows with the size of the edits rather than with the size
+ *  of the procedure. The procedure is only built again from the bytes when
+ *  the state is restored (see TapProcedure.getUndoState() and
+ *  TapProcedure.restoreUndoState()).<p>
+ *
+ *  The scene is considered unchanged if it holds the same objects, geometries,
+ *  textures, materials and images as when the previous state was taken, if no
+ *  object module has been modified and if the procedure hasn't reported any
+ *  other scene change.
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+public class TapUndoState
+{
+    byte[] sceneBytes;
+    long sceneRevision;
+    Reference[] sceneRefs;
+    String[] moduleClasses;
+    byte[][] moduleBytes;
+    long seed;
+    int renderingLevel;
+    int viewLevel;
+    int undoRecordSize;
+    boolean instancing;
+    short generatorVersion;
+    Rectangle bounds;
+
+
+    /**
+     *  Returns the objects which make up a scene, in order : the object infos
+     *  and their geometries, then the textures, materials and images
+     *
+     *@param  scene  The scene
+     *@return        The scene references
+     */
+    static Reference[] getSceneRefs( Scene scene )
+    {
+        Vector refs = new Vector();
+
+        for ( int i = 0; i < scene.getNumObjects(); ++i )
+        {
+            ObjectInfo info = scene.getObject( i );
+            refs.addElement( new WeakReference( info ) );
+            refs.addElement( new WeakReference( info.object ) );
+        }
+
+        refs.addElement( null );
+
+        for ( int i = 0; i < scene.getNumTextures(); ++i )
+            refs.addElement( new WeakReference( scene.getTexture( i ) ) );
+
+        refs.addElement( null );
+
+        for ( int i = 0; i < scene.getNumMaterials(); ++i )
+            refs.addElement( new WeakReference( scene.getMaterial( i ) ) );
+
+        refs.addElement( null );
+
+        for ( int i = 0; i < scene.getNumImages(); ++i )
+            refs.addElement( new WeakReference( scene.getImage( i ) ) );
+
+        Reference[] array = new Reference[refs.size()];
+        refs.copyInto( array );
+
+        return array;
+    }
+
+
+    /**
+     *  Returns true if the scene of this state can be shared by a new state
+     *
+     *@param  refs      The references of the scene, as returned by
+     *      getSceneRefs()
+     *@param  revision  The scene revision of the procedure
+     *@return           True if the scene hasn't changed since this state was
+     *      taken
+     */
+    boolean isSceneUnchanged( Reference[] refs, long revision )
+    {
+        if ( sceneBytes == null || revision != sceneRevision || refs.length != sceneRefs.length )
+            return false;
+
+        for ( int i = 0; i < refs.length; ++i )
+        {
+            if ( refs[i] == null || sceneRefs[i] == null )
+            {
+                if ( refs[i] != sceneRefs[i] )
+                    return false;
+            }
+            else if ( refs[i].get() != sceneRefs[i].get() || refs[i].get() == null )
+                return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     *  Returns the bytes of this state for a module, if they are the same as
+     *  the given ones, so that they are shared rather than kept twice
+     *
+     *@param  index      The module index
+     *@param  className  The module class
+     *@param  bytes      The module bytes
+     *@return            The bytes to keep
+     */
+    byte[] share( int index, String className, byte[] bytes )
+    {
+        //modules are usually found at the same place
+
+        if ( index < moduleBytes.length && moduleClasses[index].equals( className ) && Arrays.equals( moduleBytes[index], bytes ) )
+            return moduleBytes[index];
+
+        for ( int i = 0; i < moduleBytes.length; ++i )
+            if ( moduleClasses[i].equals( className ) && Arrays.equals( moduleBytes[i], bytes ) )
+                return moduleBytes[i];
+
+        return bytes;
+    }
+}
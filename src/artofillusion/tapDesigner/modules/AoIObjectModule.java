@@ -57,7 +57,7 @@ public class AoIObjectModule
         super( procedure, TapDesignerTranslate.text( "object" ), position );
         setCurrentObject( procedure.getScene().getObject( 0 ).duplicate() );
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "aoiObjectName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/aoi_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "aoiObjectName" ), "/artofillusion/tapDesigner/icons/aoi_tree.png" );
     }
 
 
@@ -400,7 +400,6 @@ public class AoIObjectModule
             setCurrentObject( backupObject );
             deliverDuplicates = backDeliver;
             currentObject.visible = !backHidden;
-            currentSizedObject = null;
         }
 
 
@@ -412,7 +411,6 @@ public class AoIObjectModule
             setCurrentObject( dialogCurrentObject );
             deliverDuplicates = deliverCB.getState();
             currentObject.visible = !hiddenCB.getState();
-            currentSizedObject = null;
         }
 
 
@@ -427,15 +425,6 @@ public class AoIObjectModule
         }
 
 
-        /**
-         *  Description of the Method
-         */
-        protected void doModified()
-        {
-            super.doModified();
-            currentSizedObject = null;
-        }
-
 
         /**
          *  Description of the Method
@@ -20,107 +20,100 @@ import java.util.*;
 public class BackModuleLink
 {
     private Vector             modules;
-    private int[][]            backLinks;
-    private int[][]            backOutputPorts;
-    private int[][]            backInputPorts;
+    private TapEvaluationPlan  plan;
+    private BackLink[][][]     links;
     private TapRandomGenerator gen;
+    private static final BackLink[] NO_LINK = new BackLink[0];
 
     public BackModuleLink(Vector modules, long seed)
     {
-        this.modules = modules;
-        gen = new TapRandomGenerator(seed);
-        backLinks = new int[modules.size()][];
-        backOutputPorts = new int[modules.size()][];
-        backInputPorts = new int[modules.size()][];
+        this(new TapEvaluationPlan(modules), seed);
+    }
 
-        for (int i = 0; i < modules.size(); ++i)
-        {
-            backLinks[i] = null;
-            backOutputPorts[i] = null;
-            backInputPorts[i] = null;
-        }
+    /* the upstream bindings are taken from the compiled plan of the procedure,
+       so that the link tables are not walked again for each generation.
+       BackLinks are built once per (module, input port) and shared afterwards. */
+    public BackModuleLink(TapEvaluationPlan plan, long seed)
+    {
+        this(plan, new TapRandomGenerator(seed));
+    }
+
+    /* gen picks the link followed when several links reach the same input port */
+    public BackModuleLink(TapEvaluationPlan plan, TapRandomGenerator gen)
+    {
+        this.plan = plan;
+        modules = plan.getModules();
+        this.gen = gen;
 
-        int numLinks;
-        int numOutput;
-        int inputPortLink;
-        int i;
-        int j;
-        int k;
-        int l;
-        int index;
+        int size = plan.getOrder().length;
+        links = new BackLink[size][][];
 
-        for (i = 0; i < modules.size(); ++i)
+        for (int i = 0; i < size; ++i)
         {
-            TapModule mod = (TapModule)modules.elementAt(i);
-            numOutput = mod.getNumOutput();
+            int numInput = plan.getNumInput(i);
+            links[i] = new BackLink[numInput][];
 
-            if (numOutput > 0)
-                for (j = 0; j < numOutput; ++j)
+            for (int j = 0; j < numInput; ++j)
+            {
+                int[] fromModules = plan.getUpstreamModules(i, j);
+                int[] outputPorts = plan.getUpstreamOutputPorts(i, j);
+
+                if (fromModules.length == 0)
+                    links[i][j] = NO_LINK;
+                else
                 {
-                    numLinks = mod.getNumLinks(j);
-
-                    if (numLinks > 0)
-                        for (k = 0; k < numLinks; ++k)
-                        {
-                            inputPortLink = mod.getInputPortLink(j, k);
-                            index = mod.getLinkToIndex(j, k);
-
-                            if (index >= 0 && inputPortLink >= 0)
-                            {
-                                backLinks[index] = TapUtils.increaseIntArray(backLinks[index]);
-                                backOutputPorts[index] = TapUtils.increaseIntArray(backOutputPorts[index]);
-                                backInputPorts[index] = TapUtils.increaseIntArray(backInputPorts[index]);
-                                l = backLinks[index].length - 1;
-                                backLinks[index][l] = i;
-                                backOutputPorts[index][l] = j;
-                                backInputPorts[index][l] = inputPortLink;
-                            }
-                        }
+                    links[i][j] = new BackLink[fromModules.length];
+
+                    for (int k = 0; k < fromModules.length; ++k)
+                        links[i][j][k] = new BackLink((TapModule)modules.elementAt(fromModules[k]), outputPorts[k]);
                 }
+            }
         }
     }
 
+    public TapEvaluationPlan getPlan()
+    {
+        return plan;
+    }
+
+    /* returns the links to an input port. The array is shared and must not be modified. */
+    public BackLink[] getBackLinks(TapModule toModule, int inputPort)
+    {
+        int index = plan.indexOf(toModule);
+
+        if (index < 0 || inputPort < 0 || inputPort >= links[index].length)
+            return NO_LINK;
+
+        return links[index][inputPort];
+    }
+
     public Vector findAllModules(TapModule toModule, int inputPort)
-    {   int    i;
-        int    j;
-        int    k;
-        int    index;
-        Vector bl = new Vector();
-        index = modules.indexOf(toModule);
-
-        for (i = 0; i < modules.size(); ++i)
-            if (modules.elementAt(i) == toModule)
-                index = i;
-
-        if (backLinks[index] != null)
-            for (j = 0; j < backLinks[index].length; ++j)
-            {
-                if (backInputPorts[index][j] == inputPort)
-                {
-                    BackLink tmpbl = new BackLink((TapModule)modules.elementAt(backLinks[index][j]), backOutputPorts[index][j]);
-                    bl.addElement(tmpbl);
-                }
+    {
+        BackLink[] bl = getBackLinks(toModule, inputPort);
+        Vector v = new Vector(bl.length);
 
-            }
-        return bl;
+        for (int i = 0; i < bl.length; ++i)
+            v.addElement(bl[i]);
+
+        return v;
     }
     
     public BackLink findModule(TapModule toModule, int inputPort)
     {
-        Vector bl = findAllModules(toModule,inputPort);
+        BackLink[] bl = getBackLinks(toModule, inputPort);
         
-        if (bl.size() <= 0)
+        if (bl.length == 0)
             return null;
-        else if (bl.size() == 1)
-            return (BackLink)bl.elementAt(0);
+        else if (bl.length == 1)
+            return bl[0];
         else
-            return (BackLink)bl.elementAt(gen.integer(bl.size()));
+            return bl[gen.integer(bl.length)];
     }
 
     public class BackLink
     {
-        public TapModule fromModule;
-        public int       outputPort;
+        public final TapModule fromModule;
+        public final int       outputPort;
 
         public BackLink(TapModule fromModule, int outputPort)
         {
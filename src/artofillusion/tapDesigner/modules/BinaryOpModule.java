@@ -74,7 +74,7 @@ public class BinaryOpModule
     {
         super( procedure, opNames[0], position );
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "binaryOpName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/binary_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "binaryOpName" ), "/artofillusion/tapDesigner/icons/binary_tree.png" );
         opType = PLUS;
         setNumInput( 2 );
         setNumOutput( 1 );
@@ -171,20 +171,32 @@ public class BinaryOpModule
     //}}}
 
     //{{{ get value
+    /**
+     *  The value only depends on the seed and on the upstream values
+     *
+     *@return    true
+     */
+    public boolean isReentrant()
+    {
+        return true;
+    }
+
+
     /**
      *  Gets the value output of the BinaryOpModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  The index of the output port concerned
      *@param  var         The parameters array used (if need be) for calculation
      *@param  seed        The random seed
      *@return             The value output
      */
-    public double getValue( int outputPort, double[] var, long seed )
+    public double getValue( TapGenerationContext context, int outputPort, double[] var, long seed )
     {
         if ( outputPort == 0 )
         {
-            TapRandomGenerator gen = new TapRandomGenerator( seed );
-            BackModuleLink backLinks = procedure.getBackLink();
+            TapRandomGenerator gen = procedure.newRandomGenerator( seed );
+            BackModuleLink backLinks = context.getBackLinks();
             BackModuleLink.BackLink bl = null;
             double aValue;
             double bValue;
@@ -193,14 +205,14 @@ public class BinaryOpModule
             bl = backLinks.findModule( this, 0 );
 
             if ( bl != null )
-                aValue = bl.fromModule.getValue( bl.outputPort, yVal, gen.getSeed() );
+                aValue = bl.fromModule.evaluateValue( context, bl.outputPort, yVal, gen.getSeed() );
             else
                 aValue = 0;
 
             bl = backLinks.findModule( this, 1 );
 
             if ( bl != null )
-                bValue = bl.fromModule.getValue( bl.outputPort, yVal, gen.getSeed() );
+                bValue = bl.fromModule.evaluateValue( context, bl.outputPort, yVal, gen.getSeed() );
             else
                 bValue = 0;
 
@@ -213,7 +225,7 @@ public class BinaryOpModule
 
         else
         {
-            System.out.println( "wrong output port for binary operation : " + outputPort );
+            warning( "wrong output port for binary operation : " + outputPort );
 
             return (double) 0.0;
             //should never happen !!!
@@ -249,7 +261,7 @@ public class BinaryOpModule
                 if ( b != 0 )
                     return a / b;
                 else
-                    System.out.println( "Divide by zero in binary operation module." );
+                    warning( "Divide by zero in binary operation module." );
 
                 return 0;
             case GREATER_THAN:
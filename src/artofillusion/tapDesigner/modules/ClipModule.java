@@ -62,7 +62,7 @@ public class ClipModule
     {
         super( procedure, TapBTranslate.text( "clip" ), position );
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "clipName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/clip_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "clipName" ), "/artofillusion/tapDesigner/icons/clip_tree.png" );
 
         min = 0.0;
         max = 1.0;
@@ -146,20 +146,32 @@ public class ClipModule
     }
 
 
+    /**
+     *  The value only depends on the seed and on the upstream values
+     *
+     *@return    true
+     */
+    public boolean isReentrant()
+    {
+        return true;
+    }
+
+
     /**
      *  Gets the value attribute of the ClipModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  var         Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The value value
      */
-    public double getValue( int outputPort, double[] var, long seed )
+    public double getValue( TapGenerationContext context, int outputPort, double[] var, long seed )
     {
         if ( outputPort == 0 )
         {
-            TapRandomGenerator gen = new TapRandomGenerator( seed );
-            BackModuleLink backLinks = procedure.getBackLink();
+            TapRandomGenerator gen = procedure.newRandomGenerator( seed );
+            BackModuleLink backLinks = context.getBackLinks();
             BackModuleLink.BackLink bl = null;
             double aValue;
             double[] yVal = {0.0};
@@ -167,7 +179,7 @@ public class ClipModule
             bl = backLinks.findModule( this, 0 );
 
             if ( bl != null )
-                aValue = bl.fromModule.getValue( bl.outputPort, yVal, gen.getSeed() );
+                aValue = bl.fromModule.evaluateValue( context, bl.outputPort, yVal, gen.getSeed() );
             else
                 aValue = 0;
             if ( aValue <= min )
@@ -179,7 +191,7 @@ public class ClipModule
 
         else
         {
-            System.out.println( "wrong output port for clip : " + outputPort );
+            warning( "wrong output port for clip : " + outputPort );
 
             return (double) 0.0;
             //should never happen !!!
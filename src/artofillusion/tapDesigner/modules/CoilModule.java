@@ -80,7 +80,6 @@ public class CoilModule
     boolean flipChildren;
     double densityParameter;
     double rShift;
-    double yPortValue;
     int dampingFactor;
     TapDistortParameters smParms;
     TapFunction vertAngleFunction;
@@ -117,7 +116,7 @@ public class CoilModule
     {
         super( procedure, TapDesignerTranslate.text( "coil" ), position );
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "coilName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/coil_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "coilName" ), "/artofillusion/tapDesigner/icons/coil_tree.png" );
         setNumInput( 5 );
         setNumOutput( 2 );
         useGoldenRatio = false;
@@ -168,6 +167,7 @@ public class CoilModule
         yCurveLeafFunctionInput = false;
         yLeafDepartureAngleFunctionInput = false;
         setup();
+        tabulateFunctions();
     }
 
 
@@ -423,14 +423,15 @@ public class CoilModule
     /**
      *  Gets the object attribute of the CoilModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The object value
      */
-    public TapDesignerObjectCollection getObject( int outputPort, long seed )
+    public TapDesignerObjectCollection getObject( TapGenerationContext context, int outputPort, long seed )
     {
         TapDesignerObjectCollection col = null;
-        TapRandomGenerator gen = new TapRandomGenerator( seed );
+        TapRandomGenerator gen = procedure.newRandomGenerator( seed );
         BackModuleLink.BackLink bl;
         int j;
 
@@ -438,9 +439,7 @@ public class CoilModule
         {
             //preview wanted !
 
-            stopHere = true;
-            col = procedure.getTempObject();
-            stopHere = false;
+            col = procedure.getTempObject( this );
 
             return col;
         }
@@ -448,12 +447,12 @@ public class CoilModule
         {
             //preview up to
 
-            BackModuleLink backLinks = procedure.getBackLink();
+            BackModuleLink backLinks = context.getBackLinks();
             bl = backLinks.findModule( this, 0 );
             col = null;
 
             if ( bl != null )
-                col = bl.fromModule.getObject( bl.outputPort, gen.getSeed() );
+                col = bl.fromModule.evaluateObject( context, bl.outputPort, gen.getSeed() );
 
             if ( col == null )
                 return null;
@@ -467,7 +466,7 @@ public class CoilModule
                 for ( j = 0; j < inputPortLink[0].length; ++j )
                 {
                     TapModule mod = (TapModule) modules.elementAt( linkToIndex[0][j] );
-                    TapDesignerObjectCollection modCol = mod.getObject( col, inputPortLink[0][j], gen.getSeed() );
+                    TapDesignerObjectCollection modCol = mod.evaluateObject( context, col, inputPortLink[0][j], gen.getSeed() );
 
                     if ( modCol != null )
                         col.mergeCollection( modCol, 1 );
@@ -482,39 +481,102 @@ public class CoilModule
     }
 
 
+    /**
+     *  Sets the procedure attribute of the CoilModule object
+     *
+     *@param  proc  The new procedure value
+     */
+    public void setProcedure( TapProcedure proc )
+    {
+        super.setProcedure( proc );
+        tabulateFunctions();
+    }
+
+
+    /**
+     *  Tabulates the functions again for the new generator
+     */
+    public void generatorVersionChanged()
+    {
+        tabulateFunctions();
+    }
+
+
+    /**
+     *  Description of the Method
+     */
+    public void doApply()
+    {
+        //edited functions may have been replaced
+
+        tabulateFunctions();
+        super.doApply();
+    }
+
+
+    /**
+     *  Functions evaluated for each placed object use a lookup table. Its
+     *  interpolation error would change the plants of older generators, so
+     *  they keep evaluating the curves.
+     */
+    private void tabulateFunctions()
+    {
+        if ( procedure == null )
+            return;
+
+        boolean tabulated = ( procedure.getGeneratorVersion() >= TapRandomGenerator.SPLITTABLE );
+
+        vertAngleFunction.setTabulated( tabulated );
+        curveAngleFunction.setTabulated( tabulated );
+        backAngleFunction.setTabulated( tabulated );
+        perpAngleFunction.setTabulated( tabulated );
+        branchingAngleFunction.setTabulated( tabulated );
+        probFunction.setTabulated( tabulated );
+        curveRateFunction.setTabulated( tabulated );
+        yStepFunction.setTabulated( tabulated );
+        rShiftFunction.setTabulated( tabulated );
+        yCurveLeafFunction.setTabulated( tabulated );
+        yLeafDepartureAngleFunction.setTabulated( tabulated );
+    }
+
+
     /**
      *  Gets the object attribute of the CoilModule object
      *
+     *@param  context     The generation context
      *@param  collection  Description of the Parameter
      *@param  inputPort   Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The object value
      */
-    public TapDesignerObjectCollection getObject( TapDesignerObjectCollection collection, int inputPort, long seed )
+    public TapDesignerObjectCollection getObject( TapGenerationContext context, TapDesignerObjectCollection collection, int inputPort, long seed )
     {
         double Ysize;
         Mat4 m;
         Mat4 msm;
-        Mat4 flipMat;
         Vec3 size;
-        Vec3 tmpVec;
         Vec3 tr;
-        ObjectInfo anInfo;
         ObjectInfo mainObject;
         int i;
         int j;
         int k;
         int level;
-        int count;
         double yref;
+        double yPortValue = 0;
         double RotR;
         double nvertAngle;
         double nhorAngle;
-        CoordinateSystem coords = null;
         TapDesignerObjectCollection col = null;
         level = collection.elementAt( 0 ).getDecorationLevel();
 
-        TapRandomGenerator gen = new TapRandomGenerator( seed );
+        //children which aren't generated still bend the object with their counter action
+
+        boolean childless = isBeyondGenerationLevel( context, level );
+
+        if ( childless && smParms.counterAction <= 0 )
+            return null;
+
+        TapRandomGenerator gen = procedure.newRandomGenerator( seed );
         BackModuleLink.BackLink bl;
         double[] Yval = new double[1];
         double sizeR;
@@ -528,13 +590,23 @@ public class CoilModule
         int curDamp;
         BoundingBox bounds;
         TapDistortParameters tmpParms;
-        String objName;
+        TapDecoratorBranch branch;
+        TapDesignerObjectCollection tmpCollection = null;
+        CoilPlacement placement;
+        Vector placements = new Vector();
+        boolean fork;
+        boolean batch;
+        int counterAction;
 
         if ( inputPort == 1 )
         {
             TapDesignerObjectCollection newCollection = new TapDesignerObjectCollection( procedure );
-            BackModuleLink backLinks = procedure.getBackLink();
+            BackModuleLink backLinks = context.getBackLinks();
             mainObject = collection.elementAt( 0 ).objectInfo;
+
+            if ( childless && !( mainObject.object instanceof TapObject ) )
+                return null;
+
             size = mainObject.object.getBounds().getSize();
             Ysize = size.y;
             objectYSize = collection.elementAt( 0 ).sizeY * ( 1 - densityParameter ) + densityParameter;
@@ -549,16 +621,26 @@ public class CoilModule
             curDamp = 0;
             ysizestep = Ystep / objectYSize;
             tmpParms = smParms.duplicate();
-            flipMat = Mat4.yrotation( Math.PI );
+            fork = !childless && TapDecoratorBranch.canFork( context, this );
+
+            //counter actions are queued and applied in one pass, except for files saved with older generators
+            batch = smParms.counterAction > 0 && mainObject.object instanceof TapObject && procedure.getGeneratorVersion() >= TapRandomGenerator.SPLITTABLE;
+
+            //the tube geometry is set once, by regenerateMesh()
+
+            if ( mainObject.object instanceof TapTube )
+                ( (TapTube) mainObject.object ).beginEditing();
 
             while ( yref <= Ysize * Yto )
             {
+                context.checkGeneration();
                 yPortValue = yref / Ysize;
                 Yval[0] = yPortValue;
+                context.setPortValue( this, yPortValue );
                 bl = backLinks.findModule( this, 2 );
 
                 if ( bl != null )
-                    yRefValue = bl.fromModule.getValue( bl.outputPort, Yval, gen.getSeed() );
+                    yRefValue = bl.fromModule.evaluateValue( context, bl.outputPort, Yval, gen.getSeed() );
                 else
                     yRefValue = yref / Ysize;
 
@@ -591,21 +673,28 @@ public class CoilModule
                     bl = backLinks.findModule( this, 0 );
 
                     if ( bl == null )
+                    {
+                        if ( mainObject.object instanceof TapTube )
+                            ( (TapTube) mainObject.object ).regenerateMesh();
+
                         return null;
+                    }
+
+                    branch = new TapDecoratorBranch( context, this, bl, gen.getSeed(), level );
 
-                    col = bl.fromModule.getObject( bl.outputPort, gen.getSeed() );
-                    objName = bl.fromModule.getName();
+                    //forked branches are built once all the random numbers have been drawn
+
+                    if ( fork || childless )
+                        col = null;
+                    else
+                        col = branch.getChild();
 
-                    if ( col != null )
+                    if ( fork || childless || col != null )
                     {
                         if ( !useGoldenRatio )
                             curDamp = dampingFactor;
 
-                        if ( bl.fromModule instanceof ObjectModule )
-                            duplicate = ( (ObjectModule) bl.fromModule ).isDuplicate();
-                        else
-                            duplicate = false;
-
+                        duplicate = branch.isDuplicate();
                         m = Mat4.identity();
                         nvertAngle = gen.getDistribution( vertAngle * Math.PI / 180, vertAngleDist * Math.PI / 180, vertAngleType );
 
@@ -624,42 +713,21 @@ public class CoilModule
 
                         m = m.times( Mat4.yrotation( nhorAngle ) );
                         m = m.times( Mat4.zrotation( nvertAngle ) );
-                        anInfo = col.elementAt( 0 ).objectInfo;
-                        coords = anInfo.coords;
                         sizeR = 1.0;
                         sizeY = 1.0;
-                        if ( anInfo.object != null )
-                        {
-                            Object3D obj = (Object3D) anInfo.object;
-                            TextureMapping map = obj.getTextureMapping();
-                            TextureParameter[] tparms = map.getParameters();
-                            for ( j = 0; j < tparms.length; ++j )
-                            {
-                                if ( tparms[j].name.equals( "YTAPD" ) )
-                                {
-                                    ParameterValue val = obj.getParameterValue( tparms[j] );
-                                    if ( val instanceof ConstantParameterValue )
-                                        ( (ConstantParameterValue) val ).setValue( yRefValue );
-                                }
-                                else if ( tparms[j].name.equals( "RTAPD" ) )
-                                {
-                                    ParameterValue val = obj.getParameterValue( tparms[j] );
-                                    if ( val instanceof ConstantParameterValue )
-                                        ( (ConstantParameterValue) val ).setValue( nhorAngle / ( 2 * Math.PI ) );
-                                }
-                            }
-                        }
+                        branch.setTextureValues( yRefValue, nhorAngle / ( 2 * Math.PI ) );
+
                         if ( !duplicate )
                         {
                             bl = backLinks.findModule( this, 3 );
 
                             if ( bl != null )
-                                sizeR = bl.fromModule.getValue( bl.outputPort, Yval, gen.getSeed() );
+                                sizeR = bl.fromModule.evaluateValue( context, bl.outputPort, Yval, gen.getSeed() );
 
                             bl = backLinks.findModule( this, 4 );
 
                             if ( bl != null )
-                                sizeY = bl.fromModule.getValue( bl.outputPort, Yval, gen.getSeed() );
+                                sizeY = bl.fromModule.evaluateValue( context, bl.outputPort, Yval, gen.getSeed() );
 
                             if ( sizeDist > 0 )
                             {
@@ -681,8 +749,6 @@ public class CoilModule
 
                         if ( ( sizeR > 0 ) && ( sizeY > 0 ) )
                         {
-                            size = anInfo.object.getBounds().getSize();
-
                             if ( curveAngleFunctionInput )
                             {
                                 tmpParms.curveAngle = smParms.curveAngle * curveAngleFunction.calcValue( yRefValue );
@@ -737,47 +803,26 @@ public class CoilModule
 
                             tmpParms.seed = gen.getSeed();
 
-                            if ( anInfo.object instanceof SplineMesh )
-                            {
-                                anInfo.object.setSize( size.x * sizeR, size.y * sizeY, size.z * sizeR );
-                                TapUtils.setObjectAtMinY( anInfo );
-                                TapUtils.distortSplineMesh( (SplineMesh) anInfo.object, tmpParms );
-                            }
-                            else if ( !( anInfo.object instanceof TapObject ) )
-                            {
-                                anInfo.object.setSize( size.x * sizeR, size.y * sizeY, size.z * sizeR );
-                                TapUtils.setObjectAtMinY( anInfo );
-                            }
-                            else
-                                ( (TapObject) anInfo.object ).resizeAndDistort( size, sizeR, sizeY, tmpParms );
-
-                            //else coords.setOrigin(((TapSplineMesh)anInfo.object).getYCurveOrigin());
-                            TapDesignerObjectCollection tmpCollection = new TapDesignerObjectCollection( procedure );
-                            tmpCollection.addObject( anInfo, level + 1, sizeR, sizeY, objName );
+                            //a forked branch keeps its own copy of the parameters, which change at each step
 
-                            if ( ( inputPortLink[0] != null ) && ( !stopHere ) )
-                            {
-                                //modules linked to output will decorate object
+                            if ( fork )
+                                branch.setSize( sizeR, sizeY, tmpParms.duplicate() );
+                            else
+                                branch.setSize( sizeR, sizeY, tmpParms );
 
-                                for ( j = 0; j < inputPortLink[0].length; ++j )
-                                {
-                                    TapModule mod = (TapModule) modules.elementAt( linkToIndex[0][j] );
-                                    TapDesignerObjectCollection modCol = mod.getObject( tmpCollection, inputPortLink[0][j], gen.getSeed() );
+                            //if this module is the one previewed, links are not followed, but the random sequence is preserved
 
-                                    if ( modCol != null )
-                                        tmpCollection.mergeCollection( modCol, 0 );
-                                }
-                            }
+                            branch.drawDecorationSeeds( gen, !context.stopsAt( this ) );
 
-                            if ( ( inputPortLink[0] != null ) && ( stopHere ) )
-                                for ( j = 0; j < inputPortLink[0].length; ++j )
-                                    //preserve random sequence
-                                    gen.getSeed();
+                            if ( childless )
+                                tmpCollection = null;
+                            else if ( !fork )
+                                tmpCollection = branch.getResult();
 
-                            count = tmpCollection.size();
                             dum = yref + Ysize * gen.getDistribution( 0, Ydist, YdistType );
                             tr = new Vec3( 0, dum, 0 );
                             msm = null;
+                            counterAction = -1;
 
                             if ( mainObject.object instanceof TapObject )
                             {
@@ -788,41 +833,32 @@ public class CoilModule
                                 if ( smParms.counterAction > 0 )
                                 {
                                     tmpParms.counterAction = smParms.counterAction * branchingAngleFunction.calcValue( dum / Ysize );
-                                    msm = tapObj.setCounterAction( dum / Ysize, nhorAngle, tmpParms );
+
+                                    if ( batch )
+                                        counterAction = tapObj.queueCounterAction( dum / Ysize, nhorAngle, tmpParms );
+                                    else
+                                        msm = tapObj.setCounterAction( dum / Ysize, nhorAngle, tmpParms );
                                 }
                                 else
                                     msm = tapObj.getPosition( dum / Ysize, nhorAngle, true );
                             }
 
-                            for ( j = 0; j < count; ++j )
-                            {
-                                anInfo = tmpCollection.elementAt( j ).objectInfo;
-                                coords = anInfo.coords;
-
-                                if ( flipChildren && ( ( nhorAngle > Math.PI && nhorAngle <= 2 * Math.PI ) || ( nhorAngle <= 0 && nhorAngle > -Math.PI ) ) )
-                                    coords.transformCoordinates( flipMat );
-
-                                coords.transformCoordinates( m );
-
-                                if ( msm != null )
-                                    coords.transformCoordinates( msm );
-                                else
-                                    coords.setOrigin( coords.getOrigin().plus( tr ) );
-
-                                if ( rShiftFunctionInput )
-                                    dum = rShift * rShiftFunction.calcValue( yRefValue );
-                                else
-                                    dum = rShift * rShiftFunction.calcValue( yPortValue );
+                            if ( rShiftFunctionInput )
+                                dum = rShift * rShiftFunction.calcValue( yRefValue );
+                            else
+                                dum = rShift * rShiftFunction.calcValue( yPortValue );
 
-                                dum *= collection.elementAt( 0 ).sizeR;
-                                tmpVec = new Vec3( -dum, 0, 0 );
+                            dum *= collection.elementAt( 0 ).sizeR;
+                            placement = new CoilPlacement( branch, m, msm, tr, nhorAngle, dum );
+                            placement.counterAction = counterAction;
 
-                                Mat4 mtr = Mat4.yrotation( nhorAngle );
-                                mtr.transform( tmpVec );
-                                coords.setOrigin( coords.getOrigin().plus( tmpVec ) );
+                            if ( fork || batch )
+                            {
+                                placement.result = tmpCollection;
+                                placements.addElement( placement );
                             }
-
-                            newCollection.mergeCollection( tmpCollection, 0 );
+                            else if ( tmpCollection != null )
+                                newCollection.mergeCollection( placement.place( tmpCollection ), 0 );
                         }
                     }
                 }
@@ -877,9 +913,38 @@ public class CoilModule
                 }
             }
 
+            if ( fork )
+            {
+                Vector branches = new Vector();
+
+                for ( j = 0; j < placements.size(); ++j )
+                    branches.addElement( ( (CoilPlacement) placements.elementAt( j ) ).branch );
+
+                TapDecoratorBranch.buildAll( branches );
+
+                for ( j = 0; j < placements.size(); ++j )
+                {
+                    placement = (CoilPlacement) placements.elementAt( j );
+                    placement.result = placement.branch.getResult();
+                }
+            }
+
+            //applies the queued counter actions, if any
+
             if ( mainObject.object instanceof TapObject )
                 ( (TapObject) mainObject.object ).regenerateMesh();
 
+            for ( j = 0; j < placements.size(); ++j )
+            {
+                placement = (CoilPlacement) placements.elementAt( j );
+
+                if ( placement.counterAction != -1 )
+                    placement.msm = ( (TapObject) mainObject.object ).getCounterActionPosition( placement.counterAction );
+
+                if ( placement.result != null )
+                    newCollection.mergeCollection( placement.place( placement.result ), 0 );
+            }
+
             return newCollection;
         }
         else
@@ -887,48 +952,138 @@ public class CoilModule
     }
 
 
+    /**
+     *  Placement of a decorating object along the coil
+     *
+     *@author     TaPD contributors
+     *@created    17 octobre 2026
+     */
+    private class CoilPlacement
+    {
+        TapDecoratorBranch branch;
+        Mat4 m;
+        Mat4 msm;
+        Vec3 tr;
+        double angle;
+        double shift;
+        int counterAction;
+        TapDesignerObjectCollection result;
+
+
+        /**
+         *  Constructor for the CoilPlacement object
+         *
+         *@param  branch  The branch to place
+         *@param  m       The rotation to apply to the branch
+         *@param  msm     The position on the decorated object, or null
+         *@param  tr      The translation used if msm is null
+         *@param  angle   The horizontal angle
+         *@param  shift   The radial shift
+         */
+        CoilPlacement( TapDecoratorBranch branch, Mat4 m, Mat4 msm, Vec3 tr, double angle, double shift )
+        {
+            this.branch = branch;
+            this.m = m;
+            this.msm = msm;
+            this.tr = tr;
+            this.angle = angle;
+            this.shift = shift;
+        }
+
+
+        /**
+         *  Moves the objects of the branch to their place
+         *
+         *@param  tmpCollection  The branch objects
+         *@return                The placed objects
+         */
+        TapDesignerObjectCollection place( TapDesignerObjectCollection tmpCollection )
+        {
+            Mat4 flipMat = Mat4.yrotation( Math.PI );
+            int count = tmpCollection.size();
+
+            for ( int j = 0; j < count; ++j )
+            {
+                CoordinateSystem coords = tmpCollection.elementAt( j ).objectInfo.coords;
+
+                if ( flipChildren && ( ( angle > Math.PI && angle <= 2 * Math.PI ) || ( angle <= 0 && angle > -Math.PI ) ) )
+                    coords.transformCoordinates( flipMat );
+
+                coords.transformCoordinates( m );
+
+                if ( msm != null )
+                    coords.transformCoordinates( msm );
+                else
+                    coords.setOrigin( coords.getOrigin().plus( tr ) );
+
+                Vec3 tmpVec = new Vec3( -shift, 0, 0 );
+                Mat4 mtr = Mat4.yrotation( angle );
+                mtr.transform( tmpVec );
+                coords.setOrigin( coords.getOrigin().plus( tmpVec ) );
+            }
+
+            return tmpCollection;
+        }
+    }
+
+
     /**
      *  Gets the value attribute of the CoilModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  var         Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The value value
      */
-    public double getValue( int outputPort, double[] var, long seed )
+    public double getValue( TapGenerationContext context, int outputPort, double[] var, long seed )
     {
         if ( outputPort == 1 )
-            return yPortValue;
+            return context.getPortValue( this );
         else
             return 0.0;
     }
 
 
     /**
-     *  Description of the Method
+     *  The objects only depend on the module parameters, the values placed
+     *  being kept by the generation context
+     *
+     *@return    true
+     */
+    public boolean isReentrant()
+    {
+        return true;
+    }
+
+
+    /**
+     *  Builds the object displayed in the preview window of this module
      *
-     *@param  modifiers  Description of the Parameter
+     *@param  modifiers  The modifiers of the preview request
+     *@return            The preview object, or null if there is nothing to
+     *      show
      */
-    public void showPreviewFrame( int modifiers )
+    public ObjectInfo buildPreviewObject( int modifiers )
     {
-        super.showPreviewFrame( modifiers );
 
         TapDesignerObjectCollection collection = null;
-        procedure.initProcedure();
+        TapGenerationContext context = procedure.initProcedure();
 
         if ( ( modifiers & ActionEvent.CTRL_MASK ) != 0 )
-            collection = getObject( -2, procedure.getSeed() );
+            collection = getObject( context, -2, procedure.getSeed() );
         else
-            collection = getObject( -1, procedure.getSeed() );
+            collection = getObject( context, -1, procedure.getSeed() );
 
         if ( collection != null )
             if ( collection.size() > 0 )
             {
                 ObjectInfo newObjectInfo = new ObjectInfo( collection, new CoordinateSystem(), getName() );
                 newObjectInfo.object.setTexture( procedure.getScene().getDefaultTexture(), procedure.getScene().getDefaultTexture().getDefaultMapping(newObjectInfo.object) );
-                setupPreviewFrame( newObjectInfo );
+                return newObjectInfo;
             }
 
+        return null;
     }
 
 
@@ -2335,7 +2490,7 @@ public class CoilModule
             }
             catch ( NumberFormatException e )
             {
-                System.out.println( "Exception" );
+                TapLog.debug( name, "invalid number : " + e.getMessage() );
                 getBackValues();
             }
         }
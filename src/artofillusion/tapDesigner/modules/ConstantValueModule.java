@@ -59,7 +59,7 @@ public class ConstantValueModule
     {
         super( procedure, TapDesignerTranslate.text( "value" ), position );
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "constantValueName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/value_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "constantValueName" ), "/artofillusion/tapDesigner/icons/value_tree.png" );
 
         constantValue = (double) 0.0;
         setName( String.valueOf( constantValue ) );
@@ -136,21 +136,33 @@ public class ConstantValueModule
     }
 
 
+    /**
+     *  The value only depends on the seed and on the upstream values
+     *
+     *@return    true
+     */
+    public boolean isReentrant()
+    {
+        return true;
+    }
+
+
     /**
      *  Gets the value attribute of the ConstantValueModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  var         Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The value value
      */
-    public double getValue( int outputPort, double[] var, long seed )
+    public double getValue( TapGenerationContext context, int outputPort, double[] var, long seed )
     {
         if ( outputPort == 0 )
             return constantValue;
         else
         {
-            System.out.println( "wrong output port for constant value : " + outputPort );
+            warning( "wrong output port for constant value : " + outputPort );
 
             return (double) 0.0;
             //should never happen !!!
@@ -55,7 +55,7 @@ public class DistortModule
     {
         super( procedure, TapDesignerTranslate.text( "distort" ), position );
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "distortName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/distort_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "distortName" ), "/artofillusion/tapDesigner/icons/distort_tree.png" );
 
         setNumInput( 1 );
         setNumOutput( 1 );
@@ -157,18 +157,35 @@ public class DistortModule
     }
 
 
+    /**
+     *  Returns a copy of the distortion parameters seeded for one evaluation,
+     *  so that the module parameters are not modified while generating
+     *
+     *@param  gen  The random generator of the evaluation
+     *@return      The parameters
+     */
+    private TapDistortParameters getParameters( TapRandomGenerator gen )
+    {
+        TapDistortParameters parms = smParms.duplicate();
+        parms.seed = gen.getSeed();
+
+        return parms;
+    }
+
+
     /**
      *  Gets the object attribute of the DistortModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The object value
      */
-    public TapDesignerObjectCollection getObject( int outputPort, long seed )
+    public TapDesignerObjectCollection getObject( TapGenerationContext context, int outputPort, long seed )
     {
         TapDesignerObjectCollection col = null;
-        TapRandomGenerator gen = new TapRandomGenerator( seed );
-        smParms.seed = gen.getSeed();
+        TapRandomGenerator gen = procedure.newRandomGenerator( seed );
+        TapDistortParameters parms = getParameters( gen );
 
         BackModuleLink.BackLink bl;
         int j;
@@ -177,9 +194,7 @@ public class DistortModule
          *  if ( outputPort == -1 )
          *  {
          *  /preview wanted !
-         *  stopHere = true;
-         *  col = procedure.getTempObject();
-         *  stopHere = false;
+         *  col = procedure.getTempObject( this );
          *  return col;
          *  }
          *  else
@@ -188,12 +203,12 @@ public class DistortModule
         {
             //preview up to
 
-            BackModuleLink backLinks = procedure.getBackLink();
+            BackModuleLink backLinks = context.getBackLinks();
             bl = backLinks.findModule( this, 0 );
             col = null;
 
             if ( bl != null )
-                col = bl.fromModule.getObject( bl.outputPort, gen.getSeed() );
+                col = bl.fromModule.evaluateObject( context, bl.outputPort, gen.getSeed() );
 
             if ( col == null )
                 return null;
@@ -201,9 +216,9 @@ public class DistortModule
             ObjectInfo mainObject = col.elementAt( 0 ).objectInfo;
 
             if ( mainObject.object instanceof TapObject )
-                ( (TapObject) mainObject.object ).setShape( smParms );
+                ( (TapObject) mainObject.object ).setShape( parms );
             else if ( mainObject.object instanceof SplineMesh )
-                TapUtils.distortSplineMesh( (SplineMesh) mainObject.object, smParms );
+                TapUtils.distortSplineMesh( (SplineMesh) mainObject.object, parms );
 
             TapDesignerObjectCollection tmpCollection = new TapDesignerObjectCollection( procedure );
 
@@ -214,7 +229,7 @@ public class DistortModule
                 for ( j = 0; j < inputPortLink[0].length; ++j )
                 {
                     TapModule mod = (TapModule) modules.elementAt( linkToIndex[0][j] );
-                    TapDesignerObjectCollection modCol = mod.getObject( col, inputPortLink[0][j], gen.getSeed() );
+                    TapDesignerObjectCollection modCol = mod.evaluateObject( context, col, inputPortLink[0][j], gen.getSeed() );
 
                     if ( modCol != null )
                         col.mergeCollection( modCol, 0 );
@@ -225,12 +240,12 @@ public class DistortModule
         }
         else if ( ( outputPort == 0 ) || ( outputPort == -1 ) )
         {
-            BackModuleLink backLinks = procedure.getBackLink();
+            BackModuleLink backLinks = context.getBackLinks();
             bl = backLinks.findModule( this, 0 );
             col = null;
 
             if ( bl != null )
-                col = bl.fromModule.getObject( bl.outputPort, gen.getSeed() );
+                col = bl.fromModule.evaluateObject( context, bl.outputPort, gen.getSeed() );
 
             if ( col == null )
                 return null;
@@ -238,9 +253,9 @@ public class DistortModule
             ObjectInfo mainObject = col.elementAt( 0 ).objectInfo;
 
             if ( mainObject.object instanceof TapObject )
-                ( (TapObject) mainObject.object ).setShape( smParms );
+                ( (TapObject) mainObject.object ).setShape( parms );
             else if ( mainObject.object instanceof SplineMesh )
-                TapUtils.distortSplineMesh( (SplineMesh) mainObject.object, smParms );
+                TapUtils.distortSplineMesh( (SplineMesh) mainObject.object, parms );
 
             return col;
         }
@@ -252,17 +267,18 @@ public class DistortModule
     /**
      *  Gets the object attribute of the DistortModule object
      *
+     *@param  context     The generation context
      *@param  collection  Description of the Parameter
      *@param  inputPort   Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The object value
      */
-    public TapDesignerObjectCollection getObject( TapDesignerObjectCollection collection, int inputPort, long seed )
+    public TapDesignerObjectCollection getObject( TapGenerationContext context, TapDesignerObjectCollection collection, int inputPort, long seed )
     {
         ObjectInfo anInfo;
         ObjectInfo mainObject;
-        TapRandomGenerator gen = new TapRandomGenerator( seed );
-        smParms.seed = gen.getSeed();
+        TapRandomGenerator gen = procedure.newRandomGenerator( seed );
+        TapDistortParameters parms = getParameters( gen );
 
         BackModuleLink.BackLink bl;
         TapDesignerObjectCollection newCollection = null;
@@ -273,18 +289,18 @@ public class DistortModule
             mainObject = collection.elementAt( 0 ).objectInfo;
 
             if ( mainObject.object instanceof TapObject )
-                ( (TapObject) mainObject.object ).setShape( smParms );
+                ( (TapObject) mainObject.object ).setShape( parms );
             else if ( mainObject.object instanceof SplineMesh )
-                TapUtils.distortSplineMesh( (SplineMesh) mainObject.object, smParms );
+                TapUtils.distortSplineMesh( (SplineMesh) mainObject.object, parms );
 
-            if ( ( inputPortLink[0] != null ) && ( !stopHere ) )
+            if ( ( inputPortLink[0] != null ) && ( !context.stopsAt( this ) ) )
             {
                 //modules linked to output will decorate object
 
                 for ( j = 0; j < inputPortLink[0].length; ++j )
                 {
                     TapModule mod = (TapModule) modules.elementAt( linkToIndex[0][j] );
-                    TapDesignerObjectCollection modCol = mod.getObject( collection, inputPortLink[0][j], gen.getSeed() );
+                    TapDesignerObjectCollection modCol = mod.evaluateObject( context, collection, inputPortLink[0][j], gen.getSeed() );
 
                     if ( modCol != null )
                     {
@@ -306,41 +322,57 @@ public class DistortModule
     /**
      *  Gets the value attribute of the DistortModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  var         Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The value value
      */
-    public double getValue( int outputPort, double[] var, long seed )
+    public double getValue( TapGenerationContext context, int outputPort, double[] var, long seed )
     {
         return (double) 0.0;
     }
 
 
     /**
-     *  Description of the Method
+     *  The object only depends on the module parameters and on the object
+     *  distorted
      *
-     *@param  modifiers  Description of the Parameter
+     *@return    true
      */
-    public void showPreviewFrame( int modifiers )
+    public boolean isReentrant()
+    {
+        return true;
+    }
+
+
+    /**
+     *  Builds the object displayed in the preview window of this module
+     *
+     *@param  modifiers  The modifiers of the preview request
+     *@return            The preview object, or null if there is nothing to
+     *      show
+     */
+    public ObjectInfo buildPreviewObject( int modifiers )
     {
-        super.showPreviewFrame( modifiers );
 
         TapDesignerObjectCollection collection = null;
-        procedure.initProcedure();
+        TapGenerationContext context = procedure.initProcedure();
 
         if ( ( modifiers & ActionEvent.CTRL_MASK ) != 0 )
-            collection = getObject( -2, procedure.getSeed() );
+            collection = getObject( context, -2, procedure.getSeed() );
         else
-            collection = getObject( -1, procedure.getSeed() );
+            collection = getObject( context, -1, procedure.getSeed() );
 
         if ( collection != null )
             if ( collection.size() > 0 )
             {
                 ObjectInfo newObjectInfo = new ObjectInfo( collection, new CoordinateSystem(), getName() );
                 newObjectInfo.object.setTexture( procedure.getScene().getDefaultTexture(), procedure.getScene().getDefaultTexture().getDefaultMapping(newObjectInfo.object) );
-                setupPreviewFrame( newObjectInfo );
+                return newObjectInfo;
             }
+
+        return null;
     }
 
 
@@ -894,7 +926,7 @@ public class DistortModule
             }
             catch ( NumberFormatException e )
             {
-                System.out.println( "Exception" );
+                TapLog.debug( name, "invalid number : " + e.getMessage() );
                 getBackValues();
             }
         }
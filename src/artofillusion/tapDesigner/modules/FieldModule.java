@@ -64,6 +64,7 @@ public class FieldModule
     private final static short VERTICES = 1;
     private final static short FACE_CENTERS = 2;
     private final static short QUAD_CENTERS = 3;
+    private final static short STRATIFIED = 4;
 
 
 
@@ -77,7 +78,7 @@ public class FieldModule
     {
         super( procedure, TapDesignerTranslate.text( "field" ), position );
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "fieldName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/field_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "fieldName" ), "/artofillusion/tapDesigner/icons/field_tree.png" );
 
         setNumInput( 2 );
         setNumOutput( 1 );
@@ -240,32 +241,31 @@ public class FieldModule
     /**
      *  Gets the object attribute of the GoldenBallModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The object value
      */
-    public TapDesignerObjectCollection getObject( int outputPort, long seed )
+    public TapDesignerObjectCollection getObject( TapGenerationContext context, int outputPort, long seed )
     {
         TapDesignerObjectCollection col = null;
-        TapRandomGenerator gen = new TapRandomGenerator( seed );
+        TapRandomGenerator gen = procedure.newRandomGenerator( seed );
         BackModuleLink.BackLink bl;
         int j;
         if ( outputPort == -1 )
         {
             //preview wanted !
-            stopHere = true;
-            col = procedure.getTempObject();
-            stopHere = false;
+            col = procedure.getTempObject( this );
             return col;
         }
         //preview up to
         else if ( outputPort == -2 )
         {
-            BackModuleLink backLinks = procedure.getBackLink();
+            BackModuleLink backLinks = context.getBackLinks();
             bl = backLinks.findModule( this, 0 );
             col = null;
             if ( bl != null )
-                col = bl.fromModule.getObject( bl.outputPort, gen.getSeed() );
+                col = bl.fromModule.evaluateObject( context, bl.outputPort, gen.getSeed() );
             if ( col == null )
                 return null;
             TapDesignerObjectCollection tmpCollection = new TapDesignerObjectCollection( procedure );
@@ -275,7 +275,7 @@ public class FieldModule
                 for ( j = 0; j < inputPortLink[0].length; ++j )
                 {
                     TapModule mod = (TapModule) modules.elementAt( linkToIndex[0][j] );
-                    TapDesignerObjectCollection modCol = mod.getObject( col, inputPortLink[0][j], gen.getSeed() );
+                    TapDesignerObjectCollection modCol = mod.evaluateObject( context, col, inputPortLink[0][j], gen.getSeed() );
                     if ( modCol != null )
                         col.mergeCollection( modCol, 1 );
                 }
@@ -289,122 +289,211 @@ public class FieldModule
 
 
     /**
-     *  Gets a "decorated decorator" object to place on the mesh
+     *  Gets the size of a "decorated decorator" object. The object is only
+     *  built if its size cannot be estimated (see
+     *  TapDecoratorBranch.getSizeEstimate()).
      *
+     *@param  context   The generation context
      *@param  gen       Description of the Parameter
      *@param  sR        Description of the Parameter
      *@param  sY        Description of the Parameter
-     *@param  parms     Description of the Parameter
      *@param  level     Description of the Parameter
      *@param  evaluate  Description of the Parameter
-     *@return           The decoratedDecorator value
+     *@return           The object size, or null
      */
-    private TapDesignerObjectCollection getDecoratedDecorator( TapRandomGenerator gen, double sR, double sY, TapDistortParameters parms, int level, boolean evaluate )
+    private Vec3 getDecoratedDecoratorSize( TapGenerationContext context, TapRandomGenerator gen, double sR, double sY, int level, boolean evaluate )
+    {
+        TapDecoratorBranch branch = getDecoratorBranch( context, gen, sR, sY, level, evaluate );
+
+        if ( branch == null )
+            return null;
+
+        Vec3 size = branch.getSizeEstimate();
+
+        if ( size != null )
+            return size;
+
+        TapDesignerObjectCollection tmpCollection = branch.getResult();
+
+        if ( tmpCollection == null )
+            return null;
+
+        //trick the Object Collection for calculating size
+        tmpCollection.sceneChanged( new ObjectInfo( tmpCollection, new CoordinateSystem(), "dummy" ), procedure.getScene() );
+
+        return tmpCollection.getBounds().getSize();
+    }
+
+
+    /**
+     *  Draws the random numbers needed by a "decorated decorator" object. The
+     *  object itself is built when the branch result is asked for.
+     *
+     *@param  context   The generation context
+     *@param  gen       Description of the Parameter
+     *@param  sR        Description of the Parameter
+     *@param  sY        Description of the Parameter
+     *@param  level     Description of the Parameter
+     *@param  evaluate  Description of the Parameter
+     *@return           The decorator branch
+     */
+    private TapDecoratorBranch getDecoratorBranch( TapGenerationContext context, TapRandomGenerator gen, double sR, double sY, int level, boolean evaluate )
     {
-        TapDesignerObjectCollection tmpCollection = null;
-        TapDesignerObjectCollection col = null;
-        boolean duplicate;
-        ObjectInfo anInfo;
         double sizeR;
         double sizeY;
         double dum;
-        TapDistortParameters tmpParms;
-        Vec3 size;
-        String objName;
 
-        BackModuleLink backLinks = procedure.getBackLink();
+        context.checkGeneration();
+
+        BackModuleLink backLinks = context.getBackLinks();
         BackModuleLink.BackLink bl = backLinks.findModule( this, 0 );
-        if ( bl != null )
+
+        if ( bl == null )
+            return null;
+
+        TapDecoratorBranch branch = new TapDecoratorBranch( context, this, bl, gen.getSeed(), level );
+        sizeR = 1.0;
+        sizeY = 1.0;
+
+        if ( !branch.isDuplicate() )
         {
-            col = bl.fromModule.getObject( bl.outputPort, gen.getSeed() );
-            anInfo = col.elementAt( 0 ).objectInfo;
-            if ( bl.fromModule instanceof ObjectModule )
-                duplicate = ( (ObjectModule) bl.fromModule ).isDuplicate();
+            if ( sizeChildren )
+            {
+                sizeR *= sR;
+                sizeY *= sY;
+            }
+
+            if ( sizeDist > 0 )
+            {
+                dum = gen.getDistribution( 0, sizeDist, sizeDistType );
+
+                if ( dum < 0.0001 )
+                    dum = 0.0001;
+
+                sizeR *= ( 1 - dum );
+                sizeY *= ( 1 - dum );
+            }
+
+            if ( ( sizeR > 0 ) && ( sizeY > 0 ) )
+                branch.setSize( sizeR, sizeY, null );
             else
-                duplicate = false;
+                branch.setSizeFactors( sizeR, sizeY );
+        }
 
-            objName = bl.fromModule.getName();
-            sizeR = 1.0;
-            sizeY = 1.0;
+        if ( evaluate || ( !context.stopsAt( this ) ) )
+            branch.drawDecorationSeeds( gen, true );
 
-            if ( !duplicate )
-            {
-                if ( sizeChildren )
-                {
-                    sizeR *= sR;
-                    sizeY *= sY;
-                }
+        return branch;
+    }
 
-                if ( sizeDist > 0 )
-                {
-                    dum = gen.getDistribution( 0, sizeDist, sizeDistType );
 
-                    if ( dum < 0.0001 )
-                        dum = 0.0001;
+    /**
+     *  Places a branch, or queues it if branches are built concurrently
+     *
+     *@param  placement      The branch and its placement
+     *@param  placements     The queue of forked branches, null if branches
+     *      are built at once
+     *@param  newCollection  The collection the placed objects are added to
+     */
+    private void addBranch( FieldPlacement placement, Vector placements, TapDesignerObjectCollection newCollection )
+    {
+        if ( placement.branch == null )
+            return;
 
-                    sizeR *= ( 1 - dum );
-                    sizeY *= ( 1 - dum );
-                }
+        if ( placements != null )
+            placements.addElement( placement );
+        else if ( placement.branch.getResult() != null )
+            newCollection.mergeCollection( placement.place( placement.branch.getResult() ), 0 );
+    }
 
-                if ( ( sizeR > 0 ) && ( sizeY > 0 ) )
-                {
-                    size = anInfo.object.getBounds().getSize();
 
-                    if ( anInfo.object instanceof SplineMesh )
-                    {
-                        anInfo.object.setSize( size.x * sizeR, size.y * sizeY, size.z * sizeR );
-                        TapUtils.setObjectAtMinY( anInfo );
-                        //if ( parms != null )
-                        //TapUtils.distortSplineMesh( (SplineMesh) anInfo.object, parms );
-                    }
-                    else if ( !( anInfo.object instanceof TapObject ) )
-                    {
-                        anInfo.object.setSize( size.x * sizeR, size.y * sizeY, size.z * sizeR );
-                        TapUtils.setObjectAtMinY( anInfo );
-                    }
-                    else
-                        ( (TapObject) anInfo.object ).resizeAndDistort( size, sizeR, sizeY, null );
-                }
-            }
+    /**
+     *  Placement of a decorating object on the mesh
+     *
+     *@author     TaPD contributors
+     *@created    17 octobre 2026
+     */
+    private class FieldPlacement
+    {
+        TapDecoratorBranch branch;
+        Vec3 tr;
+        Mat4 mrot;
+        Vec3 jitterVec;
+        Mat4 m;
+        Vec3 pos;
+        Mat4 toMain;
 
-            anInfo = col.elementAt( 0 ).objectInfo;
-            tmpCollection = new TapDesignerObjectCollection( procedure );
-            tmpCollection.addObject( anInfo, level + 1, sizeR, sizeY, objName );
 
-            if ( ( inputPortLink[0] != null ) && ( evaluate || ( !stopHere ) ) )
-            {
-                for ( int j = 0; j < inputPortLink[0].length; ++j )
-                {
-                    TapModule mod = (TapModule) modules.elementAt( linkToIndex[0][j] );
-                    TapDesignerObjectCollection modCol = mod.getObject( tmpCollection, inputPortLink[0][j], gen.getSeed() );
+        /**
+         *  Constructor for the FieldPlacement object
+         *
+         *@param  branch     The branch to place
+         *@param  tr         The inward translation
+         *@param  mrot       The random rotation
+         *@param  jitterVec  The jitter translation
+         *@param  m          The rotation following the mesh orientation
+         *@param  pos        The position on the mesh
+         *@param  toMain     The transformation to the decorated object
+         *      coordinates, or null
+         */
+        FieldPlacement( TapDecoratorBranch branch, Vec3 tr, Mat4 mrot, Vec3 jitterVec, Mat4 m, Vec3 pos, Mat4 toMain )
+        {
+            this.branch = branch;
+            this.tr = tr;
+            this.mrot = mrot;
+            this.jitterVec = jitterVec;
+            this.m = m;
+            this.pos = pos;
+            this.toMain = toMain;
+        }
 
-                    if ( modCol != null )
-                        tmpCollection.mergeCollection( modCol, 0 );
-                }
+
+        /**
+         *  Moves the objects of the branch to their place
+         *
+         *@param  tmpCollection  The branch objects
+         *@return                The placed objects
+         */
+        TapDesignerObjectCollection place( TapDesignerObjectCollection tmpCollection )
+        {
+            int count = tmpCollection.size();
+
+            for ( int j = 0; j < count; ++j )
+            {
+                CoordinateSystem coords = tmpCollection.elementAt( j ).objectInfo.coords;
+                coords.setOrigin( coords.getOrigin().plus( tr ) );
+                if ( randomRotation )
+                    coords.transformCoordinates( mrot );
+                if ( jitter > 0 )
+                    coords.setOrigin( coords.getOrigin().plus( jitterVec ) );
+                if ( followMeshOrientation )
+                    coords.transformCoordinates( m );
+                coords.setOrigin( coords.getOrigin().plus( pos ) );
+                if ( toMain != null )
+                    coords.transformOrigin( toMain );
             }
-        }
 
-        return tmpCollection;
+            return tmpCollection;
+        }
     }
 
 
     /**
      *  Gets the object attribute of the GoldenBallModule object
      *
+     *@param  context     The generation context
      *@param  collection  Description of the Parameter
      *@param  inputPort   Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The object value
      */
-    public TapDesignerObjectCollection getObject( TapDesignerObjectCollection collection, int inputPort, long seed )
+    public TapDesignerObjectCollection getObject( TapGenerationContext context, TapDesignerObjectCollection collection, int inputPort, long seed )
     {
 
         double Ysize;
         Mat4 m;
         Mat4 mrot = null;
-        ObjectInfo anInfo;
         ObjectInfo mainObject;
-        ObjectInfo dummyInfo;
         int level;
         int count;
         double sizeR;
@@ -413,12 +502,11 @@ public class FieldModule
         double objectArea = 0.0;
         Vec3 yVec = new Vec3( 0, 1, 0 );
 
-        CoordinateSystem dummyCS = new CoordinateSystem();
-        CoordinateSystem coords = null;
-        TapDesignerObjectCollection col = null;
-        TapDesignerObjectCollection tmpCollection = null;
         level = collection.elementAt( 0 ).getDecorationLevel();
-        TapRandomGenerator gen = new TapRandomGenerator( seed );
+
+        if ( isBeyondGenerationLevel( context, level ) )
+            return null;
+        TapRandomGenerator gen = procedure.newRandomGenerator( seed );
         BackModuleLink.BackLink bl;
         double dum;
         double dumr;
@@ -426,6 +514,9 @@ public class FieldModule
         Vec3 jitterVec = null;
         Vec3 faceNorm = null;
         Vec3 pos = null;
+        TapDecoratorBranch branch;
+        FieldPlacement placement;
+        Vector placements = null;
 
         //double[] yVal = new double[1];
 
@@ -435,31 +526,27 @@ public class FieldModule
             //yVec = mainObject.coords.fromLocal().timesDirection( yVec );
             if ( !( mainObject.object instanceof TriangleMesh ) )
             {
-                System.out.println( "Not a triangle mesh !" );
+                warning( "Not a triangle mesh !" );
                 return null;
             }
             TriangleMesh triMesh = (TriangleMesh) mainObject.object;
             mainObject.coords = new CoordinateSystem();
             TapDesignerObjectCollection newCollection = new TapDesignerObjectCollection( procedure );
-            BackModuleLink backLinks = procedure.getBackLink();
+            BackModuleLink backLinks = context.getBackLinks();
             size = mainObject.object.getBounds().getSize();
             sizeR = collection.elementAt( 0 ).sizeR;
             sizeY = collection.elementAt( 0 ).sizeY;
             Ysize = size.y;
-            if ( coverType == UNIFORM )
+            if ( coverType == UNIFORM || coverType == STRATIFIED )
             {
                 //find out maximum size
                 objectArea = 0;
                 count = 0;
                 for ( int i = 0; i < estimate; ++i )
                 {
-                    tmpCollection = getDecoratedDecorator( gen, sizeR, sizeY, null, level, true );
-                    if ( tmpCollection != null )
+                    size = getDecoratedDecoratorSize( context, gen, sizeR, sizeY, level, true );
+                    if ( size != null )
                     {
-                        dummyInfo = new ObjectInfo( tmpCollection, dummyCS, "dummy" );
-                        tmpCollection.sceneChanged( dummyInfo, procedure.getScene() );
-                        //trick the Object Collection for calculating size
-                        size = tmpCollection.getBounds().getSize();
                         dum = size.x;
                         if ( dum < 0.005 )
                             dum = 0.005;
@@ -480,6 +567,8 @@ public class FieldModule
             int numVert = v.length;
             int numFaces = faces.length;
             tr = new Vec3( 0, -inward, 0 );
+            if ( TapDecoratorBranch.canFork( context, this ) )
+                placements = new Vector();
             switch ( coverType )
             {
                 case VERTICES:
@@ -499,23 +588,9 @@ public class FieldModule
                                 mrot = Mat4.axisRotation( yVec, gen.getDistribution( rotMean, rotDev, rotDistType ) );
                             }
                             m = Mat4.axisRotation( yVec.cross( normals[i] ), Math.acos( yVec.dot( normals[i] ) ) );
-                            tmpCollection = getDecoratedDecorator( gen, sizeR, sizeY, null, level, false );
-                            count = tmpCollection.size();
-                            for ( int j = 0; j < count; ++j )
-                            {
-                                anInfo = tmpCollection.elementAt( j ).objectInfo;
-                                coords = anInfo.coords;
-                                coords.setOrigin( coords.getOrigin().plus( tr ) );
-                                if ( randomRotation )
-                                    coords.transformCoordinates( mrot );
-                                if ( jitter > 0 )
-                                    coords.setOrigin( coords.getOrigin().plus( jitterVec ) );
-                                if ( followMeshOrientation )
-                                    coords.transformCoordinates( m );
-                                coords.setOrigin( coords.getOrigin().plus( v[i].r ) );
-                                //coords.transformOrigin( mainObject.coords.fromLocal() );
-                            }
-                            newCollection.mergeCollection( tmpCollection, 0 );
+                            branch = getDecoratorBranch( context, gen, sizeR, sizeY, level, false );
+                            placement = new FieldPlacement( branch, tr, mrot, jitterVec, m, v[i].r, null );
+                            addBranch( placement, placements, newCollection );
                         }
                     }
                     break;
@@ -543,23 +618,9 @@ public class FieldModule
                             pos = v[faces[i].v1].r.plus( v[faces[i].v2].r.plus( v[faces[i].v3].r ) );
                             pos.scale( 1.0 / 3.0 );
                             m = Mat4.axisRotation( yVec.cross( faceNorm ), Math.acos( yVec.dot( faceNorm ) ) );
-                            tmpCollection = getDecoratedDecorator( gen, sizeR, sizeY, null, level, false );
-                            count = tmpCollection.size();
-                            for ( int j = 0; j < count; ++j )
-                            {
-                                anInfo = tmpCollection.elementAt( j ).objectInfo;
-                                coords = anInfo.coords;
-                                coords.setOrigin( coords.getOrigin().plus( tr ) );
-                                if ( randomRotation )
-                                    coords.transformCoordinates( mrot );
-                                if ( jitter > 0 )
-                                    coords.setOrigin( coords.getOrigin().plus( jitterVec ) );
-                                if ( followMeshOrientation )
-                                    coords.transformCoordinates( m );
-                                coords.setOrigin( coords.getOrigin().plus( pos ) );
-                                coords.transformOrigin( mainObject.coords.fromLocal() );
-                            }
-                            newCollection.mergeCollection( tmpCollection, 0 );
+                            branch = getDecoratorBranch( context, gen, sizeR, sizeY, level, false );
+                            placement = new FieldPlacement( branch, tr, mrot, jitterVec, m, pos, mainObject.coords.fromLocal() );
+                            addBranch( placement, placements, newCollection );
                         }
                     }
                     break;
@@ -606,23 +667,9 @@ public class FieldModule
                                     mrot = Mat4.axisRotation( yVec, gen.getDistribution( rotMean, rotDev, rotDistType ) );
                                 }
                                 m = Mat4.axisRotation( yVec.cross( faceNorm ), Math.acos( yVec.dot( faceNorm ) ) );
-                                tmpCollection = getDecoratedDecorator( gen, sizeR, sizeY, null, level, false );
-                                count = tmpCollection.size();
-                                for ( int j = 0; j < count; ++j )
-                                {
-                                    anInfo = tmpCollection.elementAt( j ).objectInfo;
-                                    coords = anInfo.coords;
-                                    coords.setOrigin( coords.getOrigin().plus( tr ) );
-                                    if ( randomRotation )
-                                        coords.transformCoordinates( mrot );
-                                    if ( jitter > 0 )
-                                        coords.setOrigin( coords.getOrigin().plus( jitterVec ) );
-                                    if ( followMeshOrientation )
-                                        coords.transformCoordinates( m );
-                                    coords.setOrigin( coords.getOrigin().plus( pos ) );
-                                    coords.transformOrigin( mainObject.coords.fromLocal() );
-                                }
-                                newCollection.mergeCollection( tmpCollection, 0 );
+                                branch = getDecoratorBranch( context, gen, sizeR, sizeY, level, false );
+                                placement = new FieldPlacement( branch, tr, mrot, jitterVec, m, pos, mainObject.coords.fromLocal() );
+                                addBranch( placement, placements, newCollection );
                             }
                             done[i] = true;
                         }
@@ -718,27 +765,86 @@ public class FieldModule
                                     {
                                         mrot = Mat4.axisRotation( yVec, gen.getDistribution( rotMean, rotDev, rotDistType ) );
                                     }
-                                    tmpCollection = getDecoratedDecorator( gen, sizeR, sizeY, null, level, false );
-                                    count = tmpCollection.size();
-                                    for ( int l = 0; l < count; ++l )
-                                    {
-                                        anInfo = tmpCollection.elementAt( l ).objectInfo;
-                                        coords = anInfo.coords;
-                                        coords.setOrigin( coords.getOrigin().plus( tr ) );
-                                        if ( randomRotation )
-                                            coords.transformCoordinates( mrot );
-                                        if ( jitter > 0 )
-                                            coords.setOrigin( coords.getOrigin().plus( jitterVec ) );
-                                        if ( followMeshOrientation )
-                                            coords.transformCoordinates( m );
-                                        coords.setOrigin( coords.getOrigin().plus( pos ) );
-                                        coords.transformOrigin( mainObject.coords.fromLocal() );
-                                    }
-                                    newCollection.mergeCollection( tmpCollection, 0 );
+                                    branch = getDecoratorBranch( context, gen, sizeR, sizeY, level, false );
+                                    placement = new FieldPlacement( branch, tr, mrot, jitterVec, m, pos, mainObject.coords.fromLocal() );
+                                    addBranch( placement, placements, newCollection );
                                 }
                             }
                     }
                     break;
+                case STRATIFIED:
+                    if ( occupancy <= 0 )
+                        return newCollection;
+                    //same density as the uniform cover : one object per step x step square
+                    double density = occupancy * occupancy / ( objectArea * objectArea );
+                    double carry = 0;
+                    Mat4 toMain = mainObject.coords.fromLocal();
+                    for ( int i = 0; i < numFaces; ++i )
+                    {
+                        Vec3 p1 = v[faces[i].v1].r;
+                        Vec3 p2 = v[faces[i].v2].r;
+                        Vec3 p3 = v[faces[i].v3].r;
+                        double ax = p2.x - p1.x;
+                        double ay = p2.y - p1.y;
+                        double az = p2.z - p1.z;
+                        double bx = p3.x - p1.x;
+                        double by = p3.y - p1.y;
+                        double bz = p3.z - p1.z;
+                        double nx = ay * bz - az * by;
+                        double ny = az * bx - ax * bz;
+                        double nz = ax * by - ay * bx;
+                        double norm = Math.sqrt( nx * nx + ny * ny + nz * nz );
+                        if ( norm == 0 )
+                            continue;
+                        //the fractional part of the object count is carried over to the next face
+                        carry += 0.5 * norm * density;
+                        int n = (int) carry;
+                        carry -= n;
+                        if ( n == 0 )
+                            continue;
+                        m = null;
+                        if ( followMeshOrientation )
+                        {
+                            faceNorm = new Vec3( nx / norm, ny / norm, nz / norm );
+                            m = Mat4.axisRotation( yVec.cross( faceNorm ), Math.acos( yVec.dot( faceNorm ) ) );
+                        }
+                        for ( int j = 0; j < n; ++j )
+                        {
+                            //one sample per band of equal area, parallel to the p2 p3 edge
+                            double a = Math.sqrt( ( j + gen.uniformDeviate() ) / n );
+                            double b = a * gen.uniformDeviate();
+                            a -= b;
+                            pos = new Vec3( p1.x + a * ax + b * bx, p1.y + a * ay + b * by, p1.z + a * az + b * bz );
+                            if ( jitter > 0 )
+                            {
+                                dum = gen.uniformDeviate() * Math.PI * 2;
+                                dumr = gen.uniformDeviate() * jitter;
+                                jitterVec = new Vec3( dumr * Math.cos( dum ), 0, dumr * Math.sin( dum ) );
+                            }
+                            if ( randomRotation )
+                            {
+                                mrot = Mat4.axisRotation( yVec, gen.getDistribution( rotMean, rotDev, rotDistType ) );
+                            }
+                            branch = getDecoratorBranch( context, gen, sizeR, sizeY, level, false );
+                            placement = new FieldPlacement( branch, tr, mrot, jitterVec, m, pos, toMain );
+                            addBranch( placement, placements, newCollection );
+                        }
+                    }
+                    break;
+            }
+            if ( placements != null )
+            {
+                //build the forked branches, then place them in the order they were drawn
+                Vector branches = new Vector();
+                for ( int i = 0; i < placements.size(); ++i )
+                    branches.addElement( ( (FieldPlacement) placements.elementAt( i ) ).branch );
+                TapDecoratorBranch.buildAll( branches );
+                for ( int i = 0; i < placements.size(); ++i )
+                {
+                    placement = (FieldPlacement) placements.elementAt( i );
+                    if ( placement.branch.getResult() != null )
+                        newCollection.mergeCollection( placement.place( placement.branch.getResult() ), 0 );
+                }
             }
             return newCollection;
         }
@@ -750,34 +856,48 @@ public class FieldModule
     /**
      *  Gets the value attribute of the GoldenBallModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  var         Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The value value
      */
 
-    public double getValue( int outputPort, double[] var, long seed )
+    public double getValue( TapGenerationContext context, int outputPort, double[] var, long seed )
     {
         return 0.0;
     }
 
 
     /**
-     *  Description of the Method
+     *  The objects only depend on the module parameters and on the decorated
+     *  object
+     *
+     *@return    true
+     */
+    public boolean isReentrant()
+    {
+        return true;
+    }
+
+
+    /**
+     *  Builds the object displayed in the preview window of this module
      *
-     *@param  modifiers  Description of the Parameter
+     *@param  modifiers  The modifiers of the preview request
+     *@return            The preview object, or null if there is nothing to
+     *      show
      */
-    public void showPreviewFrame( int modifiers )
+    public ObjectInfo buildPreviewObject( int modifiers )
     {
-        super.showPreviewFrame( modifiers );
 
         TapDesignerObjectCollection collection = null;
-        procedure.initProcedure();
+        TapGenerationContext context = procedure.initProcedure();
 
         if ( ( modifiers & ActionEvent.CTRL_MASK ) != 0 )
-            collection = getObject( -2, procedure.getSeed() );
+            collection = getObject( context, -2, procedure.getSeed() );
         else
-            collection = getObject( -1, procedure.getSeed() );
+            collection = getObject( context, -1, procedure.getSeed() );
 
         if ( collection != null )
         {
@@ -785,10 +905,11 @@ public class FieldModule
             {
                 ObjectInfo newObjectInfo = new ObjectInfo( collection, new CoordinateSystem(), getName() );
                 newObjectInfo.object.setTexture( procedure.getScene().getDefaultTexture(), procedure.getScene().getDefaultTexture().getDefaultMapping(newObjectInfo.object) );
-                setupPreviewFrame( newObjectInfo );
+                return newObjectInfo;
             }
         }
 
+        return null;
     }
 
 
@@ -919,11 +1040,12 @@ public class FieldModule
         {
             super( cb, standalone, "fieldModuleTitle", module );
 
-            String[] comboStrings = new String[4];
+            String[] comboStrings = new String[5];
             comboStrings[0] = TapBTranslate.text( "UNIFORM" );
             comboStrings[1] = TapBTranslate.text( "VERTICES" );
             comboStrings[2] = TapBTranslate.text( "FACE_CENTERS" );
             comboStrings[3] = TapBTranslate.text( "QUAD_CENTERS" );
+            comboStrings[4] = TapBTranslate.text( "STRATIFIED" );
             coverChoice = new BComboBox( comboStrings );
 
             estimateSpinner = new BSpinner( estimate, 1, 1000, 1 );
@@ -50,7 +50,6 @@ public class GoldenBallModule
     private double rangeTo;
     private double sizeDist;
     private double densityParameter;
-    private double yPortValue;
     private boolean fullSphere;
     private boolean sizeChildren;
     private double rSizeFactor;
@@ -86,7 +85,7 @@ public class GoldenBallModule
     {
         super( procedure, TapDesignerTranslate.text( "goldenBall" ), position );
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "goldenBallName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/golden_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "goldenBallName" ), "/artofillusion/tapDesigner/icons/golden_tree.png" );
 
         setNumInput( 5 );
         setNumOutput( 2 );
@@ -117,6 +116,7 @@ public class GoldenBallModule
         yCurveLeafFunctionInput = false;
         yLeafDepartureAngleFunctionInput = false;
         setup();
+        tabulateFunctions();
     }
 
 
@@ -309,14 +309,15 @@ public class GoldenBallModule
     /**
      *  Gets the object attribute of the GoldenBallModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The object value
      */
-    public TapDesignerObjectCollection getObject( int outputPort, long seed )
+    public TapDesignerObjectCollection getObject( TapGenerationContext context, int outputPort, long seed )
     {
         TapDesignerObjectCollection col = null;
-        TapRandomGenerator gen = new TapRandomGenerator( seed );
+        TapRandomGenerator gen = procedure.newRandomGenerator( seed );
         BackModuleLink.BackLink bl;
         int j;
 
@@ -324,21 +325,19 @@ public class GoldenBallModule
         {
             //preview wanted !
 
-            stopHere = true;
-            col = procedure.getTempObject();
-            stopHere = false;
+            col = procedure.getTempObject( this );
 
             return col;
         }
         //preview up to
         else if ( outputPort == -2 )
         {
-            BackModuleLink backLinks = procedure.getBackLink();
+            BackModuleLink backLinks = context.getBackLinks();
             bl = backLinks.findModule( this, 0 );
             col = null;
 
             if ( bl != null )
-                col = bl.fromModule.getObject( bl.outputPort, gen.getSeed() );
+                col = bl.fromModule.evaluateObject( context, bl.outputPort, gen.getSeed() );
 
             if ( col == null )
 
@@ -353,7 +352,7 @@ public class GoldenBallModule
                 for ( j = 0; j < inputPortLink[0].length; ++j )
                 {
                     TapModule mod = (TapModule) modules.elementAt( linkToIndex[0][j] );
-                    TapDesignerObjectCollection modCol = mod.getObject( col, inputPortLink[0][j], gen.getSeed() );
+                    TapDesignerObjectCollection modCol = mod.evaluateObject( context, col, inputPortLink[0][j], gen.getSeed() );
 
                     if ( modCol != null )
                         col.mergeCollection( modCol, 1 );
@@ -370,8 +369,11 @@ public class GoldenBallModule
 
 
     /**
-     *  Gets the decoratedDecorator attribute of the GoldenBallModule object
+     *  Gets the size of a "decorated decorator" object. The object is only
+     *  built if its size cannot be estimated (see
+     *  TapDecoratorBranch.getSizeEstimate()).
      *
+     *@param  context   The generation context
      *@param  gen       Description of the Parameter
      *@param  sR        Description of the Parameter
      *@param  sY        Description of the Parameter
@@ -380,142 +382,229 @@ public class GoldenBallModule
      *@param  evaluate  Description of the Parameter
      *@param  yVal      Description of the Parameter
      *@param  rVal      Description of the Parameter
-     *@return           The decoratedDecorator value
+     *@return           The object size, or null
      */
-    private TapDesignerObjectCollection getDecoratedDecorator( TapRandomGenerator gen, double sR, double sY, TapDistortParameters parms, int level, boolean evaluate, double yVal, double rVal )
+    private Vec3 getDecoratedDecoratorSize( TapGenerationContext context, TapRandomGenerator gen, double sR, double sY, TapDistortParameters parms, int level, boolean evaluate, double yVal, double rVal )
+    {
+        TapDecoratorBranch branch = getDecoratorBranch( context, gen, sR, sY, parms, level, evaluate, yVal, rVal );
+
+        if ( branch == null )
+            return null;
+
+        Vec3 size = branch.getSizeEstimate();
+
+        if ( size != null )
+            return size;
+
+        TapDesignerObjectCollection tmpCollection = branch.getResult();
+
+        if ( tmpCollection == null )
+            return null;
+
+        //trick the Object Collection for calculating size
+        tmpCollection.sceneChanged( new ObjectInfo( tmpCollection, new CoordinateSystem(), "dummy" ), procedure.getScene() );
+
+        return tmpCollection.getBounds().getSize();
+    }
+
+
+    /**
+     *  Draws the random numbers needed by a "decorated decorator" object. The
+     *  object itself is built when the branch result is asked for.
+     *
+     *@param  context   The generation context
+     *@param  gen       Description of the Parameter
+     *@param  sR        Description of the Parameter
+     *@param  sY        Description of the Parameter
+     *@param  parms     Description of the Parameter
+     *@param  level     Description of the Parameter
+     *@param  evaluate  Description of the Parameter
+     *@param  yVal      Description of the Parameter
+     *@param  rVal      Description of the Parameter
+     *@return           The decorator branch
+     */
+    private TapDecoratorBranch getDecoratorBranch( TapGenerationContext context, TapRandomGenerator gen, double sR, double sY, TapDistortParameters parms, int level, boolean evaluate, double yVal, double rVal )
     {
-        TapDesignerObjectCollection tmpCollection = null;
-        TapDesignerObjectCollection col = null;
-        boolean duplicate;
-        ObjectInfo anInfo;
         double sizeR;
         double sizeY;
         double dum;
-        TapDistortParameters tmpParms;
-        Vec3 size;
-        String objName;
         double[] yValArray = new double[1];
         yValArray[0] = yVal;
 
-        BackModuleLink backLinks = procedure.getBackLink();
+        BackModuleLink backLinks = context.getBackLinks();
         BackModuleLink.BackLink bl = backLinks.findModule( this, 0 );
 
-        if ( bl != null )
+        if ( bl == null )
+            return null;
+
+        TapDecoratorBranch branch = new TapDecoratorBranch( context, this, bl, gen.getSeed(), level );
+        branch.setTextureValues( yVal, rVal );
+        sizeR = 1.0;
+        sizeY = 1.0;
+
+        if ( !branch.isDuplicate() )
         {
-            col = bl.fromModule.getObject( bl.outputPort, gen.getSeed() );
-            anInfo = col.elementAt( 0 ).objectInfo;
-            if ( anInfo.object != null )
-            {
-                Object3D obj = (Object3D) anInfo.object;
-                TextureMapping map = obj.getTextureMapping();
-                TextureParameter[] tparms = map.getParameters();
-                for ( int j = 0; j < tparms.length; ++j )
-                {
-                    if ( tparms[j].name.equals( "YTAPD" ) )
-                    {
-                        ParameterValue val = obj.getParameterValue( tparms[j] );
-                        if ( val instanceof ConstantParameterValue )
-                            ( (ConstantParameterValue) val ).setValue( yVal );
-                    }
-                    else if ( tparms[j].name.equals( "RTAPD" ) )
-                    {
-                        ParameterValue val = obj.getParameterValue( tparms[j] );
-                        if ( val instanceof ConstantParameterValue )
-                            ( (ConstantParameterValue) val ).setValue( rVal );
-                    }
-                }
-            }
+            bl = backLinks.findModule( this, 3 );
 
-            if ( bl.fromModule instanceof ObjectModule )
-                duplicate = ( (ObjectModule) bl.fromModule ).isDuplicate();
-            else
-                duplicate = false;
+            if ( bl != null )
+                sizeR = bl.fromModule.evaluateValue( context, bl.outputPort, yValArray, gen.getSeed() );
 
-            objName = bl.fromModule.getName();
-            sizeR = 1.0;
-            sizeY = 1.0;
+            bl = backLinks.findModule( this, 4 );
 
-            if ( !duplicate )
+            if ( bl != null )
+                sizeY = bl.fromModule.evaluateValue( context, bl.outputPort, yValArray, gen.getSeed() );
+
+            if ( sizeChildren )
             {
-                bl = backLinks.findModule( this, 3 );
+                sizeR *= sR * rSizeFactor + 1 - rSizeFactor;
+                sizeY *= sY * ySizeFactor + 1 - ySizeFactor;
+            }
 
-                if ( bl != null )
-                    sizeR = bl.fromModule.getValue( bl.outputPort, yValArray, gen.getSeed() );
+            if ( sizeDist > 0 )
+            {
+                dum = gen.getDistribution( 0, sizeDist, sizeDistType );
 
-                bl = backLinks.findModule( this, 4 );
+                if ( dum < 0.0001 )
+                    dum = 0.0001;
 
-                if ( bl != null )
-                    sizeY = bl.fromModule.getValue( bl.outputPort, yValArray, gen.getSeed() );
+                sizeR *= ( 1 - dum );
+                sizeY *= ( 1 - dum );
+            }
 
-                if ( sizeChildren )
-                {
-                    sizeR *= sR * rSizeFactor + 1 - rSizeFactor;
-                    sizeY *= sY * ySizeFactor + 1 - ySizeFactor;
-                }
+            if ( ( sizeR > 0 ) && ( sizeY > 0 ) )
+                branch.setSize( sizeR, sizeY, parms );
+            else
+                branch.setSizeFactors( sizeR, sizeY );
+        }
 
-                if ( sizeDist > 0 )
-                {
-                    dum = gen.getDistribution( 0, sizeDist, sizeDistType );
+        if ( evaluate || ( !context.stopsAt( this ) ) )
+            branch.drawDecorationSeeds( gen, true );
 
-                    if ( dum < 0.0001 )
-                        dum = 0.0001;
+        return branch;
+    }
 
-                    sizeR *= ( 1 - dum );
-                    sizeY *= ( 1 - dum );
-                }
 
-                if ( ( sizeR > 0 ) && ( sizeY > 0 ) )
-                {
-                    size = anInfo.object.getBounds().getSize();
+    /**
+     *  Placement of a decorating object on the ball
+     *
+     *@author     TaPD contributors
+     *@created    17 octobre 2026
+     */
+    private class GoldenBallPlacement
+    {
+        TapDecoratorBranch branch;
+        Mat4 m;
+        Mat4 msm;
+        Vec3 tr;
 
-                    if ( anInfo.object instanceof SplineMesh )
-                    {
-                        anInfo.object.setSize( size.x * sizeR, size.y * sizeY, size.z * sizeR );
-                        TapUtils.setObjectAtMinY( anInfo );
 
-                        if ( parms != null )
-                            TapUtils.distortSplineMesh( (SplineMesh) anInfo.object, parms );
-                    }
-                    else if ( !( anInfo.object instanceof TapObject ) )
-                    {
-                        anInfo.object.setSize( size.x * sizeR, size.y * sizeY, size.z * sizeR );
-                        TapUtils.setObjectAtMinY( anInfo );
-                    }
-                    else
-                        ( (TapObject) anInfo.object ).resizeAndDistort( size, sizeR, sizeY, parms );
-                }
-            }
+        /**
+         *  Constructor for the GoldenBallPlacement object
+         *
+         *@param  branch  The branch to place
+         *@param  m       The rotation to apply to the branch
+         *@param  msm     The position on the decorated object, or null
+         *@param  tr      The translation used if msm is null
+         */
+        GoldenBallPlacement( TapDecoratorBranch branch, Mat4 m, Mat4 msm, Vec3 tr )
+        {
+            this.branch = branch;
+            this.m = m;
+            this.msm = msm;
+            this.tr = tr;
+        }
 
-            anInfo = col.elementAt( 0 ).objectInfo;
-            tmpCollection = new TapDesignerObjectCollection( procedure );
-            tmpCollection.addObject( anInfo, level + 1, sizeR, sizeY, objName );
 
-            if ( ( inputPortLink[0] != null ) && ( evaluate || ( !stopHere ) ) )
+        /**
+         *  Moves the objects of the branch to their place
+         *
+         *@param  tmpCollection  The branch objects
+         *@return                The placed objects
+         */
+        TapDesignerObjectCollection place( TapDesignerObjectCollection tmpCollection )
+        {
+            int count = tmpCollection.size();
+
+            for ( int j = 0; j < count; ++j )
             {
-                for ( int j = 0; j < inputPortLink[0].length; ++j )
-                {
-                    TapModule mod = (TapModule) modules.elementAt( linkToIndex[0][j] );
-                    TapDesignerObjectCollection modCol = mod.getObject( tmpCollection, inputPortLink[0][j], gen.getSeed() );
+                CoordinateSystem coords = tmpCollection.elementAt( j ).objectInfo.coords;
+                coords.transformCoordinates( m );
 
-                    if ( modCol != null )
-                        tmpCollection.mergeCollection( modCol, 0 );
-                }
+                if ( msm != null )
+                    coords.transformCoordinates( msm );
+                else
+                    coords.setOrigin( coords.getOrigin().plus( tr ) );
             }
+
+            return tmpCollection;
         }
+    }
+
+
+    /**
+     *  Sets the procedure attribute of the GoldenBallModule object
+     *
+     *@param  proc  The new procedure value
+     */
+    public void setProcedure( TapProcedure proc )
+    {
+        super.setProcedure( proc );
+        tabulateFunctions();
+    }
+
+
+    /**
+     *  Tabulates the functions again for the new generator
+     */
+    public void generatorVersionChanged()
+    {
+        tabulateFunctions();
+    }
+
+
+    /**
+     *  Description of the Method
+     */
+    public void doApply()
+    {
+        //edited functions may have been replaced
+
+        tabulateFunctions();
+        super.doApply();
+    }
+
 
-        return tmpCollection;
+    /**
+     *  Functions evaluated for each placed object use a lookup table. Its
+     *  interpolation error would change the plants of older generators, so
+     *  they keep evaluating the curves.
+     */
+    private void tabulateFunctions()
+    {
+        if ( procedure == null )
+            return;
+
+        boolean tabulated = ( procedure.getGeneratorVersion() >= TapRandomGenerator.SPLITTABLE );
+
+        curveAngleFunction.setTabulated( tabulated );
+        backAngleFunction.setTabulated( tabulated );
+        perpAngleFunction.setTabulated( tabulated );
+        curveRateFunction.setTabulated( tabulated );
+        yCurveLeafFunction.setTabulated( tabulated );
+        yLeafDepartureAngleFunction.setTabulated( tabulated );
     }
 
 
     /**
      *  Gets the object attribute of the GoldenBallModule object
      *
+     *@param  context     The generation context
      *@param  collection  Description of the Parameter
      *@param  inputPort   Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The object value
      */
-    public TapDesignerObjectCollection getObject( TapDesignerObjectCollection collection, int inputPort, long seed )
+    public TapDesignerObjectCollection getObject( TapGenerationContext context, TapDesignerObjectCollection collection, int inputPort, long seed )
     {
         double Ysize;
         Mat4 m;
@@ -523,7 +612,6 @@ public class GoldenBallModule
         Vec3 size;
         ObjectInfo anInfo;
         ObjectInfo mainObject;
-        ObjectInfo dummyInfo;
         int i;
         int j;
         int k;
@@ -542,14 +630,16 @@ public class GoldenBallModule
         double sizeY;
         double objectArea;
         double yRefValue;
+        double yPortValue = 0;
 
-        CoordinateSystem dummyCS = new CoordinateSystem();
         CoordinateSystem coords = null;
         TapDesignerObjectCollection col = null;
-        TapDesignerObjectCollection tmpCollection = null;
         level = collection.elementAt( 0 ).getDecorationLevel();
 
-        TapRandomGenerator gen = new TapRandomGenerator( seed );
+        if ( isBeyondGenerationLevel( context, level ) )
+            return null;
+
+        TapRandomGenerator gen = procedure.newRandomGenerator( seed );
         BackModuleLink.BackLink bl;
         double dum;
         double thetaFactor;
@@ -562,11 +652,14 @@ public class GoldenBallModule
         boolean go_on;
         TapFunction inverseDFunction = densityFunction.getOneOverFunction();
         double[] yVal = new double[1];
+        TapDecoratorBranch branch;
+        GoldenBallPlacement placement;
+        Vector placements = null;
 
         if ( inputPort == 1 )
         {
             TapDesignerObjectCollection newCollection = new TapDesignerObjectCollection( procedure );
-            BackModuleLink backLinks = procedure.getBackLink();
+            BackModuleLink backLinks = context.getBackLinks();
             mainObject = collection.elementAt( 0 ).objectInfo;
             size = mainObject.object.getBounds().getSize();
             sizeR = collection.elementAt( 0 ).sizeR;
@@ -583,14 +676,10 @@ public class GoldenBallModule
 
             for ( i = 0; i < estimate; ++i )
             {
-                tmpCollection = getDecoratedDecorator( gen, sizeR, sizeY, null, level, true, 0, 0 );
+                size = getDecoratedDecoratorSize( context, gen, sizeR, sizeY, null, level, true, 0, 0 );
 
-                if ( tmpCollection != null )
+                if ( size != null )
                 {
-                    dummyInfo = new ObjectInfo( tmpCollection, dummyCS, "dummy" );
-                    tmpCollection.sceneChanged( dummyInfo, procedure.getScene() );
-                    //trick the Object Collection for calculating size
-                    size = tmpCollection.getBounds().getSize();
                     dum = size.x;
                     if ( dum < 0.005 )
                         dum = 0.005;
@@ -634,6 +723,10 @@ public class GoldenBallModule
             cs1 = Math.cos( from );
             csdiff = cs1 - Math.cos( to );
 
+            if ( TapDecoratorBranch.canFork( context, this ) )
+                placements = new Vector();
+
+
             //do the decoration
             bl = backLinks.findModule( this, 2 );
             densityInput = 0;
@@ -641,7 +734,7 @@ public class GoldenBallModule
 
             if ( bl != null )
             {
-                yRefValue = bl.fromModule.getValue( bl.outputPort, yVal, gen.getSeed() );
+                yRefValue = bl.fromModule.evaluateValue( context, bl.outputPort, yVal, gen.getSeed() );
                 normalize = inverseDFunction.calcValue( yRefValue );
                 densityInput = densityFunction.calcValue( yRefValue );
             }
@@ -662,16 +755,18 @@ public class GoldenBallModule
 
             while ( go_on )
             {
+                context.checkGeneration();
                 //dum = gen.uniformDeviate();
                 m = Mat4.identity();
                 m = m.times( Mat4.yrotation( phi ) );
                 m = m.times( Mat4.zrotation( Math.PI / 2 - theta ) );
                 yPortValue = ( thetaOrigin - theta / thetaFactor - rangeFrom ) / ( rangeTo - rangeFrom );
                 yVal[0] = yPortValue;
+                context.setPortValue( this, yPortValue );
                 bl = backLinks.findModule( this, 2 );
 
                 if ( bl != null )
-                    yRefValue = bl.fromModule.getValue( bl.outputPort, yVal, gen.getSeed() );
+                    yRefValue = bl.fromModule.evaluateValue( context, bl.outputPort, yVal, gen.getSeed() );
                 else
                     yRefValue = yPortValue;
 
@@ -727,8 +822,14 @@ public class GoldenBallModule
                     tmpParms.leafDepartureAngle = smParms.leafDepartureAngle * yLeafDepartureAngleFunction.calcValue( yPortValue );
 
                 tmpParms.seed = gen.getSeed();
-                tmpCollection = getDecoratedDecorator( gen, sizeR, sizeY, tmpParms, level, false, yRefValue, phi / ( 2 * Math.PI ) );
-                count = tmpCollection.size();
+
+                //a forked branch keeps its own copy of the parameters, which change at each step
+
+                if ( placements != null )
+                    branch = getDecoratorBranch( context, gen, sizeR, sizeY, tmpParms.duplicate(), level, false, yRefValue, phi / ( 2 * Math.PI ) );
+                else
+                    branch = getDecoratorBranch( context, gen, sizeR, sizeY, tmpParms, level, false, yRefValue, phi / ( 2 * Math.PI ) );
+
                 tr = new Vec3( 0, Ysize * ( 1 - inward ), 0 );
                 msm = null;
 
@@ -740,19 +841,12 @@ public class GoldenBallModule
                     msm = tapObj.getPosition( 1 - inward, 0, false );
                 }
 
-                for ( j = 0; j < count; ++j )
-                {
-                    anInfo = tmpCollection.elementAt( j ).objectInfo;
-                    coords = anInfo.coords;
-                    coords.transformCoordinates( m );
+                placement = new GoldenBallPlacement( branch, m, msm, tr );
 
-                    if ( msm != null )
-                        coords.transformCoordinates( msm );
-                    else
-                        coords.setOrigin( coords.getOrigin().plus( tr ) );
-                }
-
-                newCollection.mergeCollection( tmpCollection, 0 );
+                if ( placements != null )
+                    placements.addElement( placement );
+                else if ( branch.getResult() != null )
+                    newCollection.mergeCollection( placement.place( branch.getResult() ), 0 );
 
                 //System.out.println("phi : "+phi*180/Math.PI+" theta : "+theta*180/Math.PI);
                 phi += gr;
@@ -793,6 +887,26 @@ public class GoldenBallModule
                 }
             }
 
+            if ( placements != null )
+            {
+                //build the forked branches, then place them in the order they were drawn
+
+                Vector branches = new Vector();
+
+                for ( j = 0; j < placements.size(); ++j )
+                    branches.addElement( ( (GoldenBallPlacement) placements.elementAt( j ) ).branch );
+
+                TapDecoratorBranch.buildAll( branches );
+
+                for ( j = 0; j < placements.size(); ++j )
+                {
+                    placement = (GoldenBallPlacement) placements.elementAt( j );
+
+                    if ( placement.branch.getResult() != null )
+                        newCollection.mergeCollection( placement.place( placement.branch.getResult() ), 0 );
+                }
+            }
+
             return newCollection;
         }
         else
@@ -804,16 +918,17 @@ public class GoldenBallModule
     /**
      *  Gets the value attribute of the GoldenBallModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  var         Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The value value
      */
-    public double getValue( int outputPort, double[] var, long seed )
+    public double getValue( TapGenerationContext context, int outputPort, double[] var, long seed )
     {
         if ( outputPort == 1 )
 
-            return yPortValue;
+            return context.getPortValue( this );
         else
 
             return 0.0;
@@ -821,21 +936,34 @@ public class GoldenBallModule
 
 
     /**
-     *  Description of the Method
+     *  The objects only depend on the module parameters, the values placed
+     *  being kept by the generation context
+     *
+     *@return    true
+     */
+    public boolean isReentrant()
+    {
+        return true;
+    }
+
+
+    /**
+     *  Builds the object displayed in the preview window of this module
      *
-     *@param  modifiers  Description of the Parameter
+     *@param  modifiers  The modifiers of the preview request
+     *@return            The preview object, or null if there is nothing to
+     *      show
      */
-    public void showPreviewFrame( int modifiers )
+    public ObjectInfo buildPreviewObject( int modifiers )
     {
-        super.showPreviewFrame( modifiers );
 
         TapDesignerObjectCollection collection = null;
-        procedure.initProcedure();
+        TapGenerationContext context = procedure.initProcedure();
 
         if ( ( modifiers & ActionEvent.CTRL_MASK ) != 0 )
-            collection = getObject( -2, procedure.getSeed() );
+            collection = getObject( context, -2, procedure.getSeed() );
         else
-            collection = getObject( -1, procedure.getSeed() );
+            collection = getObject( context, -1, procedure.getSeed() );
 
         if ( collection != null )
         {
@@ -843,10 +971,11 @@ public class GoldenBallModule
             {
                 ObjectInfo newObjectInfo = new ObjectInfo( collection, new CoordinateSystem(), getName() );
                 newObjectInfo.object.setTexture( procedure.getScene().getDefaultTexture(), procedure.getScene().getDefaultTexture().getDefaultMapping(newObjectInfo.object) );
-                setupPreviewFrame( newObjectInfo );
+                return newObjectInfo;
             }
         }
 
+        return null;
     }
 
 
@@ -1853,7 +1982,7 @@ public class GoldenBallModule
             }
             catch ( NumberFormatException e )
             {
-                System.out.println( "Exception" );
+                TapLog.debug( name, "invalid number : " + e.getMessage() );
                 getBackValues();
             }
         }
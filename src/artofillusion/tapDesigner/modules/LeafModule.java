@@ -66,7 +66,7 @@ public class LeafModule
             }
         }
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "leafName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/leaf_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "leafName" ), "/artofillusion/tapDesigner/icons/leaf_tree.png" );
     }
 
 
@@ -82,7 +82,7 @@ public class LeafModule
         super( procedure, TapDesignerTranslate.text( "leaf" ), position );
         setCurrentObject( leaf );
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "leafName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/aoi_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "leafName" ), "/artofillusion/tapDesigner/icons/aoi_tree.png" );
     }
 
 
@@ -647,7 +647,6 @@ public class LeafModule
             setCurrentObject( backupObject );
             deliverDuplicates = backDeliver;
             currentObject.visible = !backHidden;
-            currentSizedObject = null;
         }
 
 
@@ -659,7 +658,6 @@ public class LeafModule
             deliverDuplicates = deliverCB.getState();
             dialogCurrentObject.visible = !hiddenCB.getState();
             setCurrentObject( dialogCurrentObject );
-            currentSizedObject = null;
         }
 
 
@@ -688,15 +686,6 @@ public class LeafModule
         }
 
 
-        /**
-         *  Description of the Method
-         */
-        protected void doModified()
-        {
-            super.doModified();
-            currentSizedObject = null;
-        }
-
 
         /**
          *  Description of the Method
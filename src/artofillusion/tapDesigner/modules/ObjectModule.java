@@ -44,18 +44,6 @@ public abstract class ObjectModule
      *  Description of the Field
      */
     protected ObjectInfo currentObject;
-    /**
-     *  Description of the Field
-     */
-    protected ObjectInfo currentSizedObject;
-    /**
-     *  Description of the Field
-     */
-    protected double currentSizeR;
-    /**
-     *  Description of the Field
-     */
-    protected double currentSizeY;
     /**
      *  Description of the Field
      */
@@ -113,9 +101,6 @@ public abstract class ObjectModule
         inputTooltips[0] = TapDesignerTranslate.text( "sizeRInput", "1" );
         inputTooltips[1] = TapDesignerTranslate.text( "sizeYInput", "1" );
         setBackgroundColor( Color.blue.darker() );
-        currentSizeY = 1.0;
-        currentSizeR = 1.0;
-        currentSizedObject = null;
         module = this;
     }
 
@@ -140,7 +125,6 @@ public abstract class ObjectModule
 
         deliverDuplicates = in.readBoolean();
         currentObject = theScene.getObject( in.readInt() );
-        currentSizedObject = null;
     }
 
 
@@ -196,7 +180,6 @@ public abstract class ObjectModule
         module.currentObject = this.currentObject.duplicate();
         module.currentObject.object = this.currentObject.object.duplicate();
         module.setCurrentObject( module.currentObject );
-        module.currentSizedObject = null;
 
         return (TapModule) module;
     }
@@ -250,7 +233,6 @@ public abstract class ObjectModule
             return;
 
         currentObject = toScene.getObject( index );
-        currentSizedObject = null;
     }
 
 
@@ -327,13 +309,91 @@ public abstract class ObjectModule
     }
 
 
+    /**
+     *  Object modules only deliver copies of their object. The sized object
+     *  cache of a generation is guarded by getSizedObject().
+     *
+     *@return    true
+     */
+    public boolean isReentrant()
+    {
+        return true;
+    }
+
+
     /**
      *  Gets the sizedObject attribute of the ObjectModule object
      *
-     *@param  gen  Description of the Parameter
-     *@return      The sizedObject value
+     *@param  context  The generation context
+     *@param  gen      Description of the Parameter
+     *@return          The sizedObject value
+     */
+    public ObjectInfo getSizedObject( TapGenerationContext context, TapRandomGenerator gen )
+    {
+        return getSizedObject( context, gen, false );
+    }
+
+
+    /**
+     *  Gets the sized object, sharing its geometry with the module cache. The
+     *  same random numbers are drawn as for getObject( 0, seed ). The geometry
+     *  must not be modified : it has to be duplicated first.
+     *
+     *@param  context  The generation context
+     *@param  seed     The seed
+     *@return          The sized object
+     */
+    public ObjectInfo getSharedObject( TapGenerationContext context, long seed )
+    {
+        return getSizedObject( context, procedure.newRandomGenerator( seed ), true );
+    }
+
+
+    /**
+     *  Estimates the size of the object once resized by a distributor, from
+     *  the bounds of the cached sized object. The same random numbers are
+     *  drawn as for getObject( 0, seed ).
+     *
+     *@param  context  The generation context
+     *@param  seed     The seed
+     *@param  sizeR    The radial size factor of the distributor
+     *@param  sizeY    The Y size factor of the distributor
+     *@return          The estimated size, or null if there is no object
+     */
+    public Vec3 getSizeEstimate( TapGenerationContext context, long seed, double sizeR, double sizeY )
+    {
+        if ( currentObject == null )
+            return null;
+
+        ObjectInfo info = getSharedObject( context, seed );
+        BoundingBox b = info.object.getBounds();
+        b = new BoundingBox( b.minx * sizeR, b.maxx * sizeR, b.miny * sizeY, b.maxy * sizeY, b.minz * sizeR, b.maxz * sizeR );
+
+        return b.transformAndOutset( info.coords.fromLocal() ).getSize();
+    }
+
+
+    /**
+     *  Returns true if the module object is a TaPD object
+     *
+     *@return    True if the object is a TapObject
      */
-    public ObjectInfo getSizedObject( TapRandomGenerator gen )
+    public boolean deliversTapObject()
+    {
+        return currentObject != null && currentObject.object instanceof TapObject;
+    }
+
+
+    /**
+     *  Gets the sizedObject attribute of the ObjectModule object
+     *
+     *@param  context  The generation context, which holds the sized object
+     *      cache
+     *@param  gen      Description of the Parameter
+     *@param  shared   True if the object geometry is shared with the cache
+     *@return          The sizedObject value
+     */
+    private ObjectInfo getSizedObject( TapGenerationContext context, TapRandomGenerator gen, boolean shared )
     {
         ObjectInfo info;
         BoundingBox bounds;
@@ -343,12 +403,12 @@ public abstract class ObjectModule
 
         double sizeR = 1.0;
         double sizeY = 1.0;
-        BackModuleLink backLinks = procedure.getBackLink();
+        BackModuleLink backLinks = context.getBackLinks();
         BackModuleLink.BackLink bl = backLinks.findModule( this, 0 );
 
         if ( bl != null )
         {
-            dum = bl.fromModule.getValue( bl.outputPort, null, gen.getSeed() );
+            dum = bl.fromModule.evaluateValue( context, bl.outputPort, null, gen.getSeed() );
 
             if ( dum > 0 )
                 sizeR = dum;
@@ -358,45 +418,78 @@ public abstract class ObjectModule
 
         if ( bl != null )
         {
-            dum = bl.fromModule.getValue( bl.outputPort, null, gen.getSeed() );
+            dum = bl.fromModule.evaluateValue( context, bl.outputPort, null, gen.getSeed() );
 
             if ( dum > 0 )
                 sizeY = dum;
         }
 
-        if ( ( ( sizeR != currentSizeR ) || ( sizeY != currentSizeY ) ) || ( currentSizedObject == null ) )
-        {
-            info = currentObject.duplicate();
-            info.object = info.object.duplicate();
-            currentSizeR = sizeR;
-            currentSizeY = sizeY;
-            size = info.object.getBounds().getSize();
-            resizeObject( size, sizeR, sizeY, info );
-            currentSizedObject = info.duplicate();
-            currentSizedObject.object = info.object.duplicate();
-        }
-        else if ( !deliverDuplicates )
+        SizedObject cache = getSizedObjectCache( context );
+
+        synchronized ( cache )
         {
-            info = currentSizedObject.duplicate();
-            info.object = info.object.duplicate();
+            if ( ( ( sizeR != cache.sizeR ) || ( sizeY != cache.sizeY ) ) || ( cache.info == null ) )
+            {
+                info = currentObject.duplicate();
+                info.object = info.object.duplicate();
+                cache.sizeR = sizeR;
+                cache.sizeY = sizeY;
+                size = info.object.getBounds().getSize();
+                resizeObject( size, sizeR, sizeY, info );
+
+                if ( shared )
+                {
+                    cache.info = info;
+                    info = info.duplicate();
+                }
+                else
+                {
+                    cache.info = info.duplicate();
+                    cache.info.object = info.object.duplicate();
+                }
+            }
+            else if ( shared || deliverDuplicates )
+                info = cache.info.duplicate();
+            else
+            {
+                info = cache.info.duplicate();
+                info.object = info.object.duplicate();
+            }
         }
-        else
-            info = currentSizedObject.duplicate();
 
         return info;
     }
 
 
+    /**
+     *  Gets the sized object cache of the module for a generation, creating
+     *  it on first use
+     *
+     *@param  context  The generation context
+     *@return          The cache
+     */
+    private SizedObject getSizedObjectCache( TapGenerationContext context )
+    {
+        SizedObject cache = (SizedObject) context.getModuleState( this );
+
+        if ( cache == null )
+            cache = (SizedObject) context.addModuleState( this, new SizedObject() );
+
+        return cache;
+    }
+
+
     /**
      *  Gets the object attribute of the ObjectModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The object value
      */
-    public TapDesignerObjectCollection getObject( int outputPort, long seed )
+    public TapDesignerObjectCollection getObject( TapGenerationContext context, int outputPort, long seed )
     {
-        TapRandomGenerator gen = new TapRandomGenerator( seed );
+        TapRandomGenerator gen = procedure.newRandomGenerator( seed );
 
         if ( outputPort == -1 )
         {
@@ -404,20 +497,20 @@ public abstract class ObjectModule
 
             if ( currentObject == null )
             {
-                System.out.println( "Object bidon !! " );
+                warning( "no object to deliver" );
 
                 return null;
             }
 
             TapDesignerObjectCollection newCollection = new TapDesignerObjectCollection( procedure );
-            newCollection.addObject( getSizedObject( gen ), 0, name );
+            newCollection.addObject( getSizedObject( context, gen ), 0, name );
 
             if ( inputPortLink[0] != null )
             {
                 for ( int i = 0; i < inputPortLink[0].length; ++i )
                 {
                     TapModule mod = (TapModule) modules.elementAt( linkToIndex[0][i] );
-                    TapDesignerObjectCollection collection = mod.getObject( newCollection, inputPortLink[0][i], gen.getSeed() );
+                    TapDesignerObjectCollection collection = mod.evaluateObject( context, newCollection, inputPortLink[0][i], gen.getSeed() );
 
                     if ( collection != null )
                         newCollection.mergeCollection( collection, 0 );
@@ -431,13 +524,13 @@ public abstract class ObjectModule
             //only the object stored in the module is asked for
 
             TapDesignerObjectCollection newCollection = new TapDesignerObjectCollection( procedure );
-            newCollection.addObject( getSizedObject( gen ), 0, name );
+            newCollection.addObject( getSizedObject( context, gen ), 0, name );
 
             return newCollection;
         }
         else
         {
-            System.out.println( "wrong output port for object module : " + outputPort );
+            warning( "wrong output port for object module : " + outputPort );
 
             return null;
         }
@@ -447,14 +540,15 @@ public abstract class ObjectModule
     /**
      *  Gets the value attribute of the ObjectModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  var         Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The value value
      */
-    public double getValue( int outputPort, double[] var, long seed )
+    public double getValue( TapGenerationContext context, int outputPort, double[] var, long seed )
     {
-        System.out.println( "value asked for AoI object module" );
+        warning( "value asked for AoI object module" );
 
         return (double) 0.0;
         //should never happen !!!
@@ -462,43 +556,46 @@ public abstract class ObjectModule
 
 
     /**
-     *  Description of the Method
+     *  Builds the object displayed in the preview window of this module
      *
-     *@param  modifiers  Description of the Parameter
+     *@param  modifiers  The modifiers of the preview request
+     *@return            The preview object, or null if there is nothing to
+     *      show
      */
-    public void showPreviewFrame( int modifiers )
+    public ObjectInfo buildPreviewObject( int modifiers )
     {
-        super.showPreviewFrame( modifiers );
         TapDesignerObjectCollection collection;
-        procedure.initProcedure();
+        TapGenerationContext context = procedure.initProcedure();
 
         if ( isMainEntry() && ( modifiers & ActionEvent.CTRL_MASK ) == 0 )
         {
-            collection = getObject( -1, procedure.getSeed() );
+            collection = getObject( context, -1, procedure.getSeed() );
 
             if ( isMainEntry() )
                 procedure.setCurrentObject( collection );
         }
         else
-            collection = getObject( 0, procedure.getSeed() );
+            collection = getObject( context, 0, procedure.getSeed() );
 
         if ( collection != null )
         {
             ObjectInfo newObjectInfo = new ObjectInfo( collection, new CoordinateSystem(), getName() );
             newObjectInfo.object.setTexture( procedure.getScene().getDefaultTexture(), procedure.getScene().getDefaultTexture().getDefaultMapping(newObjectInfo.object) );
-            setupPreviewFrame( newObjectInfo );
+            return newObjectInfo;
         }
+
+        return null;
     }
 
 
     /**
      *  Description of the Method
+     *
+     *@return    Description of the Return Value
      */
-    public void initGenerationProcess()
+    public boolean acceptsMainEntry()
     {
-        //called once before generation
-
-        currentSizedObject = null;
+        return true;
     }
 
 
@@ -507,20 +604,24 @@ public abstract class ObjectModule
      *
      *@return    Description of the Return Value
      */
-    public boolean acceptsMainEntry()
+    public boolean acceptsPreview()
     {
         return true;
     }
 
 
     /**
-     *  Description of the Method
+     *  The object of the module resized by the last size values asked for
+     *  during a generation
      *
-     *@return    Description of the Return Value
+     *@author     TaPD contributors
+     *@created    17 octobre 2026
      */
-    public boolean acceptsPreview()
+    private static class SizedObject
     {
-        return true;
+        ObjectInfo info;
+        double sizeR = 1.0;
+        double sizeY = 1.0;
     }
 }
 
@@ -71,7 +71,7 @@ public class RandomObjectModule
     {
         super( procedure, TapDesignerTranslate.text( "random" ), position );
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "randomObjectName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/randobj_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "randomObjectName" ), "/artofillusion/tapDesigner/icons/randobj_tree.png" );
 
         setNumInput( 1 );
         setNumOutput( 1 );
@@ -350,14 +350,15 @@ public class RandomObjectModule
     /**
      *  Gets the object attribute of the RandomObjectModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The object value
      */
-    public TapDesignerObjectCollection getObject( int outputPort, long seed )
+    public TapDesignerObjectCollection getObject( TapGenerationContext context, int outputPort, long seed )
     {
         TapDesignerObjectCollection col = null;
-        TapRandomGenerator gen = new TapRandomGenerator( seed );
+        TapRandomGenerator gen = procedure.newRandomGenerator( seed );
         int index;
         double rand;
 
@@ -382,7 +383,7 @@ public class RandomObjectModule
                     }
                 }
 
-                col = ( (TapModule) ( modules.elementAt( inputProbsTable[index] ) ) ).getObject( outputPortTable[index], gen.getSeed() );
+                col = ( (TapModule) ( modules.elementAt( inputProbsTable[index] ) ) ).evaluateObject( context, outputPortTable[index], gen.getSeed() );
             }
 
             if ( col == null )
@@ -403,16 +404,17 @@ public class RandomObjectModule
     /**
      *  Gets the object attribute of the RandomObjectModule object
      *
+     *@param  context     The generation context
      *@param  collection  Description of the Parameter
      *@param  inputPort   Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The object value
      */
-    public TapDesignerObjectCollection getObject( TapDesignerObjectCollection collection, int inputPort, long seed )
+    public TapDesignerObjectCollection getObject( TapGenerationContext context, TapDesignerObjectCollection collection, int inputPort, long seed )
     {
         ObjectInfo anInfo;
         ObjectInfo mainObject;
-        TapRandomGenerator gen = new TapRandomGenerator( seed );
+        TapRandomGenerator gen = procedure.newRandomGenerator( seed );
         double rand;
         int index;
 
@@ -438,7 +440,7 @@ public class RandomObjectModule
                 }
 
                 TapModule mod = (TapModule) modules.elementAt( linkToIndex[0][index] );
-                TapDesignerObjectCollection modCol = mod.getObject( collection, inputPortLink[0][index], gen.getSeed() );
+                TapDesignerObjectCollection modCol = mod.evaluateObject( context, collection, inputPortLink[0][index], gen.getSeed() );
 
                 if ( modCol != null )
                     return modCol;
@@ -488,7 +490,13 @@ public class RandomObjectModule
      */
     private void checkConsistency()
     {
-        BackModuleLink bl = new BackModuleLink( modules, 0 );
+        BackModuleLink bl;
+
+        if ( procedure != null && procedure.getModules() == modules )
+            bl = new BackModuleLink( procedure.getEvaluationPlan(), 0 );
+        else
+            bl = new BackModuleLink( modules, 0 );
+
         Vector back = bl.findAllModules( module, 0 );
         int i;
         double dum;
@@ -634,12 +642,13 @@ public class RandomObjectModule
     /**
      *  Gets the value attribute of the RandomObjectModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  var         Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The value value
      */
-    public double getValue( int outputPort, double[] var, long seed )
+    public double getValue( TapGenerationContext context, int outputPort, double[] var, long seed )
     {
         return (double) 0.0;
     }
@@ -60,7 +60,7 @@ public class RandomValueModule
     {
         super( procedure, TapBTranslate.text( "random" ), position );
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "randomName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/randval_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "randomName" ), "/artofillusion/tapDesigner/icons/randval_tree.png" );
 
         mean = 0.5;
         stdDev = 0.5;
@@ -156,19 +156,31 @@ public class RandomValueModule
     }
 
 
+    /**
+     *  The value only depends on the seed and on the upstream values
+     *
+     *@return    true
+     */
+    public boolean isReentrant()
+    {
+        return true;
+    }
+
+
     /**
      *  Gets the value attribute of the RandomValueModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  var         Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The value value
      */
-    public double getValue( int outputPort, double[] var, long seed )
+    public double getValue( TapGenerationContext context, int outputPort, double[] var, long seed )
     {
         if ( outputPort == 0 )
         {
-            TapRandomGenerator gen = new TapRandomGenerator( seed );
+            TapRandomGenerator gen = procedure.newRandomGenerator( seed );
             double[] yVal = {0.0};
 
             return gen.getDistribution( mean, stdDev, distType );
@@ -176,7 +188,7 @@ public class RandomValueModule
 
         else
         {
-            System.out.println( "wrong output port for random value : " + outputPort );
+            warning( "wrong output port for random value : " + outputPort );
 
             return (double) 0.0;
             //should never happen !!!
@@ -60,7 +60,7 @@ public class ScaleShiftModule
     {
         super( procedure, TapBTranslate.text( "scaleShift" ), position );
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "scaleShiftName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/scale_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "scaleShiftName" ), "/artofillusion/tapDesigner/icons/scale_tree.png" );
 
         scale = 1.0;
         shift = 0.0;
@@ -155,20 +155,32 @@ public class ScaleShiftModule
     }
 
 
+    /**
+     *  The value only depends on the seed and on the upstream values
+     *
+     *@return    true
+     */
+    public boolean isReentrant()
+    {
+        return true;
+    }
+
+
     /**
      *  Gets the value attribute of the ScaleShiftModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  var         Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The value value
      */
-    public double getValue( int outputPort, double[] var, long seed )
+    public double getValue( TapGenerationContext context, int outputPort, double[] var, long seed )
     {
         if ( outputPort == 0 )
         {
-            TapRandomGenerator gen = new TapRandomGenerator( seed );
-            BackModuleLink backLinks = procedure.getBackLink();
+            TapRandomGenerator gen = procedure.newRandomGenerator( seed );
+            BackModuleLink backLinks = context.getBackLinks();
             BackModuleLink.BackLink bl = null;
             double aValue;
             double[] yVal = {0.0};
@@ -176,18 +188,19 @@ public class ScaleShiftModule
             bl = backLinks.findModule( this, 0 );
 
             if ( bl != null )
-                aValue = bl.fromModule.getValue( bl.outputPort, yVal, gen.getSeed() );
+                aValue = bl.fromModule.evaluateValue( context, bl.outputPort, yVal, gen.getSeed() );
             else
                 aValue = 0;
 
-            System.out.println( "a, result : " + aValue + " " + ( aValue * scale + shift ) );
+            if ( TapLog.TRACE )
+                TapLog.debug( name, "a, result : " + aValue + " " + ( aValue * scale + shift ) );
 
             return aValue * scale + shift;
         }
 
         else
         {
-            System.out.println( "wrong output port for scale/shift : " + outputPort );
+            warning( "wrong output port for scale/shift : " + outputPort );
 
             return (double) 0.0;
             //should never happen !!!
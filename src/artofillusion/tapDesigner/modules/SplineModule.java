@@ -59,7 +59,7 @@ public class SplineModule
     {
         super( procedure, TapDesignerTranslate.text( "spline" ), position );
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "splineName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/spline_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "splineName" ), "/artofillusion/tapDesigner/icons/spline_tree.png" );
 
         int i;
         int j;
@@ -386,15 +386,6 @@ public class SplineModule
 
 
 
-        /**
-         *  Description of the Method
-         */
-        protected void doModified()
-        {
-            super.doModified();
-            currentSizedObject = null;
-        }
-
 
         /**
          *  Description of the Method
@@ -534,7 +525,6 @@ public class SplineModule
             setCurrentObject( backupObject );
             deliverDuplicates = backDeliver;
             currentObject.visible = !backHidden;
-            currentSizedObject = null;
         }
 
 
@@ -546,7 +536,6 @@ public class SplineModule
             setCurrentObject( currentObject );
             deliverDuplicates = deliverCB.getState();
             currentObject.visible = !hiddenCB.getState();
-            currentSizedObject = null;
         }
 
 
@@ -974,7 +963,6 @@ public class SplineModule
 
             int numPoints = ( (TapSplineMesh) currentObject.object ).getVVSize();
             outOfLabel.setText( "/" + numPoints );
-            currentSizedObject = null;
             doApply();
             repaint();
         }
@@ -1006,7 +994,6 @@ public class SplineModule
                 ObjectInfo[] obj = new ObjectInfo[1];
                 obj[0] = currentObject;
                 //new ObjectTextureDialog( this, procedure.getScene(), obj );
-                currentSizedObject = null;
             }
             else if ( command.equals( materialButton.getActionCommand() ) )
             {
@@ -1014,7 +1001,6 @@ public class SplineModule
                 ObjectInfo[] obj = new ObjectInfo[1];
                 obj[0] = currentObject;
                 //new ObjectMaterialDialog( this, procedure.getScene(), obj );
-                currentSizedObject = null;
             }
             else if ( command.equals( curveEditButton.getActionCommand() ) )
             {
@@ -1072,7 +1058,6 @@ public class SplineModule
                 doRunnableUpdate();
                 deliverDuplicates = deliverCB.isSelected();
                 currentObject.visible = !hiddenCB.isSelected();
-                currentSizedObject = null;
                 doApply();
             }
             else if ( command.equals( okButton.getActionCommand() ) )
@@ -1088,7 +1073,6 @@ public class SplineModule
                 ( (TapSplineMesh) currentObject.object ).updateMesh( null );
                 deliverDuplicates = deliverCB.isSelected();
                 currentObject.visible = !hiddenCB.isSelected();
-                currentSizedObject = null;
                 doRunnableUpdate();
                 doApply();
                 editDialogClosed();
@@ -1243,7 +1227,6 @@ public class SplineModule
             {
                 setCurrentObject( backupObject );
                 deliverDuplicates = deliverDupBackup;
-                currentSizedObject = null;
                 editDialogClosed();
             }
         }
@@ -0,0 +1,719 @@
+/*
+ *  A TapDecoratorBranch is one object placed by a distributor module (coil,
+ *  field, golden ball) together with its own decorations.
+ */
+/*
+ *  Copyright (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import artofillusion.*;
+import artofillusion.math.*;
+import artofillusion.object.*;
+import artofillusion.texture.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ *  One branch of a distributor module. The distributor draws every random
+ *  number the branch needs (object seed, sizes, distortion seed, decoration
+ *  seeds) in the same order as it always did, then the branch builds the
+ *  decorating object : it asks the upstream module for the object, resizes
+ *  and distorts it and has it decorated by the modules linked to the
+ *  distributor output.<p>
+ *
+ *  Since a branch only depends on the values it has been given, branches of
+ *  the same distributor can be built concurrently when all the modules they
+ *  involve are reentrant (see canFork()). Results are merged back in the
+ *  original order, so the generated object does not depend on the way the
+ *  branches have been built.<p>
+ *
+ *  If the object is not decorated, it can share its geometry with the
+ *  identical objects of the generation (see TapInstanceKey) : only the first
+ *  one is copied, resized and distorted, the other ones only get their own
+ *  coordinate system.<p>
+ *
+ *  Branches are kept by the evaluation plan, so that they are not built again
+ *  by the next generation if none of the modules involved has changed.
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+public class TapDecoratorBranch
+         extends RecursiveAction
+{
+    private TapGenerationContext context;
+    private TapModule distributor;
+    private TapModule fromModule;
+    private int outputPort;
+    private long seed;
+    private int level;
+    private String objName;
+    private boolean textureValues;
+    private double yTextureValue;
+    private double rTextureValue;
+    private boolean resize;
+    private double sizeR;
+    private double sizeY;
+    private TapDistortParameters parms;
+    private long[] decorationSeeds;
+    private boolean decorate;
+    private boolean instance;
+    private TapDesignerObjectCollection child;
+    private TapDesignerObjectCollection result;
+
+    private static boolean parallelGeneration = Runtime.getRuntime().availableProcessors() > 1;
+    private static ForkJoinPool pool;
+
+
+    /**
+     *  Constructor for the TapDecoratorBranch object
+     *
+     *@param  context      The generation context. The branch is built with a
+     *      branch context holding the current distributor values.
+     *@param  distributor  The distributor module
+     *@param  bl           The link to the module which delivers the object
+     *@param  seed         The seed used to get the object
+     *@param  level        The decoration level of the decorated object
+     */
+    public TapDecoratorBranch( TapGenerationContext context, TapModule distributor, BackModuleLink.BackLink bl, long seed, int level )
+    {
+        this.context = context.getBranchContext();
+        this.distributor = distributor;
+        fromModule = bl.fromModule;
+        outputPort = bl.outputPort;
+        objName = fromModule.getName();
+        this.seed = seed;
+        this.level = level;
+        sizeR = 1.0;
+        sizeY = 1.0;
+    }
+
+
+    /**
+     *  Returns true if the module which delivers the object delivers
+     *  duplicates
+     *
+     *@return    The duplicate value
+     */
+    public boolean isDuplicate()
+    {
+        if ( fromModule instanceof ObjectModule )
+            return ( (ObjectModule) fromModule ).isDuplicate();
+        else
+            return false;
+    }
+
+
+    /**
+     *  Sets the values given to the YTAPD and RTAPD texture parameters of the
+     *  object. They are applied at once if the object has already been
+     *  delivered, unless its geometry is shared.
+     *
+     *@param  yValue  The YTAPD value
+     *@param  rValue  The RTAPD value
+     */
+    public void setTextureValues( double yValue, double rValue )
+    {
+        textureValues = true;
+        yTextureValue = yValue;
+        rTextureValue = rValue;
+
+        if ( child != null && !instance )
+            setTextureValues( child.elementAt( 0 ).objectInfo.object, yValue, rValue );
+    }
+
+
+    /**
+     *  Asks for the object to be resized and, if parms is not null, distorted
+     *
+     *@param  sizeR  The radial size factor
+     *@param  sizeY  The Y size factor
+     *@param  parms  The distortion parameters. They are used after the
+     *      distributor has moved on, so they must not be modified afterwards.
+     */
+    public void setSize( double sizeR, double sizeY, TapDistortParameters parms )
+    {
+        resize = true;
+        this.sizeR = sizeR;
+        this.sizeY = sizeY;
+        this.parms = parms;
+    }
+
+
+    /**
+     *  Sets the size factors recorded in the collection without resizing the
+     *  object
+     *
+     *@param  sizeR  The radial size factor
+     *@param  sizeY  The Y size factor
+     */
+    public void setSizeFactors( double sizeR, double sizeY )
+    {
+        resize = false;
+        this.sizeR = sizeR;
+        this.sizeY = sizeY;
+    }
+
+
+    /**
+     *  Draws the seeds of the modules linked to the distributor output 0.
+     *
+     *@param  gen       The distributor random generator
+     *@param  decorate  Whether the object is actually decorated. If not, the
+     *      seeds are drawn anyway to preserve the random sequence.
+     */
+    public void drawDecorationSeeds( TapRandomGenerator gen, boolean decorate )
+    {
+        int numLinks = distributor.getNumLinks( 0 );
+
+        this.decorate = decorate;
+
+        if ( numLinks <= 0 )
+            return;
+
+        decorationSeeds = new long[numLinks];
+
+        for ( int j = 0; j < numLinks; ++j )
+            decorationSeeds[j] = gen.getSeed();
+    }
+
+
+    /**
+     *  Gets the object from the upstream module
+     *
+     *@return    The object collection, or null if the module could not
+     *      deliver one
+     */
+    public TapDesignerObjectCollection getChild()
+    {
+        if ( child == null )
+        {
+            if ( isInstanceable() )
+            {
+                //the geometry is the one of the module cache, see build()
+
+                instance = true;
+                child = new TapDesignerObjectCollection( distributor.getProcedure() );
+                child.addObject( ( (ObjectModule) fromModule ).getSharedObject( context, seed ), 0, objName );
+            }
+            else
+            {
+                child = fromModule.evaluateObject( context, outputPort, seed );
+
+                if ( child != null && textureValues )
+                    setTextureValues( child.elementAt( 0 ).objectInfo.object, yTextureValue, rTextureValue );
+            }
+        }
+
+        return child;
+    }
+
+
+    /**
+     *  Returns true if the object can share its geometry with identical
+     *  objects. Decorators modify the object they decorate, and modules
+     *  delivering duplicates already share their geometry.
+     *
+     *@return    True if the object can be an instance of a prototype
+     */
+    private boolean isInstanceable()
+    {
+        if ( !distributor.getProcedure().isInstancing() )
+            return false;
+
+        if ( outputPort != 0 || !( fromModule instanceof ObjectModule ) || isDuplicate() )
+            return false;
+
+        return distributor.getNumLinks( 0 ) == 0;
+    }
+
+
+    /**
+     *  Estimates the size of the decorated object without building it, from
+     *  the bounds of the object module cached object and the size factors.
+     *  This is only possible for undecorated objects delivered by an object
+     *  module. Tubes are not simply scaled by their radial size factor, so the
+     *  size of a TaPD object is only estimated for procedures using the
+     *  latest random generator, older ones keep their object counts.
+     *
+     *@return    The estimated size, or null if the object has to be built to
+     *      know its size
+     */
+    public Vec3 getSizeEstimate()
+    {
+        if ( decorate && decorationSeeds != null )
+            return null;
+
+        if ( !( fromModule instanceof ObjectModule ) || ( outputPort != 0 && outputPort != -2 ) )
+            return null;
+
+        TapProcedure procedure = distributor.getProcedure();
+        ObjectModule objectModule = (ObjectModule) fromModule;
+
+        if ( resize && objectModule.deliversTapObject() && procedure.getGeneratorVersion() < TapRandomGenerator.SPLITTABLE )
+            return null;
+
+        if ( resize )
+            return objectModule.getSizeEstimate( context, seed, sizeR, sizeY );
+        else
+            return objectModule.getSizeEstimate( context, seed, 1.0, 1.0 );
+    }
+
+
+    /**
+     *  Gets the decorated object, building it if needed
+     *
+     *@return    The decorated object, or null if the upstream module could
+     *      not deliver an object
+     */
+    public TapDesignerObjectCollection getResult()
+    {
+        if ( result != null )
+            return result;
+
+        TapEvaluationPlan plan = context.getPlan();
+        int index = plan.indexOf( distributor );
+
+        if ( index < 0 || !context.getProcedure().isBranchCaching() || !plan.isBranchCacheable( index, context ) )
+        {
+            result = build();
+
+            return result;
+        }
+
+        BranchKey key = new BranchKey( this, index, plan.getBranchSignature( index ) );
+        TapDesignerObjectCollection cached = plan.getCachedBranch( key );
+
+        if ( cached == null )
+        {
+            result = build();
+
+            if ( result != null )
+                plan.addCachedBranch( key, result.copyCollection() );
+        }
+        else
+            result = cached.copyCollection();
+
+        return result;
+    }
+
+
+    /**
+     *  Resizes, distorts and decorates the object
+     *
+     *@return    The decorated object, or null if the upstream module could
+     *      not deliver an object
+     */
+    private TapDesignerObjectCollection build()
+    {
+        //forked branches are queued before their upstream object is built
+
+        if ( getChild() == null )
+            return null;
+
+        ObjectInfo anInfo = getChild().elementAt( 0 ).objectInfo;
+
+        if ( instance )
+            anInfo = getInstance( anInfo );
+        else if ( resize )
+            resize( anInfo );
+
+        TapDesignerObjectCollection tmpCollection = new TapDesignerObjectCollection( distributor.getProcedure() );
+        tmpCollection.addObject( anInfo, level + 1, sizeR, sizeY, objName );
+
+        if ( decorate && decorationSeeds != null )
+        {
+            //modules linked to output will decorate object
+
+            Vector modules = distributor.getModules();
+
+            for ( int j = 0; j < decorationSeeds.length; ++j )
+            {
+                TapModule mod = (TapModule) modules.elementAt( distributor.getLinkToIndex( 0, j ) );
+                TapDesignerObjectCollection modCol = mod.evaluateObject( context, tmpCollection, distributor.getInputPortLink( 0, j ), decorationSeeds[j] );
+
+                if ( modCol != null )
+                    tmpCollection.mergeCollection( modCol, 0 );
+            }
+        }
+
+        return tmpCollection;
+    }
+
+
+    /**
+     *  Resizes and distorts the object
+     *
+     *@param  anInfo  The object
+     */
+    private void resize( ObjectInfo anInfo )
+    {
+        Vec3 size = anInfo.object.getBounds().getSize();
+
+        if ( anInfo.object instanceof SplineMesh )
+        {
+            anInfo.object.setSize( size.x * sizeR, size.y * sizeY, size.z * sizeR );
+            TapUtils.setObjectAtMinY( anInfo );
+
+            if ( parms != null )
+                TapUtils.distortSplineMesh( (SplineMesh) anInfo.object, parms );
+        }
+        else if ( !( anInfo.object instanceof TapObject ) )
+        {
+            anInfo.object.setSize( size.x * sizeR, size.y * sizeY, size.z * sizeR );
+            TapUtils.setObjectAtMinY( anInfo );
+        }
+        else
+            ( (TapObject) anInfo.object ).resizeAndDistort( size, sizeR, sizeY, parms );
+    }
+
+
+    /**
+     *  Gets the prototype matching a shared object, creating it if this is the
+     *  first object of its kind in the generation
+     *
+     *@param  anInfo  The object delivered by the object module. Its geometry
+     *      is left untouched.
+     *@return         An object sharing the prototype geometry
+     */
+    private ObjectInfo getInstance( ObjectInfo anInfo )
+    {
+        boolean texture = textureValues && usesTextureValues( anInfo.object );
+        TapInstanceKey key = new TapInstanceKey( anInfo.object, resize, sizeR, sizeY, parms, texture, yTextureValue, rTextureValue );
+        ObjectInfo prototype = context.getInstance( key );
+
+        if ( prototype == null )
+        {
+            anInfo.object = anInfo.object.duplicate();
+
+            if ( texture )
+                setTextureValues( anInfo.object, yTextureValue, rTextureValue );
+
+            if ( resize )
+                resize( anInfo );
+
+            prototype = context.addInstance( key, anInfo );
+        }
+
+        return prototype.duplicate();
+    }
+
+
+    /**
+     *  Builds the branch when run by a fork/join pool
+     */
+    protected void compute()
+    {
+        getResult();
+    }
+
+
+    /**
+     *  Sets the YTAPD and RTAPD texture parameters of an object
+     *
+     *@param  obj     The object
+     *@param  yValue  The YTAPD value
+     *@param  rValue  The RTAPD value
+     */
+    public static void setTextureValues( Object3D obj, double yValue, double rValue )
+    {
+        if ( obj == null )
+            return;
+
+        TextureParameter[] tparms = obj.getTextureMapping().getParameters();
+
+        for ( int j = 0; j < tparms.length; ++j )
+        {
+            if ( tparms[j].name.equals( "YTAPD" ) )
+            {
+                ParameterValue val = obj.getParameterValue( tparms[j] );
+
+                if ( val instanceof ConstantParameterValue )
+                    ( (ConstantParameterValue) val ).setValue( yValue );
+            }
+            else if ( tparms[j].name.equals( "RTAPD" ) )
+            {
+                ParameterValue val = obj.getParameterValue( tparms[j] );
+
+                if ( val instanceof ConstantParameterValue )
+                    ( (ConstantParameterValue) val ).setValue( rValue );
+            }
+        }
+    }
+
+
+    /**
+     *  Returns true if the texture of an object has YTAPD or RTAPD parameters
+     *
+     *@param  obj  The object
+     *@return      True if the texture values change the object
+     */
+    public static boolean usesTextureValues( Object3D obj )
+    {
+        if ( obj == null || obj.getTextureMapping() == null )
+            return false;
+
+        TextureParameter[] tparms = obj.getTextureMapping().getParameters();
+
+        for ( int j = 0; j < tparms.length; ++j )
+            if ( tparms[j].name.equals( "YTAPD" ) || tparms[j].name.equals( "RTAPD" ) )
+                return true;
+
+        return false;
+    }
+
+
+    /**
+     *  Returns true if parallel generation is allowed
+     *
+     *@return    The parallelGeneration value
+     */
+    public static boolean isParallelGeneration()
+    {
+        return parallelGeneration;
+    }
+
+
+    /**
+     *  Allows or forbids parallel generation of branches
+     *
+     *@param  parallel  The new parallelGeneration value
+     */
+    public static void setParallelGeneration( boolean parallel )
+    {
+        parallelGeneration = parallel;
+    }
+
+
+    /**
+     *  Returns true if the branches of a distributor can be built concurrently.
+     *  This is the case if the object is delivered by a single object module
+     *  which doesn't deliver duplicates, and if this module, the modules linked to the distributor output and all
+     *  the modules they pull values or objects from are reentrant and never
+     *  have to pick one link at random among several ones. Branches are never
+     *  forked while the generation is profiled, since the profiler subtracts
+     *  the time and allocations of the modules a module calls from its own
+     *  ones on the thread it runs on.
+     *
+     *@param  context      The generation context
+     *@param  distributor  The distributor module
+     *@return              True if branches can be forked
+     */
+    public static boolean canFork( TapGenerationContext context, TapModule distributor )
+    {
+        if ( !parallelGeneration || context.stopsAt( distributor ) || context.getProfiler() != null )
+            return false;
+
+        TapEvaluationPlan plan = context.getPlan();
+        int index = plan.indexOf( distributor );
+
+        if ( index < 0 )
+            return false;
+
+        int[] from = plan.getUpstreamModules( index, 0 );
+
+        if ( from.length != 1 || !( plan.getModules().elementAt( from[0] ) instanceof ObjectModule ) )
+            return false;
+
+        //duplicates share their geometry, which is resized in place
+
+        if ( ( (ObjectModule) plan.getModules().elementAt( from[0] ) ).isDuplicate() )
+            return false;
+
+        return plan.isReentrantUpstream( from[0] ) && plan.isReentrantDownstream( index, 0 );
+    }
+
+
+    /**
+     *  Builds branches, concurrently if there are several of them
+     *
+     *@param  branches  The branches to build
+     */
+    public static void buildAll( Vector branches )
+    {
+        if ( branches.size() == 0 )
+            return;
+
+        if ( branches.size() == 1 )
+        {
+            ( (TapDecoratorBranch) branches.elementAt( 0 ) ).getResult();
+
+            return;
+        }
+
+        if ( ForkJoinTask.inForkJoinPool() )
+            ForkJoinTask.invokeAll( branches );
+        else
+            getBranchPool().invoke( new BranchGroup( branches ) );
+    }
+
+
+    /**
+     *  Gets the pool used to build branches
+     *
+     *@return    The pool value
+     */
+    private static synchronized ForkJoinPool getBranchPool()
+    {
+        if ( pool == null )
+            pool = new ForkJoinPool();
+
+        return pool;
+    }
+
+
+    /**
+     *  Identifies a branch : it is built the same way if the distributor, the
+     *  modules involved, all the values drawn by the distributor and the
+     *  distributor values of the branch context are the same.
+     *
+     *@author     TaPD contributors
+     *@created    17 octobre 2026
+     */
+    private static class BranchKey
+    {
+        private int index;
+        private long signature;
+        private int outputPort;
+        private long seed;
+        private int level;
+        private int generationLevel;
+        private boolean instancing;
+        private boolean textureValues;
+        private double yTextureValue;
+        private double rTextureValue;
+        private boolean resize;
+        private double sizeR;
+        private double sizeY;
+        private TapDistortParameters parms;
+        private boolean decorate;
+        private long[] decorationSeeds;
+        private Hashtable portValues;
+
+
+        /**
+         *  Constructor for the BranchKey object
+         *
+         *@param  branch     The branch
+         *@param  index      The distributor index
+         *@param  signature  The branch signature of the distributor
+         */
+        public BranchKey( TapDecoratorBranch branch, int index, long signature )
+        {
+            TapProcedure procedure = branch.distributor.getProcedure();
+
+            this.index = index;
+            this.signature = signature;
+            outputPort = branch.outputPort;
+            seed = branch.seed;
+            level = branch.level;
+            generationLevel = branch.context.getGenerationLevel();
+            instancing = procedure.isInstancing();
+            textureValues = branch.textureValues;
+            yTextureValue = branch.yTextureValue;
+            rTextureValue = branch.rTextureValue;
+            resize = branch.resize;
+            sizeR = branch.sizeR;
+            sizeY = branch.sizeY;
+
+            if ( branch.parms != null )
+                parms = branch.parms.duplicate();
+
+            decorate = branch.decorate;
+            decorationSeeds = branch.decorationSeeds;
+            portValues = branch.context.getPortValues();
+        }
+
+
+        /**
+         *  Description of the Method
+         *
+         *@param  obj  Description of the Parameter
+         *@return      Description of the Return Value
+         */
+        public boolean equals( Object obj )
+        {
+            if ( !( obj instanceof BranchKey ) )
+                return false;
+
+            BranchKey key = (BranchKey) obj;
+
+            if ( key.index != index || key.signature != signature || key.outputPort != outputPort || key.seed != seed )
+                return false;
+
+            if ( key.level != level || key.generationLevel != generationLevel || key.instancing != instancing )
+                return false;
+
+            if ( key.textureValues != textureValues || key.yTextureValue != yTextureValue || key.rTextureValue != rTextureValue )
+                return false;
+
+            if ( key.resize != resize || key.sizeR != sizeR || key.sizeY != sizeY || key.decorate != decorate )
+                return false;
+
+            if ( !Arrays.equals( key.decorationSeeds, decorationSeeds ) || !key.portValues.equals( portValues ) )
+                return false;
+
+            if ( parms == null )
+                return key.parms == null;
+
+            return parms.equals( key.parms );
+        }
+
+
+        /**
+         *  Description of the Method
+         *
+         *@return    Description of the Return Value
+         */
+        public int hashCode()
+        {
+            long bits = seed * 31 + signature;
+
+            bits = bits * 31 + Double.doubleToLongBits( sizeR );
+            bits = bits * 31 + Double.doubleToLongBits( sizeY );
+
+            return index ^ level ^ (int) ( bits ^ ( bits >>> 32 ) );
+        }
+    }
+
+
+    /**
+     *  Runs a group of branches inside the pool
+     *
+     *@author     TaPD contributors
+     *@created    17 octobre 2026
+     */
+    private static class BranchGroup
+             extends RecursiveAction
+    {
+        private Vector branches;
+
+
+        /**
+         *  Constructor for the BranchGroup object
+         *
+         *@param  branches  The branches
+         */
+        public BranchGroup( Vector branches )
+        {
+            this.branches = branches;
+        }
+
+
+        /**
+         *  Builds the branches
+         */
+        protected void compute()
+        {
+            ForkJoinTask.invokeAll( branches );
+        }
+    }
+}
@@ -0,0 +1,806 @@
+/*
+ *  The TapEvaluationPlan class is the compiled form of a procedure graph.
+ *  It is built once from the module links and cached by the procedure until a
+ *  link or a module changes.
+ */
+/*
+ *  Copyright (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import java.util.*;
+
+
+/**
+ *  Flat, topologically ordered view of a procedure. The plan resolves once
+ *  and for all which (module, output port) pairs feed each input port of each
+ *  module, so that generation does not have to walk the link tables again.
+ *  Modules are ordered so that every module comes after the modules it pulls
+ *  from (links belonging to a cycle, if any, are ignored for ordering).<p>
+ *
+ *  The plan also keeps the branches built by distributor modules during the
+ *  last generations, so that branches whose modules haven't changed since are
+ *  not built again (see getCachedBranch()). Branches are only kept while the
+ *  procedure is edited (see TapProcedure.setBranchCaching()), up to
+ *  MAX_CACHED_OBJECTS objects.
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+public class TapEvaluationPlan
+{
+    private Vector modules;
+    private int[] order;
+    private int[][][] upstreamModules;
+    private int[][][] upstreamOutputPorts;
+    private int mainEntry;
+    private boolean randomLinks;
+    private Hashtable branchCache;
+    private Hashtable previousBranchCache;
+    private int cachedObjects;
+    private int previousCachedObjects;
+    private int[][] branchDependencies;
+    private boolean[] branchChecked;
+    private long[] branchSignatures;
+    private boolean[] branchCacheable;
+    private boolean[] signatureComputed;
+    private final static int[] NO_LINK = new int[0];
+
+    /**
+     *  Maximum number of objects kept in the branch cache of a plan, set by
+     *  the tapdesigner.branchCacheObjects system property. 0 disables the
+     *  cache.
+     */
+    public final static int MAX_CACHED_OBJECTS = getMaxCachedObjects();
+
+
+    /**
+     *  Compiles the plan for a module list
+     *
+     *@param  modules  The procedure modules
+     */
+    public TapEvaluationPlan( Vector modules )
+    {
+        this.modules = modules;
+
+        int size = modules.size();
+        int i;
+        int j;
+        int k;
+        int index;
+        int port;
+        int[] inDegree = new int[size];
+
+        upstreamModules = new int[size][][];
+        upstreamOutputPorts = new int[size][][];
+        mainEntry = -1;
+
+        for ( i = 0; i < size; ++i )
+        {
+            TapModule mod = (TapModule) modules.elementAt( i );
+            int numInput = mod.getNumInput();
+
+            mod.setModuleId( i );
+
+            if ( numInput < 0 )
+                numInput = 0;
+
+            upstreamModules[i] = new int[numInput][];
+            upstreamOutputPorts[i] = new int[numInput][];
+
+            for ( j = 0; j < numInput; ++j )
+            {
+                upstreamModules[i][j] = NO_LINK;
+                upstreamOutputPorts[i][j] = NO_LINK;
+            }
+
+            if ( mainEntry == -1 && mod.isMainEntry() )
+                mainEntry = i;
+        }
+
+        //resolve the port bindings
+
+        for ( i = 0; i < size; ++i )
+        {
+            TapModule mod = (TapModule) modules.elementAt( i );
+
+            for ( j = 0; j < mod.getNumOutput(); ++j )
+                for ( k = 0; k < mod.getNumLinks( j ); ++k )
+                {
+                    index = mod.getLinkToIndex( j, k );
+                    port = mod.getInputPortLink( j, k );
+
+                    if ( index < 0 || index >= size || port < 0 )
+                        continue;
+
+                    if ( port >= upstreamModules[index].length )
+                        continue;
+
+                    upstreamModules[index][port] = append( upstreamModules[index][port], i );
+                    upstreamOutputPorts[index][port] = append( upstreamOutputPorts[index][port], j );
+                    ++inDegree[index];
+
+                    if ( upstreamModules[index][port].length > 1 )
+                        randomLinks = true;
+                }
+        }
+
+        branchCache = new Hashtable();
+        previousBranchCache = new Hashtable();
+        branchDependencies = new int[size][];
+        branchChecked = new boolean[size];
+        branchSignatures = new long[size];
+        branchCacheable = new boolean[size];
+        signatureComputed = new boolean[size];
+
+        //a module pulls from its upstream modules, so these come first
+
+        order = new int[size];
+
+        boolean[] done = new boolean[size];
+        int[] stack = new int[size];
+        int top = 0;
+        int count = 0;
+
+        for ( i = 0; i < size; ++i )
+            if ( inDegree[i] == 0 )
+                stack[top++] = i;
+
+        while ( count < size )
+        {
+            if ( top == 0 )
+            {
+                //cycle: release the lowest index module not yet ordered
+                for ( i = 0; i < size; ++i )
+                    if ( !done[i] )
+                    {
+                        inDegree[i] = 0;
+                        stack[top++] = i;
+                        break;
+                    }
+            }
+
+            i = stack[--top];
+
+            if ( done[i] )
+                continue;
+
+            done[i] = true;
+            order[count++] = i;
+
+            TapModule mod = (TapModule) modules.elementAt( i );
+
+            for ( j = 0; j < mod.getNumOutput(); ++j )
+                for ( k = 0; k < mod.getNumLinks( j ); ++k )
+                {
+                    index = mod.getLinkToIndex( j, k );
+                    port = mod.getInputPortLink( j, k );
+
+                    if ( index < 0 || index >= size || port < 0 || port >= upstreamModules[index].length )
+                        continue;
+
+                    if ( --inDegree[index] == 0 && !done[index] )
+                        stack[top++] = index;
+                }
+        }
+    }
+
+
+    /**
+     *  Appends a value to an int array
+     *
+     *@param  array  The array
+     *@param  value  The value to append
+     *@return        The new array
+     */
+    private static int[] append( int[] array, int value )
+    {
+        int[] newArray = new int[array.length + 1];
+
+        System.arraycopy( array, 0, newArray, 0, array.length );
+        newArray[array.length] = value;
+
+        return newArray;
+    }
+
+
+    /**
+     *  Gets the modules attribute of the TapEvaluationPlan object
+     *
+     *@return    The modules value
+     */
+    public Vector getModules()
+    {
+        return modules;
+    }
+
+
+    /**
+     *  Returns the index of a module in the plan, using the module id set when
+     *  the plan was compiled
+     *
+     *@param  module  The module
+     *@return         The module index or -1 if the module is not in the plan
+     */
+    public int indexOf( TapModule module )
+    {
+        int id = module.getModuleId();
+        int size = Math.min( order.length, modules.size() );
+
+        if ( id >= 0 && id < size && modules.elementAt( id ) == module )
+            return id;
+
+        for ( int i = 0; i < size; ++i )
+            if ( modules.elementAt( i ) == module )
+                return i;
+
+        return -1;
+    }
+
+
+    /**
+     *  Returns true if the plan was compiled for the given module list and
+     *  this list hasn't been resized since.
+     *
+     *@param  modules  The module list
+     *@return          True if the plan can be used for these modules
+     */
+    public boolean isValidFor( Vector modules )
+    {
+        return ( this.modules == modules ) && ( modules.size() == order.length );
+    }
+
+
+    /**
+     *  Returns the module indices, upstream modules first
+     *
+     *@return    The order value
+     */
+    public int[] getOrder()
+    {
+        return order;
+    }
+
+
+    /**
+     *  Gets the index of the main entry module, or -1 if there is none
+     *
+     *@return    The mainEntry value
+     */
+    public int getMainEntry()
+    {
+        return mainEntry;
+    }
+
+
+    /**
+     *  Gets the number of input ports the plan knows for a module
+     *
+     *@param  index  The module index
+     *@return        The number of input ports
+     */
+    public int getNumInput( int index )
+    {
+        return upstreamModules[index].length;
+    }
+
+
+    /**
+     *  Returns the indices of the modules linked to an input port. The
+     *  returned array is shared and must not be modified.
+     *
+     *@param  index      The module index
+     *@param  inputPort  The input port
+     *@return            The upstream modules
+     */
+    public int[] getUpstreamModules( int index, int inputPort )
+    {
+        if ( inputPort < 0 || inputPort >= upstreamModules[index].length )
+            return NO_LINK;
+
+        return upstreamModules[index][inputPort];
+    }
+
+
+    /**
+     *  Returns the output ports of the modules linked to an input port, in the
+     *  same order as getUpstreamModules(). The returned array is shared and
+     *  must not be modified.
+     *
+     *@param  index      The module index
+     *@param  inputPort  The input port
+     *@return            The upstream output ports
+     */
+    public int[] getUpstreamOutputPorts( int index, int inputPort )
+    {
+        if ( inputPort < 0 || inputPort >= upstreamOutputPorts[index].length )
+            return NO_LINK;
+
+        return upstreamOutputPorts[index][inputPort];
+    }
+
+
+    /**
+     *  Returns true if at least one input port is linked to several modules.
+     *  One of them is then picked at random each time the port is pulled, so
+     *  the random sequence depends on the whole generation.
+     *
+     *@return    True if there are random links
+     */
+    public boolean hasRandomLinks()
+    {
+        return randomLinks;
+    }
+
+
+    /**
+     *  Returns true if a module and all the modules it pulls values or objects
+     *  from are reentrant, and none of the links involved has to be picked at
+     *  random
+     *
+     *@param  index  The module index
+     *@return        True if the module can be evaluated concurrently
+     */
+    public boolean isReentrantUpstream( int index )
+    {
+        return isReentrantUpstream( index, -1, new boolean[order.length] );
+    }
+
+
+    /**
+     *  Returns true if all the modules linked to an output port can decorate
+     *  concurrently, with everything they pull from or push to
+     *
+     *@param  index       The module index
+     *@param  outputPort  The output port
+     *@return             True if the decorations can be evaluated
+     *      concurrently
+     */
+    public boolean isReentrantDownstream( int index, int outputPort )
+    {
+        return isReentrantDownstream( index, outputPort, new boolean[order.length], new boolean[order.length] );
+    }
+
+
+    /**
+     *  Upstream part of the reentrance check
+     *
+     *@param  index     The module index
+     *@param  skipPort  An input port not to follow (the decorated port), or -1
+     *@param  visited   Modules already checked
+     *@return           True if reentrant
+     */
+    private boolean isReentrantUpstream( int index, int skipPort, boolean[] visited )
+    {
+        if ( visited[index] )
+            return true;
+
+        visited[index] = true;
+
+        if ( !( (TapModule) modules.elementAt( index ) ).isReentrant() )
+            return false;
+
+        for ( int j = 0; j < upstreamModules[index].length; ++j )
+        {
+            if ( j == skipPort )
+                continue;
+
+            if ( upstreamModules[index][j].length > 1 )
+                return false;
+
+            if ( upstreamModules[index][j].length == 1 && !isReentrantUpstream( upstreamModules[index][j][0], -1, visited ) )
+                return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     *  Downstream part of the reentrance check
+     *
+     *@param  index        The module index
+     *@param  outputPort   The output port
+     *@param  visited      Modules already checked upstream
+     *@param  decorators   Modules already checked as decorators
+     *@return              True if reentrant
+     */
+    private boolean isReentrantDownstream( int index, int outputPort, boolean[] visited, boolean[] decorators )
+    {
+        TapModule mod = (TapModule) modules.elementAt( index );
+
+        for ( int k = 0; k < mod.getNumLinks( outputPort ); ++k )
+        {
+            int target = mod.getLinkToIndex( outputPort, k );
+            int port = mod.getInputPortLink( outputPort, k );
+
+            if ( target < 0 || target >= order.length || decorators[target] )
+                continue;
+
+            decorators[target] = true;
+
+            TapModule targetModule = (TapModule) modules.elementAt( target );
+
+            if ( !targetModule.isReentrant() || !isReentrantUpstream( target, port, visited ) )
+                return false;
+
+            for ( int j = 0; j < targetModule.getNumOutput(); ++j )
+                if ( !isReentrantDownstream( target, j, visited, decorators ) )
+                    return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     *  Calls initGenerationProcess() on each module, upstream modules first
+     */
+    public void initGenerationProcess()
+    {
+        synchronized ( this )
+        {
+            //generations may start concurrently
+
+            for ( int i = 0; i < order.length; ++i )
+                ( (TapModule) modules.elementAt( order[i] ) ).initGenerationProcess();
+
+            //branches neither used nor built during the last generation are dropped
+
+            previousBranchCache = branchCache;
+            previousCachedObjects = cachedObjects;
+            branchCache = new Hashtable();
+            cachedObjects = 0;
+
+            for ( int i = 0; i < order.length; ++i )
+                signatureComputed[i] = false;
+        }
+    }
+
+
+    /**
+     *  Returns true if the branches of a distributor can be kept from one
+     *  generation to another. This is the case if the modules involved in a
+     *  branch (the modules building the object and its decorations, and the
+     *  values they use) are only reached through the distributor, so that
+     *  they don't depend on what happens elsewhere during the generation.
+     *
+     *@param  index  The distributor index
+     *@return        True if the branches can be cached
+     */
+    public synchronized boolean isBranchCacheable( int index )
+    {
+        computeBranchSignature( index );
+
+        return branchCacheable[index];
+    }
+
+
+    /**
+     *  Returns true if the branches of a distributor can be kept from one
+     *  generation to another and used by a given generation. A module
+     *  previewed with 'stop here' doesn't build its full object, so branches
+     *  involving it are neither used nor kept by the preview.
+     *
+     *@param  index    The distributor index
+     *@param  context  The generation context
+     *@return          True if the branches can be cached
+     */
+    public synchronized boolean isBranchCacheable( int index, TapGenerationContext context )
+    {
+        if ( !isBranchCacheable( index ) )
+            return false;
+
+        if ( !context.isPreview() )
+            return true;
+
+        int[] dependencies = branchDependencies[index];
+
+        for ( int i = 0; i < dependencies.length; ++i )
+            if ( context.stopsAt( (TapModule) modules.elementAt( dependencies[i] ) ) )
+                return false;
+
+        return true;
+    }
+
+
+    /**
+     *  Returns a value which changes each time one of the modules involved in
+     *  the branches of a distributor or the procedure scene is modified
+     *
+     *@param  index  The distributor index
+     *@return        The branch signature
+     */
+    public synchronized long getBranchSignature( int index )
+    {
+        computeBranchSignature( index );
+
+        return branchSignatures[index];
+    }
+
+
+    /**
+     *  Gets a branch built during this generation or the previous one
+     *
+     *@param  key  The branch key, which must include the distributor index
+     *      and its branch signature
+     *@return      The branch objects, which must be copied before use, or
+     *      null
+     */
+    public synchronized TapDesignerObjectCollection getCachedBranch( Object key )
+    {
+        TapDesignerObjectCollection branch = (TapDesignerObjectCollection) branchCache.get( key );
+
+        if ( branch == null )
+        {
+            //the branch moves to this generation
+
+            branch = (TapDesignerObjectCollection) previousBranchCache.remove( key );
+
+            if ( branch != null )
+            {
+                previousCachedObjects -= branch.size();
+                putCachedBranch( key, branch );
+            }
+        }
+
+        return branch;
+    }
+
+
+    /**
+     *  Keeps a branch for the next generation, unless the cache is full. The
+     *  branches of the previous generation which haven't been used yet are
+     *  dropped first.
+     *
+     *@param  key     The branch key
+     *@param  branch  The branch objects, which must not be modified afterwards
+     */
+    public synchronized void addCachedBranch( Object key, TapDesignerObjectCollection branch )
+    {
+        int size = branch.size();
+
+        if ( cachedObjects + previousCachedObjects + size > MAX_CACHED_OBJECTS )
+        {
+            previousBranchCache.clear();
+            previousCachedObjects = 0;
+        }
+
+        if ( cachedObjects + size <= MAX_CACHED_OBJECTS )
+            putCachedBranch( key, branch );
+    }
+
+
+    /**
+     *  Adds a branch to the cache of this generation
+     *
+     *@param  key     The branch key
+     *@param  branch  The branch objects
+     */
+    private void putCachedBranch( Object key, TapDesignerObjectCollection branch )
+    {
+        TapDesignerObjectCollection replaced = (TapDesignerObjectCollection) branchCache.put( key, branch );
+
+        cachedObjects += branch.size();
+
+        if ( replaced != null )
+            cachedObjects -= replaced.size();
+    }
+
+
+    /**
+     *  Drops all the branches kept
+     */
+    public synchronized void clearBranchCache()
+    {
+        branchCache = new Hashtable();
+        previousBranchCache = new Hashtable();
+        cachedObjects = 0;
+        previousCachedObjects = 0;
+    }
+
+
+    /**
+     *  Gets the maximum number of objects set by the
+     *  tapdesigner.branchCacheObjects property
+     *
+     *@return    The maximum number of objects
+     */
+    private static int getMaxCachedObjects()
+    {
+        String value = null;
+
+        try
+        {
+            value = System.getProperty( "tapdesigner.branchCacheObjects" );
+        }
+        catch ( SecurityException e )
+        {
+        }
+
+        if ( value != null )
+        {
+            try
+            {
+                return Math.max( 0, Integer.parseInt( value.trim() ) );
+            }
+            catch ( NumberFormatException e )
+            {
+            }
+        }
+
+        return 50000;
+    }
+
+
+    /**
+     *  Computes the branch signature of a distributor for the current
+     *  generation
+     *
+     *@param  index  The distributor index
+     */
+    private void computeBranchSignature( int index )
+    {
+        if ( signatureComputed[index] )
+            return;
+
+        signatureComputed[index] = true;
+
+        if ( !branchChecked[index] )
+        {
+            branchDependencies[index] = getBranchDependencies( index );
+            branchChecked[index] = true;
+        }
+
+        int[] dependencies = branchDependencies[index];
+        TapProcedure procedure = ( (TapModule) modules.elementAt( index ) ).getProcedure();
+
+        //branches use the objects, textures and materials of the procedure scene
+
+        long signature = ( procedure == null ? 0 : procedure.getSceneRevision() );
+
+        branchCacheable[index] = ( dependencies != null );
+
+        if ( dependencies == null )
+            return;
+
+        for ( int i = 0; i < dependencies.length; ++i )
+        {
+            TapModule mod = (TapModule) modules.elementAt( dependencies[i] );
+
+            signature = 31 * signature + mod.getRevision();
+        }
+
+        branchSignatures[index] = signature;
+    }
+
+
+    /**
+     *  Finds the modules involved in the branches of a distributor
+     *
+     *@param  owner  The distributor index
+     *@return        The module indices, or null if the branches depend on
+     *      modules reached from elsewhere
+     */
+    private int[] getBranchDependencies( int owner )
+    {
+        int size = order.length;
+        int[] from = getUpstreamModules( owner, 0 );
+
+        if ( randomLinks || from.length != 1 )
+            return null;
+
+        TapModule ownerModule = (TapModule) modules.elementAt( owner );
+        boolean[] found = new boolean[size];
+        boolean[] ownerTarget = new boolean[size];
+        int[] stack = new int[size];
+        int top = 0;
+        int count = 0;
+        int i;
+        int j;
+        int k;
+
+        found[from[0]] = true;
+        stack[top++] = from[0];
+
+        for ( k = 0; k < ownerModule.getNumLinks( 0 ); ++k )
+        {
+            i = ownerModule.getLinkToIndex( 0, k );
+
+            if ( i < 0 || i >= size || i == owner )
+                return null;
+
+            ownerTarget[i] = true;
+
+            if ( !found[i] )
+            {
+                found[i] = true;
+                stack[top++] = i;
+            }
+        }
+
+        while ( top > 0 )
+        {
+            i = stack[--top];
+            ++count;
+
+            TapModule mod = (TapModule) modules.elementAt( i );
+
+            //modules pulled from
+
+            for ( j = 0; j < upstreamModules[i].length; ++j )
+                for ( k = 0; k < upstreamModules[i][j].length; ++k )
+                {
+                    int u = upstreamModules[i][j][k];
+
+                    if ( u == owner )
+                    {
+                        if ( !ownerTarget[i] || upstreamOutputPorts[i][j][k] != 0 )
+                            return null;
+                    }
+                    else if ( !found[u] )
+                    {
+                        found[u] = true;
+                        stack[top++] = u;
+                    }
+                }
+
+            //value modules don't depend on the modules they feed
+
+            if ( isValueModule( mod ) && isReentrantUpstream( i ) )
+                continue;
+
+            for ( j = 0; j < mod.getNumOutput(); ++j )
+                for ( k = 0; k < mod.getNumLinks( j ); ++k )
+                {
+                    int t = mod.getLinkToIndex( j, k );
+
+                    if ( t < 0 || t >= size )
+                        continue;
+
+                    if ( t == owner )
+                    {
+                        if ( i != from[0] || mod.getInputPortLink( j, k ) != 0 )
+                            return null;
+                    }
+                    else if ( !found[t] )
+                    {
+                        found[t] = true;
+                        stack[top++] = t;
+                    }
+                }
+        }
+
+        int[] dependencies = new int[count];
+
+        count = 0;
+
+        for ( i = 0; i < size; ++i )
+            if ( found[i] )
+                dependencies[count++] = i;
+
+        return dependencies;
+    }
+
+
+    /**
+     *  Returns true if a module delivers values only
+     *
+     *@param  mod  The module
+     *@return      True if none of the module outputs is an object output
+     */
+    private static boolean isValueModule( TapModule mod )
+    {
+        for ( int i = 0; i < mod.getNumOutput(); ++i )
+            if ( mod.getOutputNature( i ) == TapModule.OBJECT_PORT )
+                return false;
+
+        return true;
+    }
+}
@@ -124,10 +124,13 @@ public abstract class TapModule
      */
     protected TapProcedure procedure;
     /**
-     *  used for partial (ctrl-click) previews
+     *  index of the module in the compiled procedure graph
      */
-    protected boolean stopHere;
-    //used for partial (ctrl-click) previews
+    private int moduleId = -1;
+    /**
+     *  incremented each time the module parameters change
+     */
+    private int revision;
     /**
      */
     protected int modifiers;
@@ -186,7 +189,6 @@ public abstract class TapModule
         isEditDialogOn = false;
         mainEntry = false;
         portDecoration = LEFT_TO_RIGHT;
-        stopHere = false;
     }
 
 
@@ -251,7 +253,6 @@ public abstract class TapModule
         fr = null;
         isPreviewOn = false;
         isEditDialogOn = false;
-        stopHere = false;
     }
 
 
@@ -312,11 +313,11 @@ public abstract class TapModule
      */
     public void printSelf()
     {
-        System.out.println( this );
+        TapLog.info( name, toString() );
 
         if ( inputPortLink[0] != null )
             for ( int i = 0; i < inputPortLink[0].length; ++i )
-                System.out.println( "To : " + linkToIndex[0][i] + " Port: " + inputPortLink[0][i] );
+                TapLog.info( name, "To : " + linkToIndex[0][i] + " Port: " + inputPortLink[0][i] );
     }
 
 
@@ -364,6 +365,52 @@ public abstract class TapModule
     }
 
 
+    /**
+     *  Gets the id of the module. The id is the module index in the procedure
+     *  module list, as set by the last compilation of the procedure graph. It
+     *  is -1 until the graph has been compiled.
+     *
+     *@return    The moduleId value
+     */
+    public int getModuleId()
+    {
+        return moduleId;
+    }
+
+
+    /**
+     *  Sets the id of the module. Called by TapEvaluationPlan only.
+     *
+     *@param  id  The new moduleId value
+     */
+    void setModuleId( int id )
+    {
+        moduleId = id;
+    }
+
+
+    /**
+     *  Gets the revision of the module. It is incremented each time the module
+     *  parameters change, so that objects built with older parameters are not
+     *  reused.
+     *
+     *@return    The revision value
+     */
+    public int getRevision()
+    {
+        return revision;
+    }
+
+
+    /**
+     *  Must be called each time the module parameters change
+     */
+    public void notifyParametersChanged()
+    {
+        ++revision;
+    }
+
+
     /**
      *  Description of the Method
      *
@@ -485,6 +532,7 @@ public abstract class TapModule
     public void setName( String name )
     {
         this.name = name;
+        ++revision;
     }
 
 
@@ -631,6 +679,7 @@ public abstract class TapModule
             inputPortLink[outputPort][l] = inputPort;
             ( (TapModule) modules.elementAt( toModule ) ).newInputLinkCreated();
             this.newOutputLinkCreated();
+            procedure.invalidateEvaluationPlan();
             procedure.setModified( true );
         }
     }
@@ -710,6 +759,7 @@ public abstract class TapModule
     {
         linkToIndex[outputPort] = TapUtils.deleteIntArrayElement( linkToIndex[outputPort], i );
         inputPortLink[outputPort] = TapUtils.deleteIntArrayElement( inputPortLink[outputPort], i );
+        procedure.invalidateEvaluationPlan();
         procedure.setModified( true );
     }
 
@@ -749,6 +799,9 @@ public abstract class TapModule
                         go_on = false;
                 }
             }
+
+        if ( procedure != null )
+            procedure.invalidateEvaluationPlan();
     }
 
 
@@ -766,6 +819,9 @@ public abstract class TapModule
         linkToIndex = null;
         inputPortLink = null;
 
+        if ( procedure != null )
+            procedure.invalidateEvaluationPlan();
+
         if ( isEditDialogOn )
             editDialogClosed();
         if ( isPreviewOn )
@@ -925,6 +981,62 @@ public abstract class TapModule
     }
 
 
+    /**
+     *  Called when the random generator version of the procedure changes
+     */
+    public void generatorVersionChanged()
+    {
+    }
+
+
+    /**
+     *  Returns true if getObject() and getValue() only depend on their
+     *  arguments and on the module parameters, so that they may be called
+     *  concurrently. State kept during a generation (e.g. the Y value output
+     *  of distributors) belongs in the generation context ; modules which keep
+     *  it in their own fields must return false.
+     *
+     *@return    The reentrant value
+     */
+    public boolean isReentrant()
+    {
+        return false;
+    }
+
+
+    /**
+     *  Returns true if the objects a distributor would place on an object of
+     *  the given decoration level are not wanted by the current generation,
+     *  in which case the distributor doesn't need to build them. Distributors
+     *  whose objects modify the decorated object (counter actions) must still
+     *  apply these modifications.
+     *
+     *@param  context  The generation context
+     *@param  level    The decoration level of the decorated object
+     *@return          True if the decorating objects are beyond the
+     *      generation level
+     */
+    protected boolean isBeyondGenerationLevel( TapGenerationContext context, int level )
+    {
+        int generationLevel = context.getGenerationLevel();
+
+        return ( generationLevel > 0 ) && ( level + 1 >= generationLevel );
+    }
+
+
+    /**
+     *  Reports a problem met while evaluating the module. Warnings are
+     *  counted and summed up once the generation is over, the message itself
+     *  is only published at the debug level (see TapLog).
+     *
+     *@param  message  The warning message
+     */
+    protected void warning( String message )
+    {
+        procedure.getGenerationLog().countWarning( name, message );
+    }
+
+
     /**
      *  Description of the Method
      *
@@ -944,6 +1056,48 @@ public abstract class TapModule
     public void showPreviewFrame( int modifiers )
     {
         this.modifiers = modifiers;
+
+        //the preview is generated on a context of its own
+        ObjectInfo newObjectInfo = buildPreviewObject( modifiers );
+
+        if ( newObjectInfo != null )
+            setupPreviewFrame( newObjectInfo );
+    }
+
+
+    /**
+     *  Builds the object displayed in the preview window of this module.
+     *  May be called by the background generation thread.
+     *
+     *@param  modifiers  The modifiers of the preview request
+     *@return            The preview object, or null if there is nothing to
+     *      show
+     */
+    public ObjectInfo buildPreviewObject( int modifiers )
+    {
+        return null;
+    }
+
+
+    /**
+     *  Gets the modifiers of the last preview request
+     *
+     *@return    The previewModifiers value
+     */
+    public int getPreviewModifiers()
+    {
+        return modifiers;
+    }
+
+
+    /**
+     *  Returns true if the preview window of the module is opened
+     *
+     *@return    The previewOn value
+     */
+    public boolean isPreviewOn()
+    {
+        return isPreviewOn;
     }
 
 
@@ -991,9 +1145,9 @@ public abstract class TapModule
         if ( upTo )
             upSelecter = -2;
         TapDesignerObjectCollection collection = null;
-        procedure.initProcedure();
+        TapGenerationContext context = procedure.initProcedure();
 
-        collection = getObject( upSelecter, procedure.getSeed() );
+        collection = getObject( context, upSelecter, procedure.getSeed() );
         if ( collection != null )
         {
             if ( collection.size() > 0 )
@@ -1016,7 +1170,10 @@ public abstract class TapModule
     {
         if ( isPreviewOn )
         {
-            showPreviewFrame( modifiers );
+            Vector previewed = new Vector();
+
+            previewed.addElement( this );
+            procedure.getGenerationService().submitPreviews( previewed );
         }
     }
 
@@ -1024,13 +1181,14 @@ public abstract class TapModule
     /**
      *  Gets the object attribute of the TapModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The object value
      */
-    public TapDesignerObjectCollection getObject( int outputPort, long seed )
+    public TapDesignerObjectCollection getObject( TapGenerationContext context, int outputPort, long seed )
     {
-        System.out.println( "getObject(int outputPort, long seed) called in TapModule. Should never happen !" );
+        warning( "getObject(int outputPort, long seed) called in TapModule. Should never happen !" );
 
         return null;
     }
@@ -1039,19 +1197,118 @@ public abstract class TapModule
     /**
      *  Gets the object attribute of the TapModule object
      *
+     *@param  context     The generation context
      *@param  collection  Description of the Parameter
      *@param  inputPort   Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The object value
      */
-    public TapDesignerObjectCollection getObject( TapDesignerObjectCollection collection, int inputPort, long seed )
+    public TapDesignerObjectCollection getObject( TapGenerationContext context, TapDesignerObjectCollection collection, int inputPort, long seed )
     {
-        System.out.println( "getObject(TapDesignerObjectCollection collection, int inputPort, long seed) called in TapModule. Should never happen !" );
+        warning( "getObject(TapDesignerObjectCollection collection, int inputPort, long seed) called in TapModule. Should never happen !" );
 
         return null;
     }
 
 
+    /*
+     *  The evaluate methods are the ones modules call on each other : they call getObject() and
+     *  getValue() and record the evaluation in the procedure profiler, if any.
+     */
+    /**
+     *  Gets an object from this module, recording the evaluation in the
+     *  profiler
+     *
+     *@param  context     The generation context
+     *@param  outputPort  The output port
+     *@param  seed        The seed
+     *@return             The object
+     */
+    public final TapDesignerObjectCollection evaluateObject( TapGenerationContext context, int outputPort, long seed )
+    {
+        TapProfiler profiler = context.getProfiler();
+
+        if ( profiler == null )
+            return getObject( context, outputPort, seed );
+
+        TapDesignerObjectCollection col = null;
+        profiler.enter();
+
+        try
+        {
+            col = getObject( context, outputPort, seed );
+        }
+        finally
+        {
+            profiler.exit( this, col );
+        }
+
+        return col;
+    }
+
+
+    /**
+     *  Decorates an object, recording the evaluation in the profiler
+     *
+     *@param  context     The generation context
+     *@param  collection  The object to decorate
+     *@param  inputPort   The input port
+     *@param  seed        The seed
+     *@return             The decorating objects
+     */
+    public final TapDesignerObjectCollection evaluateObject( TapGenerationContext context, TapDesignerObjectCollection collection, int inputPort, long seed )
+    {
+        TapProfiler profiler = context.getProfiler();
+
+        if ( profiler == null )
+            return getObject( context, collection, inputPort, seed );
+
+        TapDesignerObjectCollection col = null;
+        profiler.enter();
+
+        try
+        {
+            col = getObject( context, collection, inputPort, seed );
+        }
+        finally
+        {
+            profiler.exit( this, col );
+        }
+
+        return col;
+    }
+
+
+    /**
+     *  Gets a value from this module, recording the evaluation in the
+     *  profiler
+     *
+     *@param  context     The generation context
+     *@param  outputPort  The output port
+     *@param  var         The variables
+     *@param  seed        The seed
+     *@return             The value
+     */
+    public final double evaluateValue( TapGenerationContext context, int outputPort, double[] var, long seed )
+    {
+        TapProfiler profiler = context.getProfiler();
+
+        if ( profiler == null )
+            return getValue( context, outputPort, var, seed );
+
+        profiler.enter();
+
+        try
+        {
+            return getValue( context, outputPort, var, seed );
+        }
+        finally
+        {
+            profiler.exit( this, null );
+        }
+    }
+
+
     /*
      *  getValue returns a value the calculation of which is based on the values of the var array.
      *  A null var array means that a constant value is requested. A var array of length 1 means that
@@ -1060,14 +1317,15 @@ public abstract class TapModule
     /**
      *  Gets the value attribute of the TapModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  var         Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The value value
      */
-    public double getValue( int outputPort, double[] var, long seed )
+    public double getValue( TapGenerationContext context, int outputPort, double[] var, long seed )
     {
-        System.out.println( "getValue(int outputPort, double[] var, long seed) called in TapModule. Should never happen !" );
+        warning( "getValue(int outputPort, double[] var, long seed) called in TapModule. Should never happen !" );
 
         return 0.0;
     }
@@ -1094,6 +1352,7 @@ public abstract class TapModule
      */
     public void doApply()
     {
+        notifyParametersChanged();
         procedure.setModified( true );
         procedure.doLiveUpdate();
     }
@@ -1279,7 +1538,9 @@ public abstract class TapModule
 
 
     /**
-     *  A class that holds an icon and a name for each module class
+     *  A class that holds an icon and a name for each module class. The icon
+     *  is only loaded when it is displayed, so that modules can be built
+     *  without any user interface (see TapBatchGenerator).
      *
      *@author     Francois Guillet
      *@created    8 mai 2004
@@ -1287,6 +1548,7 @@ public abstract class TapModule
     public class ModuleTypeInfo
     {
         private ImageIcon icon;
+        private String iconPath;
         private String name;
 
 
@@ -1295,8 +1557,11 @@ public abstract class TapModule
          *
          *@return    The icon value
          */
-        public ImageIcon getIcon()
+        public synchronized ImageIcon getIcon()
         {
+            if ( icon == null )
+                icon = new ImageIcon( TapModule.class.getResource( iconPath ) );
+
             return icon;
         }
 
@@ -1315,13 +1580,13 @@ public abstract class TapModule
         /**
          *  Constructor for the ModuleTypeInfo object
          *
-         *@param  name  Name for the module class
-         *@param  icon  Icon for the module class
+         *@param  name      Name for the module class
+         *@param  iconPath  Resource path of the icon for the module class
          */
-        public ModuleTypeInfo( String name, ImageIcon icon )
+        public ModuleTypeInfo( String name, String iconPath )
         {
             this.name = name;
-            this.icon = icon;
+            this.iconPath = iconPath;
         }
     }
 
@@ -64,7 +64,7 @@ public class TopModule
     {
         super( procedure, TapDesignerTranslate.text( "top" ), position );
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "topName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/top_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "topName" ), "/artofillusion/tapDesigner/icons/top_tree.png" );
 
         setNumInput( 2 );
         setNumOutput( 1 );
@@ -203,14 +203,15 @@ public class TopModule
     /**
      *  Gets the object attribute of the TopModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The object value
      */
-    public TapDesignerObjectCollection getObject( int outputPort, long seed )
+    public TapDesignerObjectCollection getObject( TapGenerationContext context, int outputPort, long seed )
     {
         TapDesignerObjectCollection col;
-        TapRandomGenerator gen = new TapRandomGenerator( seed );
+        TapRandomGenerator gen = procedure.newRandomGenerator( seed );
         BackModuleLink.BackLink bl;
         int j;
 
@@ -218,9 +219,7 @@ public class TopModule
         {
             //preview wanted !
 
-            stopHere = true;
-            col = procedure.getTempObject();
-            stopHere = false;
+            col = procedure.getTempObject( this );
 
             return col;
         }
@@ -228,12 +227,12 @@ public class TopModule
         {
             //preview up to
 
-            BackModuleLink backLinks = procedure.getBackLink();
+            BackModuleLink backLinks = context.getBackLinks();
             bl = backLinks.findModule( this, 0 );
             col = null;
 
             if ( bl != null )
-                col = bl.fromModule.getObject( bl.outputPort, gen.getSeed() );
+                col = bl.fromModule.evaluateObject( context, bl.outputPort, gen.getSeed() );
 
             if ( col == null )
                 return null;
@@ -247,7 +246,7 @@ public class TopModule
                 for ( j = 0; j < inputPortLink[0].length; ++j )
                 {
                     TapModule mod = (TapModule) modules.elementAt( linkToIndex[0][j] );
-                    TapDesignerObjectCollection modCol = mod.getObject( col, inputPortLink[0][j], gen.getSeed() );
+                    TapDesignerObjectCollection modCol = mod.evaluateObject( context, col, inputPortLink[0][j], gen.getSeed() );
 
                     if ( modCol != null )
                         col.mergeCollection( modCol, 1 );
@@ -264,12 +263,13 @@ public class TopModule
     /**
      *  Gets the object attribute of the TopModule object
      *
+     *@param  context     The generation context
      *@param  collection  Description of the Parameter
      *@param  inputPort   Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The object value
      */
-    public TapDesignerObjectCollection getObject( TapDesignerObjectCollection collection, int inputPort, long seed )
+    public TapDesignerObjectCollection getObject( TapGenerationContext context, TapDesignerObjectCollection collection, int inputPort, long seed )
     {
         double Ysize;
         Vec3 size;
@@ -285,7 +285,7 @@ public class TopModule
         double Ycenter;
         CoordinateSystem coords = null;
         TapDesignerObjectCollection col;
-        TapRandomGenerator gen = new TapRandomGenerator( seed );
+        TapRandomGenerator gen = procedure.newRandomGenerator( seed );
         BackModuleLink.BackLink bl;
         BoundingBox bounds;
         boolean duplicate;
@@ -295,11 +295,14 @@ public class TopModule
 
         level = collection.elementAt( 0 ).getDecorationLevel();
 
+        if ( isBeyondGenerationLevel( context, level ) )
+            return null;
+
         if ( inputPort == 1 )
         {
             boolean nullObject = false;
             TapDesignerObjectCollection newCollection = new TapDesignerObjectCollection( procedure );
-            BackModuleLink backLinks = procedure.getBackLink();
+            BackModuleLink backLinks = context.getBackLinks();
             mainObject = collection.elementAt( 0 ).objectInfo;
             size = mainObject.object.getBounds().getSize();
             Ysize = size.y;
@@ -308,7 +311,7 @@ public class TopModule
             col = null;
 
             if ( bl != null )
-                col = bl.fromModule.getObject( bl.outputPort, gen.getSeed() );
+                col = bl.fromModule.evaluateObject( context, bl.outputPort, gen.getSeed() );
 
             duplicate = false;
 
@@ -373,21 +376,21 @@ public class TopModule
                 TapDesignerObjectCollection tmpCollection = new TapDesignerObjectCollection( procedure );
                 tmpCollection.addObject( anInfo, level + 1, sizeR, sizeY, objName );
 
-                if ( ( inputPortLink[0] != null ) && ( !stopHere ) )
+                if ( ( inputPortLink[0] != null ) && ( !context.stopsAt( this ) ) )
                 {
                     //modules linked to output will decorate object
 
                     for ( j = 0; j < inputPortLink[0].length; ++j )
                     {
                         TapModule mod = (TapModule) modules.elementAt( linkToIndex[0][j] );
-                        TapDesignerObjectCollection modCol = mod.getObject( tmpCollection, inputPortLink[0][j], gen.getSeed() );
+                        TapDesignerObjectCollection modCol = mod.evaluateObject( context, tmpCollection, inputPortLink[0][j], gen.getSeed() );
 
                         if ( modCol != null )
                             tmpCollection.mergeCollection( modCol, 0 );
                     }
                 }
 
-                if ( ( inputPortLink[0] != null ) && ( stopHere ) )
+                if ( ( inputPortLink[0] != null ) && ( context.stopsAt( this ) ) )
                     //preserve random sequence
                     gen.getSeed();
                 else if ( nullObject )
@@ -464,41 +467,57 @@ public class TopModule
     /**
      *  Gets the value attribute of the TopModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  var         Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The value value
      */
-    public double getValue( int outputPort, double[] var, long seed )
+    public double getValue( TapGenerationContext context, int outputPort, double[] var, long seed )
     {
         return (double) 0.0;
     }
 
 
     /**
-     *  Description of the Method
+     *  The object only depends on the module parameters and on the object
+     *  decorated
+     *
+     *@return    true
+     */
+    public boolean isReentrant()
+    {
+        return true;
+    }
+
+
+    /**
+     *  Builds the object displayed in the preview window of this module
      *
-     *@param  modifiers  Description of the Parameter
+     *@param  modifiers  The modifiers of the preview request
+     *@return            The preview object, or null if there is nothing to
+     *      show
      */
-    public void showPreviewFrame( int modifiers )
+    public ObjectInfo buildPreviewObject( int modifiers )
     {
-        super.showPreviewFrame( modifiers );
 
         TapDesignerObjectCollection collection = null;
-        procedure.initProcedure();
+        TapGenerationContext context = procedure.initProcedure();
 
         if ( ( modifiers & ActionEvent.CTRL_MASK ) != 0 )
-            collection = getObject( -2, procedure.getSeed() );
+            collection = getObject( context, -2, procedure.getSeed() );
         else
-            collection = getObject( -1, procedure.getSeed() );
+            collection = getObject( context, -1, procedure.getSeed() );
 
         if ( collection != null )
             if ( collection.size() > 0 )
             {
                 ObjectInfo newObjectInfo = new ObjectInfo( collection, new CoordinateSystem(), getName() );
                 newObjectInfo.object.setTexture( procedure.getScene().getDefaultTexture(), procedure.getScene().getDefaultTexture().getDefaultMapping(newObjectInfo.object) );
-                setupPreviewFrame( newObjectInfo );
+                return newObjectInfo;
             }
+
+        return null;
     }
 
 
@@ -55,7 +55,7 @@ public class TubeModule
     {
         super( procedure, TapDesignerTranslate.text( "tube" ), position );
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "tubeName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/tube_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "tubeName" ), "/artofillusion/tapDesigner/icons/tube_tree.png" );
 
         int numYPoints = 3;
         int i;
@@ -306,15 +306,6 @@ public class TubeModule
 
 
 
-        /**
-         *  Description of the Method
-         */
-        protected void doModified()
-        {
-            super.doModified();
-            currentSizedObject = null;
-        }
-
 
         /**
          *  Description of the Method
@@ -390,7 +381,6 @@ public class TubeModule
             setCurrentObject( backupObject );
             deliverDuplicates = backDeliver;
             currentObject.visible = !backHidden;
-            currentSizedObject = null;
         }
 
 
@@ -402,7 +392,6 @@ public class TubeModule
             setCurrentObject( currentObject );
             deliverDuplicates = deliverCB.getState();
             currentObject.visible = !hiddenCB.getState();
-            currentSizedObject = null;
         }
 
 
@@ -694,7 +683,6 @@ public class TubeModule
             //previewer.setPreferredSize( 160, 160 );
             //previewer.setSize( new Dimension( 160, 160 ) );
             //previewPanel.add( previewer );
-            currentSizedObject = null;
             doApply();
             repaint();
         }
@@ -726,7 +714,6 @@ public class TubeModule
                 ObjectInfo[] obj = new ObjectInfo[1];
                 obj[0] = currentObject;
                 //new ObjectTextureDialog( this, procedure.getScene(), obj );
-                currentSizedObject = null;
             }
             else if ( command.equals( materialButton.getActionCommand() ) )
             {
@@ -734,7 +721,6 @@ public class TubeModule
                 ObjectInfo[] obj = new ObjectInfo[1];
                 obj[0] = currentObject;
                 //new ObjectMaterialDialog( this, procedure.getScene(), obj );
-                currentSizedObject = null;
             }
             else if ( command.equals( cancelButton.getActionCommand() ) )
                 doCancel();
@@ -743,7 +729,6 @@ public class TubeModule
                 doRunnableUpdate();
                 deliverDuplicates = deliverCB.isSelected();
                 currentObject.visible = !hiddenCB.isSelected();
-                currentSizedObject = null;
                 doApply();
             }
             else if ( command.equals( okButton.getActionCommand() ) )
@@ -758,7 +743,6 @@ public class TubeModule
                 }
                 deliverDuplicates = deliverCB.isSelected();
                 currentObject.visible = !hiddenCB.isSelected();
-                currentSizedObject = null;
                 doRunnableUpdate();
                 doApply();
                 editDialogClosed();
@@ -868,7 +852,6 @@ public class TubeModule
             {
                 setCurrentObject( backupObject );
                 deliverDuplicates = deliverDupBackup;
-                currentSizedObject = null;
                 editDialogClosed();
             }
         }
@@ -70,7 +70,7 @@ public class UnaryOpModule
     {
         super( procedure, opNames[0], position );
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "unaryOpName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/unary_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "unaryOpName" ), "/artofillusion/tapDesigner/icons/unary_tree.png" );
 
         opType = ABS;
         setNumInput( 1 );
@@ -185,20 +185,32 @@ public class UnaryOpModule
     //}}}
 
     //{{{ getValue stuff
+    /**
+     *  The value only depends on the seed and on the upstream values
+     *
+     *@return    true
+     */
+    public boolean isReentrant()
+    {
+        return true;
+    }
+
+
     /**
      *  Gets the value output of the UnaryOpModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  The index of the output port concerned
      *@param  var         The parameters array used (if need be) for calculation
      *@param  seed        The random seed
      *@return             The value output
      */
-    public double getValue( int outputPort, double[] var, long seed )
+    public double getValue( TapGenerationContext context, int outputPort, double[] var, long seed )
     {
         if ( outputPort == 0 )
         {
-            TapRandomGenerator gen = new TapRandomGenerator( seed );
-            BackModuleLink backLinks = procedure.getBackLink();
+            TapRandomGenerator gen = procedure.newRandomGenerator( seed );
+            BackModuleLink backLinks = context.getBackLinks();
             BackModuleLink.BackLink bl = null;
             double aValue;
             double[] yVal = {0.0};
@@ -206,18 +218,21 @@ public class UnaryOpModule
             bl = backLinks.findModule( this, 0 );
 
             if ( bl != null )
-                aValue = bl.fromModule.getValue( bl.outputPort, yVal, gen.getSeed() );
+                aValue = bl.fromModule.evaluateValue( context, bl.outputPort, yVal, gen.getSeed() );
             else
                 aValue = 0;
 
-            System.out.println( "a, op, result : " + aValue + " " + opNames[opType] + " " + unaryOperation( aValue ) );
+            double result = unaryOperation( aValue );
+
+            if ( TapLog.TRACE )
+                TapLog.debug( name, "a, op, result : " + aValue + " " + opNames[opType] + " " + result );
 
-            return unaryOperation( aValue );
+            return result;
         }
 
         else
         {
-            System.out.println( "wrong output port for unary operation : " + outputPort );
+            warning( "wrong output port for unary operation : " + outputPort );
 
             return (double) 0.0;
             //should never happen !!!
@@ -247,7 +262,7 @@ public class UnaryOpModule
                 if ( a > 0 )
                     return Math.log( 0 );
                 else
-                    System.out.println( "log(<=0) unary funtion module." );
+                    warning( "log(<=0) unary funtion module." );
 
                 return 0;
             case EXP:
@@ -257,7 +272,7 @@ public class UnaryOpModule
                 if ( a >= 0 )
                     return Math.sqrt( 0 );
                 else
-                    System.out.println( "sqrt(<0) unary function module." );
+                    warning( "sqrt(<0) unary function module." );
 
                 return 0;
         }
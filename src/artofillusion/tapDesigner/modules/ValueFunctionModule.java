@@ -59,7 +59,7 @@ public class ValueFunctionModule extends TapModule
     {
         super( procedure, TapDesignerTranslate.text( "function" ), position );
         if ( typeInfo == null )
-            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "functionName" ), new ImageIcon( getClass().getResource( "/artofillusion/tapDesigner/icons/function_tree.png" ) ) );
+            typeInfo = new ModuleTypeInfo( TapBTranslate.text( "functionName" ), "/artofillusion/tapDesigner/icons/function_tree.png" );
 
         setNumInput( 0 );
         setNumOutput( 1 );
@@ -189,19 +189,31 @@ public class ValueFunctionModule extends TapModule
     }
 
 
+    /**
+     *  The value only depends on the seed and on the upstream values
+     *
+     *@return    true
+     */
+    public boolean isReentrant()
+    {
+        return true;
+    }
+
+
     /**
      *  Gets the value attribute of the ValueFunctionModule object
      *
+     *@param  context     The generation context
      *@param  outputPort  Description of the Parameter
      *@param  var         Description of the Parameter
      *@param  seed        Description of the Parameter
      *@return             The value value
      */
-    public double getValue( int outputPort, double[] var, long seed )
+    public double getValue( TapGenerationContext context, int outputPort, double[] var, long seed )
     {
         if ( outputPort != 0 )
         {
-            System.out.println( "Erreur sur le port module fonction :" + outputPort );
+            warning( "wrong output port for value function : " + outputPort );
             return 0.0;
         }
         if ( var == null )
@@ -0,0 +1,304 @@
+/*
+ *  Branching effects queued on a TaPD object, applied all at once when its mesh is
+ *  regenerated.
+ */
+/*
+ *  Copyright (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import artofillusion.math.*;
+
+
+/**
+ *  Queue of counter actions (see TapObject.queueCounterAction()). The
+ *  parameters are copied when queued, so the caller may reuse its
+ *  TapDistortParameters. Once the object has applied the queue, the
+ *  positions of the branches can be read back; queuing a new counter action
+ *  afterwards starts a new batch.
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+public class TapCounterActions
+{
+    private double[] yPos;
+    private double[] angle;
+    private double[] counterAction;
+    private boolean[] recover;
+    private double[] recoverRate;
+    private Mat4[] positions;
+    private int count;
+    private boolean applied;
+
+
+    /**
+     *  Constructor for the TapCounterActions object
+     */
+    public TapCounterActions()
+    {
+        yPos = new double[16];
+        angle = new double[16];
+        counterAction = new double[16];
+        recover = new boolean[16];
+        recoverRate = new double[16];
+        positions = new Mat4[16];
+    }
+
+
+    /**
+     *  Queues a counter action
+     *
+     *@param  y      The position along the object
+     *@param  a      The horizontal angle of the branch
+     *@param  parms  The distortion parameters
+     *@return        The index of the counter action
+     */
+    public int add( double y, double a, TapDistortParameters parms )
+    {
+        if ( applied )
+        {
+            count = 0;
+            applied = false;
+        }
+
+        if ( count == yPos.length )
+            grow();
+
+        yPos[count] = y;
+        angle[count] = a;
+        counterAction[count] = parms.counterAction;
+        recover[count] = parms.recover;
+        recoverRate[count] = parms.recoverRate;
+        positions[count] = null;
+
+        return count++;
+    }
+
+
+    /**
+     *  Doubles the capacity of the queue
+     */
+    private void grow()
+    {
+        int size = yPos.length * 2;
+        double[] newYPos = new double[size];
+        double[] newAngle = new double[size];
+        double[] newCounterAction = new double[size];
+        boolean[] newRecover = new boolean[size];
+        double[] newRecoverRate = new double[size];
+        Mat4[] newPositions = new Mat4[size];
+
+        System.arraycopy( yPos, 0, newYPos, 0, count );
+        System.arraycopy( angle, 0, newAngle, 0, count );
+        System.arraycopy( counterAction, 0, newCounterAction, 0, count );
+        System.arraycopy( recover, 0, newRecover, 0, count );
+        System.arraycopy( recoverRate, 0, newRecoverRate, 0, count );
+        System.arraycopy( positions, 0, newPositions, 0, count );
+        yPos = newYPos;
+        angle = newAngle;
+        counterAction = newCounterAction;
+        recover = newRecover;
+        recoverRate = newRecoverRate;
+        positions = newPositions;
+    }
+
+
+    /**
+     *  Returns true if counter actions are waiting to be applied
+     *
+     *@return    The pending value
+     */
+    public boolean isPending()
+    {
+        return count > 0 && !applied;
+    }
+
+
+    /**
+     *  Returns the number of counter actions of the batch
+     *
+     *@return    The number of counter actions
+     */
+    public int size()
+    {
+        return count;
+    }
+
+
+    /**
+     *  Returns the indices of the counter actions sorted along the object,
+     *  in queuing order for equal positions. Distributors queue them nearly
+     *  sorted, so an insertion sort is used.
+     *
+     *@return    The sorted indices
+     */
+    public int[] getSortedOrder()
+    {
+        int[] order = new int[count];
+
+        for ( int i = 0; i < count; ++i )
+        {
+            int j = i;
+
+            while ( j > 0 && yPos[order[j - 1]] > yPos[i] )
+            {
+                order[j] = order[j - 1];
+                --j;
+            }
+
+            order[j] = i;
+        }
+
+        return order;
+    }
+
+
+    /**
+     *  Gets the position along the object of a counter action
+     *
+     *@param  index  The counter action index
+     *@return        The position
+     */
+    public double getYPos( int index )
+    {
+        return yPos[index];
+    }
+
+
+    /**
+     *  Stores the placement matrix of a branch
+     *
+     *@param  index     The counter action index
+     *@param  position  The placement matrix
+     */
+    public void setPosition( int index, Mat4 position )
+    {
+        positions[index] = position;
+    }
+
+
+    /**
+     *  Gets the placement matrix of a branch, once the counter actions have
+     *  been applied
+     *
+     *@param  index  The counter action index
+     *@return        The placement matrix
+     */
+    public Mat4 getPosition( int index )
+    {
+        return positions[index];
+    }
+
+
+    /**
+     *  Marks the batch as applied
+     */
+    public void setApplied()
+    {
+        applied = true;
+    }
+
+
+    /**
+     *  Placement matrix at an end of the Y curve, where no counter action
+     *  takes place
+     *
+     *@param  yVert  The Y curve vertices
+     *@param  top    True for the top end
+     *@return        The placement matrix
+     */
+    public static Mat4 getEndPosition( Vec3[] yVert, boolean top )
+    {
+        int n = yVert.length;
+        Vec3 deriv = top ? yVert[n - 1].minus( yVert[n - 2] ) : yVert[1].minus( yVert[0] );
+        deriv.normalize();
+
+        Vec3 yVec = new Vec3( 0, 1, 0 );
+        Vec3 axis = yVec.cross( deriv );
+        Mat4 m = Mat4.axisRotation( axis, Math.acos( yVec.dot( deriv ) ) );
+
+        if ( !top )
+            return m;
+
+        return Mat4.translation( yVert[n - 1].x, yVert[n - 1].y, yVert[n - 1].z ).times( m );
+    }
+
+
+    /**
+     *  Bends the Y curve above a branch and returns the placement matrix of
+     *  the branch. The recovery rotations are accumulated in a single
+     *  transform, so that each vertex is moved once.
+     *
+     *@param  yVert       The Y curve vertices, modified
+     *@param  yPositions  The relative positions of the vertices
+     *@param  i1          The vertex below the branch
+     *@param  i2          The vertex above the branch
+     *@param  position    The branch location on the curve, before bending
+     *@param  index       The counter action index
+     *@return             The placement matrix
+     */
+    public Mat4 apply( Vec3[] yVert, double[] yPositions, int i1, int i2, Vec3 position, int index )
+    {
+        double reacAngle = counterAction[index] * Math.PI / 180;
+        Vec3 axis = yVert[i2].minus( yVert[i1] );
+        axis.normalize();
+
+        Vec3 deriv = new Vec3( axis );
+        Vec3 raxis = new Vec3( 0, 1, 0 );
+        Mat4 m = Mat4.axisRotation( raxis, angle[index] );
+        raxis = new Vec3( 1, 0, 0 );
+        m.transform( raxis );
+        axis = axis.cross( raxis );
+
+        Vec3 naxis = new Vec3( axis );
+        m = Mat4.axisRotation( axis, reacAngle );
+
+        Vec3 pivot = yVert[i2 - 1];
+
+        for ( int i = i2; i < yVert.length; ++i )
+        {
+            yVert[i] = yVert[i].minus( pivot );
+            m.transform( yVert[i] );
+            yVert[i] = yVert[i].plus( pivot );
+        }
+
+        if ( ( i2 + 1 < yVert.length ) && ( recover[index] ) )
+        {
+            Mat4 t = null;
+
+            for ( int i = i2 + 1; i < yVert.length; ++i )
+            {
+                double ratio = ( yPositions[i] - yPositions[i - 1] ) / ( 1.0 - yPositions[i - 1] );
+                double dumAngle = reacAngle * ratio * recoverRate[index];
+                reacAngle = reacAngle - dumAngle;
+
+                if ( reacAngle < 0 )
+                    reacAngle = 0;
+
+                //yVert[i - 1] has already received the previous rotations
+                Vec3 p = yVert[i - 1];
+                Mat4 r = Mat4.translation( p.x, p.y, p.z ).times( Mat4.axisRotation( naxis, -dumAngle ) ).times( Mat4.translation( -p.x, -p.y, -p.z ) );
+
+                if ( t == null )
+                    t = r;
+                else
+                    t = r.times( t );
+
+                yVert[i] = t.times( yVert[i] );
+            }
+        }
+
+        Vec3 yVec = new Vec3( 0, 1, 0 );
+        axis = yVec.cross( deriv );
+        m = Mat4.axisRotation( axis, Math.acos( yVec.dot( deriv ) ) );
+
+        return Mat4.translation( position.x, position.y, position.z ).times( m );
+    }
+}
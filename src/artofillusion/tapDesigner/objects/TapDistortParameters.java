@@ -140,6 +140,98 @@ public class TapDistortParameters
     }
 
 
+    /**
+     *  Returns true if the distortion draws random numbers, i.e. if it
+     *  depends on the seed
+     *
+     *@return    The random value
+     */
+    public boolean isRandom()
+    {
+        return ( curveAngleDist != 0 ) || ( perpCurveAngleDist != 0 ) || ( randomTilt != 0 ) || ( twistTurnsDist != 0 ) || ( sectionJitter != 0 ) || ( leafCurveAngleDist != 0 );
+    }
+
+
+    /**
+     *  Two parameter sets are equal if they distort an object the same way. The
+     *  seed only matters if the distortion is random.
+     *
+     *@param  obj  Description of the Parameter
+     *@return      Description of the Return Value
+     */
+    public boolean equals( Object obj )
+    {
+        if ( !( obj instanceof TapDistortParameters ) )
+            return false;
+
+        TapDistortParameters parms = (TapDistortParameters) obj;
+
+        return ( parms.seed == seed || !isRandom() )
+            && ( parms.curveAngleDistType == curveAngleDistType )
+            && ( parms.perpCurveAngleDistType == perpCurveAngleDistType )
+            && ( parms.twistDistType == twistDistType )
+            && ( parms.leafCurveAngleDistType == leafCurveAngleDistType )
+            && ( parms.recover == recover )
+            && ( parms.randomTiltDiv == randomTiltDiv )
+            && ( parms.curveAngle == curveAngle )
+            && ( parms.curveAngleBack == curveAngleBack )
+            && ( parms.curveAngleDist == curveAngleDist )
+            && ( parms.sectionJitter == sectionJitter )
+            && ( parms.perpCurveAngle == perpCurveAngle )
+            && ( parms.perpCurveAngleBack == perpCurveAngleBack )
+            && ( parms.perpCurveAngleDist == perpCurveAngleDist )
+            && ( parms.curveRate == curveRate )
+            && ( parms.perpCurveRate == perpCurveRate )
+            && ( parms.counterAction == counterAction )
+            && ( parms.recoverRate == recoverRate )
+            && ( parms.randomTilt == randomTilt )
+            && ( parms.twistTurns == twistTurns )
+            && ( parms.twistTurnsDist == twistTurnsDist )
+            && ( parms.leafCurveAngle == leafCurveAngle )
+            && ( parms.leafCurveAngleBack == leafCurveAngleBack )
+            && ( parms.leafCurveAngleDist == leafCurveAngleDist )
+            && ( parms.leafCurveRate == leafCurveRate )
+            && ( parms.leafRRatio == leafRRatio )
+            && ( parms.leafDepartureAngle == leafDepartureAngle );
+    }
+
+
+    /**
+     *  Description of the Method
+     *
+     *@return    Description of the Return Value
+     */
+    public int hashCode()
+    {
+        long bits = ( isRandom() ? seed : 0 );
+
+        bits = bits * 31 + Double.doubleToLongBits( curveAngle );
+        bits = bits * 31 + Double.doubleToLongBits( curveAngleBack );
+        bits = bits * 31 + Double.doubleToLongBits( curveAngleDist );
+        bits = bits * 31 + Double.doubleToLongBits( sectionJitter );
+        bits = bits * 31 + Double.doubleToLongBits( perpCurveAngle );
+        bits = bits * 31 + Double.doubleToLongBits( perpCurveAngleBack );
+        bits = bits * 31 + Double.doubleToLongBits( perpCurveAngleDist );
+        bits = bits * 31 + Double.doubleToLongBits( curveRate );
+        bits = bits * 31 + Double.doubleToLongBits( perpCurveRate );
+        bits = bits * 31 + Double.doubleToLongBits( counterAction );
+        bits = bits * 31 + Double.doubleToLongBits( recoverRate );
+        bits = bits * 31 + Double.doubleToLongBits( randomTilt );
+        bits = bits * 31 + Double.doubleToLongBits( twistTurns );
+        bits = bits * 31 + Double.doubleToLongBits( twistTurnsDist );
+        bits = bits * 31 + Double.doubleToLongBits( leafCurveAngle );
+        bits = bits * 31 + Double.doubleToLongBits( leafCurveAngleBack );
+        bits = bits * 31 + Double.doubleToLongBits( leafCurveAngleDist );
+        bits = bits * 31 + Double.doubleToLongBits( leafCurveRate );
+        bits = bits * 31 + Double.doubleToLongBits( leafRRatio );
+        bits = bits * 31 + Double.doubleToLongBits( leafDepartureAngle );
+        bits = bits * 31 + curveAngleDistType + perpCurveAngleDistType * 3 + twistDistType * 7 + leafCurveAngleDistType * 11;
+        bits = bits * 31 + randomTiltDiv + ( recover ? 1 : 0 );
+
+        return (int) ( bits ^ ( bits >>> 32 ) );
+    }
+
+
     /**
      *  Constructor for the TapDistortParameters object
      *
@@ -41,14 +41,10 @@ public class TapLeaf
     float boundEdgeSmoothness;
     short orientation;
     TapFunction shape;
-    SplineMesh originalSplineMesh;
-    SplineMesh subdividedSplineMesh;
+    TapLeafBase base;
     double tolerance;
     double thickness;
-    double[] meshThickness;
-    int[] meshPositionRef;
-    Vec3[] meshPositionTranslation;
-    Vec3[] meshOriginalNorm;
+    TapCounterActions counterActions;
 
 
     /**
@@ -67,9 +63,8 @@ public class TapLeaf
     {
         super( new Vertex[0], new int[0][0] );
         tolerance = tol;
-        originalSplineMesh = (SplineMesh) s.duplicate();
-        subdividedSplineMesh = (SplineMesh) s.duplicate();
 
+        SplineMesh subdividedSplineMesh = (SplineMesh) s.duplicate();
         MeshVertex[] v = subdividedSplineMesh.getVertices();
         Vec3[] vr = new Vec3[v.length];
         double miny = 1e8;
@@ -86,7 +81,7 @@ public class TapLeaf
 
         subdividedSplineMesh.setVertexPositions( vr );
         super.copyObject( subdividedSplineMesh.convertToTriangleMesh( tol ) );
-        subdividedSplineMesh = SplineMesh.subdivideMesh( subdividedSplineMesh, tol );
+        base = new TapLeafBase( (SplineMesh) s.duplicate(), SplineMesh.subdivideMesh( subdividedSplineMesh, tol ) );
         vertSmoothness = vs;
         edgeSmoothness = es;
         boundVertSmoothness = bvs;
@@ -327,9 +322,9 @@ public class TapLeaf
         //spline mesh and triangular spline mesh are identical)
         //may change in the future, hence the general algorithm
         Vertex[] newVert = new Vertex[vert.length * 2 - numBoundary];
-        meshThickness = new double[vert.length * 2 - numBoundary];
-        meshPositionRef = new int[vert.length * 2 - numBoundary];
-        meshPositionTranslation = new Vec3[vert.length * 2 - numBoundary];
+        double[] meshThickness = new double[vert.length * 2 - numBoundary];
+        int[] meshPositionRef = new int[vert.length * 2 - numBoundary];
+        Vec3[] meshPositionTranslation = new Vec3[vert.length * 2 - numBoundary];
 
         //verticesRef marks the boundary vertices as negative
         //newVertRef establishes correspondance between new and old vertices.
@@ -353,8 +348,11 @@ public class TapLeaf
                 ++j;
             }
 
-        MeshVertex[] splineVertices = subdividedSplineMesh.getVertices();
-        meshOriginalNorm = subdividedSplineMesh.getNormals();
+        MeshVertex[] splineVertices = base.subdividedSplineMesh.getVertices();
+        base.meshOriginalNorm = base.subdividedSplineMesh.getNormals();
+        base.meshThickness = meshThickness;
+        base.meshPositionRef = meshPositionRef;
+        base.meshPositionTranslation = meshPositionTranslation;
 
         j = vert.length;
 
@@ -583,12 +581,32 @@ public class TapLeaf
     public void setShape( TapDistortParameters parms )
     {
         if ( parms != null )
-            TapUtils.distortSplineMesh( subdividedSplineMesh, parms );
+            TapUtils.distortSplineMesh( getWritableBase( false ).subdividedSplineMesh, parms );
 
         updateMesh();
     }
 
 
+    /**
+     *  Gets the base of this leaf, forked first if it can't be modified in
+     *  place
+     *
+     *@param  original  True if the original spline mesh is to be modified
+     *@return           The writable base
+     */
+    private TapLeafBase getWritableBase( boolean original )
+    {
+        if ( !base.isWritable( original ) )
+        {
+            TapLeafBase newBase = base.fork( original );
+            base.release();
+            base = newBase;
+        }
+
+        return base;
+    }
+
+
     /**
      *  Description of the Method
      *
@@ -613,8 +631,15 @@ public class TapLeaf
         super.copyObject( obj );
 
         TapLeaf leaf = (TapLeaf) obj;
-        originalSplineMesh = (SplineMesh) leaf.originalSplineMesh.duplicate();
-        subdividedSplineMesh = (SplineMesh) leaf.subdividedSplineMesh.duplicate();
+
+        if ( base != leaf.base )
+        {
+            if ( base != null )
+                base.release();
+
+            base = leaf.base.acquire();
+        }
+
         orientation = leaf.orientation;
         vertSmoothness = leaf.vertSmoothness;
         edgeSmoothness = leaf.edgeSmoothness;
@@ -622,21 +647,6 @@ public class TapLeaf
         boundEdgeSmoothness = leaf.boundEdgeSmoothness;
         tolerance = leaf.tolerance;
         thickness = leaf.thickness;
-        meshThickness = new double[leaf.meshThickness.length];
-        meshPositionRef = new int[leaf.meshPositionRef.length];
-        meshPositionTranslation = new Vec3[leaf.meshPositionTranslation.length];
-        meshOriginalNorm = new Vec3[leaf.meshOriginalNorm.length];
-
-        for ( int i = 0; i < meshThickness.length; ++i )
-        {
-            meshThickness[i] = leaf.meshThickness[i];
-            meshPositionRef[i] = leaf.meshPositionRef[i];
-            meshPositionTranslation[i] = new Vec3( leaf.meshPositionTranslation[i] );
-        }
-
-        for ( int i = 0; i < meshOriginalNorm.length; ++i )
-            meshOriginalNorm[i] = new Vec3( leaf.meshOriginalNorm[i] );
-
         shape = leaf.shape.duplicate();
     }
 
@@ -650,10 +660,14 @@ public class TapLeaf
     public void setTexture( Texture tex, TextureMapping mapping )
     {
         super.setTexture( tex, mapping );
-        if ( originalSplineMesh != null )
-            originalSplineMesh.setTexture( tex, mapping );
-        if ( subdividedSplineMesh != null )
-            subdividedSplineMesh.setTexture( tex, mapping );
+
+        //leaves sharing their spline meshes already share the texture
+        if ( base != null && ( base.isWritable( true ) || base.originalSplineMesh.getTexture() != tex ) )
+        {
+            getWritableBase( true );
+            base.originalSplineMesh.setTexture( tex, mapping );
+            base.subdividedSplineMesh.setTexture( tex, mapping );
+        }
     }
 
 
@@ -725,8 +739,12 @@ public class TapLeaf
     private void updateMesh()
     {
         Vertex[] vert = (Vertex[]) getVertices();
-        Vec3[] newNormals = subdividedSplineMesh.getNormals();
-        MeshVertex[] splineVert = subdividedSplineMesh.getVertices();
+        Vec3[] newNormals = base.subdividedSplineMesh.getNormals();
+        MeshVertex[] splineVert = base.subdividedSplineMesh.getVertices();
+        double[] meshThickness = base.meshThickness;
+        int[] meshPositionRef = base.meshPositionRef;
+        Vec3[] meshPositionTranslation = base.meshPositionTranslation;
+        Vec3[] meshOriginalNorm = base.meshOriginalNorm;
         int i;
         int l;
 
@@ -766,6 +784,9 @@ public class TapLeaf
     public void regenerateMesh()
     {
         updateMesh();
+
+        if ( counterActions != null )
+            counterActions.setApplied();
     }
 
 
@@ -776,7 +797,7 @@ public class TapLeaf
      */
     public SplineMesh getOriginalSplineMesh()
     {
-        return (SplineMesh) originalSplineMesh.duplicate();
+        return (SplineMesh) base.originalSplineMesh.duplicate();
     }
 
 
@@ -799,6 +820,7 @@ public class TapLeaf
         i1 = 0;
         i2 = 1;
 
+        SplineMesh subdividedSplineMesh = base.subdividedSplineMesh;
         int usize = subdividedSplineMesh.getUSize();
         int vsize = subdividedSplineMesh.getVSize();
         double[] yPositions = new double[vsize];
@@ -924,8 +946,7 @@ public class TapLeaf
         if ( ( version < 0 ) || ( version > 0 ) )
             throw new InvalidObjectException( "" );
 
-        originalSplineMesh = new SplineMesh( in, theScene );
-        subdividedSplineMesh = new SplineMesh( in, theScene );
+        base = new TapLeafBase( new SplineMesh( in, theScene ), new SplineMesh( in, theScene ) );
         orientation = in.readShort();
         tolerance = in.readDouble();
         thickness = in.readDouble();
@@ -936,12 +957,12 @@ public class TapLeaf
         shape = new TapFunction( in );
 
         Vertex[] vert = (Vertex[]) getVertices();
-        meshThickness = new double[vert.length];
-        meshPositionRef = new int[vert.length];
-        meshPositionTranslation = new Vec3[vert.length];
+        double[] meshThickness = new double[vert.length];
+        int[] meshPositionRef = new int[vert.length];
+        Vec3[] meshPositionTranslation = new Vec3[vert.length];
 
-        Vec3[] norms = subdividedSplineMesh.getNormals();
-        meshOriginalNorm = new Vec3[norms.length];
+        Vec3[] norms = base.subdividedSplineMesh.getNormals();
+        Vec3[] meshOriginalNorm = new Vec3[norms.length];
 
         for ( i = 0; i < vert.length; ++i )
         {
@@ -952,6 +973,11 @@ public class TapLeaf
 
         for ( i = 0; i < norms.length; ++i )
             meshOriginalNorm[i] = new Vec3( in );
+
+        base.meshThickness = meshThickness;
+        base.meshPositionRef = meshPositionRef;
+        base.meshPositionTranslation = meshPositionTranslation;
+        base.meshOriginalNorm = meshOriginalNorm;
     }
 
 
@@ -970,8 +996,8 @@ public class TapLeaf
         int i;
 
         out.writeShort( 0 );
-        originalSplineMesh.writeToFile( out, theScene );
-        subdividedSplineMesh.writeToFile( out, theScene );
+        base.originalSplineMesh.writeToFile( out, theScene );
+        base.subdividedSplineMesh.writeToFile( out, theScene );
         out.writeShort( orientation );
         out.writeDouble( tolerance );
         out.writeDouble( thickness );
@@ -983,13 +1009,13 @@ public class TapLeaf
 
         for ( i = 0; i < getVertices().length; ++i )
         {
-            out.writeDouble( meshThickness[i] );
-            out.writeInt( meshPositionRef[i] );
-            meshPositionTranslation[i].writeToFile( out );
+            out.writeDouble( base.meshThickness[i] );
+            out.writeInt( base.meshPositionRef[i] );
+            base.meshPositionTranslation[i].writeToFile( out );
         }
 
-        for ( i = 0; i < subdividedSplineMesh.getNormals().length; ++i )
-            meshOriginalNorm[i].writeToFile( out );
+        for ( i = 0; i < base.subdividedSplineMesh.getNormals().length; ++i )
+            base.meshOriginalNorm[i].writeToFile( out );
     }
 
 
@@ -1030,6 +1056,7 @@ public class TapLeaf
      */
     public void setSize( double xsize, double ysize, double zsize, TapDistortParameters parms )
     {
+        SplineMesh subdividedSplineMesh = getWritableBase( false ).subdividedSplineMesh;
         subdividedSplineMesh.getBounds();
         subdividedSplineMesh.setSize( xsize, ysize, zsize );
 
@@ -1054,6 +1081,41 @@ public class TapLeaf
     }
 
 
+    /*
+     *  leaves have no counter action, the position is computed at once
+     */
+    /**
+     *  Description of the Method
+     *
+     *@param  yPos   The position along the leaf
+     *@param  angle  The horizontal angle of the branch
+     *@param  parms  The distortion parameters
+     *@return        The counter action index
+     */
+    public int queueCounterAction( double yPos, double angle, TapDistortParameters parms )
+    {
+        if ( counterActions == null )
+            counterActions = new TapCounterActions();
+
+        int index = counterActions.add( yPos, angle, parms );
+        counterActions.setPosition( index, getPosition( yPos, angle, false ) );
+
+        return index;
+    }
+
+
+    /**
+     *  Gets the position of a queued branch
+     *
+     *@param  index  The counter action index
+     *@return        The position
+     */
+    public Mat4 getCounterActionPosition( int index )
+    {
+        return counterActions.getPosition( index );
+    }
+
+
     /*
      *  these functions are for compatibility with the Object3D class
      */
@@ -0,0 +1,121 @@
+/*
+ *  The spline meshes and the thickening data a leaf is built from, shared by the copies
+ *  of a leaf.
+ */
+/*
+ *  (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import artofillusion.math.*;
+import artofillusion.object.*;
+
+
+/**
+ *  Base of a TapLeaf. The thickening arrays (meshThickness, meshPositionRef,
+ *  meshPositionTranslation and meshOriginalNorm) are computed once when the
+ *  leaf is built and never modified afterwards, so they are shared by all
+ *  the bases forked from the first one. The spline meshes are shared by the
+ *  leaves using this base : a leaf about to distort, resize or retexture them
+ *  must first fork the base unless it is writable (copy on write). Forked
+ *  bases keep sharing the original spline mesh until it is retextured.<p>
+ *
+ *  The users count is only decremented when a leaf forks or drops the base,
+ *  not when a leaf is garbage collected, so it may overestimate the number of
+ *  leaves sharing the base : the only consequence is a spare copy.
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+public class TapLeafBase
+{
+    SplineMesh originalSplineMesh;
+    SplineMesh subdividedSplineMesh;
+    double[] meshThickness;
+    int[] meshPositionRef;
+    Vec3[] meshPositionTranslation;
+    Vec3[] meshOriginalNorm;
+    private boolean ownsOriginal;
+    private int users;
+
+
+    /**
+     *  Constructor for the TapLeafBase object, used by a single leaf
+     *
+     *@param  original    The spline mesh the leaf was built from
+     *@param  subdivided  The subdivided spline mesh
+     */
+    public TapLeafBase( SplineMesh original, SplineMesh subdivided )
+    {
+        originalSplineMesh = original;
+        subdividedSplineMesh = subdivided;
+        ownsOriginal = true;
+        users = 1;
+    }
+
+
+    /**
+     *  Registers a new leaf using this base
+     *
+     *@return    This base
+     */
+    public synchronized TapLeafBase acquire()
+    {
+        ++users;
+
+        return this;
+    }
+
+
+    /**
+     *  Unregisters a leaf which no longer uses this base
+     */
+    public synchronized void release()
+    {
+        if ( users > 0 )
+            --users;
+    }
+
+
+    /**
+     *  Returns true if the spline meshes can be modified in place : the base is
+     *  used by a single leaf and no other base shares its original spline mesh
+     *
+     *@param  original  True if the original spline mesh is to be modified
+     *@return           The writable value
+     */
+    public synchronized boolean isWritable( boolean original )
+    {
+        return users <= 1 && ( ownsOriginal || !original );
+    }
+
+
+    /**
+     *  Returns a base for a single leaf, with its own copy of the subdivided
+     *  spline mesh. The thickening arrays are shared, and so is the original
+     *  spline mesh unless copyOriginal is set.
+     *
+     *@param  copyOriginal  True if the original spline mesh is copied too
+     *@return               The new base
+     */
+    public synchronized TapLeafBase fork( boolean copyOriginal )
+    {
+        TapLeafBase base = new TapLeafBase( copyOriginal ? (SplineMesh) originalSplineMesh.duplicate() : originalSplineMesh, (SplineMesh) subdividedSplineMesh.duplicate() );
+        base.meshThickness = meshThickness;
+        base.meshPositionRef = meshPositionRef;
+        base.meshPositionTranslation = meshPositionTranslation;
+        base.meshOriginalNorm = meshOriginalNorm;
+        base.ownsOriginal = copyOriginal;
+
+        if ( !copyOriginal )
+            ownsOriginal = false;
+
+        return base;
+    }
+}
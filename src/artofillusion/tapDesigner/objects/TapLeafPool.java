@@ -0,0 +1,231 @@
+/*
+ *  Vertex positions of many leaves sharing the same topology, stored in a single array.
+ */
+/*
+ *  (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import artofillusion.math.*;
+import artofillusion.object.*;
+import artofillusion.texture.*;
+
+
+/**
+ *  Pool of leaves built from the same leaf module : they share their faces,
+ *  edges, smoothness, texture and material, and only differ by their vertex
+ *  positions (and possibly their texture parameter values). The first leaf
+ *  added is kept as a template holding the topology; the positions of all
+ *  the leaves live in one double array. A pooled leaf is expanded into a
+ *  TapLeaf again only when it is displayed, rendered or saved (see
+ *  TapPooledLeaf).<p>
+ *
+ *  Leaves are only appended : the positions of a pooled leaf never change.
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+public class TapLeafPool
+{
+    private TapLeaf template;
+    private int vertexCount;
+    private double[] positions;
+    private ParameterValue[][] parameters;
+    private int count;
+
+
+    /**
+     *  Constructor for the TapLeafPool object
+     *
+     *@param  leaf  The first leaf of the pool, kept as the topology template
+     */
+    public TapLeafPool( TapLeaf leaf )
+    {
+        template = leaf;
+        vertexCount = leaf.getVertices().length;
+        positions = new double[vertexCount * 3 * 16];
+        parameters = new ParameterValue[16][];
+    }
+
+
+    /**
+     *  Gets the key of the leaves which may share a pool : the thickening data
+     *  of their base, computed once per leaf built by a leaf module
+     *
+     *@param  leaf  The leaf
+     *@return       The topology key
+     */
+    public static Object getTopologyKey( TapLeaf leaf )
+    {
+        return leaf.base.meshThickness;
+    }
+
+
+    /**
+     *  Returns true if a leaf can be pooled here
+     *
+     *@param  leaf  The leaf
+     *@return       True if the leaf only differs from the template by its
+     *      vertex positions
+     */
+    public boolean accepts( TapLeaf leaf )
+    {
+        return getTopologyKey( leaf ) == getTopologyKey( template )
+                 && leaf.getVertices().length == vertexCount
+                 && leaf.getTexture() == template.getTexture()
+                 && leaf.getMaterial() == template.getMaterial()
+                 && leaf.getSmoothingMethod() == template.getSmoothingMethod()
+                 && leaf.vertSmoothness == template.vertSmoothness
+                 && leaf.edgeSmoothness == template.edgeSmoothness
+                 && leaf.boundVertSmoothness == template.boundVertSmoothness
+                 && leaf.boundEdgeSmoothness == template.boundEdgeSmoothness;
+    }
+
+
+    /**
+     *  Adds a leaf to the pool. The leaf itself is not kept, apart from the
+     *  first one.
+     *
+     *@param  leaf  The leaf, accepted by the pool
+     *@return       The index of the leaf in the pool
+     */
+    public synchronized int add( TapLeaf leaf )
+    {
+        if ( count == parameters.length )
+        {
+            double[] newPositions = new double[positions.length * 2];
+            ParameterValue[][] newParameters = new ParameterValue[parameters.length * 2][];
+
+            System.arraycopy( positions, 0, newPositions, 0, count * vertexCount * 3 );
+            System.arraycopy( parameters, 0, newParameters, 0, count );
+            positions = newPositions;
+            parameters = newParameters;
+        }
+
+        MeshVertex[] vert = leaf.getVertices();
+        int j = count * vertexCount * 3;
+
+        for ( int i = 0; i < vertexCount; ++i )
+        {
+            positions[j++] = vert[i].r.x;
+            positions[j++] = vert[i].r.y;
+            positions[j++] = vert[i].r.z;
+        }
+
+        ParameterValue[] values = leaf.getParameterValues();
+
+        if ( values != null && values.length > 0 )
+            parameters[count] = values;
+
+        return count++;
+    }
+
+
+    /**
+     *  Gets the number of leaves in the pool
+     *
+     *@return    The number of leaves
+     */
+    public synchronized int size()
+    {
+        return count;
+    }
+
+
+    /**
+     *  Gets the template leaf, which holds the topology, texture and material
+     *  of the pool. It must not be modified.
+     *
+     *@return    The template
+     */
+    public TapLeaf getTemplate()
+    {
+        return template;
+    }
+
+
+    /**
+     *  Gets the texture parameter values of a leaf
+     *
+     *@param  index  The leaf index
+     *@return        The parameter values
+     */
+    public synchronized ParameterValue[] getParameterValues( int index )
+    {
+        return parameters[index] != null ? parameters[index] : template.getParameterValues();
+    }
+
+
+    /**
+     *  Gets the bounds of a leaf, without expanding it
+     *
+     *@param  index  The leaf index
+     *@return        The bounds
+     */
+    public synchronized BoundingBox getBounds( int index )
+    {
+        double minx = Double.MAX_VALUE;
+        double miny = Double.MAX_VALUE;
+        double minz = Double.MAX_VALUE;
+        double maxx = -Double.MAX_VALUE;
+        double maxy = -Double.MAX_VALUE;
+        double maxz = -Double.MAX_VALUE;
+        int j = index * vertexCount * 3;
+
+        for ( int i = 0; i < vertexCount; ++i, j += 3 )
+        {
+            minx = Math.min( minx, positions[j] );
+            maxx = Math.max( maxx, positions[j] );
+            miny = Math.min( miny, positions[j + 1] );
+            maxy = Math.max( maxy, positions[j + 1] );
+            minz = Math.min( minz, positions[j + 2] );
+            maxz = Math.max( maxz, positions[j + 2] );
+        }
+
+        return new BoundingBox( minx, maxx, miny, maxy, minz, maxz );
+    }
+
+
+    /**
+     *  Expands a leaf into a new TapLeaf
+     *
+     *@param  index  The leaf index
+     *@return        The leaf
+     */
+    public TapLeaf getLeaf( int index )
+    {
+        Vec3[] v = new Vec3[vertexCount];
+        ParameterValue[] values;
+
+        synchronized ( this )
+        {
+            int j = index * vertexCount * 3;
+
+            for ( int i = 0; i < vertexCount; ++i, j += 3 )
+                v[i] = new Vec3( positions[j], positions[j + 1], positions[j + 2] );
+
+            values = parameters[index];
+        }
+
+        TapLeaf leaf = (TapLeaf) template.duplicate();
+        leaf.setVertexPositions( v );
+
+        if ( values != null )
+        {
+            ParameterValue[] copy = new ParameterValue[values.length];
+
+            for ( int i = 0; i < values.length; ++i )
+                copy[i] = values[i].duplicate();
+
+            leaf.setParameterValues( copy );
+        }
+
+        return leaf;
+    }
+}
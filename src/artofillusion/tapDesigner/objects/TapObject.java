@@ -36,6 +36,13 @@ public interface TapObject
     /* branching effects */
     public Mat4 setCounterAction(double yPos, double angle, TapDistortParameters parms);
 
+    /* branching effects, applied all together by the next regenerateMesh() call.
+    returns an index to pass to getCounterActionPosition() once the mesh is regenerated*/
+    public int queueCounterAction(double yPos, double angle, TapDistortParameters parms);
+
+    /* position of a queued branch, after regenerateMesh() */
+    public Mat4 getCounterActionPosition(int index);
+
     /* scaling and distort at the same time to avoid multiple calls*/
     public void resizeAndDistort(Vec3 size, double sizeR, double sizeY, TapDistortParameters parms);
 
@@ -0,0 +1,231 @@
+/*
+ *  A leaf whose geometry is stored in a TapLeafPool.
+ */
+/*
+ *  (C) 2026 by the TaPD contributors
+ *  This program is free software; you can redistribute it and/or modify it under the
+ *  terms of the GNU General Public License as published by the Free Software
+ *  Foundation; either version 2 of the License, or (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ *  WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ *  PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ */
+package artofillusion.tapDesigner;
+
+import artofillusion.*;
+import artofillusion.animation.*;
+import artofillusion.material.*;
+import artofillusion.math.*;
+import artofillusion.object.*;
+import artofillusion.texture.*;
+
+
+/**
+ *  Stands for a pooled leaf in a generated TaPD object. It holds no geometry :
+ *  the leaf is expanded from the pool each time a mesh is asked for, and the
+ *  expanded leaf is not kept. Pooled leaves are only displayed, rendered and
+ *  saved, they can't be modified.
+ *
+ *@author     TaPD contributors
+ *@created    17 octobre 2026
+ */
+public class TapPooledLeaf
+         extends Object3D
+{
+    private TapLeafPool pool;
+    private int index;
+
+
+    /**
+     *  Constructor for the TapPooledLeaf object
+     *
+     *@param  pool   The pool
+     *@param  index  The index of the leaf in the pool
+     */
+    public TapPooledLeaf( TapLeafPool pool, int index )
+    {
+        this.pool = pool;
+        this.index = index;
+    }
+
+
+    /**
+     *  Expands the leaf
+     *
+     *@return    A new TapLeaf
+     */
+    public TapLeaf getLeaf()
+    {
+        return pool.getLeaf( index );
+    }
+
+
+    /**
+     *  Description of the Method
+     *
+     *@return    Description of the Return Value
+     */
+    public Object3D duplicate()
+    {
+        return new TapPooledLeaf( pool, index );
+    }
+
+
+    /**
+     *  Description of the Method
+     *
+     *@param  obj  Description of the Parameter
+     */
+    public void copyObject( Object3D obj )
+    {
+        pool = ( (TapPooledLeaf) obj ).pool;
+        index = ( (TapPooledLeaf) obj ).index;
+    }
+
+
+    /**
+     *  Gets the bounds attribute of the TapPooledLeaf object
+     *
+     *@return    The bounds value
+     */
+    public BoundingBox getBounds()
+    {
+        return pool.getBounds( index );
+    }
+
+
+    /**
+     *  Pooled leaves can't be resized
+     *
+     *@param  xsize  The new size value
+     *@param  ysize  The new size value
+     *@param  zsize  The new size value
+     */
+    public void setSize( double xsize, double ysize, double zsize )
+    {
+    }
+
+
+    /**
+     *  Gets the wireframeMesh attribute of the TapPooledLeaf object
+     *
+     *@return    The wireframeMesh value
+     */
+    public WireframeMesh getWireframeMesh()
+    {
+        return getLeaf().getWireframeMesh();
+    }
+
+
+    /**
+     *  Gets the renderingMesh attribute of the TapPooledLeaf object
+     *
+     *@param  tol          Description of the Parameter
+     *@param  interactive  Description of the Parameter
+     *@param  info         Description of the Parameter
+     *@return              The renderingMesh value
+     */
+    public RenderingMesh getRenderingMesh( double tol, boolean interactive, ObjectInfo info )
+    {
+        return getLeaf().getRenderingMesh( tol, interactive, info );
+    }
+
+
+    /**
+     *  Description of the Method
+     *
+     *@return    Description of the Return Value
+     */
+    public int canConvertToTriangleMesh()
+    {
+        return EXACTLY;
+    }
+
+
+    /**
+     *  Description of the Method
+     *
+     *@param  tol  Description of the Parameter
+     *@return      Description of the Return Value
+     */
+    public TriangleMesh convertToTriangleMesh( double tol )
+    {
+        return (TriangleMesh) getLeaf().getPlainAoIObject();
+    }
+
+
+    /**
+     *  Get this object's Texture.
+     *
+     *@return    The texture value
+     */
+    public Texture getTexture()
+    {
+        return pool.getTemplate().getTexture();
+    }
+
+
+    /**
+     *  Get this object's TextureMapping.
+     *
+     *@return    The textureMapping value
+     */
+    public TextureMapping getTextureMapping()
+    {
+        return pool.getTemplate().getTextureMapping();
+    }
+
+
+    /**
+     *  Get this object's Material.
+     *
+     *@return    The material value
+     */
+    public Material getMaterial()
+    {
+        return pool.getTemplate().getMaterial();
+    }
+
+
+    /**
+     *  Get this object's MaterialMapping.
+     *
+     *@return    The materialMapping value
+     */
+    public MaterialMapping getMaterialMapping()
+    {
+        return pool.getTemplate().getMaterialMapping();
+    }
+
+
+    /**
+     *  Gets the parameterValues attribute of the TapPooledLeaf object
+     *
+     *@return    The parameterValues value
+     */
+    public ParameterValue[] getParameterValues()
+    {
+        return pool.getParameterValues( index );
+    }
+
+
+    /**
+     *  Return a Keyframe which describes the current pose of this object.
+     *
+     *@return    The poseKeyframe value
+     */
+    public Keyframe getPoseKeyframe()
+    {
+        return null;
+    }
+
+
+    /**
+     *  Modify this object based on a pose keyframe.
+     *
+     *@param  k  Description of the Parameter
+     */
+    public void applyPoseKeyframe( Keyframe k )
+    {
+    }
+}
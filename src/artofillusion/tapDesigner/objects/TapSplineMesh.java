@@ -51,6 +51,7 @@ public class TapSplineMesh
     double maxY;
     SplineMesh splineMesh;
     TapDistortParameters dparms;
+    TapCounterActions counterActions;
 
 
     /*
@@ -652,6 +653,9 @@ public class TapSplineMesh
      */
     public void regenerateMesh()
     {
+        if ( counterActions != null && counterActions.isPending() )
+            applyCounterActions();
+
         int i;
         int j;
         int vLength = yVert.length;
@@ -716,6 +720,163 @@ public class TapSplineMesh
     }
 
 
+    /**
+     *  Queues a counter action, applied by regenerateMesh()
+     *
+     *@param  yPos   The position along the mesh
+     *@param  angle  The horizontal angle of the branch
+     *@param  parms  The distortion parameters
+     *@return        The counter action index
+     */
+    public int queueCounterAction( double yPos, double angle, TapDistortParameters parms )
+    {
+        if ( counterActions == null )
+            counterActions = new TapCounterActions();
+
+        return counterActions.add( yPos, angle, parms );
+    }
+
+
+    /**
+     *  Gets the position of a queued branch
+     *
+     *@param  index  The counter action index
+     *@return        The position
+     */
+    public Mat4 getCounterActionPosition( int index )
+    {
+        return counterActions.getPosition( index );
+    }
+
+
+    /*
+     *  Inserts the cross sections of all the queued branches in one pass, then bends the mesh
+     *  for each of them from bottom to top.
+     */
+    /**
+     *  Applies the queued counter actions
+     */
+    private void applyCounterActions()
+    {
+        int k = counterActions.size();
+        int[] order = counterActions.getSortedOrder();
+        int n = yVert.length;
+        Vec3[] newYVert = new Vec3[n + k];
+        double[] newYPositions = new double[n + k];
+        Vector newCrossSections = new Vector( n + k );
+        int[] i1s = new int[k];
+        int[] i2s = new int[k];
+        int[] positions = new int[k];
+        int src = 0;
+        int dst = 0;
+
+        for ( int e = 0; e < k; ++e )
+        {
+            int index = order[e];
+            double yPos = counterActions.getYPos( index );
+
+            if ( ( yPos < 0.0001 ) || ( yPos > 0.99999 ) )
+            {
+                positions[e] = -1;
+                continue;
+            }
+
+            //copy the sections up to the first one at or above yPos
+            while ( src < n && ( dst < 2 || newYPositions[dst - 1] < yPos ) )
+            {
+                newYVert[dst] = yVert[src];
+                newYPositions[dst] = yPositions[src];
+                newCrossSections.addElement( currentCrossSections.elementAt( src ) );
+                ++src;
+                ++dst;
+            }
+
+            int i2 = dst - 1;
+            int i1 = i2 - 1;
+            double coef = ( yPos - newYPositions[i1] ) / ( newYPositions[i2] - newYPositions[i1] );
+
+            if ( ( coef > 0.005 ) && ( coef < 0.995 ) )
+            {
+                newYVert[dst] = newYVert[i2];
+                newYPositions[dst] = newYPositions[i2];
+                ++dst;
+
+                //the section moved up belonged to previous branches as well
+                for ( int p = e - 1; p >= 0 && positions[p] != -1 && i2s[p] >= i2; --p )
+                {
+                    ++i2s[p];
+
+                    if ( positions[p] >= i2 )
+                        ++positions[p];
+                }
+
+                Vec3 v1 = newYVert[i1];
+                Vec3 v2 = newYVert[i2 + 1];
+                newYVert[i2] = new Vec3( v1.x * ( 1 - coef ) + v2.x * coef, v1.y * ( 1 - coef ) + v2.y * coef, v1.z * ( 1 - coef ) + v2.z * coef );
+                newYPositions[i2] = yPos;
+
+                Vec3[] ci1 = ( (Curve) newCrossSections.elementAt( i1 ) ).getVertexPositions();
+                Vec3[] ci2 = ( (Curve) newCrossSections.elementAt( i2 ) ).getVertexPositions();
+                Curve newCurve = (Curve) ( (Curve) newCrossSections.elementAt( i1 ) ).duplicate();
+                Vec3[] newCurveVert = newCurve.getVertexPositions();
+
+                for ( int i = 0; i < newCurveVert.length; ++i )
+                    newCurveVert[i] = new Vec3( ci1[i].x * ( 1 - coef ) + ci2[i].x * coef, ci1[i].y * ( 1 - coef ) + ci2[i].y * coef, ci1[i].z * ( 1 - coef ) + ci2[i].z * coef );
+
+                newCurve.setVertexPositions( newCurveVert );
+                newCrossSections.insertElementAt( newCurve, i2 );
+                positions[e] = i2;
+            }
+            else if ( coef <= 0.005 )
+                positions[e] = i1;
+            else
+                positions[e] = i2;
+
+            i1s[e] = i1;
+            i2s[e] = i2;
+        }
+
+        while ( src < n )
+        {
+            newYVert[dst] = yVert[src];
+            newCrossSections.addElement( currentCrossSections.elementAt( src ) );
+            ++src;
+            ++dst;
+        }
+
+        if ( dst > n )
+        {
+            yVert = new Vec3[dst];
+            System.arraycopy( newYVert, 0, yVert, 0, dst );
+            currentCrossSections = newCrossSections;
+            maxY = 0;
+            yPositions = new double[dst];
+            yPositions[0] = 0;
+
+            for ( int i = 1; i < dst; ++i )
+            {
+                maxY += yVert[i].distance( yVert[i - 1] );
+                yPositions[i] = maxY;
+            }
+
+            for ( int i = 1; i < dst; ++i )
+                yPositions[i] /= maxY;
+        }
+
+        for ( int e = 0; e < k; ++e )
+        {
+            int index = order[e];
+
+            if ( positions[e] == -1 )
+                counterActions.setPosition( index, TapCounterActions.getEndPosition( yVert, counterActions.getYPos( index ) > 0.5 ) );
+            else
+                counterActions.setPosition( index, counterActions.apply( yVert, yPositions, i1s[e], i2s[e], new Vec3( yVert[positions[e]] ), index ) );
+        }
+
+        counterActions.setApplied();
+    }
+
+
     /*
      *  distorts the spline mesh each time a branch is plugged into it (kind of counter reaction)
      */
@@ -47,6 +47,11 @@ public class TapTube
     private double rSize;
     TapFunction rShape;
     TapDistortParameters sparms;
+    private TapCounterActions counterActions;
+    private boolean editing;
+    private MeshVertex[] editVert;
+    private float[] editSmoothness;
+    private double[] editThickness;
 
 
     /**
@@ -160,7 +165,7 @@ public class TapTube
         if ( parms != null )
             gen = new TapRandomGenerator( parms.seed );
 
-        MeshVertex[] vert = getVertices();
+        MeshVertex[] vert = getSkeletonVertices();
         yVert = new Vec3[vert.length];
 
         for ( i = 0; i < yVert.length; ++i )
@@ -357,7 +362,7 @@ public class TapTube
             for ( i = 0; i < yVert.length; ++i )
                 vert[i].r = yVert[i];
 
-        super.setShape( vert, super.getSmoothness(), t );
+        setSkeleton( vert, getSkeletonSmoothness(), t );
     }
 
 
@@ -384,7 +389,7 @@ public class TapTube
      */
     public void setShape( MeshVertex[] v, float[] smoothness, double[] thickness )
     {
-        super.setShape( v, smoothness, thickness );
+        setSkeleton( v, smoothness, thickness );
         setShape( null );
 
         //for (int i=0;i<getVertexPositions().length;++i) thickness[i] = rShape.calcValue(yPositions[i]);
@@ -399,8 +404,20 @@ public class TapTube
      */
     public Object3D duplicate()
     {
-        TapTube newTube = new TapTube( yVert, getSmoothness(), getThickness() );
+        TapTube newTube = new TapTube( yVert, getSkeletonSmoothness(), getSkeletonThickness() );
         newTube.copyObject( this );
+
+        if ( editing )
+        {
+            //the Tube geometry is behind the skeleton
+            MeshVertex[] vert = new MeshVertex[editVert.length];
+
+            for ( int i = 0; i < vert.length; ++i )
+                vert[i] = new MeshVertex( editVert[i] );
+
+            newTube.setTubeShape( vert, (float[]) editSmoothness.clone(), (double[]) editThickness.clone() );
+        }
+
         newTube.rShape = rShape.duplicate();
         newTube.yPositions = new double[yPositions.length];
         newTube.yVert = newTube.getVertexPositions();
@@ -601,12 +618,12 @@ public class TapTube
         }
 
         Vec3 position = null;
-        float[] smooth = super.getSmoothness();
-        double[] thick = super.getThickness();
+        float[] smooth = getSkeletonSmoothness();
+        double[] thick = getSkeletonThickness();
         float[] newSmoothness = null;
         double[] newThickness = null;
         Vec3[] newYVert = null;
-        MeshVertex[] meshVert = getVertices();
+        MeshVertex[] meshVert = getSkeletonVertices();
         MeshVertex[] newMeshVert = null;
         double coef = ( yPos - yPositions[i1] ) / ( yPositions[i2] - yPositions[i1] );
         float insSmooth;
@@ -714,7 +731,7 @@ public class TapTube
         for ( i = 0; i < yVert.length; ++i )
             meshVert[i].r = yVert[i];
 
-        super.setShape( meshVert, smooth, thick );
+        setSkeleton( meshVert, smooth, thick );
 
         return result;
     }
@@ -765,6 +782,12 @@ public class TapTube
      */
     public void setSize( double xsize, double ysize, double zsize, double rs, TapDistortParameters parms )
     {
+        //scaling needs the Tube geometry
+        boolean wasEditing = editing;
+
+        if ( editing )
+            endEditing();
+
         Vec3 size = getBounds().getSize();
         super.setSize( xsize, ysize, zsize );
 
@@ -775,18 +798,309 @@ public class TapTube
 
         setShape( parms );
         clearCachedMesh();
+
+        if ( wasEditing )
+            beginEditing();
+    }
+
+
+    /**
+     *  Queues a counter action, applied by regenerateMesh()
+     *
+     *@param  yPos   The position along the tube
+     *@param  angle  The horizontal angle of the branch
+     *@param  parms  The distortion parameters
+     *@return        The counter action index
+     */
+    public int queueCounterAction( double yPos, double angle, TapDistortParameters parms )
+    {
+        if ( counterActions == null )
+            counterActions = new TapCounterActions();
+
+        return counterActions.add( yPos, angle, parms );
+    }
+
+
+    /**
+     *  Gets the position of a queued branch
+     *
+     *@param  index  The counter action index
+     *@return        The position
+     */
+    public Mat4 getCounterActionPosition( int index )
+    {
+        return counterActions.getPosition( index );
     }
 
 
     /*
-     *  There's no need to regenerate the mesh, it's done by the Tube each time the geometry is changed
+     *  Inserts the vertices of all the queued branches in one pass, then bends the tube for each
+     *  of them from bottom to top. The Tube geometry is set once for the whole batch.
+     */
+    /**
+     *  Applies the queued counter actions
+     */
+    private void applyCounterActions()
+    {
+        int k = counterActions.size();
+        int[] order = counterActions.getSortedOrder();
+        int n = yVert.length;
+        float[] smooth = getSkeletonSmoothness();
+        double[] thick = getSkeletonThickness();
+        MeshVertex[] meshVert = getSkeletonVertices();
+        Vec3[] newYVert = new Vec3[n + k];
+        float[] newSmoothness = new float[n + k];
+        double[] newThickness = new double[n + k];
+        double[] newYPositions = new double[n + k];
+        MeshVertex[] newMeshVert = new MeshVertex[n + k];
+        int[] i1s = new int[k];
+        int[] i2s = new int[k];
+        int[] positions = new int[k];
+        int src = 0;
+        int dst = 0;
+
+        for ( int e = 0; e < k; ++e )
+        {
+            int index = order[e];
+            double yPos = counterActions.getYPos( index );
+
+            if ( ( yPos < 0.0001 ) || ( yPos > 0.99999 ) )
+            {
+                positions[e] = -1;
+                continue;
+            }
+
+            //copy the vertices up to the first one at or above yPos
+            while ( src < n && ( dst < 2 || newYPositions[dst - 1] < yPos ) )
+            {
+                newYVert[dst] = yVert[src];
+                newSmoothness[dst] = smooth[src];
+                newThickness[dst] = thick[src];
+                newYPositions[dst] = yPositions[src];
+                newMeshVert[dst] = meshVert[src];
+                ++src;
+                ++dst;
+            }
+
+            int i2 = dst - 1;
+            int i1 = i2 - 1;
+            double coef = ( yPos - newYPositions[i1] ) / ( newYPositions[i2] - newYPositions[i1] );
+
+            if ( ( coef > 0.005 ) && ( coef < 0.995 ) )
+            {
+                newYVert[dst] = newYVert[i2];
+                newSmoothness[dst] = newSmoothness[i2];
+                newThickness[dst] = newThickness[i2];
+                newYPositions[dst] = newYPositions[i2];
+                newMeshVert[dst] = newMeshVert[i2];
+                ++dst;
+
+                //the vertex moved up belonged to previous branches as well
+                for ( int p = e - 1; p >= 0 && positions[p] != -1 && i2s[p] >= i2; --p )
+                {
+                    if ( i1s[p] >= i2 )
+                        ++i1s[p];
+
+                    ++i2s[p];
+
+                    if ( positions[p] >= i2 )
+                        ++positions[p];
+                }
+
+                Vec3 v1 = newYVert[i1];
+                Vec3 v2 = newYVert[i2 + 1];
+                newYVert[i2] = new Vec3( v1.x * ( 1 - coef ) + v2.x * coef, v1.y * ( 1 - coef ) + v2.y * coef, v1.z * ( 1 - coef ) + v2.z * coef );
+                newSmoothness[i2] = (float) ( newSmoothness[i1] * ( 1.0f - coef ) + newSmoothness[i2 + 1] * coef );
+                newThickness[i2] = rShape.calcValue( yPos ) * rSize;
+                newYPositions[i2] = yPos;
+                newMeshVert[i2] = MeshVertex.blend( newMeshVert[i1], newMeshVert[i2 + 1], 1 - coef, coef );
+                positions[e] = i2;
+            }
+            else if ( coef <= 0.005 )
+                positions[e] = i1;
+            else
+                positions[e] = i2;
+
+            i1s[e] = i1;
+            i2s[e] = i2;
+        }
+
+        while ( src < n )
+        {
+            newYVert[dst] = yVert[src];
+            newSmoothness[dst] = smooth[src];
+            newThickness[dst] = thick[src];
+            newYPositions[dst] = yPositions[src];
+            newMeshVert[dst] = meshVert[src];
+            ++src;
+            ++dst;
+        }
+
+        if ( dst < n + k )
+        {
+            yVert = new Vec3[dst];
+            smooth = new float[dst];
+            thick = new double[dst];
+            yPositions = new double[dst];
+            meshVert = new MeshVertex[dst];
+            System.arraycopy( newYVert, 0, yVert, 0, dst );
+            System.arraycopy( newSmoothness, 0, smooth, 0, dst );
+            System.arraycopy( newThickness, 0, thick, 0, dst );
+            System.arraycopy( newYPositions, 0, yPositions, 0, dst );
+            System.arraycopy( newMeshVert, 0, meshVert, 0, dst );
+        }
+        else
+        {
+            yVert = newYVert;
+            smooth = newSmoothness;
+            thick = newThickness;
+            yPositions = newYPositions;
+            meshVert = newMeshVert;
+        }
+
+        for ( int e = 0; e < k; ++e )
+        {
+            int index = order[e];
+
+            if ( positions[e] == -1 )
+                counterActions.setPosition( index, TapCounterActions.getEndPosition( yVert, counterActions.getYPos( index ) > 0.5 ) );
+            else
+                counterActions.setPosition( index, counterActions.apply( yVert, yPositions, i1s[e], i2s[e], new Vec3( yVert[positions[e]] ), index ) );
+        }
+
+        for ( int i = 0; i < yVert.length; ++i )
+            meshVert[i].r = yVert[i];
+
+        setSkeleton( meshVert, smooth, thick );
+        counterActions.setApplied();
+    }
+
+
+    /*
+     *  The Tube regenerates its mesh each time the geometry is changed, unless an editing session
+     *  is open. The queued counter actions are applied, and the editing session closed, here.
      */
     /**
      *  Description of the Method
      */
     public void regenerateMesh()
     {
-        //only for TapObject interface
+        if ( counterActions != null && counterActions.isPending() )
+            applyCounterActions();
+
+        if ( editing )
+            endEditing();
+    }
+
+
+    /*
+     *  Opens an editing session : until regenerateMesh() is called, distortions and counter actions
+     *  only update the skeleton (vertices, smoothness and thickness), and the Tube geometry is set
+     *  once at the end. Bounds and meshes of the Tube are not up to date during the session.
+     */
+    /**
+     *  Starts an editing session
+     */
+    public void beginEditing()
+    {
+        if ( editing )
+            return;
+
+        editVert = getVertices();
+        editSmoothness = getSmoothness();
+        editThickness = getThickness();
+        editing = true;
+    }
+
+
+    /**
+     *  Returns true if an editing session is open
+     *
+     *@return    The editing value
+     */
+    public boolean isEditing()
+    {
+        return editing;
+    }
+
+
+    /**
+     *  Sets the Tube geometry to the skeleton and closes the editing session
+     */
+    private void endEditing()
+    {
+        editing = false;
+        super.setShape( editVert, editSmoothness, editThickness );
+        editVert = null;
+        editSmoothness = null;
+        editThickness = null;
+    }
+
+
+    /**
+     *  Gets the skeleton vertices, which are the Tube vertices outside of an
+     *  editing session
+     *
+     *@return    The skeleton vertices
+     */
+    private MeshVertex[] getSkeletonVertices()
+    {
+        return editing ? editVert : getVertices();
+    }
+
+
+    /**
+     *  Gets the skeleton smoothness
+     *
+     *@return    The skeleton smoothness
+     */
+    private float[] getSkeletonSmoothness()
+    {
+        return editing ? editSmoothness : super.getSmoothness();
+    }
+
+
+    /**
+     *  Gets the skeleton thickness
+     *
+     *@return    The skeleton thickness
+     */
+    private double[] getSkeletonThickness()
+    {
+        return editing ? editThickness : super.getThickness();
+    }
+
+
+    /**
+     *  Sets the skeleton, and the Tube geometry outside of an editing session
+     *
+     *@param  v           The vertices
+     *@param  smoothness  The smoothness
+     *@param  thickness   The thickness
+     */
+    private void setSkeleton( MeshVertex[] v, float[] smoothness, double[] thickness )
+    {
+        if ( editing )
+        {
+            editVert = v;
+            editSmoothness = smoothness;
+            editThickness = thickness;
+        }
+        else
+            super.setShape( v, smoothness, thickness );
+    }
+
+
+    /**
+     *  Sets the Tube geometry only
+     *
+     *@param  v           The vertices
+     *@param  smoothness  The smoothness
+     *@param  thickness   The thickness
+     */
+    private void setTubeShape( MeshVertex[] v, float[] smoothness, double[] thickness )
+    {
+        super.setShape( v, smoothness, thickness );
     }
 
 
@@ -797,6 +1111,9 @@ public class TapTube
      */
     public Object3D getPlainAoIObject()
     {
+        if ( editing )
+            endEditing();
+
         return super.duplicate();
     }
 }